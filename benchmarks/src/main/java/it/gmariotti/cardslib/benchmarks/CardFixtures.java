@@ -0,0 +1,76 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardExpand;
+import it.gmariotti.cardslib.library.internal.CardHeader;
+import it.gmariotti.cardslib.library.internal.CardThumbnail;
+
+/**
+ * Cards used by the benchmarks.
+ * They are built without a Context: the benchmarked paths only read the models.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+final class CardFixtures {
+
+    /**
+     * Inner layouts (only compared, never inflated)
+     */
+    static final int[] INNER_LAYOUTS = {1, 2, 3};
+    static final int HEADER_LAYOUT = 10;
+    static final int EXPAND_LAYOUT = 20;
+
+    private CardFixtures() {
+    }
+
+    /**
+     * Builds cards with mixed inner layouts, headers, thumbnails and expands
+     *
+     * @param count number of cards
+     * @param mixed <code>false</code> to build only base cards with the same inner layout
+     * @param seed  seed of the random generator
+     */
+    static List<Card> build(int count, boolean mixed, long seed) {
+        Random random = new Random(seed);
+        List<Card> cards = new ArrayList<Card>(count);
+        for (int i = 0; i < count; i++) {
+            Card card;
+            if (mixed) {
+                card = new Card(null, INNER_LAYOUTS[random.nextInt(INNER_LAYOUTS.length)]);
+                if (random.nextBoolean())
+                    card.addCardHeader(new CardHeader(null, HEADER_LAYOUT));
+                if (random.nextInt(3) == 0)
+                    card.addCardThumbnail(new CardThumbnail(null));
+                if (random.nextInt(4) == 0)
+                    card.addCardExpand(new CardExpand(null, EXPAND_LAYOUT));
+            } else {
+                card = new Card(null, INNER_LAYOUTS[0]);
+            }
+            card.setId("card_" + i);
+            cards.add(card);
+        }
+        return cards;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.CardIdIndex;
+
+/**
+ * {@link CardIdIndex}: the id lookups and the incremental updates done by the adapters
+ * (<code>positionOf</code>, <code>updateCard</code>, <code>insert</code>/<code>removeById</code>, <code>move</code>).
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardIdIndexBenchmark {
+
+    @Param({"1000", "100000"})
+    public int mSize;
+
+    private List<Card> mCards;
+    private CardIdIndex mIndex;
+    private String[] mIds;
+    private Card[] mReplacements;
+    private int mNext;
+
+    @Setup
+    public void setup() {
+        mCards = CardFixtures.build(mSize, false, 42);
+        mIndex = new CardIdIndex(mCards);
+        mIds = new String[mSize];
+        mReplacements = new Card[mSize];
+        for (int i = 0; i < mSize; i++) {
+            mIds[i] = mCards.get(i).getId();
+            mReplacements[i] = new Card(null, CardFixtures.INNER_LAYOUTS[0]);
+            mReplacements[i].setId(mIds[i]);
+        }
+        mIndex.positionOf(mIds[0]);
+    }
+
+    private int next() {
+        int position = mNext;
+        mNext = (mNext + 7919) % mSize;
+        return position;
+    }
+
+    /**
+     * Lookup on a clean index
+     */
+    @Benchmark
+    public int positionOf() {
+        return mIndex.positionOf(mIds[next()]);
+    }
+
+    /**
+     * Replace in place by id (<code>updateCard</code>): the index stays clean
+     */
+    @Benchmark
+    public int updateCard() {
+        String id = mIds[next()];
+        int position = mIndex.positionOf(id);
+        Card card = mReplacements[position];
+        mReplacements[position] = mCards.set(position, card);
+        mIndex.onReplaced(position, mReplacements[position], card);
+        return position;
+    }
+
+    /**
+     * Remove and insert a card in the middle, followed by a lookup of the last card
+     */
+    @Benchmark
+    public int removeAndInsert() {
+        int position = mSize / 2;
+        Card card = mCards.remove(position);
+        mIndex.onRemoved(position, card);
+        mCards.add(position, card);
+        mIndex.onInserted(position, 1);
+        return mIndex.positionOf(mIds[mSize - 1]);
+    }
+
+    /**
+     * Move a card from the top to the bottom of the list (drag and drop), followed by a lookup of the moved card
+     */
+    @Benchmark
+    public int move() {
+        Card card = mCards.remove(0);
+        mCards.add(mSize - 1, card);
+        mIndex.onMoved(0, mSize - 1);
+        return mIndex.positionOf(card.getId());
+    }
+}
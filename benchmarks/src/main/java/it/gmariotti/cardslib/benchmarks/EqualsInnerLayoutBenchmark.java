@@ -0,0 +1,94 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * {@link Card#equalsInnerLayout(Card, Card)}: the check done by the adapters when a recycled row
+ * is bound to a new card (it decides if the inner layouts have to be replaced).
+ * </p>
+ * The benchmark simulates a scroll: each row, recycled after {@link #VISIBLE_ROWS} positions,
+ * is compared with the card bound in its place.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EqualsInnerLayoutBenchmark {
+
+    static final int VISIBLE_ROWS = 8;
+    static final int CARDS = 1024;
+
+    /**
+     * mixed: inner layouts, headers, thumbnails and expands; uniform: base cards
+     */
+    @Param({"mixed", "uniform"})
+    public String mKind;
+
+    private Card[] mCards;
+
+    @Setup
+    public void setup() {
+        List<Card> cards = CardFixtures.build(CARDS, "mixed".equals(mKind), 42);
+        mCards = cards.toArray(new Card[cards.size()]);
+    }
+
+    /**
+     * One bind: returns <code>true</code> if the inner layouts have to be replaced
+     */
+    @Benchmark
+    public boolean bind() {
+        return Card.equalsInnerLayout(mCards[0], mCards[VISIBLE_ROWS]);
+    }
+
+    /**
+     * Scroll over all the cards: returns the number of rows which replace their inner layouts
+     */
+    @Benchmark
+    @OperationsPerInvocation(CARDS)
+    public int scroll() {
+        int replaced = 0;
+        for (int i = 0; i < CARDS; i++) {
+            if (Card.equalsInnerLayout(mCards[i], mCards[(i + VISIBLE_ROWS) % CARDS]))
+                replaced++;
+        }
+        return replaced;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.gmariotti.cardslib.library.view.base.ExpandTranslations;
+
+/**
+ * {@link ExpandTranslations#compute}: the bounds math of the expand and collapse animations of the lists.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpandTranslationsBenchmark {
+
+    static final int SAMPLES = 1024;
+    static final int LIST_HEIGHT = 1920;
+
+    private int[] mTops;
+    private int[] mHeights;
+    private int[] mDeltas;
+    private int[] mLeftovers;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mTops = new int[SAMPLES];
+        mHeights = new int[SAMPLES];
+        mDeltas = new int[SAMPLES];
+        mLeftovers = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            //Rows partially over the top, visible and below the bottom
+            mTops[i] = random.nextInt(LIST_HEIGHT + 400) - 200;
+            mHeights[i] = 200 + random.nextInt(400);
+            mDeltas[i] = 100 + random.nextInt(600);
+            mLeftovers[i] = random.nextInt(2000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int expand() {
+        int sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int[] translations = ExpandTranslations.compute(mTops[i], mTops[i] + mHeights[i], mDeltas[i], true,
+                    LIST_HEIGHT, mLeftovers[i]);
+            sum += translations[0] + translations[1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int collapse() {
+        int sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            int[] translations = ExpandTranslations.compute(mTops[i], mTops[i] + mHeights[i], mDeltas[i], false,
+                    LIST_HEIGHT, mLeftovers[i]);
+            sum += translations[0] + translations[1];
+        }
+        return sum;
+    }
+}
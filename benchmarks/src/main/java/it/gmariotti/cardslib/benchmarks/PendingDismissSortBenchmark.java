@@ -0,0 +1,77 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.gmariotti.cardslib.library.view.listener.SwipeDismissAdapterViewTouchListener.PendingDismissData;
+
+/**
+ * Sort of the pending dismisses (by descending position) done when the dismiss animations end.
+ * Each invocation copies the unsorted dismisses and sorts them.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PendingDismissSortBenchmark {
+
+    /**
+     * Number of cards dismissed together
+     */
+    @Param({"1", "8", "64"})
+    public int mCount;
+
+    private List<PendingDismissData> mDismisses;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mDismisses = new ArrayList<PendingDismissData>(mCount);
+        for (int i = 0; i < mCount; i++)
+            mDismisses.add(new PendingDismissData(random.nextInt(10000), null));
+    }
+
+    @Benchmark
+    public List<PendingDismissData> sort() {
+        List<PendingDismissData> dismisses = new ArrayList<PendingDismissData>(mDismisses);
+        Collections.sort(dismisses);
+        return dismisses;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks.bind;
+
+import android.app.Activity;
+
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * Runs the {@link BindScrollHarness} on Robolectric with the three adapter strategies and the same cards.
+ * </p>
+ * Run it with <code>gradle :benchmarks:bindBenchmark</code>; the card count can be changed with
+ * <code>-Pbind.cards=N</code>. The results are printed and appended to <code>build/bind-results.txt</code>.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "../library/src/main/AndroidManifest.xml", sdk = 21)
+public class BindScrollBenchmark {
+
+    /**
+     * Default number of cards
+     */
+    public static final int DEFAULT_CARDS = 500;
+
+    /**
+     * Seed of the workload
+     */
+    public static final long SEED = 42;
+
+    private Activity mActivity;
+    private BindScrollHarness mHarness;
+    private List<Card> mCards;
+
+    @Before
+    public void setup() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        //The posted tasks and the traversals run only when the harness flushes the looper
+        ShadowLooper.pauseMainLooper();
+        if (!ImageLoader.getInstance().isInited())
+            ImageLoader.getInstance().init(ImageLoaderConfiguration.createDefault(mActivity));
+
+        mHarness = new BindScrollHarness(mActivity, new Runnable() {
+            @Override
+            public void run() {
+                ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            }
+        });
+        mCards = BindWorkload.build(mActivity, Integer.getInteger("bind.cards", DEFAULT_CARDS), SEED);
+    }
+
+    @Test
+    public void cardArrayAdapter() throws IOException {
+        report("list", mHarness.run(BindScrollHarness.Strategy.LIST, mCards));
+    }
+
+    @Test
+    public void cardGridArrayAdapter() throws IOException {
+        report("grid", mHarness.run(BindScrollHarness.Strategy.GRID, mCards));
+    }
+
+    @Test
+    public void cardArrayRecyclerAdapter() throws IOException {
+        report("recycler", mHarness.run(BindScrollHarness.Strategy.RECYCLER, mCards));
+    }
+
+    private void report(String name, BindStats stats) throws IOException {
+        String line = stats.toString(name);
+        System.out.println(BindStats.header());
+        System.out.println(line);
+
+        File results = new File("build/bind-results.txt");
+        results.getParentFile().mkdirs();
+        boolean writeHeader = !results.exists();
+        FileWriter writer = new FileWriter(results, true);
+        try {
+            if (writeHeader)
+                writer.write(BindStats.header() + "\n");
+            writer.write(line + " cards=" + mCards.size() + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+}
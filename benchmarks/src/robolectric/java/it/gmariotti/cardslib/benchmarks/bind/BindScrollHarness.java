@@ -0,0 +1,297 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks.bind;
+
+import android.app.Activity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
+import it.gmariotti.cardslib.library.view.CardGridView;
+import it.gmariotti.cardslib.library.view.CardListView;
+import it.gmariotti.cardslib.library.view.CardRecyclerView;
+import it.gmariotti.cardslib.library.view.CardView;
+
+/**
+ * Host-side bind and scroll harness.
+ * </p>
+ * It binds the same cards with a {@link Strategy}, scrolls the view programmatically from the top to the end
+ * (one step of a quarter of the view per frame, with a layout pass after each step) and then expands and
+ * collapses the visible expandable cards.
+ * The views are measured and laid out by the harness with a fixed size, so the runs don't depend on the display.
+ * </p>
+ * The harness only needs an {@link Activity} and a way to run the pending tasks of the main looper:
+ * it runs on Robolectric (see <code>BindScrollBenchmark</code>), but also in an instrumentation test.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class BindScrollHarness {
+
+    /**
+     * Adapter strategies compared by the harness
+     */
+    public enum Strategy {
+        /** {@link CardListView} with a {@link CountingCardArrayAdapter} */
+        LIST,
+        /** {@link CardGridView} with a {@link CountingCardGridArrayAdapter} */
+        GRID,
+        /** {@link CardRecyclerView} with a {@link CountingCardArrayAdapter} wrapped by a CardArrayRecyclerAdapter */
+        RECYCLER
+    }
+
+    /**
+     * Default size of the views (a 1080x1920 screen)
+     */
+    public static final int DEFAULT_WIDTH = 1080;
+    public static final int DEFAULT_HEIGHT = 1920;
+
+    /**
+     * Max number of expandable cards expanded and collapsed in a run
+     */
+    public static final int MAX_EXPANDS = 8;
+
+    protected final Activity mActivity;
+    protected final Runnable mMainLooperFlusher;
+
+    protected int mWidth = DEFAULT_WIDTH;
+    protected int mHeight = DEFAULT_HEIGHT;
+    protected int mNumColumns = 2;
+    protected int mRowLayoutId = R.layout.list_card_thumbnail_layout;
+
+    /**
+     * @param activity          activity which hosts the views
+     * @param mainLooperFlusher runs the pending (and delayed) tasks of the main looper
+     */
+    public BindScrollHarness(Activity activity, Runnable mainLooperFlusher) {
+        mActivity = activity;
+        mMainLooperFlusher = mainLooperFlusher;
+    }
+
+    // -------------------------------------------------------------
+    // Run
+    // -------------------------------------------------------------
+
+    /**
+     * Binds the cards with the strategy and scrolls them twice: the first scroll warms up the views,
+     * the second one is recorded.
+     *
+     * @param strategy strategy
+     * @param cards    cards (see {@link BindWorkload})
+     * @return the stats of the recorded scroll and of the expands
+     */
+    public BindStats run(Strategy strategy, List<Card> cards) {
+        BindStats stats = new BindStats();
+        ViewGroup view = createView(strategy, cards, stats);
+        mActivity.setContentView(view, new ViewGroup.LayoutParams(mWidth, mHeight));
+        layout(view);
+
+        //Warm up
+        scrollToEnd(view);
+        scrollToTop(view);
+        stats.reset();
+
+        long start = System.nanoTime();
+        scrollToEnd(view);
+        stats.mScrollNanos = System.nanoTime() - start;
+
+        scrollToTop(view);
+        expandVisibleCards(view, stats);
+        return stats;
+    }
+
+    protected ViewGroup createView(Strategy strategy, List<Card> cards, BindStats stats) {
+        switch (strategy) {
+            case GRID:
+                CardGridView gridView = new CardGridView(mActivity);
+                gridView.setNumColumns(mNumColumns);
+                CountingCardGridArrayAdapter gridAdapter = new CountingCardGridArrayAdapter(mActivity, cards, stats);
+                gridView.setAdapter(gridAdapter);
+                gridAdapter.setRowLayoutId(mRowLayoutId);
+                return gridView;
+            case RECYCLER:
+                CardRecyclerView recyclerView = new CardRecyclerView(mActivity);
+                recyclerView.setLayoutManager(new LinearLayoutManager(mActivity));
+                CountingCardArrayAdapter recyclerAdapter = new CountingCardArrayAdapter(mActivity, cards, stats);
+                recyclerView.setAdapter(recyclerAdapter);
+                recyclerAdapter.setRowLayoutId(mRowLayoutId);
+                return recyclerView;
+            default:
+                CardListView listView = new CardListView(mActivity);
+                CountingCardArrayAdapter listAdapter = new CountingCardArrayAdapter(mActivity, cards, stats);
+                listView.setAdapter(listAdapter);
+                listAdapter.setRowLayoutId(mRowLayoutId);
+                return listView;
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Scroll
+    // -------------------------------------------------------------
+
+    /**
+     * Measures and lays out the view with the size of the harness
+     */
+    protected void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, mWidth, mHeight);
+    }
+
+    /**
+     * Scrolls to the end, a quarter of the view per frame. It stops when a step doesn't move the rows.
+     */
+    protected void scrollToEnd(ViewGroup view) {
+        int step = mHeight / 4;
+        long position = getScrollPosition(view);
+        while (true) {
+            if (view instanceof AbsListView)
+                ((AbsListView) view).scrollListBy(step);
+            else
+                ((RecyclerView) view).scrollBy(0, step);
+            if (view.isLayoutRequested())
+                layout(view);
+
+            long newPosition = getScrollPosition(view);
+            if (newPosition == position)
+                break;
+            position = newPosition;
+        }
+    }
+
+    protected void scrollToTop(ViewGroup view) {
+        if (view instanceof AbsListView)
+            ((AbsListView) view).setSelection(0);
+        else
+            ((RecyclerView) view).scrollToPosition(0);
+        layout(view);
+        mMainLooperFlusher.run();
+    }
+
+    /**
+     * Returns the adapter position of the first row and the top of its view, packed in a long
+     */
+    protected long getScrollPosition(ViewGroup view) {
+        if (view.getChildCount() == 0)
+            return 0;
+        int first;
+        if (view instanceof AbsListView)
+            first = ((AbsListView) view).getFirstVisiblePosition();
+        else
+            //recyclerview-v7 21.0.0-rc1 has no getChildAdapterPosition()
+            first = ((RecyclerView) view).getChildPosition(view.getChildAt(0));
+        return ((long) first << 32) | (view.getChildAt(0).getTop() & 0xffffffffL);
+    }
+
+    // -------------------------------------------------------------
+    // Expand
+    // -------------------------------------------------------------
+
+    /**
+     * Expands and collapses the visible cards with an expand button.
+     * The recorded cost is the setup of the expand: the click, the layout pass and the pre-draw pass,
+     * where the list views create their animators.
+     */
+    protected void expandVisibleCards(ViewGroup view, BindStats stats) {
+        List<View> buttons = new ArrayList<View>();
+        for (int i = 0; i < view.getChildCount() && buttons.size() < MAX_EXPANDS; i++) {
+            CardView cardView = findCardView(view, view.getChildAt(i));
+            if (cardView == null || cardView.getCard() == null || cardView.getCard().getCardExpand() == null)
+                continue;
+            View button = cardView.findViewById(R.id.card_header_button_expand);
+            if (button != null && button.getVisibility() == View.VISIBLE)
+                buttons.add(button);
+        }
+
+        for (View button : buttons) {
+            long start = System.nanoTime();
+            button.performClick();
+            layout(view);
+            view.getViewTreeObserver().dispatchOnPreDraw();
+            stats.mExpandNanos += System.nanoTime() - start;
+            stats.mExpands++;
+
+            //Run the animation, then collapse the card
+            mMainLooperFlusher.run();
+            button.performClick();
+            layout(view);
+            view.getViewTreeObserver().dispatchOnPreDraw();
+            mMainLooperFlusher.run();
+        }
+    }
+
+    protected CardView findCardView(ViewGroup view, View row) {
+        Adapter adapter = view instanceof AbsListView ? ((AbsListView) view).getAdapter() : null;
+        if (adapter instanceof BaseCardArrayAdapter)
+            return ((BaseCardArrayAdapter) adapter).findCardView(row);
+        if (row instanceof CardView)
+            return (CardView) row;
+        return (CardView) row.findViewById(R.id.list_cardId);
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Sets the size of the views
+     */
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getNumColumns() {
+        return mNumColumns;
+    }
+
+    /**
+     * Sets the columns of the {@link Strategy#GRID} strategy
+     */
+    public void setNumColumns(int numColumns) {
+        mNumColumns = numColumns;
+    }
+
+    public int getRowLayoutId() {
+        return mRowLayoutId;
+    }
+
+    /**
+     * Sets the row layout used by all the strategies
+     */
+    public void setRowLayoutId(int rowLayoutId) {
+        mRowLayoutId = rowLayoutId;
+    }
+}
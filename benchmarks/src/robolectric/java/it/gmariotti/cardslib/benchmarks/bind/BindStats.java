@@ -0,0 +1,164 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks.bind;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Counters of the binds done by an adapter during a run.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class BindStats {
+
+    /**
+     * Bytes allocated by the current thread, or -1 if the JVM can't measure them
+     */
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // -------------------------------------------------------------
+    // Counters
+    // -------------------------------------------------------------
+
+    /**
+     * Rows bound (getView or onBindViewHolder)
+     */
+    public int mBinds;
+
+    /**
+     * Rows inflated
+     */
+    public int mInflations;
+
+    /**
+     * Binds on a row which already showed a card
+     */
+    public int mRecycledBinds;
+
+    /**
+     * Recycled binds which had to replace the inner layouts (see {@link it.gmariotti.cardslib.library.internal.Card#equalsInnerLayout})
+     */
+    public int mForceReplaces;
+
+    /**
+     * Time spent in the binds
+     */
+    public long mBindNanos;
+
+    /**
+     * Bytes allocated in the binds, -1 if unknown
+     */
+    public long mBindBytes;
+
+    /**
+     * Time of the whole scroll (binds, measures and layouts)
+     */
+    public long mScrollNanos;
+
+    /**
+     * Expand animations set up and their total cost
+     */
+    public int mExpands;
+    public long mExpandNanos;
+
+    private long mStartNanos;
+    private long mStartBytes;
+
+    /**
+     * Called by the adapters before a bind
+     */
+    void onBindStart() {
+        mStartBytes = mBindBytes < 0 ? -1 : allocatedBytes();
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Called by the adapters after a bind
+     */
+    void onBindEnd() {
+        mBindNanos += System.nanoTime() - mStartNanos;
+        if (mStartBytes >= 0)
+            mBindBytes += allocatedBytes() - mStartBytes;
+        else
+            mBindBytes = -1;
+        mBinds++;
+    }
+
+    /**
+     * Resets the counters (after the warm up)
+     */
+    public void reset() {
+        mBinds = 0;
+        mInflations = 0;
+        mRecycledBinds = 0;
+        mForceReplaces = 0;
+        mBindNanos = 0;
+        mBindBytes = 0;
+        mScrollNanos = 0;
+        mExpands = 0;
+        mExpandNanos = 0;
+    }
+
+    // -------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------
+
+    public double getBindsPerSecond() {
+        return mScrollNanos > 0 ? mBinds * 1e9 / mScrollNanos : 0;
+    }
+
+    public double getForceReplaceRate() {
+        return mRecycledBinds > 0 ? (double) mForceReplaces / mRecycledBinds : 0;
+    }
+
+    public double getBytesPerBind() {
+        return mBinds > 0 && mBindBytes >= 0 ? (double) mBindBytes / mBinds : -1;
+    }
+
+    public double getMicrosPerBind() {
+        return mBinds > 0 ? mBindNanos / 1e3 / mBinds : 0;
+    }
+
+    public double getMicrosPerExpand() {
+        return mExpands > 0 ? mExpandNanos / 1e3 / mExpands : 0;
+    }
+
+    /**
+     * Header of the lines returned by {@link #toString(String)}
+     */
+    public static String header() {
+        return String.format(Locale.US, "%-10s %10s %8s %10s %8s %10s %10s %10s",
+                "adapter", "binds/s", "binds", "inflations", "replace", "us/bind", "bytes/bind", "us/expand");
+    }
+
+    public String toString(String name) {
+        return String.format(Locale.US, "%-10s %10.0f %8d %10d %7.1f%% %10.1f %10.0f %10.1f",
+                name, getBindsPerSecond(), mBinds, mInflations, getForceReplaceRate() * 100,
+                getMicrosPerBind(), getBytesPerBind(), getMicrosPerExpand());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks.bind;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardExpand;
+import it.gmariotti.cardslib.library.internal.CardHeader;
+import it.gmariotti.cardslib.library.internal.CardThumbnail;
+
+/**
+ * Cards bound by the harness: mixed inner layouts, header buttons (expand, overflow, other) and thumbnails.
+ * The same seed builds the same cards, so the adapters can be compared on the same workload.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class BindWorkload {
+
+    /**
+     * Inner layouts of the cards
+     */
+    static final int[] INNER_LAYOUTS = {
+            R.layout.inner_base_main,
+            R.layout.inner_base_header,
+            R.layout.inner_base_expand
+    };
+
+    private BindWorkload() {
+    }
+
+    /**
+     * Builds the cards
+     *
+     * @param context context
+     * @param count   number of cards
+     * @param seed    seed of the random generator
+     * @return the cards
+     */
+    public static List<Card> build(Context context, int count, long seed) {
+        Random random = new Random(seed);
+        List<Card> cards = new ArrayList<Card>(count);
+        for (int i = 0; i < count; i++) {
+            Card card = new Card(context, INNER_LAYOUTS[random.nextInt(INNER_LAYOUTS.length)]);
+            card.setId("card_" + i);
+            card.setTitle("Card " + i);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    //No header
+                    break;
+                case 1:
+                    CardHeader expandHeader = new CardHeader(context);
+                    expandHeader.setTitle("Header " + i);
+                    expandHeader.setButtonExpandVisible(true);
+                    card.addCardHeader(expandHeader);
+                    CardExpand expand = new CardExpand(context);
+                    expand.setTitle("Expand " + i);
+                    card.addCardExpand(expand);
+                    break;
+                case 2:
+                    CardHeader overflowHeader = new CardHeader(context);
+                    overflowHeader.setTitle("Header " + i);
+                    overflowHeader.setButtonOverflowVisible(true);
+                    card.addCardHeader(overflowHeader);
+                    break;
+                default:
+                    CardHeader otherHeader = new CardHeader(context);
+                    otherHeader.setTitle("Header " + i);
+                    otherHeader.setOtherButtonVisible(true);
+                    card.addCardHeader(otherHeader);
+                    break;
+            }
+
+            if (random.nextBoolean()) {
+                CardThumbnail thumbnail = new CardThumbnail(context);
+                thumbnail.setDrawableResource(R.drawable.ic_control_play);
+                card.addCardThumbnail(thumbnail);
+            }
+            cards.add(card);
+        }
+        return cards;
+    }
+}
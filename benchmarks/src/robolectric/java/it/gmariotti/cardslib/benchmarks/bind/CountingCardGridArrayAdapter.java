@@ -0,0 +1,66 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.benchmarks.bind;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardGridArrayAdapter;
+import it.gmariotti.cardslib.library.view.CardView;
+
+/**
+ * {@link CardGridArrayAdapter} which records its binds in a {@link BindStats}.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CountingCardGridArrayAdapter extends CardGridArrayAdapter {
+
+    protected final BindStats mStats;
+
+    public CountingCardGridArrayAdapter(Context context, List<Card> cards, BindStats stats) {
+        super(context, cards);
+        mStats = stats;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        if (convertView != null) {
+            CardView cardView = findCardView(convertView);
+            if (cardView != null && cardView.getCard() != null) {
+                mStats.mRecycledBinds++;
+                if (Card.equalsInnerLayout(cardView.getCard(), (Card) getItem(position)))
+                    mStats.mForceReplaces++;
+            }
+        }
+        mStats.onBindStart();
+        View view = super.getView(position, convertView, parent);
+        mStats.onBindEnd();
+        return view;
+    }
+
+    @Override
+    public View inflateRow(ViewGroup parent) {
+        mStats.mInflations++;
+        return super.inflateRow(parent);
+    }
+}
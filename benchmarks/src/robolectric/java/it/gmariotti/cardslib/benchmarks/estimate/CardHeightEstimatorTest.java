@@ -0,0 +1,126 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.benchmarks.estimate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.view.base.CardHeightEstimator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the range updates of {@link CardHeightEstimator} give the same offsets
+ * as a list of heights changed in the same way.
+ * </p>
+ * Run it with <code>gradle :benchmarks:robolectricTest</code>.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "../library/src/main/AndroidManifest.xml", sdk = 21)
+public class CardHeightEstimatorTest {
+
+    private static final int COUNT = 50;
+    private static final int WIDTH = 480;
+
+    private CardHeightEstimator mEstimator;
+    private List<Integer> mExpected;
+
+    @Before
+    public void setUp() {
+        mEstimator = new CardHeightEstimator();
+        mEstimator.onItemRangeInserted(null, WIDTH, 0, COUNT);
+        mExpected = new ArrayList<Integer>();
+        for (int position = 0; position < COUNT; position++) {
+            int height = 100 + position;
+            mEstimator.setHeight(position, height);
+            mExpected.add(height);
+        }
+    }
+
+    @Test
+    public void insertKeepsTheKnownHeights() {
+        mEstimator.onItemRangeInserted(null, WIDTH, 10, 3);
+        mExpected.addAll(10, unknown(3));
+        assertOffsets();
+    }
+
+    @Test
+    public void removeShiftsTheHeights() {
+        mEstimator.onItemRangeRemoved(5, 7);
+        mExpected.subList(5, 12).clear();
+        assertOffsets();
+    }
+
+    @Test
+    public void moveUpdatesTheMovedRange() {
+        mEstimator.onItemMoved(3, 40);
+        mExpected.add(40, mExpected.remove(3));
+        assertOffsets();
+
+        mEstimator.onItemMoved(45, 2);
+        mExpected.add(2, mExpected.remove(45));
+        assertOffsets();
+    }
+
+    @Test
+    public void changedPositionsWithoutCacheUseTheAverage() {
+        mEstimator.onItemRangeChanged(null, WIDTH, 20, 4);
+        for (int position = 20; position < 24; position++)
+            mExpected.set(position, -1);
+        assertOffsets();
+    }
+
+    private static List<Integer> unknown(int count) {
+        List<Integer> heights = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+            heights.add(-1);
+        return heights;
+    }
+
+    private void assertOffsets() {
+        assertEquals(mExpected.size(), mEstimator.getCount());
+
+        long knownSum = 0;
+        int knownCount = 0;
+        for (int height : mExpected) {
+            if (height >= 0) {
+                knownSum += height;
+                knownCount++;
+            }
+        }
+        int average = knownCount > 0 ? (int) (knownSum / knownCount) : 0;
+
+        int offset = 0;
+        for (int position = 0; position < mExpected.size(); position++) {
+            assertEquals("Offset of " + position, offset, mEstimator.getOffset(position));
+            int height = mExpected.get(position);
+            offset += height >= 0 ? height : average;
+        }
+        assertEquals(offset, mEstimator.getTotalHeight());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.benchmarks.index;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.CardIdIndex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the positions of {@link CardIdIndex} after random inserts, removes, moves and replaces,
+ * against the positions in the list.
+ * </p>
+ * Run it with <code>gradle :benchmarks:robolectricTest</code>.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "../library/src/main/AndroidManifest.xml", sdk = 21)
+public class CardIdIndexTest {
+
+    private static final int COUNT = 500;
+    private static final int OPERATIONS = 2000;
+
+    private List<Card> mCards;
+    private CardIdIndex mIndex;
+    private Random mRandom;
+    private int mNextId;
+
+    @Before
+    public void setUp() {
+        mCards = new ArrayList<Card>();
+        for (int i = 0; i < COUNT; i++)
+            mCards.add(newCard());
+        mIndex = new CardIdIndex(mCards);
+        mRandom = new Random(42);
+    }
+
+    private Card newCard() {
+        Card card = new Card(null);
+        card.setId("card_" + mNextId++);
+        return card;
+    }
+
+    @Test
+    public void positionsFollowTheChanges() {
+        assertPositions();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int size = mCards.size();
+            switch (mRandom.nextInt(4)) {
+                case 0: {
+                    int position = mRandom.nextInt(size + 1);
+                    int count = 1 + mRandom.nextInt(3);
+                    List<Card> cards = new ArrayList<Card>();
+                    for (int j = 0; j < count; j++)
+                        cards.add(newCard());
+                    mCards.addAll(position, cards);
+                    mIndex.onInserted(position, count);
+                    break;
+                }
+                case 1: {
+                    if (size == 0) break;
+                    int position = mRandom.nextInt(size);
+                    mIndex.onRemoved(position, mCards.remove(position));
+                    break;
+                }
+                case 2: {
+                    if (size == 0) break;
+                    int from = mRandom.nextInt(size);
+                    int to = mRandom.nextInt(size);
+                    mCards.add(to, mCards.remove(from));
+                    mIndex.onMoved(from, to);
+                    break;
+                }
+                default: {
+                    if (size == 0) break;
+                    int position = mRandom.nextInt(size);
+                    Card card = newCard();
+                    mIndex.onReplaced(position, mCards.set(position, card), card);
+                    break;
+                }
+            }
+            if (i % 100 == 0)
+                assertPositions();
+        }
+        assertPositions();
+        assertEquals(mCards.size(), mIndex.size());
+    }
+
+    @Test
+    public void changesOutsideTheIndexAreDetected() {
+        assertPositions();
+
+        //Changed directly on the list: the index never returns a wrong position
+        mCards.add(0, newCard());
+        mCards.remove(COUNT / 2);
+        for (int position = 0; position < mCards.size(); position++) {
+            int indexed = mIndex.positionOf(mCards.get(position).getId());
+            assertTrue(indexed == -1 || indexed == position);
+        }
+
+        //A shifted card forces a rebuild
+        assertEquals(COUNT - 1, mIndex.positionOf(mCards.get(COUNT - 1).getId()));
+        assertPositions();
+    }
+
+    @Test
+    public void removedIdsAreNotFound() {
+        assertPositions();
+
+        Card card = mCards.remove(10);
+        mIndex.onRemoved(10, card);
+        assertEquals(-1, mIndex.positionOf(card.getId()));
+        assertPositions();
+    }
+
+    private void assertPositions() {
+        for (int position = 0; position < mCards.size(); position++) {
+            String id = mCards.get(position).getId();
+            assertEquals(id, position, mIndex.positionOf(id));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+
+package it.gmariotti.cardslib.benchmarks.paged;
+
+import android.app.Activity;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardArrayAdapter;
+import it.gmariotti.cardslib.library.internal.paged.CardDataSource;
+import it.gmariotti.cardslib.library.internal.paged.PagedCardList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the adapters on a {@link PagedCardList}: the ids of the evicted pages leave the id index,
+ * and the read-only list can't be changed by a swipe or a move.
+ * </p>
+ * Run it with <code>gradle :benchmarks:robolectricTest</code>.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "../library/src/main/AndroidManifest.xml", sdk = 21)
+public class PagedCardListTest {
+
+    private static final int COUNT = 10000;
+    private static final int PAGE_SIZE = 20;
+    private static final int RETAIN_DISTANCE = 1;
+
+    private Activity mActivity;
+    private PagedCardList<Integer> mCards;
+    private IndexedAdapter mAdapter;
+
+    @Before
+    public void setup() {
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mCards = new PagedCardList<Integer>(mActivity, new IntegerDataSource(), PAGE_SIZE, RETAIN_DISTANCE);
+        //The pages are loaded on the calling thread
+        mCards.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        mAdapter = new IndexedAdapter(mActivity, mCards);
+    }
+
+    @Test
+    public void evictedPagesLeaveTheIdIndex() {
+        for (int position = 0; position < COUNT; position += PAGE_SIZE) {
+            load(position);
+            assertEquals(position, mAdapter.positionOf("card_" + position));
+        }
+
+        int retained = (2 * RETAIN_DISTANCE + 1) * PAGE_SIZE;
+        assertTrue("Indexed ids: " + mAdapter.getIndexedCount(), mAdapter.getIndexedCount() <= retained);
+        assertEquals(-1, mAdapter.positionOf("card_0"));
+    }
+
+    @Test
+    public void readOnlyListIsNotDismissedOrMoved() {
+        load(0);
+        Card card = mAdapter.getItem(1);
+
+        assertTrue(mAdapter.isReadOnly());
+        mAdapter.dismiss(new int[]{1});
+        assertEquals(COUNT, mAdapter.getCount());
+        assertEquals(1, mAdapter.positionOf(card.getId()));
+
+        assertFalse(mAdapter.move(1, 5));
+        assertEquals(card, mAdapter.getItem(1));
+    }
+
+    private void load(int position) {
+        mCards.get(position);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    /**
+     * Exposes the id index and the dismiss of the adapter
+     */
+    static class IndexedAdapter extends CardArrayAdapter {
+
+        IndexedAdapter(Context context, List<Card> cards) {
+            super(context, cards);
+        }
+
+        int getIndexedCount() {
+            return mIdIndex.size();
+        }
+
+        void dismiss(int[] reverseSortedPositions) {
+            dismissCards(reverseSortedPositions);
+        }
+    }
+
+    static class IntegerDataSource extends CardDataSource<Integer> {
+
+        @Override
+        public int getCount() {
+            return COUNT;
+        }
+
+        @Override
+        public List<Integer> loadRange(int startPosition, int count) {
+            List<Integer> items = new ArrayList<Integer>(count);
+            for (int i = 0; i < count; i++)
+                items.add(startPosition + i);
+            return items;
+        }
+
+        @Override
+        public Card createCard(Context context, Integer item) {
+            Card card = new Card(context);
+            card.setId("card_" + item);
+            return card;
+        }
+    }
+}
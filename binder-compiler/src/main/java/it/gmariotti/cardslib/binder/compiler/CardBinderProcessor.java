@@ -0,0 +1,271 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.binder.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a <code>Holder$$CardBinder</code> class for each holder with
+ * <code>it.gmariotti.cardslib.library.binder.BindCardView</code> fields.
+ * </p>
+ * The generated binder finds each child once, with its id, and assigns it to the field.
+ * If a superclass of the holder has a binder, it is called first.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardBinderProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "it.gmariotti.cardslib.library.binder.BindCardView";
+    static final String BINDER_INTERFACE = "it.gmariotti.cardslib.library.binder.CardViewBinder";
+    static final String BINDER_SUFFIX = "$$CardBinder";
+    static final String VIEW_TYPE = "android.view.View";
+
+    protected Elements mElements;
+    protected Types mTypes;
+    protected Filer mFiler;
+    protected Messager mMessager;
+
+    /**
+     * Bound field
+     */
+    static class Binding {
+        final String name;
+        final String type;
+        final int id;
+        final boolean optional;
+
+        Binding(String name, String type, int id, boolean optional) {
+            this.name = name;
+            this.type = type;
+            this.id = id;
+            this.optional = optional;
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Processor
+    // -------------------------------------------------------------
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mFiler = processingEnv.getFiler();
+        mMessager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = mElements.getTypeElement(ANNOTATION);
+        if (annotation == null)
+            return false;
+
+        Map<TypeElement, List<Binding>> holders = new LinkedHashMap<TypeElement, List<Binding>>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            Binding binding = parseBinding(element);
+            if (binding == null) continue;
+
+            TypeElement holder = (TypeElement) element.getEnclosingElement();
+            List<Binding> bindings = holders.get(holder);
+            if (bindings == null) {
+                bindings = new ArrayList<Binding>();
+                holders.put(holder, bindings);
+            }
+            bindings.add(binding);
+        }
+
+        for (Map.Entry<TypeElement, List<Binding>> entry : holders.entrySet()) {
+            TypeElement holder = entry.getKey();
+            writeBinder(holder, findParentHolder(holder, holders), entry.getValue());
+        }
+        return true;
+    }
+
+    // -------------------------------------------------------------
+    // Parse
+    // -------------------------------------------------------------
+
+    protected Binding parseBinding(Element element) {
+        if (element.getKind() != ElementKind.FIELD) {
+            error(element, "@BindCardView can be used only on fields");
+            return null;
+        }
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)) {
+            error(element, "@BindCardView fields can't be private or static");
+            return null;
+        }
+        Element holder = element.getEnclosingElement();
+        if (holder.getKind() != ElementKind.CLASS || holder.getModifiers().contains(Modifier.PRIVATE)) {
+            error(element, "@BindCardView fields must be declared in a non private class");
+            return null;
+        }
+
+        TypeMirror type = mTypes.erasure(element.asType());
+        TypeElement view = mElements.getTypeElement(VIEW_TYPE);
+        if (view != null && type.getKind() != TypeKind.TYPEVAR
+                && !mTypes.isAssignable(type, mTypes.erasure(view.asType()))) {
+            error(element, "@BindCardView fields must extend " + VIEW_TYPE);
+            return null;
+        }
+
+        int id = 0;
+        boolean optional = false;
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION))
+                continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                    : mirror.getElementValues().entrySet()) {
+                String name = value.getKey().getSimpleName().toString();
+                if ("value".equals(name))
+                    id = (Integer) value.getValue().getValue();
+                else if ("optional".equals(name))
+                    optional = (Boolean) value.getValue().getValue();
+            }
+        }
+        return new Binding(element.getSimpleName().toString(), type.toString(), id, optional);
+    }
+
+    /**
+     * Returns the nearest superclass which has bindings in this round
+     */
+    protected TypeElement findParentHolder(TypeElement holder, Map<TypeElement, List<Binding>> holders) {
+        TypeMirror superType = holder.getSuperclass();
+        while (superType.getKind() == TypeKind.DECLARED) {
+            TypeElement superElement = (TypeElement) ((DeclaredType) superType).asElement();
+            if (holders.containsKey(superElement))
+                return superElement;
+            superType = superElement.getSuperclass();
+        }
+        return null;
+    }
+
+    // -------------------------------------------------------------
+    // Write
+    // -------------------------------------------------------------
+
+    protected void writeBinder(TypeElement holder, TypeElement parent, List<Binding> bindings) {
+        String packageName = getPackageName(holder);
+        String binderName = getBinderName(holder);
+        String holderType = holder.getQualifiedName().toString();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("// Generated code from the cardslib binder-compiler. Do not modify!\n");
+        if (packageName.length() > 0)
+            builder.append("package ").append(packageName).append(";\n\n");
+        builder.append("import android.view.View;\n\n");
+        builder.append("public class ").append(binderName)
+                .append(" implements ").append(BINDER_INTERFACE).append('<').append(holderType).append("> {\n\n");
+        builder.append("    @Override\n");
+        builder.append("    public void bind(").append(holderType).append(" target, View view) {\n");
+        if (parent != null) {
+            builder.append("        new ").append(getQualifiedBinderName(parent)).append("().bind(target, view);\n");
+        }
+        builder.append("        View child;\n");
+        for (Binding binding : bindings) {
+            builder.append("        child = view.findViewById(").append(binding.id).append(");\n");
+            if (!binding.optional) {
+                builder.append("        if (child == null)\n");
+                builder.append("            throw new IllegalStateException(\"Required view with id ").append(binding.id)
+                        .append(" for field '").append(binding.name).append("' was not found\");\n");
+            }
+            builder.append("        target.").append(binding.name).append(" = (").append(binding.type).append(") child;\n");
+        }
+        builder.append("    }\n");
+        builder.append("}\n");
+
+        try {
+            JavaFileObject file = mFiler.createSourceFile(getQualifiedBinderName(holder), holder);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(builder.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(holder, "Unable to write the binder of " + holderType + ": " + e.getMessage());
+        }
+    }
+
+    protected String getPackageName(TypeElement type) {
+        PackageElement packageElement = mElements.getPackageOf(type);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    /**
+     * Binary name without the package, plus the suffix (<code>Outer$Holder$$CardBinder</code>)
+     */
+    protected String getBinderName(TypeElement type) {
+        String packageName = getPackageName(type);
+        String binaryName = mElements.getBinaryName(type).toString();
+        if (packageName.length() > 0)
+            binaryName = binaryName.substring(packageName.length() + 1);
+        return binaryName + BINDER_SUFFIX;
+    }
+
+    protected String getQualifiedBinderName(TypeElement type) {
+        String packageName = getPackageName(type);
+        return packageName.length() > 0 ? packageName + "." + getBinderName(type) : getBinderName(type);
+    }
+
+    protected void error(Element element, String message) {
+        mMessager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
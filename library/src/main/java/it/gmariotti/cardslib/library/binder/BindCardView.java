@@ -0,0 +1,55 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.binder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a field of a holder to the child view with the given id.
+ * </p>
+ * The binder of the holder is generated at build time by the <code>binder-compiler</code> annotation processor,
+ * so the children are found once and then read from the fields.
+ * <pre><code>
+ * public class MessageHolder {
+ *      &#64;BindCardView(R.id.message_title) TextView title;
+ *      &#64;BindCardView(value = R.id.message_icon, optional = true) ImageView icon;
+ * }
+ * </code></pre>
+ * The field can't be private or static.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface BindCardView {
+
+    /**
+     * Id of the child view
+     */
+    int value();
+
+    /**
+     * If <code>false</code> the binder throws an {@link IllegalStateException} when the child is missing
+     */
+    boolean optional() default false;
+}
@@ -0,0 +1,158 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.binder;
+
+import android.util.Log;
+import android.view.View;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.gmariotti.cardslib.library.R;
+
+/**
+ * Entry point of the generated binders.
+ * </p>
+ * The holder is created and bound the first time a view is seen, then it is cached in the view,
+ * so the next binds of a recycled view don't search the children again.
+ * <pre><code>
+ * &#64;Override
+ * public void setupInnerViewElements(ViewGroup parent, View view) {
+ *      MessageHolder holder = CardBinders.bind(view, MessageHolder.class);
+ *      holder.title.setText(mTitle);
+ * }
+ * </code></pre>
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class CardBinders {
+
+    protected static String TAG = "CardBinders";
+
+    /**
+     * Suffix of the generated binders
+     */
+    public static final String BINDER_SUFFIX = "$$CardBinder";
+
+    /**
+     * Binders found for each holder class
+     */
+    private static final Map<Class<?>, CardViewBinder<Object>> sBinders = new HashMap<Class<?>, CardViewBinder<Object>>();
+
+    /**
+     * Used for the classes without a generated binder
+     */
+    private static final CardViewBinder<Object> NO_BINDER = new CardViewBinder<Object>() {
+        @Override
+        public void bind(Object target, View view) {
+        }
+    };
+
+    private CardBinders() {
+    }
+
+    // -------------------------------------------------------------
+    // Bind
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the holder cached in the view, or creates and binds a new holder.
+     * The holder class needs a constructor without arguments.
+     *
+     * @param view        view which contains the children
+     * @param holderClass holder class
+     * @return bound holder
+     */
+    public static <H> H bind(View view, Class<H> holderClass) {
+        Object tag = view.getTag(R.id.card_binder_holder);
+        if (holderClass.isInstance(tag))
+            return holderClass.cast(tag);
+
+        H holder = newHolder(holderClass);
+        bind(holder, view);
+        view.setTag(R.id.card_binder_holder, holder);
+        return holder;
+    }
+
+    /**
+     * Binds the annotated fields of a target with the children of the view
+     *
+     * @param target holder
+     * @param view   view which contains the children
+     */
+    public static void bind(Object target, View view) {
+        findBinder(target.getClass()).bind(target, view);
+    }
+
+    /**
+     * Removes the holder cached in the view
+     *
+     * @param view view
+     */
+    public static void unbind(View view) {
+        view.setTag(R.id.card_binder_holder, null);
+    }
+
+    // -------------------------------------------------------------
+    // Internal
+    // -------------------------------------------------------------
+
+    static synchronized CardViewBinder<Object> findBinder(Class<?> cls) {
+        CardViewBinder<Object> binder = sBinders.get(cls);
+        if (binder == null) {
+            binder = loadBinder(cls);
+            if (binder == NO_BINDER)
+                Log.w(TAG, "No binder generated for " + cls.getName());
+            sBinders.put(cls, binder);
+        }
+        return binder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CardViewBinder<Object> loadBinder(Class<?> cls) {
+        String name = cls.getName();
+        if (name.startsWith("android.") || name.startsWith("java."))
+            return NO_BINDER;
+
+        try {
+            Class<?> binderClass = Class.forName(name + BINDER_SUFFIX, true, cls.getClassLoader());
+            return (CardViewBinder<Object>) binderClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            //The fields can be declared in a superclass
+            return loadBinder(cls.getSuperclass());
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Unable to create the binder of " + name, e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create the binder of " + name, e);
+        }
+    }
+
+    private static <H> H newHolder(Class<H> holderClass) {
+        try {
+            Constructor<H> constructor = holderClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("The holder " + holderClass.getName()
+                    + " needs a constructor without arguments", e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.binder;
+
+import android.view.View;
+
+/**
+ * Binder generated for each holder with {@link BindCardView} fields.
+ * The generated class is named <code>HolderClass$$CardBinder</code>.
+ *
+ * @param <T> holder type
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public interface CardViewBinder<T> {
+
+    /**
+     * Sets the annotated fields of the holder with the children of the view
+     *
+     * @param target holder
+     * @param view   view which contains the children
+     */
+    void bind(T target, View view);
+}
@@ -28,6 +28,7 @@ import java.util.HashMap;
 
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.base.BaseCard;
+import it.gmariotti.cardslib.library.view.CardView;
 
 /**
  * Main Card Model
@@ -705,13 +706,22 @@ public class Card extends BaseCard {
      */
     public void removePartialOnClickListener(int area) {
 
-        HashMap multipleOnClickListener = getMultipleOnClickListener();
-        multipleOnClickListener.remove(area);
+        if (mMultipleOnClickListener != null)
+            mMultipleOnClickListener.remove(area);
 
-        if (mOnClickListener == null && multipleOnClickListener.isEmpty())
+        if (mOnClickListener == null && (mMultipleOnClickListener == null || mMultipleOnClickListener.isEmpty()))
             mIsClickable = false;
     }
 
+    /**
+     * Indicates if the card has partial click listeners, without creating the map
+     *
+     * @return <code>true</code> if a partial listener is set
+     */
+    public boolean hasPartialOnClickListeners() {
+        return mMultipleOnClickListener != null && !mMultipleOnClickListener.isEmpty();
+    }
+
     /**
      * Map for all partial listeners
      *
@@ -741,6 +751,21 @@ public class Card extends BaseCard {
         mIsExpanded = expanded;
     }
 
+    /**
+     * Returns a hash of the values which change the size of the card.
+     * Two cards with the same id and the same hash must have the same height for a given width:
+     * the measured heights are cached with this key (see {@link it.gmariotti.cardslib.library.view.base.CardMeasureCache}).
+     * The expanded state is part of the key, so it doesn't need to be in the hash.
+     * </p>
+     * The default implementation returns 0, which disables the cache.
+     * Override it if your card knows its content.
+     *
+     * @return content hash, or 0 if it is not known
+     */
+    public int getContentHash() {
+        return 0;
+    }
+
 
     /**
      * Checks if 2 cards have the same innerLayouts
@@ -819,8 +844,9 @@ public class Card extends BaseCard {
      * @param drawableResourceId   drawable resource Id
      */
     public void changeBackgroundResourceId(int drawableResourceId){
-        if (mCardView!=null){
-            mCardView.changeBackgroundResourceId(drawableResourceId);
+        CardView cardView = getCardView();
+        if (cardView!=null){
+            cardView.changeBackgroundResourceId(drawableResourceId);
         }
     }
 
@@ -829,8 +855,9 @@ public class Card extends BaseCard {
             return;
         }
 
-        if (mCardView != null) {
-            mCardView.swipe();
+        CardView cardView = getCardView();
+        if (cardView != null) {
+            cardView.swipe();
         }
     }
 }
@@ -18,21 +18,17 @@
 
 package it.gmariotti.cardslib.library.internal;
 
-import android.app.Activity;
 import android.content.Context;
-import android.content.res.Resources;
 import android.os.Build;
-import android.os.Parcelable;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ListView;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.lucasr.twowayview.TwoWayView;
@@ -42,9 +38,8 @@ import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
 import it.gmariotti.cardslib.library.view.CardView;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissAdapterViewTouchListener;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissListViewTouchListener;
+import it.gmariotti.cardslib.library.view.listener.SwipeDismissRecyclerViewTouchListener;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissTwoWayViewTouchListener;
-import it.gmariotti.cardslib.library.view.listener.UndoBarController;
-import it.gmariotti.cardslib.library.view.listener.UndoCard;
 
 /**
  * Array Adapter for {@link Card} model
@@ -78,7 +73,7 @@ import it.gmariotti.cardslib.library.view.listener.UndoCard;
  * </p>
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
-public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarController.UndoListener {
+public class CardArrayAdapter extends BaseCardArrayAdapter {
 
     protected static String TAG = "CardArrayAdapter";
 
@@ -90,25 +85,24 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
     protected CardView.OnExpandListAnimatorListener mExpandListAnimatorListener;
 
     /**
-     * Listener invoked when a card is swiped
+     * Only one card at a time can be expanded
      */
-    protected SwipeDismissAdapterViewTouchListener mOnTouchListener;
+    protected boolean mAccordionMode = false;
 
     /**
-     * Used to enable an undo message after a swipe action
+     * Id of the expanded card in accordion mode
      */
-    protected boolean mEnableUndo=false;
+    protected String mExpandedCardId;
 
     /**
-     * Undo Controller
+     * Position of the expanded card in accordion mode, when the card has no id
      */
-    protected UndoBarController mUndoBarController;
+    protected int mExpandedPosition = -1;
 
     /**
-     * Internal Map with all Cards.
-     * It uses the card id value as key.
+     * Listener invoked when a card is swiped
      */
-    protected HashMap<String /* id */,Card>  mInternalObjects;
+    protected SwipeDismissAdapterViewTouchListener mOnTouchListener;
 
 
     // -------------------------------------------------------------
@@ -150,20 +144,17 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
         CardView mCardView;
         Card mCard;
 
-        LayoutInflater mInflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-
         //Retrieve card from items
         mCard = (Card) getItem(position);
         if (mCard != null) {
 
-            int layout = mRowLayoutId;
             boolean recycle = false;
 
-            //Inflate layout
+            //Inflate layout (or take a row prepared in the background)
             if (view == null) {
                 recycle = false;
                 try {
-                    view = mInflater.inflate(layout, parent, false);
+                    view = inflateRow(parent);
                 } catch (Exception e) { // Workaround: Use black empty view
                     return new View(mContext);
                 }
@@ -172,7 +163,7 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
             }
 
             //Setup card
-            mCardView = (CardView) view.findViewById(R.id.list_cardId);
+            mCardView = findCardView(view);
             if (mCardView != null) {
                 //It is important to set recycle value for inner layout elements
                 mCardView.setForceReplaceInnerLayout(Card.equalsInnerLayout(mCardView.getCard(),mCard));
@@ -187,6 +178,9 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
                 boolean origianlSwipeable = mCard.isSwipeable();
                 mCard.setSwipeable(false);
 
+                //The expanded state of the accordion is tracked by id, so it survives the recreation of the cards
+                bindExpandedState(mCard, position);
+
                 mCardView.setCard(mCard);
 
                 //Set originalValue
@@ -267,6 +261,9 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
 
         @Override
         public void onScrollStateChanged(int scrollState) {
+            if (mOnTouchListener != null) {
+                mOnTouchListener.setEnabled(scrollState != RecyclerView.SCROLL_STATE_DRAGGING);
+            }
             mExternalOnScrollListener.onScrollStateChanged(null, scrollState);
         }
     };
@@ -293,6 +290,8 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
                     mOnTouchListener = new SwipeDismissListViewTouchListener((ListView)mParentView, mCallback);
                 } else if (mParentView instanceof TwoWayView) {
                     mOnTouchListener = new SwipeDismissTwoWayViewTouchListener((TwoWayView)mParentView, mCallback);
+                } else if (mParentView instanceof RecyclerView) {
+                    mOnTouchListener = new SwipeDismissRecyclerViewTouchListener((RecyclerView)mParentView, mCallback);
                 }
             }
 
@@ -316,101 +315,134 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
     }
 
     // -------------------------------------------------------------
-    //  SwipeListener and undo action
+    //  Accordion
     // -------------------------------------------------------------
+
     /**
-     * Listener invoked when a card is swiped
+     * Applies the expanded state tracked by the accordion to a card which is going to be bound
+     *
+     * @param card     card
+     * @param position position of the card
      */
-    SwipeDismissListViewTouchListener.DismissCallbacks mCallback = new SwipeDismissAdapterViewTouchListener.DismissCallbacks() {
+    protected void bindExpandedState(Card card, int position) {
+        if (mAccordionMode)
+            card.setExpanded(isExpandedCard(card, position));
+    }
 
-        @Override
-        public boolean canDismiss(int position, Card card) {
-            return card.isSwipeable();
+    /**
+     * Enables the accordion mode: expanding a card collapses the card previously expanded.
+     * The expanded card is tracked by its id (see {@link Card#setId(String)}), or by its position
+     * if it has no id.
+     *
+     * @param accordionMode <code>true</code> to expand only one card at a time
+     */
+    public void setAccordionMode(boolean accordionMode) {
+        mAccordionMode = accordionMode;
+        if (!accordionMode) {
+            mExpandedCardId = null;
+            mExpandedPosition = -1;
         }
+    }
 
-        @Override
-        public void onDismiss(View view, int[] reverseSortedPositions) {
-
-            int[] itemPositions=new int[reverseSortedPositions.length];
-            String[] itemIds=new String[reverseSortedPositions.length];
-            int i=0;
-
-            //Remove cards and notifyDataSetChanged
-            for (int position : reverseSortedPositions) {
-                Card card = getItem(position);
-                itemPositions[i]=position;
-                itemIds[i]=card.getId();
-                mInternalObjects.put(itemIds[i], card);
-                i++;
-
-                remove(card);
-                if (card.getOnSwipeListener() != null){
-                        card.getOnSwipeListener().onSwipe(card);
-                }
-            }
-            notifyDataSetChanged();
+    /**
+     * Indicates if only one card at a time can be expanded
+     */
+    public boolean isAccordionMode() {
+        return mAccordionMode;
+    }
 
-            //Check for a undo message to confirm
-            if (isEnableUndo() && mUndoBarController!=null){
+    /**
+     * Returns the id of the expanded card in accordion mode, or <code>null</code>
+     * (no card is expanded, or the expanded card has no id)
+     */
+    public String getExpandedCardId() {
+        return mExpandedCardId;
+    }
 
-                //Show UndoBar
-                UndoCard itemUndo=new UndoCard(itemPositions,itemIds);
+    /**
+     * Records the expanded card in accordion mode.
+     * The card previously expanded is marked as collapsed: its view is collapsed the next time it is bound.
+     *
+     * @param id id of the expanded card, or <code>null</code> if all the cards are collapsed
+     */
+    public void setExpandedCardId(String id) {
+        if (id != null && id.equals(mExpandedCardId)) return;
+        collapseExpandedCard();
+        mExpandedCardId = id;
+        mExpandedPosition = -1;
+    }
 
-                if (getContext()!=null){
-                    Resources res = getContext().getResources();
-                    if (res!=null){
-                        String messageUndoBar = res.getQuantityString(R.plurals.list_card_undo_items, reverseSortedPositions.length, reverseSortedPositions.length);
+    /**
+     * Records the expanded card in accordion mode.
+     * A card without id is tracked by its position: the position is not updated when the cards
+     * before it are inserted, removed or moved.
+     *
+     * @param card     expanded card, or <code>null</code> if all the cards are collapsed
+     * @param position position of the card
+     */
+    public void setExpandedCard(Card card, int position) {
+        if (card != null && card.getId() != null) {
+            setExpandedCardId(card.getId());
+            return;
+        }
+        if (card != null && mExpandedCardId == null && position == mExpandedPosition) return;
+        collapseExpandedCard();
+        mExpandedCardId = null;
+        mExpandedPosition = card != null ? position : -1;
+    }
 
-                        mUndoBarController.showUndoBar(false, messageUndoBar, itemUndo, CardArrayAdapter.this);
-                    }
-                }
+    /**
+     * Indicates if a card is the expanded card of the accordion
+     *
+     * @param card     card
+     * @param position position of the card
+     */
+    public boolean isExpandedCard(Card card, int position) {
+        if (card.getId() != null)
+            return card.getId().equals(mExpandedCardId);
+        return mExpandedCardId == null && position >= 0 && position == mExpandedPosition;
+    }
 
-            }
+    /**
+     * Marks the tracked card as collapsed
+     */
+    private void collapseExpandedCard() {
+        int position = mExpandedCardId != null ? positionOf(mExpandedCardId) : mExpandedPosition;
+        if (position >= 0 && position < getCount()) {
+            Card card = getItem(position);
+            if (card != null)
+                card.setExpanded(false);
         }
-    };
+    }
 
     // -------------------------------------------------------------
-    //  Undo Default Listener
+    //  SwipeListener and undo action
     // -------------------------------------------------------------
+    /**
+     * Listener invoked when a card is swiped
+     */
+    SwipeDismissListViewTouchListener.DismissCallbacks mCallback = new SwipeDismissAdapterViewTouchListener.DismissCallbacks() {
 
-    @Override
-    public void onUndo(Parcelable token, boolean timeout) {
-        //Restore items in lists (use reverseSortedOrder)
-        if (token != null) {
-
-            UndoCard item = (UndoCard) token;
-            int[] itemPositions = item.itemPosition;
-            String[] itemIds = item.itemId;
-
-            if (itemPositions != null) {
-                int end = itemPositions.length;
-
-                for (int i = end - 1; i >= 0; i--) {
-                    int itemPosition = itemPositions[i];
-                    String id= itemIds[i];
-
-                    if (id==null){
-                        Log.w(TAG, "You have to set a id value to use the undo action");
-                    }else{
-                        Card card = mInternalObjects.get(id);
-                        if (card!=null){
-                            if (!timeout) {
-                                insert(card, itemPosition);
-                                notifyDataSetChanged();
-                            }
-                            if (card.getOnUndoSwipeListListener()!=null)
-                                card.getOnUndoSwipeListListener().onUndoSwipe(card, timeout);
-                        }
-                    }
-                }
-            }
+        @Override
+        public boolean canDismiss(int position, Card card) {
+            return card.isSwipeable() && !isReadOnly();
         }
-    }
+
+        @Override
+        public void onDismiss(View view, int[] reverseSortedPositions) {
+            dismissCards(reverseSortedPositions);
+        }
+    };
 
     // -------------------------------------------------------------
     //  Getters and Setters
     // -------------------------------------------------------------
 
+    @Override
+    protected AdapterView<?> getRowParent() {
+        return mParentView instanceof AdapterView ? (AdapterView<?>) mParentView : null;
+    }
+
     /**
      * @return {@link AdapterView}
      */
@@ -451,52 +483,4 @@ public class CardArrayAdapter extends BaseCardArrayAdapter implements UndoBarCon
     public void setExpandListAnimatorListener(CardView.OnExpandListAnimatorListener listener) {
         this.mExpandListAnimatorListener = listener;
     }
-
-    /**
-     * Indicates if the undo message is enabled after a swipe action
-     *
-     * @return <code>true</code> if the undo message is enabled
-     */
-    public boolean isEnableUndo() {
-        return mEnableUndo;
-    }
-
-    /**
-     * Enables an undo message after a swipe action
-     *
-     * @param enableUndo <code>true</code> to enable an undo message
-     */
-    public void setEnableUndo(boolean enableUndo) {
-        mEnableUndo = enableUndo;
-        if (enableUndo) {
-            mInternalObjects = new HashMap<String, Card>();
-
-            //Create a UndoController
-            if (mUndoBarController==null){
-                View undobar = ((Activity)mContext).findViewById(R.id.list_card_undobar);
-                if (undobar != null) {
-                    mUndoBarController = UndoBarController.getInstance(undobar);
-                }
-            }
-        }else{
-            mUndoBarController=null;
-        }
-    }
-
-    /**
-     * Return the UndoBarController for undo action
-     *
-     * @return {@link UndoBarController}
-     */
-    public UndoBarController getUndoBarController() {
-        return mUndoBarController;
-    }
-
-    @Override
-    public void clear() {
-        super.clear();
-        if (mUndoBarController != null) {
-            mUndoBarController.hideUndoBar(false);
-        }
-    }
 }
@@ -4,11 +4,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import android.database.DataSetObserver;
 import android.support.v7.widget.RecyclerView;
-import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import android.view.View;
 
+import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
+
 public class CardArrayRecyclerAdapter extends RecyclerView.Adapter<CardArrayRecyclerAdapter.ViewHolder> {
     private List<Card> items;
     //private int itemLayout;
@@ -19,16 +21,101 @@ public class CardArrayRecyclerAdapter extends RecyclerView.Adapter<CardArrayRecy
         items = adapter.getList();
     }
 
+    /**
+     * Returns the wrapped {@link CardArrayAdapter}
+     */
+    public CardArrayAdapter getCardArrayAdapter() {
+        return adapter;
+    }
+
+    /**
+     * The wrapped adapter is observed only while a RecyclerView observes this adapter:
+     * this version of the RecyclerView has no detach callback, and a replaced wrapper must not stay
+     * registered on the wrapped adapter.
+     */
+    @Override
+    public void registerAdapterDataObserver(RecyclerView.AdapterDataObserver observer) {
+        boolean first = !hasObservers();
+        super.registerAdapterDataObserver(observer);
+        if (first && hasObservers()) {
+            adapter.registerOnRangeChangeListener(rangeChangeListener);
+            adapter.registerDataSetObserver(dataSetObserver);
+        }
+    }
+
+    @Override
+    public void unregisterAdapterDataObserver(RecyclerView.AdapterDataObserver observer) {
+        boolean had = hasObservers();
+        super.unregisterAdapterDataObserver(observer);
+        if (had && !hasObservers()) {
+            adapter.unregisterOnRangeChangeListener(rangeChangeListener);
+            adapter.unregisterDataSetObserver(dataSetObserver);
+        }
+    }
+
+    /**
+     * Forwards the changed ranges of the wrapped adapter, so only the affected rows are rebound
+     */
+    private final BaseCardArrayAdapter.OnRangeChangeListener rangeChangeListener = new BaseCardArrayAdapter.OnRangeChangeListener() {
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            notifyItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            notifyItemRangeInserted(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            notifyItemRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            //This version of the RecyclerView can't notify a move: only the moved row is removed and inserted again
+            notifyItemRemoved(fromPosition);
+            notifyItemInserted(toPosition);
+        }
+    };
+
+    private final DataSetObserver dataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            //Changes made with the adapter methods are already forwarded as ranges
+            if (!adapter.isNotifyingRangeChange())
+                notifyDataSetChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            notifyDataSetChanged();
+        }
+    };
+
     @Override public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(adapter.getRowLayoutId(), parent, false), parent);
+        return new ViewHolder(adapter.inflateRow(parent), parent);
     }
 
     @Override public void onBindViewHolder(ViewHolder holder, int position) {
         Card item = items.get(position);
+        //A swiped row keeps its presentation until it is bound again (the removal is animated by the RecyclerView)
+        holder.itemView.setAlpha(1f);
+        holder.itemView.setTranslationX(0);
+        holder.itemView.setTranslationY(0);
         holder.itemView.setTag(item);
         adapter.getView(position, holder.itemView, holder.parent);
     }
 
+    /**
+     * Returns the card at a position, or <code>null</code>
+     */
+    public Card getItem(int position) {
+        if (position < 0 || position >= items.size()) return null;
+        return items.get(position);
+    }
+
     @Override public int getItemCount() {
         return items.size();
         //return adapter.getViewTypeCount();
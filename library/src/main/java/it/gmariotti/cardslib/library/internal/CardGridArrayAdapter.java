@@ -20,9 +20,10 @@ package it.gmariotti.cardslib.library.internal;
 
 import android.content.Context;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
 
 import java.util.List;
 
@@ -30,6 +31,7 @@ import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
 import it.gmariotti.cardslib.library.view.CardGridView;
 import it.gmariotti.cardslib.library.view.CardView;
+import it.gmariotti.cardslib.library.view.listener.SwipeDismissAdapterViewTouchListener;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissListViewTouchListener;
 
 /**
@@ -112,25 +114,22 @@ public class CardGridArrayAdapter extends BaseCardArrayAdapter {
         CardView mCardView;
         Card mCard;
 
-        LayoutInflater mInflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-
         //Retrieve card from items
         mCard = (Card) getItem(position);
         if (mCard != null) {
 
-            int layout = mRowLayoutId;
             boolean recycle = false;
 
-            //Inflate layout
+            //Inflate layout (or take a row prepared in the background)
             if (view == null) {
                 recycle = false;
-                view = mInflater.inflate(layout, parent, false);
+                view = inflateRow(parent);
             } else {
                 recycle = true;
             }
 
             //Setup card
-            mCardView = (CardView) view.findViewById(R.id.list_cardId);
+            mCardView = findCardView(view);
             if (mCardView != null) {
                 //It is important to set recycle value for inner layout elements
                 mCardView.setForceReplaceInnerLayout(Card.equalsInnerLayout(mCardView.getCard(),mCard));
@@ -138,15 +137,18 @@ public class CardGridArrayAdapter extends BaseCardArrayAdapter {
                 //It is important to set recycle value for performance issue
                 mCardView.setRecycle(recycle);
 
-                //Save original swipeable value
+                //A swiped cell keeps its presentation until it is bound again
+                view.setAlpha(1f);
+                view.setTranslationX(0);
+                view.setTranslationY(0);
+
+                //Save original swipeable to prevent cardSwipeListener (the grid requires another cardSwipeListener)
                 boolean origianlSwipeable = mCard.isSwipeable();
-                //Set false to avoid swape card default action
                 mCard.setSwipeable(false);
                 mCardView.setCard(mCard);
 
-                //mCard.setSwipeable(origianlSwipeable);
-                if (origianlSwipeable)
-                    Log.d(TAG, "Swipe action not enabled in this type of view");
+                //Set originalValue
+                mCard.setSwipeable(origianlSwipeable);
 
                 //If card has an expandable button override animation
                 if (mCard.getCardHeader() != null && mCard.getCardHeader().isButtonExpandVisible()) {
@@ -163,28 +165,25 @@ public class CardGridArrayAdapter extends BaseCardArrayAdapter {
     }
 
     /**
-     * Removes SwipeAnimation on Grid
+     * Sets SwipeAnimation on Grid.
+     * The swiped cells are not collapsed: the remaining cells reflow with a translation animation.
      *
      * @param card     {@link Card}
      * @param cardView {@link CardView}
      */
     protected void setupSwipeableAnimation(final Card card, CardView cardView) {
 
-        cardView.setOnTouchListener(null);
-        /*if (card.isSwipeable()){
+        if (card.isSwipeable() && mCardGridView != null){
             if (mOnTouchListener == null){
                 mOnTouchListener = new SwipeDismissListViewTouchListener(mCardGridView, mCallback);
-                // Setting this scroll listener is required to ensure that during
-                // ListView scrolling, we don't look for swipes.
-                mCardGridView.setOnScrollListener(mOnTouchListener.makeScrollListener());
+                mOnTouchListener.getEngine().setCollapseOnDismiss(false);
             }
 
             cardView.setOnTouchListener(mOnTouchListener);
         }else{
             //prevent issue with recycle view
             cardView.setOnTouchListener(null);
-        }*/
-
+        }
     }
 
     /**
@@ -199,30 +198,52 @@ public class CardGridArrayAdapter extends BaseCardArrayAdapter {
     }
 
     // -------------------------------------------------------------
-    //  SwipeListener
+    //  SwipeListener and undo action
     // -------------------------------------------------------------
+
     /**
      * Listener invoked when a card is swiped
      */
-    /*
-    SwipeDismissListViewTouchListener.DismissCallbacks mCallback = new SwipeDismissListViewTouchListener.DismissCallbacks() {
+    SwipeDismissAdapterViewTouchListener.DismissCallbacks mCallback = new SwipeDismissAdapterViewTouchListener.DismissCallbacks() {
 
         @Override
         public boolean canDismiss(int position, Card card) {
-            return card.isSwipeable();
+            return card.isSwipeable() && !isReadOnly();
         }
 
         @Override
-        public void onDismiss(ListView listView, int[] reverseSortedPositions) {
-            for (int position : reverseSortedPositions) {
-                Card card = getItem(position);
-                if (card.getOnSwipeListener() != null)
-                    card.getOnSwipeListener().onSwipe(card);
-                remove(card);
-            }
-            notifyDataSetChanged();
+        public void onDismiss(View view, final int[] reverseSortedPositions) {
+            reflow(new Runnable() {
+                @Override
+                public void run() {
+                    dismissCards(reverseSortedPositions);
+                }
+            });
         }
-    };*/
+    };
+
+    /**
+     * Puts the cards of a batch back and animates the cells to their new positions
+     */
+    @Override
+    protected void restore(final UndoJournal.Batch batch) {
+        reflow(new Runnable() {
+            @Override
+            public void run() {
+                CardGridArrayAdapter.super.restore(batch);
+            }
+        });
+    }
+
+    /**
+     * Runs a change of the cards with the reflow animation of the {@link CardGridView}
+     */
+    protected void reflow(Runnable change) {
+        if (mCardGridView != null)
+            mCardGridView.getReflowAnimator().animateChange(change);
+        else
+            change.run();
+    }
 
     // -------------------------------------------------------------
     //  Getters and Setters
@@ -242,5 +263,59 @@ public class CardGridArrayAdapter extends BaseCardArrayAdapter {
      */
     public void setCardGridView(CardGridView cardGridView) {
         this.mCardGridView = cardGridView;
+
+        // Setting this scroll listener is required to ensure that during
+        // GridView scrolling, we don't look for swipes.
+        if (mCardGridView != null) {
+            mCardGridView.setOnScrollListener(mOnScrollListener);
+        }
+    }
+
+    protected AbsListView.OnScrollListener mExternalOnScrollListener =
+            new AbsListView.OnScrollListener() {
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem,
+                int visibleItemCount, int totalItemCount) {
+        }
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+    };
+
+    protected AbsListView.OnScrollListener mOnScrollListener =
+            new AbsListView.OnScrollListener() {
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem,
+                int visibleItemCount, int totalItemCount) {
+            mExternalOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount,
+                    totalItemCount);
+        }
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            if (mOnTouchListener != null) {
+                mOnTouchListener.setEnabled(scrollState != AbsListView.OnScrollListener
+                        .SCROLL_STATE_TOUCH_SCROLL);
+            }
+            mExternalOnScrollListener.onScrollStateChanged(view, scrollState);
+        }
+    };
+
+    /**
+     * Sets a scroll listener on the {@link CardGridView}.
+     * The adapter keeps its own listener installed on the grid and forwards every event to this one.
+     *
+     * @param listener listener
+     */
+    public void setOnScrollListener(AbsListView.OnScrollListener listener) {
+        if (listener != null) {
+            mExternalOnScrollListener = listener;
+        }
+    }
+
+    @Override
+    protected AdapterView<?> getRowParent() {
+        return mCardGridView;
     }
 }
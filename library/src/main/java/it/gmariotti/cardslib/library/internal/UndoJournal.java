@@ -0,0 +1,363 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal;
+
+import android.os.Parcelable;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.view.listener.UndoCard;
+
+/**
+ * Bounded journal of the dismissed cards which can be restored with an undo action.
+ * </p>
+ * Each swipe action is recorded as a {@link Batch}. The journal keeps at most
+ * {@link #getUndoLevels()} batches and {@link #getMaxCards()} cards: older batches are dropped
+ * first. A batch is dropped also when its undo bar times out (with a single undo level) or
+ * when it is older than {@link #getExpireTime()}.
+ * </p>
+ * Dropped batches are notified through {@link OnBatchDroppedListener}, so the adapter can
+ * confirm the swipe to the cards.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class UndoJournal {
+
+    /**
+     * Default max number of journaled cards
+     */
+    public static final int DEFAULT_MAX_CARDS = 256;
+
+    /**
+     * Batches, from the oldest to the newest
+     */
+    protected final LinkedList<Batch> mBatches = new LinkedList<Batch>();
+
+    /**
+     * Number of cards in all batches
+     */
+    protected int mCardCount;
+
+    /**
+     * Max number of batches which can be restored
+     */
+    protected int mUndoLevels = 1;
+
+    /**
+     * Max number of journaled cards
+     */
+    protected int mMaxCards = DEFAULT_MAX_CARDS;
+
+    /**
+     * Time (ms) after which a batch is dropped. 0 means that batches don't expire by time.
+     */
+    protected long mExpireTime = 0;
+
+    protected OnBatchDroppedListener mOnBatchDroppedListener;
+
+    // -------------------------------------------------------------
+    // Batch
+    // -------------------------------------------------------------
+
+    /**
+     * Cards removed by a single swipe action
+     */
+    public static class Batch {
+
+        protected final UndoCard mToken;
+        protected final Card[] mCards;
+        protected final int[] mPositions;
+        protected final long mTimestamp;
+
+        /**
+         * @param token     token used by the undo bar
+         * @param cards     removed cards
+         * @param positions positions of the removed cards, in the same order
+         */
+        public Batch(UndoCard token, Card[] cards, int[] positions) {
+            mToken = token;
+            mCards = cards;
+            mPositions = positions;
+            mTimestamp = SystemClock.uptimeMillis();
+        }
+
+        public UndoCard getToken() {
+            return mToken;
+        }
+
+        public Card[] getCards() {
+            return mCards;
+        }
+
+        public int[] getPositions() {
+            return mPositions;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public int size() {
+            return mCards.length;
+        }
+
+        /**
+         * Returns the indexes of the cards sorted by ascending position.
+         * Restoring the cards in this order puts each card back at its original position.
+         *
+         * @return indexes in the arrays
+         */
+        public Integer[] getRestoreOrder() {
+            Integer[] order = new Integer[mPositions.length];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer lhs, Integer rhs) {
+                    return mPositions[lhs] - mPositions[rhs];
+                }
+            });
+            return order;
+        }
+
+        public boolean matches(Parcelable token) {
+            if (token == mToken) return true;
+            if (!(token instanceof UndoCard)) return false;
+            UndoCard other = (UndoCard) token;
+            return Arrays.equals(mToken.itemPosition, other.itemPosition) &&
+                    Arrays.equals(mToken.itemId, other.itemId);
+        }
+    }
+
+    /**
+     * Interface to listen the batches which can't be restored anymore
+     */
+    public interface OnBatchDroppedListener {
+        void onBatchDropped(Batch batch);
+    }
+
+    // -------------------------------------------------------------
+    // Journal
+    // -------------------------------------------------------------
+
+    /**
+     * Records a swipe action.
+     * Older batches are dropped if the journal exceeds its limits.
+     *
+     * @param batch batch to record
+     */
+    public void record(Batch batch) {
+        if (batch == null) return;
+
+        //The views are recycled by the list, the journal must not retain them
+        for (Card card : batch.mCards)
+            card.setCardView(null);
+
+        mBatches.addLast(batch);
+        mCardCount += batch.size();
+
+        expire();
+        while (mBatches.size() > 1 &&
+                (mBatches.size() > mUndoLevels || mCardCount > mMaxCards)) {
+            drop(mBatches.getFirst());
+        }
+    }
+
+    /**
+     * Removes the batch referenced by an undo token, in order to restore it.
+     *
+     * @param token token used by the undo bar
+     * @return the batch or <code>null</code> if it was dropped
+     */
+    public Batch remove(Parcelable token) {
+        Batch batch = find(token);
+        if (batch != null) {
+            mBatches.remove(batch);
+            mCardCount -= batch.size();
+        }
+        return batch;
+    }
+
+    /**
+     * Removes the newest batch, in order to restore it.
+     *
+     * @return the batch or <code>null</code> if the journal is empty
+     */
+    public Batch removeLast() {
+        expire();
+        if (mBatches.isEmpty()) return null;
+        Batch batch = mBatches.removeLast();
+        mCardCount -= batch.size();
+        return batch;
+    }
+
+    /**
+     * Called when the undo bar of a batch times out.
+     * With a single undo level the batch is dropped, otherwise it remains available
+     * for {@link #removeLast()} until it is dropped by the limits.
+     *
+     * @param token token used by the undo bar
+     */
+    public void timeout(Parcelable token) {
+        Batch batch = find(token);
+        if (batch != null && mUndoLevels <= 1)
+            drop(batch);
+        expire();
+    }
+
+    /**
+     * Drops the oldest batches until the journal holds at most maxCards cards.
+     *
+     * @param maxCards max number of cards
+     * @return number of dropped cards
+     */
+    public int compact(int maxCards) {
+        int before = mCardCount;
+        while (!mBatches.isEmpty() && mCardCount > maxCards) {
+            drop(mBatches.getFirst());
+        }
+        return before - mCardCount;
+    }
+
+    /**
+     * Drops all batches
+     */
+    public void clear() {
+        compact(0);
+    }
+
+    /**
+     * Drops the batches older than the expire time
+     */
+    protected void expire() {
+        if (mExpireTime <= 0) return;
+        long limit = SystemClock.uptimeMillis() - mExpireTime;
+        while (!mBatches.isEmpty() && mBatches.getFirst().mTimestamp < limit) {
+            drop(mBatches.getFirst());
+        }
+    }
+
+    protected void drop(Batch batch) {
+        if (!mBatches.remove(batch)) return;
+        mCardCount -= batch.size();
+        if (mOnBatchDroppedListener != null)
+            mOnBatchDroppedListener.onBatchDropped(batch);
+    }
+
+    protected Batch find(Parcelable token) {
+        if (token == null) return null;
+        Iterator<Batch> it = mBatches.descendingIterator();
+        while (it.hasNext()) {
+            Batch batch = it.next();
+            if (batch.matches(token))
+                return batch;
+        }
+        return null;
+    }
+
+    /**
+     * Indicates if a token still references a batch in the journal
+     *
+     * @param token token used by the undo bar
+     * @return <code>true</code> if the batch can be restored
+     */
+    public boolean contains(Parcelable token) {
+        return find(token) != null;
+    }
+
+    /**
+     * Returns the journaled cards, from the oldest to the newest batch
+     *
+     * @return cards
+     */
+    public List<Card> getCards() {
+        List<Card> cards = new ArrayList<Card>(mCardCount);
+        for (Batch batch : mBatches)
+            cards.addAll(Arrays.asList(batch.mCards));
+        return cards;
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * @return number of batches
+     */
+    public int getBatchCount() {
+        return mBatches.size();
+    }
+
+    /**
+     * @return number of journaled cards
+     */
+    public int getCardCount() {
+        return mCardCount;
+    }
+
+    public int getUndoLevels() {
+        return mUndoLevels;
+    }
+
+    /**
+     * Sets the max number of swipe actions which can be restored
+     *
+     * @param undoLevels number of levels (at least 1)
+     */
+    public void setUndoLevels(int undoLevels) {
+        mUndoLevels = Math.max(1, undoLevels);
+    }
+
+    public int getMaxCards() {
+        return mMaxCards;
+    }
+
+    /**
+     * Sets the max number of journaled cards.
+     * The newest batch is always retained, even if it exceeds this value.
+     *
+     * @param maxCards max number of cards
+     */
+    public void setMaxCards(int maxCards) {
+        mMaxCards = Math.max(1, maxCards);
+    }
+
+    public long getExpireTime() {
+        return mExpireTime;
+    }
+
+    /**
+     * Sets the time after which a batch can't be restored anymore
+     *
+     * @param expireTime time in ms, 0 to disable
+     */
+    public void setExpireTime(long expireTime) {
+        mExpireTime = Math.max(0, expireTime);
+    }
+
+    public void setOnBatchDroppedListener(OnBatchDroppedListener onBatchDroppedListener) {
+        mOnBatchDroppedListener = onBatchDroppedListener;
+    }
+}
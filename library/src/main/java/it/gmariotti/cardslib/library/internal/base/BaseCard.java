@@ -23,6 +23,8 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.lang.ref.WeakReference;
+
 import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.view.CardView;
 
@@ -45,9 +47,19 @@ public abstract class BaseCard implements CardUIInferface {
 
     /**
      * Outer View
+     *
+     * @deprecated the view is held weakly and this field is always <code>null</code>:
+     * use {@link #getCardView()} and {@link #setCardView(CardView)}
      */
+    @Deprecated
     protected CardView mCardView;
 
+    /**
+     * Outer View.
+     * The model is often retained longer than its view (adapters, undo, data sources), so the view is held weakly.
+     */
+    private WeakReference<CardView> mCardViewRef;
+
     /**
      * Inner View
      */
@@ -94,11 +106,15 @@ public abstract class BaseCard implements CardUIInferface {
     /**
      * This method returns the complete View used
      *
-     * @return the complete View component
+     * @return the complete View component, or <code>null</code> if the view was collected
+     * or it was recycled for another card
      */
 
     public CardView getCardView() {
-        return mCardView;
+        CardView cardView = mCardViewRef != null ? mCardViewRef.get() : null;
+        if (cardView != null && cardView.getCard() != this)
+            return null;
+        return cardView;
     }
 
     /**
@@ -179,7 +195,7 @@ public abstract class BaseCard implements CardUIInferface {
      * @param cardView {@link CardView}
      */
     public void setCardView(CardView cardView) {
-        mCardView = cardView;
+        mCardViewRef = cardView != null ? new WeakReference<CardView>(cardView) : null;
     }
 
     /**
@@ -18,20 +18,45 @@
 
 package it.gmariotti.cardslib.library.internal.base;
 
+import android.app.Activity;
 import android.content.Context;
+import android.content.res.Resources;
+import android.os.Parcelable;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.ListView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.UndoJournal;
+import it.gmariotti.cardslib.library.utils.AsyncRowInflater;
+import it.gmariotti.cardslib.library.utils.CardMemoryAccountant;
+import it.gmariotti.cardslib.library.utils.CardResourceGovernor;
+import it.gmariotti.cardslib.library.view.CardView;
+import it.gmariotti.cardslib.library.view.listener.UndoBarController;
+import it.gmariotti.cardslib.library.view.listener.UndoCard;
 
 /**
  * Base Array Adapter
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
-public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
+public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> implements UndoBarController.UndoListener,
+        CardResourceGovernor.Trimmable, CardMemoryAccountant.Accountable {
+
+    protected static String TAG = "BaseCardArrayAdapter";
 
     /**
      * Current context
@@ -43,6 +68,11 @@ public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
      */
     protected int mRowLayoutId = R.layout.list_card_layout;
 
+    /**
+     * Inflater which prepares the rows in the background (disabled by default)
+     */
+    protected AsyncRowInflater mRowInflater;
+
     /**
      * Used to set the viewTypeCount
      */
@@ -50,6 +80,41 @@ public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
 
     protected List<Card> mCards;
 
+    /**
+     * Index card id -> position
+     */
+    protected CardIdIndex mIdIndex;
+
+    /**
+     * Listeners notified with the changed ranges
+     */
+    protected List<OnRangeChangeListener> mOnRangeChangeListeners = new ArrayList<OnRangeChangeListener>();
+
+    /**
+     * Mirror of the ArrayAdapter notifyOnChange value
+     */
+    protected boolean mNotifyOnChange = true;
+
+    /**
+     * Used to indicate that the index is already updated for the current change
+     */
+    private boolean mIndexedChange = false;
+
+    /**
+     * Used to enable an undo message after a swipe action
+     */
+    protected boolean mEnableUndo=false;
+
+    /**
+     * Undo Controller
+     */
+    protected UndoBarController mUndoBarController;
+
+    /**
+     * Journal with the dismissed cards which can be restored
+     */
+    protected UndoJournal mUndoJournal;
+
     // -------------------------------------------------------------
     // Constructors
     // -------------------------------------------------------------
@@ -64,16 +129,81 @@ public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
         super(context, 0, cards);
         mContext = context;
         mCards = cards;
+        mIdIndex = new CardIdIndex(cards);
+        CardResourceGovernor.getInstance().install(context);
+        CardResourceGovernor.getInstance().register(this);
+        CardMemoryAccountant.getInstance().register(this);
+
+        //Refresh the rows when a lazy list materializes its cards
+        if (cards instanceof LazyCardList) {
+            ((LazyCardList) cards).setOnRangeLoadedListener(new LazyCardList.OnRangeLoadedListener() {
+                @Override
+                public void onRangeLoaded(int positionStart, int itemCount) {
+                    notifyRangeLoaded(positionStart, itemCount);
+                }
+
+                @Override
+                public void onRangeEvicted(int positionStart, int itemCount) {
+                    mIdIndex.onEvicted(positionStart, itemCount);
+                }
+            });
+        }
     }
 
     public List<Card> getList() {
         return mCards;
     }
 
+    /**
+     * Indicates if the cards can't be removed, inserted or moved (i.e. a {@link LazyCardList} backed by a data source).
+     * The swipe is disabled on a read-only list.
+     *
+     * @return <code>true</code> if the list is read-only
+     */
+    public boolean isReadOnly() {
+        return mCards instanceof LazyCardList && ((LazyCardList) mCards).isReadOnly();
+    }
+
     // -------------------------------------------------------------
     // Views
     // -------------------------------------------------------------
 
+    /**
+     * Inflates a row with the row layout.
+     * If the background inflation is enabled, it uses a row prepared by the {@link AsyncRowInflater} when available.
+     *
+     * @param parent parent of the row
+     * @return row
+     */
+    public View inflateRow(ViewGroup parent) {
+        if (mRowInflater != null)
+            return mRowInflater.inflate(mRowLayoutId, parent);
+
+        LayoutInflater mInflater = (LayoutInflater) mContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        return mInflater.inflate(mRowLayoutId, parent, false);
+    }
+
+    /**
+     * Returns the {@link CardView} with the ID <code>list_cardId</code> of a row.
+     * It is searched only the first time and then it is cached in the row.
+     *
+     * @param row row
+     * @return the CardView or <code>null</code>
+     */
+    public CardView findCardView(View row) {
+        if (row instanceof CardView)
+            return (CardView) row;
+
+        Object tag = row.getTag(R.id.list_cardId);
+        if (tag instanceof CardView)
+            return (CardView) tag;
+
+        CardView cardView = (CardView) row.findViewById(R.id.list_cardId);
+        if (cardView != null)
+            row.setTag(R.id.list_cardId, cardView);
+        return cardView;
+    }
+
     @Override
     public int getViewTypeCount() {
         return innerviewTypeCount;
@@ -97,10 +227,525 @@ public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
         return false;
     }
 
+    // -------------------------------------------------------------
+    // Id based operations
+    // -------------------------------------------------------------
+
+    /**
+     * Interface to listen the ranges changed by the adapter operations.
+     * A call to {@link #notifyDataSetChanged()} follows these events.
+     */
+    public interface OnRangeChangeListener {
+        void onItemRangeChanged(int positionStart, int itemCount);
+        void onItemRangeInserted(int positionStart, int itemCount);
+        void onItemRangeRemoved(int positionStart, int itemCount);
+        void onItemMoved(int fromPosition, int toPosition);
+    }
+
+    /**
+     * Returns the position of the card with the given id.
+     * The lookup uses an index which is updated incrementally, in O(log n).
+     *
+     * @param id card id
+     * @return position or -1
+     */
+    public int positionOf(String id) {
+        return mIdIndex.positionOf(id);
+    }
+
+    /**
+     * Replaces the card with the given id
+     *
+     * @param id   id of the card to replace
+     * @param card new card
+     * @return <code>true</code> if the card was found
+     */
+    public boolean updateCard(String id, Card card) {
+        int position = positionOf(id);
+        if (position < 0 || card == null) return false;
+
+        Card oldCard = mCards.set(position, card);
+        mIdIndex.onReplaced(position, oldCard, card);
+        dispatchRangeChanged(position, 1);
+
+        //Only the row of the card is bound again
+        if (mNotifyOnChange && (oldCard == null || oldCard.getType() != card.getType() || !rebindRow(position)))
+            notifyIndexedDataSetChanged();
+        return true;
+    }
+
+    /**
+     * Returns the AdapterView which shows the cards, used to bind again a single row.
+     *
+     * @return the view, or <code>null</code> if it is not known
+     */
+    protected AdapterView<?> getRowParent() {
+        return null;
+    }
+
+    /**
+     * Binds again the row of a card in place, without notifying the whole adapter.
+     * A row which is not visible is bound when it is shown.
+     *
+     * @param position position of the card
+     * @return <code>false</code> if the row can't be bound in place and the adapter must be notified
+     */
+    protected boolean rebindRow(int position) {
+        AdapterView<?> parent = getRowParent();
+        if (parent == null) return false;
+
+        int headers = parent instanceof ListView ? ((ListView) parent).getHeaderViewsCount() : 0;
+        int index = position + headers - parent.getFirstVisiblePosition();
+        if (index < 0 || index >= parent.getChildCount())
+            return true;
+
+        View row = parent.getChildAt(index);
+        return getView(position, row, parent) == row;
+    }
+
+    /**
+     * Removes the card with the given id
+     *
+     * @param id card id
+     * @return the removed card or <code>null</code>
+     */
+    public Card removeById(String id) {
+        int position = positionOf(id);
+        if (position < 0) return null;
+
+        Card card = mCards.remove(position);
+        mIdIndex.onRemoved(position, card);
+        dispatchRangeRemoved(position, 1);
+        notifyIndexedChange();
+        return card;
+    }
+
+    @Override
+    public void add(Card card) {
+        int position = mCards.size();
+        mCards.add(card);
+        mIdIndex.onInserted(position, 1);
+        dispatchRangeInserted(position, 1);
+        notifyIndexedChange();
+    }
+
+    @Override
+    public void addAll(Collection<? extends Card> collection) {
+        int position = mCards.size();
+        mCards.addAll(collection);
+        mIdIndex.onInserted(position, collection.size());
+        dispatchRangeInserted(position, collection.size());
+        notifyIndexedChange();
+    }
+
+    @Override
+    public void addAll(Card... items) {
+        addAll(Arrays.asList(items));
+    }
+
+    @Override
+    public void insert(Card card, int index) {
+        mCards.add(index, card);
+        mIdIndex.onInserted(index, 1);
+        dispatchRangeInserted(index, 1);
+        notifyIndexedChange();
+    }
+
+    @Override
+    public void remove(Card card) {
+        int position = card != null ? positionOf(card.getId()) : -1;
+        if (position < 0 || mCards.get(position) != card)
+            position = mCards.indexOf(card);
+        if (position < 0) return;
+
+        mCards.remove(position);
+        mIdIndex.onRemoved(position, card);
+        dispatchRangeRemoved(position, 1);
+        notifyIndexedChange();
+    }
+
+    /**
+     * Moves a card to a new position.
+     * The move is dispatched as a single event to the {@link OnRangeChangeListener}s, so the
+     * RecyclerView only moves one row, and the id index moves a single entry in O(log n).
+     * The cards outside the range between the two positions are not touched
+     * (a {@link LazyCardList} shifts its data list instead).
+     *
+     * @param fromPosition current position of the card
+     * @param toPosition   new position of the card
+     * @return <code>true</code> if the card was moved. The lists which can't remove cards (i.e. a paged list) are not changed.
+     */
+    public boolean move(int fromPosition, int toPosition) {
+        if (isReadOnly()) return false;
+        int count = mCards.size();
+        if (fromPosition < 0 || fromPosition >= count || toPosition < 0 || toPosition >= count)
+            return false;
+        if (fromPosition == toPosition) return true;
+
+        try {
+            if (mCards instanceof RandomAccess && !(mCards instanceof LazyCardList)) {
+                //Shift only the cards between the two positions
+                int min = Math.min(fromPosition, toPosition);
+                int max = Math.max(fromPosition, toPosition);
+                Collections.rotate(mCards.subList(min, max + 1), fromPosition < toPosition ? -1 : 1);
+            } else {
+                mCards.add(toPosition, mCards.remove(fromPosition));
+            }
+        } catch (UnsupportedOperationException e) {
+            Log.w(TAG, "The list of cards doesn't support moves", e);
+            return false;
+        }
+        mIdIndex.onMoved(fromPosition, toPosition);
+        dispatchItemMoved(fromPosition, toPosition);
+        notifyIndexedChange();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        int count = mCards.size();
+        mCards.clear();
+        mIdIndex.invalidate();
+        dispatchRangeRemoved(0, count);
+        notifyIndexedChange();
+
+        if (mUndoBarController != null) {
+            mUndoBarController.hideUndoBar(false);
+        }
+        if (mUndoJournal != null) {
+            mUndoJournal.clear();
+        }
+    }
+
+    @Override
+    public void sort(Comparator<? super Card> comparator) {
+        Collections.sort(mCards, comparator);
+        mIdIndex.invalidate();
+        dispatchRangeChanged(0, mCards.size());
+        notifyIndexedChange();
+    }
+
+    @Override
+    public void setNotifyOnChange(boolean notifyOnChange) {
+        super.setNotifyOnChange(notifyOnChange);
+        mNotifyOnChange = notifyOnChange;
+    }
+
+    /**
+     * Notifies a change made outside the adapter methods.
+     * The id index is rebuilt on the next lookup.
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        if (!mIndexedChange)
+            mIdIndex.invalidate();
+        mNotifyOnChange = true;
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * Called when a {@link LazyCardList} replaces its placeholders with the loaded cards
+     *
+     * @param positionStart position of the first loaded card
+     * @param itemCount     number of loaded cards
+     */
+    protected void notifyRangeLoaded(int positionStart, int itemCount) {
+        LazyCardList lazyCards = (LazyCardList) mCards;
+        for (int i = positionStart; i < positionStart + itemCount; i++)
+            mIdIndex.onReplaced(i, null, lazyCards.peek(i));
+        dispatchRangeChanged(positionStart, itemCount);
+        notifyIndexedDataSetChanged();
+    }
+
+    /**
+     * Notifies a change already applied to the id index, if notifyOnChange is enabled
+     */
+    protected void notifyIndexedChange() {
+        if (mNotifyOnChange)
+            notifyIndexedDataSetChanged();
+    }
+
+    /**
+     * Notifies a change already applied to the id index
+     */
+    protected void notifyIndexedDataSetChanged() {
+        mIndexedChange = true;
+        try {
+            notifyDataSetChanged();
+        } finally {
+            mIndexedChange = false;
+        }
+    }
+
+    /**
+     * Indicates if the adapter is notifying a change which was already dispatched
+     * to the {@link OnRangeChangeListener}s
+     *
+     * @return <code>true</code> during the notification of an indexed change
+     */
+    public boolean isNotifyingRangeChange() {
+        return mIndexedChange;
+    }
+
+    public void registerOnRangeChangeListener(OnRangeChangeListener listener) {
+        if (listener != null && !mOnRangeChangeListeners.contains(listener))
+            mOnRangeChangeListeners.add(listener);
+    }
+
+    public void unregisterOnRangeChangeListener(OnRangeChangeListener listener) {
+        mOnRangeChangeListeners.remove(listener);
+    }
+
+    protected void dispatchRangeChanged(int positionStart, int itemCount) {
+        for (OnRangeChangeListener listener : mOnRangeChangeListeners)
+            listener.onItemRangeChanged(positionStart, itemCount);
+    }
+
+    protected void dispatchRangeInserted(int positionStart, int itemCount) {
+        for (OnRangeChangeListener listener : mOnRangeChangeListeners)
+            listener.onItemRangeInserted(positionStart, itemCount);
+    }
+
+    protected void dispatchRangeRemoved(int positionStart, int itemCount) {
+        for (OnRangeChangeListener listener : mOnRangeChangeListeners)
+            listener.onItemRangeRemoved(positionStart, itemCount);
+    }
+
+    protected void dispatchItemMoved(int fromPosition, int toPosition) {
+        for (OnRangeChangeListener listener : mOnRangeChangeListeners)
+            listener.onItemMoved(fromPosition, toPosition);
+    }
+
+    // -------------------------------------------------------------
+    //  Swipe and undo action
+    // -------------------------------------------------------------
+
+    /**
+     * Removes the swiped cards, notifies the adapter once and records the cards in the undo journal
+     *
+     * @param reverseSortedPositions positions of the swiped cards, sorted in descending order
+     */
+    protected void dismissCards(int[] reverseSortedPositions) {
+        if (isReadOnly()) {
+            Log.w(TAG, "The cards of a read-only list can't be dismissed");
+            return;
+        }
+
+        int[] itemPositions=new int[reverseSortedPositions.length];
+        String[] itemIds=new String[reverseSortedPositions.length];
+        Card[] cards=new Card[reverseSortedPositions.length];
+        int i=0;
+
+        //Remove cards and notifyDataSetChanged once
+        setNotifyOnChange(false);
+        for (int position : reverseSortedPositions) {
+            Card card = getItem(position);
+            itemPositions[i]=position;
+            itemIds[i]=card.getId();
+            cards[i]=card;
+            i++;
+
+            remove(card);
+            if (card.getOnSwipeListener() != null){
+                    card.getOnSwipeListener().onSwipe(card);
+            }
+        }
+        notifyIndexedDataSetChanged();
+
+        //Check for a undo message to confirm
+        if (isEnableUndo() && mUndoJournal!=null){
+
+            //Record cards in the journal
+            UndoCard itemUndo=new UndoCard(itemPositions,itemIds);
+            mUndoJournal.record(new UndoJournal.Batch(itemUndo, cards, itemPositions));
+
+            //Show UndoBar
+            if (mUndoBarController!=null && getContext()!=null){
+                Resources res = getContext().getResources();
+                if (res!=null){
+                    String messageUndoBar = res.getQuantityString(R.plurals.list_card_undo_items, reverseSortedPositions.length, reverseSortedPositions.length);
+
+                    mUndoBarController.showUndoBar(false, messageUndoBar, itemUndo, this);
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    //  Undo Default Listener
+    // -------------------------------------------------------------
+
+    @Override
+    public void onUndo(Parcelable token, boolean timeout) {
+        if (token == null || mUndoJournal == null) return;
+
+        if (timeout) {
+            mUndoJournal.timeout(token);
+        } else {
+            restore(mUndoJournal.remove(token));
+        }
+    }
+
+    /**
+     * Restores the last swipe action which is still in the undo journal.
+     * With more undo levels (see {@link UndoJournal#setUndoLevels(int)}) it can be called
+     * more times to restore older actions.
+     *
+     * @return <code>true</code> if some cards were restored
+     */
+    public boolean undoLast() {
+        if (mUndoJournal == null) return false;
+
+        UndoJournal.Batch batch = mUndoJournal.removeLast();
+        if (batch == null) return false;
+
+        if (mUndoBarController != null && batch.matches(mUndoBarController.getUndoToken()))
+            mUndoBarController.hideUndoBar(false);
+        restore(batch);
+        return true;
+    }
+
+    /**
+     * Puts the cards of a batch back at their original positions.
+     * Contiguous cards are inserted with a single range insert and the adapter is notified once.
+     *
+     * @param batch batch to restore
+     */
+    protected void restore(UndoJournal.Batch batch) {
+        if (batch == null) return;
+
+        Card[] cards = batch.getCards();
+        int[] positions = batch.getPositions();
+        Integer[] order = batch.getRestoreOrder();
+        List<Card> items = getList();
+
+        int i = 0;
+        while (i < order.length) {
+            //Collect a run of contiguous positions
+            int start = positions[order[i]];
+            List<Card> run = new ArrayList<Card>();
+            run.add(cards[order[i]]);
+            int j = i + 1;
+            while (j < order.length && positions[order[j]] == start + (j - i)) {
+                run.add(cards[order[j]]);
+                j++;
+            }
+            start = Math.max(0, Math.min(start, items.size()));
+            items.addAll(start, run);
+            mIdIndex.onInserted(start, run.size());
+            dispatchRangeInserted(start, run.size());
+            i = j;
+        }
+        notifyIndexedDataSetChanged();
+
+        for (Card card : cards) {
+            if (card.getOnUndoSwipeListListener() != null)
+                card.getOnUndoSwipeListListener().onUndoSwipe(card, false);
+        }
+    }
+
+    /**
+     * Confirms the swipe action to the cards which can't be restored anymore
+     */
+    protected UndoJournal.OnBatchDroppedListener mOnBatchDroppedListener = new UndoJournal.OnBatchDroppedListener() {
+        @Override
+        public void onBatchDropped(UndoJournal.Batch batch) {
+            for (Card card : batch.getCards()) {
+                if (card.getOnUndoSwipeListListener() != null)
+                    card.getOnUndoSwipeListListener().onUndoSwipe(card, true);
+            }
+        }
+    };
+
+    // -------------------------------------------------------------
+    //  Memory pressure
+    // -------------------------------------------------------------
+
+    /**
+     * Compacts the undo journal to the undo budget of the governor.
+     * If the cards shown by the undo bar are dropped, the undo bar is hidden.
+     */
+    @Override
+    public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+        if (mUndoJournal == null || !governor.shouldCompactUndo(level)) return;
+
+        report.addUndoEntries(mUndoJournal.compact(governor.getUndoBudget(level)));
+
+        if (mUndoBarController != null) {
+            Parcelable token = mUndoBarController.getUndoToken();
+            if (token != null && mUndoBarController.getUndoListener() == this && !mUndoJournal.contains(token))
+                mUndoBarController.hideUndoBar(true);
+        }
+    }
+
+    /**
+     * Accounts the cards kept by the undo journal
+     */
+    @Override
+    public void onAccount(CardMemoryAccountant.MemorySnapshot snapshot) {
+        if (mUndoJournal != null)
+            snapshot.add(CardMemoryAccountant.METRIC_UNDO_ENTRIES, mUndoJournal.getCardCount());
+    }
+
     // -------------------------------------------------------------
     //  Getters and Setters
     // -------------------------------------------------------------
 
+    /**
+     * Indicates if the undo message is enabled after a swipe action
+     *
+     * @return <code>true</code> if the undo message is enabled
+     */
+    public boolean isEnableUndo() {
+        return mEnableUndo;
+    }
+
+    /**
+     * Enables an undo message after a swipe action
+     *
+     * @param enableUndo <code>true</code> to enable an undo message
+     */
+    public void setEnableUndo(boolean enableUndo) {
+        mEnableUndo = enableUndo;
+        if (enableUndo) {
+            if (mUndoJournal == null) {
+                mUndoJournal = new UndoJournal();
+                mUndoJournal.setOnBatchDroppedListener(mOnBatchDroppedListener);
+            }
+
+            //Create a UndoController
+            if (mUndoBarController==null){
+                View undobar = ((Activity)mContext).findViewById(R.id.list_card_undobar);
+                if (undobar != null) {
+                    mUndoBarController = UndoBarController.getInstance(undobar);
+                }
+            }
+        }else{
+            mUndoBarController=null;
+            if (mUndoJournal != null)
+                mUndoJournal.clear();
+        }
+    }
+
+    /**
+     * Returns the journal with the cards which can be restored.
+     * Use it to configure the undo levels and the limits.
+     *
+     * @return {@link UndoJournal} or <code>null</code> if the undo action is not enabled
+     */
+    public UndoJournal getUndoJournal() {
+        return mUndoJournal;
+    }
+
+    /**
+     * Return the UndoBarController for undo action
+     *
+     * @return {@link UndoBarController}
+     */
+    public UndoBarController getUndoBarController() {
+        return mUndoBarController;
+    }
+
     /**
      * Returns current context
      *
@@ -123,6 +768,46 @@ public abstract class BaseCardArrayAdapter extends ArrayAdapter<Card> {
         return mRowLayoutId;
     }
 
+    /**
+     * Returns the inflater which prepares the rows in the background, or <code>null</code> if it is disabled
+     */
+    public AsyncRowInflater getRowInflater() {
+        return mRowInflater;
+    }
+
+    /**
+     * Enables the inflation of the rows in the background, see {@link AsyncRowInflater}.
+     * It is disabled by default: the rows are inflated synchronously on the UI thread.
+     * Enable it only if the views of the row layout can be built off the UI thread.
+     *
+     * @param enabled <code>true</code> to keep a pool of rows inflated in the background
+     */
+    public void setAsyncInflationEnabled(boolean enabled) {
+        if (enabled && mRowInflater == null)
+            setRowInflater(new AsyncRowInflater(mContext));
+        else if (!enabled)
+            setRowInflater(null);
+    }
+
+    /**
+     * Indicates if the rows are inflated in the background
+     */
+    public boolean isAsyncInflationEnabled() {
+        return mRowInflater != null;
+    }
+
+    /**
+     * Sets the inflater which prepares the rows in the background.
+     * Use <code>null</code> to inflate all rows synchronously (default).
+     *
+     * @param rowInflater inflater
+     */
+    public void setRowInflater(AsyncRowInflater rowInflater) {
+        if (mRowInflater != null && mRowInflater != rowInflater)
+            mRowInflater.clear();
+        mRowInflater = rowInflater;
+    }
+
     /**
      * Sets the viewTypeCount inside the adapter.
      * It is very important in a adapter with different inner layouts
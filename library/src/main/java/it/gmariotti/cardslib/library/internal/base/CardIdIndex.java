@@ -0,0 +1,476 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.base;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * Index card id -> position, maintained incrementally on a list of {@link Card}.
+ * </p>
+ * The positions are kept in an order-statistics tree (an implicit treap): each card has a node, and the
+ * position of a card is the rank of its node. Inserts, removes, moves, replaces and lookups cost O(log n),
+ * so the index never rebuilds its tail after a structural change. The tree is built on the first lookup.
+ * </p>
+ * The positions of a read-only {@link LazyCardList} never shift: its ids are kept in a map, which only
+ * contains the loaded ids.
+ * </p>
+ * Each hit is verified against the list, so a modification made directly on the list can't
+ * return a wrong position: the index is rebuilt instead.
+ * Cards without id are not indexed. With a {@link LazyCardList} the ids are read without materializing the cards.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardIdIndex {
+
+    /**
+     * Indexed list
+     */
+    protected final List<Card> mCards;
+
+    /**
+     * Indicates if the positions never shift (read-only lazy list)
+     */
+    protected final boolean mStatic;
+
+    /**
+     * Id -> position, for a static list
+     */
+    protected final HashMap<String, Integer> mPositions = new HashMap<String, Integer>();
+
+    /**
+     * Id -> node of the tree
+     */
+    protected final HashMap<String, Node> mNodes = new HashMap<String, Node>();
+
+    /**
+     * Root of the tree, one node per position
+     */
+    protected Node mRoot;
+
+    /**
+     * Indicates if the index was built
+     */
+    protected boolean mBuilt;
+
+    protected final Random mRandom = new Random();
+
+    /**
+     * Results of {@link #split(Node, int)}
+     */
+    private Node mSplitLeft;
+    private Node mSplitRight;
+
+    /**
+     * Node of the tree
+     */
+    protected static class Node {
+        String mId;
+        final int mPriority;
+        int mSize = 1;
+        Node mLeft;
+        Node mRight;
+        Node mParent;
+
+        Node(String id, int priority) {
+            mId = id;
+            mPriority = priority;
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param cards list to index
+     */
+    public CardIdIndex(List<Card> cards) {
+        mCards = cards;
+        mStatic = cards instanceof LazyCardList && ((LazyCardList) cards).isReadOnly();
+    }
+
+    // -------------------------------------------------------------
+    // Lookup
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the position of the card with the given id
+     *
+     * @param id card id
+     * @return position or -1 if no card has this id
+     */
+    public int positionOf(String id) {
+        if (id == null || mCards == null) return -1;
+
+        boolean built = mBuilt;
+        if (!built)
+            build();
+
+        int position = lookup(id);
+        if (position >= 0 && matches(position, id))
+            return position;
+
+        //The card was evicted by a lazy list
+        if (position >= 0 && mCards instanceof LazyCardList && position < mCards.size() && getCardId(position) == null) {
+            forget(id);
+            return -1;
+        }
+
+        //The list was modified outside the index
+        if (built && (position >= 0 || size(mRoot) != mCards.size() && !mStatic)) {
+            invalidate();
+            build();
+            position = lookup(id);
+            if (position >= 0 && matches(position, id))
+                return position;
+        }
+        return -1;
+    }
+
+    protected boolean matches(int position, String id) {
+        if (position >= mCards.size()) return false;
+        return id.equals(getCardId(position));
+    }
+
+    /**
+     * Returns the indexed position of an id, or -1
+     */
+    protected int lookup(String id) {
+        if (mStatic) {
+            Integer position = mPositions.get(id);
+            return position != null ? position : -1;
+        }
+        Node node = mNodes.get(id);
+        return node != null ? rank(node) : -1;
+    }
+
+    /**
+     * Removes an id from the index
+     */
+    protected void forget(String id) {
+        if (mStatic) {
+            mPositions.remove(id);
+        } else {
+            Node node = mNodes.remove(id);
+            if (node != null)
+                node.mId = null;
+        }
+    }
+
+    /**
+     * Indexes the whole list in O(n)
+     */
+    protected void build() {
+        int size = mCards.size();
+        if (mStatic) {
+            for (int i = 0; i < size; i++) {
+                String id = getCardId(i);
+                if (id != null)
+                    mPositions.put(id, i);
+            }
+        } else {
+            mRoot = buildTree(0, size);
+        }
+        mBuilt = true;
+    }
+
+    /**
+     * Returns the id of a card without loading it
+     */
+    protected String getCardId(int position) {
+        if (mCards instanceof LazyCardList)
+            return ((LazyCardList) mCards).getCardId(position);
+        Card card = mCards.get(position);
+        return card != null ? card.getId() : null;
+    }
+
+    // -------------------------------------------------------------
+    // Changes
+    // -------------------------------------------------------------
+
+    /**
+     * A card was replaced in place
+     *
+     * @param position position
+     * @param oldCard  removed card
+     * @param newCard  new card
+     */
+    public void onReplaced(int position, Card oldCard, Card newCard) {
+        String newId = newCard != null ? newCard.getId() : null;
+        if (mStatic) {
+            if (oldCard != null && oldCard.getId() != null) {
+                Integer indexed = mPositions.get(oldCard.getId());
+                if (indexed != null && indexed == position)
+                    mPositions.remove(oldCard.getId());
+            }
+            if (mBuilt && newId != null)
+                mPositions.put(newId, position);
+            return;
+        }
+
+        if (!mBuilt || position < 0 || position >= size(mRoot)) return;
+        setId(nodeAt(position), newId);
+    }
+
+    /**
+     * Cards were inserted
+     *
+     * @param position  position of the first inserted card
+     * @param itemCount number of inserted cards
+     */
+    public void onInserted(int position, int itemCount) {
+        if (!mBuilt || mStatic || itemCount <= 0) return;
+        if (position < 0 || position > size(mRoot)) {
+            invalidate();
+            return;
+        }
+
+        Node inserted = buildTree(position, position + itemCount);
+        split(mRoot, position);
+        Node right = mSplitRight;
+        mRoot = setRoot(merge(merge(mSplitLeft, inserted), right));
+    }
+
+    /**
+     * A card was removed
+     *
+     * @param position position of the removed card
+     * @param card     removed card
+     */
+    public void onRemoved(int position, Card card) {
+        if (!mBuilt) return;
+        if (mStatic || position < 0 || position >= size(mRoot)) {
+            invalidate();
+            return;
+        }
+
+        Node node = detach(position);
+        setId(node, null);
+    }
+
+    /**
+     * A card was moved to a new position
+     *
+     * @param fromPosition old position
+     * @param toPosition   new position
+     */
+    public void onMoved(int fromPosition, int toPosition) {
+        if (!mBuilt || fromPosition == toPosition) return;
+        int size = size(mRoot);
+        if (mStatic || fromPosition < 0 || fromPosition >= size || toPosition < 0 || toPosition >= size) {
+            invalidate();
+            return;
+        }
+
+        Node node = detach(fromPosition);
+        split(mRoot, toPosition);
+        Node right = mSplitRight;
+        mRoot = setRoot(merge(merge(mSplitLeft, node), right));
+    }
+
+    /**
+     * A range of cards was dropped by a lazy list: their ids are removed from the index.
+     * It must be called while the ids can still be read.
+     *
+     * @param positionStart position of the first evicted card
+     * @param itemCount     number of evicted cards
+     */
+    public void onEvicted(int positionStart, int itemCount) {
+        if (!mBuilt) return;
+        int end = Math.min(positionStart + itemCount, mCards.size());
+        for (int i = Math.max(0, positionStart); i < end; i++) {
+            if (mStatic) {
+                String id = getCardId(i);
+                if (id == null) continue;
+                Integer indexed = mPositions.get(id);
+                if (indexed != null && indexed == i)
+                    mPositions.remove(id);
+            } else if (i < size(mRoot)) {
+                setId(nodeAt(i), null);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed ids
+     */
+    public int size() {
+        return mStatic ? mPositions.size() : mNodes.size();
+    }
+
+    /**
+     * Invalidates the whole index. It is built again on the next lookup.
+     */
+    public void invalidate() {
+        mPositions.clear();
+        mNodes.clear();
+        mRoot = null;
+        mBuilt = false;
+    }
+
+    // -------------------------------------------------------------
+    // Tree
+    // -------------------------------------------------------------
+
+    protected static int size(Node node) {
+        return node != null ? node.mSize : 0;
+    }
+
+    /**
+     * Sets the id of a node, keeping the id map consistent
+     */
+    protected void setId(Node node, String id) {
+        if (node.mId != null && mNodes.get(node.mId) == node)
+            mNodes.remove(node.mId);
+        node.mId = id;
+        if (id != null)
+            mNodes.put(id, node);
+    }
+
+    /**
+     * Returns the position of a node
+     */
+    protected static int rank(Node node) {
+        int rank = size(node.mLeft);
+        for (Node n = node; n.mParent != null; n = n.mParent) {
+            if (n == n.mParent.mRight)
+                rank += size(n.mParent.mLeft) + 1;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the node at a position
+     */
+    protected Node nodeAt(int position) {
+        Node node = mRoot;
+        while (node != null) {
+            int left = size(node.mLeft);
+            if (position < left) {
+                node = node.mLeft;
+            } else if (position == left) {
+                return node;
+            } else {
+                position -= left + 1;
+                node = node.mRight;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the node at a position from the tree
+     */
+    protected Node detach(int position) {
+        split(mRoot, position);
+        Node left = mSplitLeft;
+        split(mSplitRight, 1);
+        Node node = mSplitLeft;
+        mRoot = setRoot(merge(left, mSplitRight));
+        node.mParent = null;
+        return node;
+    }
+
+    /**
+     * Builds the tree of the cards in [from, to) with the stack algorithm of the Cartesian trees, in O(n)
+     */
+    protected Node buildTree(int from, int to) {
+        Node[] stack = new Node[Math.max(1, to - from)];
+        int top = -1;
+        for (int i = from; i < to; i++) {
+            Node node = new Node(null, mRandom.nextInt());
+            setId(node, getCardId(i));
+            Node last = null;
+            while (top >= 0 && stack[top].mPriority < node.mPriority)
+                last = stack[top--];
+            node.mLeft = last;
+            if (top >= 0)
+                stack[top].mRight = node;
+            stack[++top] = node;
+        }
+        if (top < 0) return null;
+        Node root = stack[0];
+        updateSizes(root);
+        return setRoot(root);
+    }
+
+    /**
+     * Computes the sizes and the parents of a subtree
+     */
+    private static int updateSizes(Node node) {
+        if (node == null) return 0;
+        node.mSize = 1 + updateSizes(node.mLeft) + updateSizes(node.mRight);
+        if (node.mLeft != null) node.mLeft.mParent = node;
+        if (node.mRight != null) node.mRight.mParent = node;
+        return node.mSize;
+    }
+
+    private static Node update(Node node) {
+        node.mSize = 1 + size(node.mLeft) + size(node.mRight);
+        if (node.mLeft != null) node.mLeft.mParent = node;
+        if (node.mRight != null) node.mRight.mParent = node;
+        return node;
+    }
+
+    private static Node setRoot(Node node) {
+        if (node != null)
+            node.mParent = null;
+        return node;
+    }
+
+    /**
+     * Splits a tree: the first <code>count</code> nodes in {@link #mSplitLeft}, the others in {@link #mSplitRight}
+     */
+    private void split(Node node, int count) {
+        if (node == null) {
+            mSplitLeft = null;
+            mSplitRight = null;
+            return;
+        }
+        if (size(node.mLeft) >= count) {
+            split(node.mLeft, count);
+            node.mLeft = mSplitRight;
+            mSplitRight = update(node);
+        } else {
+            split(node.mRight, count - size(node.mLeft) - 1);
+            node.mRight = mSplitLeft;
+            mSplitLeft = update(node);
+        }
+        setRoot(mSplitLeft);
+        setRoot(mSplitRight);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.mPriority > right.mPriority) {
+            left.mRight = merge(left.mRight, right);
+            return update(left);
+        } else {
+            right.mLeft = merge(left, right.mLeft);
+            return update(right);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.base;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * List of {@link Card} which materializes its cards on demand.
+ * </p>
+ * The adapters use {@link #peek(int)} for the operations which must not load the whole list
+ * (id index, lookups) and they listen the loaded ranges to refresh the rows.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public interface LazyCardList {
+
+    /**
+     * Returns the card at the given position only if it is already materialized.
+     * It never triggers a load.
+     *
+     * @param position position
+     * @return card or <code>null</code>
+     */
+    Card peek(int position);
+
+    /**
+     * Returns the id of the card at the given position without materializing the card.
+     *
+     * @param position position
+     * @return id or <code>null</code> if it is not known
+     */
+    String getCardId(int position);
+
+    /**
+     * Sets the listener notified when a range of cards is materialized
+     *
+     * @param listener listener
+     */
+    void setOnRangeLoadedListener(OnRangeLoadedListener listener);
+
+    /**
+     * Indicates if the cards can't be removed, inserted or moved.
+     * The adapters don't allow the swipe on a read-only list.
+     *
+     * @return <code>true</code> if the list is read-only
+     */
+    boolean isReadOnly();
+
+    /**
+     * Interface to listen the materialized ranges
+     */
+    public interface OnRangeLoadedListener {
+        void onRangeLoaded(int positionStart, int itemCount);
+
+        /**
+         * Called before a range of cards is dropped, while their ids can still be read
+         */
+        void onRangeEvicted(int positionStart, int itemCount);
+    }
+}
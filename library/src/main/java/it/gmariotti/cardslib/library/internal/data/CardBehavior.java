@@ -0,0 +1,161 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * Behavior shared by all the cards of the same kind (flyweight).
+ * </p>
+ * A single instance is referenced by many {@link CardData}. It is used directly as listener
+ * by the bound {@link DataCard}s, so no listener is allocated for each card.
+ * It must not hold per-card state.
+ * </p>
+ * Heavy work (formatting, spans, sizes) can be moved off the UI thread with a two-phase bind:
+ * {@link #prepare(CardData)} runs on a worker thread ahead of the scroll position and the returned
+ * {@link PreparedCard} is applied to the {@link it.gmariotti.cardslib.library.view.CardView} on the UI thread.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * static final CardBehavior sMessageBehavior = new CardBehavior() {
+ *
+ *      public void setupInnerViewElements(CardData data, ViewGroup parent, View view) {
+ *          ((TextView) view.findViewById(R.id.message_text)).setText(data.getText());
+ *      }
+ *
+ *      public void onCardClick(CardData data, View view) {
+ *          openMessage(data.getId());
+ *      }
+ * };
+ * </code></pre>
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardBehavior implements Card.OnCardClickListener, Card.OnLongCardClickListener,
+        Card.OnSwipeListener, Card.OnUndoSwipeListListener {
+
+    /**
+     * Default behavior: it sets the title in the base inner layout
+     */
+    public static final CardBehavior DEFAULT = new CardBehavior();
+
+    // -------------------------------------------------------------
+    // Views
+    // -------------------------------------------------------------
+
+    /**
+     * Sets the values of the inner view.
+     * The default implementation sets the title in the base inner layout.
+     *
+     * @param data   card data
+     * @param parent parent view (Inner Frame)
+     * @param view   Inner View
+     */
+    public void setupInnerViewElements(CardData data, ViewGroup parent, View view) {
+        if (view != null) {
+            TextView mTitleView = (TextView) view.findViewById(R.id.card_main_inner_simple_title);
+            if (mTitleView != null)
+                mTitleView.setText(data.getTitle());
+        }
+    }
+
+    /**
+     * Indicates if this behavior prepares the cards on a worker thread.
+     * Override it and return <code>true</code> when you override {@link #prepare(CardData)}.
+     *
+     * @return <code>true</code> if {@link #prepare(CardData)} has to be called
+     */
+    public boolean hasPrepare() {
+        return false;
+    }
+
+    /**
+     * Computes the values of a card on a worker thread.
+     * It must not access views or other UI objects.
+     *
+     * @param data card data
+     * @return prepared values, applied on the UI thread when the card is bound
+     */
+    public PreparedCard prepare(CardData data) {
+        return null;
+    }
+
+    // -------------------------------------------------------------
+    // Callbacks
+    // -------------------------------------------------------------
+
+    /**
+     * Called when a card with {@link CardData#FLAG_CLICKABLE} is clicked
+     */
+    public void onCardClick(CardData data, View view) {
+    }
+
+    /**
+     * Called when a card with {@link CardData#FLAG_LONG_CLICKABLE} is long clicked
+     */
+    public boolean onCardLongClick(CardData data, View view) {
+        return false;
+    }
+
+    /**
+     * Called when a card with {@link CardData#FLAG_SWIPEABLE} is swiped
+     */
+    public void onCardSwipe(CardData data) {
+    }
+
+    /**
+     * Called when the swipe of a card is restored (or confirmed, when timeout is true)
+     */
+    public void onCardUndoSwipe(CardData data, boolean timeout) {
+    }
+
+    // -------------------------------------------------------------
+    // Card listeners
+    // -------------------------------------------------------------
+
+    @Override
+    public final void onClick(Card card, View view) {
+        if (card instanceof DataCard)
+            onCardClick(((DataCard) card).getData(), view);
+    }
+
+    @Override
+    public final boolean onLongClick(Card card, View view) {
+        if (card instanceof DataCard)
+            return onCardLongClick(((DataCard) card).getData(), view);
+        return false;
+    }
+
+    @Override
+    public final void onSwipe(Card card) {
+        if (card instanceof DataCard)
+            onCardSwipe(((DataCard) card).getData());
+    }
+
+    @Override
+    public final void onUndoSwipe(Card card, boolean timeout) {
+        if (card instanceof DataCard)
+            onCardUndoSwipe(((DataCard) card).getData(), timeout);
+    }
+}
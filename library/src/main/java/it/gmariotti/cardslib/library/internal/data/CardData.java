@@ -0,0 +1,274 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import it.gmariotti.cardslib.library.R;
+
+/**
+ * Immutable data of a card.
+ * </p>
+ * It doesn't hold a Context or any view, so it can be built on a worker thread and it can be
+ * kept for a lot of items. The behavior (click, swipe, inner view setup) is provided by a
+ * {@link CardBehavior} shared by all cards of the same kind.
+ * The data is bound to a {@link DataCard} only when the card is displayed.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * CardData data = new CardData.Builder("id_42")
+ *          .setTitle("Title")
+ *          .setThumbnailUrl(url)
+ *          .setBehavior(sMessageBehavior)
+ *          .setSwipeable(true)
+ *          .build();
+ * </code></pre>
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class CardData {
+
+    /**
+     * Flags
+     */
+    public static final int FLAG_CLICKABLE = 1;
+    public static final int FLAG_LONG_CLICKABLE = 1 << 1;
+    public static final int FLAG_SWIPEABLE = 1 << 2;
+    public static final int FLAG_SHADOW = 1 << 3;
+
+    private final String mId;
+    private final String mTitle;
+    private final CharSequence mText;
+    private final String mThumbnailUrl;
+    private final int mThumbnailResourceId;
+    private final int mInnerLayout;
+    private final int mType;
+    private final int mFlags;
+    private final CardBehavior mBehavior;
+    private final Object mPayload;
+
+    /**
+     * Hash of the content, computed when it is requested
+     */
+    private int mContentHash;
+
+    private CardData(Builder builder) {
+        mId = builder.mId;
+        mTitle = builder.mTitle;
+        mText = builder.mText;
+        mThumbnailUrl = builder.mThumbnailUrl;
+        mThumbnailResourceId = builder.mThumbnailResourceId;
+        mInnerLayout = builder.mInnerLayout;
+        mType = builder.mType;
+        mFlags = builder.mFlags;
+        mBehavior = builder.mBehavior;
+        mPayload = builder.mPayload;
+    }
+
+    // -------------------------------------------------------------
+    // Builder
+    // -------------------------------------------------------------
+
+    /**
+     * Builder for {@link CardData}
+     */
+    public static class Builder {
+
+        private String mId;
+        private String mTitle;
+        private CharSequence mText;
+        private String mThumbnailUrl;
+        private int mThumbnailResourceId;
+        private int mInnerLayout = R.layout.inner_base_main;
+        private int mType;
+        private int mFlags = FLAG_SHADOW;
+        private CardBehavior mBehavior;
+        private Object mPayload;
+
+        public Builder(String id) {
+            mId = id;
+        }
+
+        /**
+         * Creates a builder with the values of a card data
+         *
+         * @param data card data to copy
+         */
+        public Builder(CardData data) {
+            mId = data.mId;
+            mTitle = data.mTitle;
+            mText = data.mText;
+            mThumbnailUrl = data.mThumbnailUrl;
+            mThumbnailResourceId = data.mThumbnailResourceId;
+            mInnerLayout = data.mInnerLayout;
+            mType = data.mType;
+            mFlags = data.mFlags;
+            mBehavior = data.mBehavior;
+            mPayload = data.mPayload;
+        }
+
+        public Builder setTitle(String title) {
+            mTitle = title;
+            return this;
+        }
+
+        public Builder setText(CharSequence text) {
+            mText = text;
+            return this;
+        }
+
+        public Builder setThumbnailUrl(String thumbnailUrl) {
+            mThumbnailUrl = thumbnailUrl;
+            return this;
+        }
+
+        public Builder setThumbnailResourceId(int thumbnailResourceId) {
+            mThumbnailResourceId = thumbnailResourceId;
+            return this;
+        }
+
+        public Builder setInnerLayout(int innerLayout) {
+            mInnerLayout = innerLayout;
+            return this;
+        }
+
+        public Builder setType(int type) {
+            mType = type;
+            return this;
+        }
+
+        public Builder setBehavior(CardBehavior behavior) {
+            mBehavior = behavior;
+            return this;
+        }
+
+        /**
+         * Sets an immutable object with the additional values used by the behavior
+         */
+        public Builder setPayload(Object payload) {
+            mPayload = payload;
+            return this;
+        }
+
+        public Builder setClickable(boolean clickable) {
+            return setFlag(FLAG_CLICKABLE, clickable);
+        }
+
+        public Builder setLongClickable(boolean longClickable) {
+            return setFlag(FLAG_LONG_CLICKABLE, longClickable);
+        }
+
+        public Builder setSwipeable(boolean swipeable) {
+            return setFlag(FLAG_SWIPEABLE, swipeable);
+        }
+
+        public Builder setShadow(boolean shadow) {
+            return setFlag(FLAG_SHADOW, shadow);
+        }
+
+        protected Builder setFlag(int flag, boolean value) {
+            if (value)
+                mFlags |= flag;
+            else
+                mFlags &= ~flag;
+            return this;
+        }
+
+        public CardData build() {
+            return new CardData(this);
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters
+    // -------------------------------------------------------------
+
+    public String getId() {
+        return mId;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
+
+    public int getThumbnailResourceId() {
+        return mThumbnailResourceId;
+    }
+
+    /**
+     * @return <code>true</code> if the card has a thumbnail
+     */
+    public boolean hasThumbnail() {
+        return mThumbnailUrl != null || mThumbnailResourceId > 0;
+    }
+
+    public int getInnerLayout() {
+        return mInnerLayout;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (mFlags & flag) != 0;
+    }
+
+    public CardBehavior getBehavior() {
+        return mBehavior;
+    }
+
+    public Object getPayload() {
+        return mPayload;
+    }
+
+    /**
+     * Returns a hash of the displayed values (the data is immutable, so it is computed once)
+     *
+     * @return content hash
+     */
+    public int getContentHash() {
+        int hash = mContentHash;
+        if (hash == 0) {
+            hash = 17;
+            hash = 31 * hash + (mId != null ? mId.hashCode() : 0);
+            hash = 31 * hash + (mTitle != null ? mTitle.hashCode() : 0);
+            hash = 31 * hash + (mText != null ? mText.toString().hashCode() : 0);
+            hash = 31 * hash + (mThumbnailUrl != null ? mThumbnailUrl.hashCode() : 0);
+            hash = 31 * hash + mThumbnailResourceId;
+            hash = 31 * hash + mInnerLayout;
+            hash = 31 * hash + mType;
+            hash = 31 * hash + mFlags;
+            hash = 31 * hash + (mPayload != null ? mPayload.hashCode() : 0);
+            if (hash == 0) hash = 1;
+            mContentHash = hash;
+        }
+        return hash;
+    }
+}
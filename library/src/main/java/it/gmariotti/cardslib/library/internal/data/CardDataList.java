@@ -0,0 +1,250 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.LazyCardList;
+
+/**
+ * List of {@link Card} backed by a list of immutable {@link CardData}.
+ * </p>
+ * A {@link DataCard} is created only when a position is requested by the adapter, and only
+ * a window of the most recently used cards is retained. The list holds just the data for all
+ * the other positions.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * //It can run on a worker thread
+ * List<CardData> data = new ArrayList<CardData>();
+ * for (Message message : messages)
+ *      data.add(new CardData.Builder(message.id).setTitle(message.title).setBehavior(sBehavior).build());
+ *
+ * //UI thread
+ * CardDataList cards = new CardDataList(getActivity(), data);
+ * CardArrayAdapter adapter = new CardArrayAdapter(getActivity(), cards);
+ * </code></pre>
+ * The list accepts only {@link DataCard}s (see {@link #createCard(CardData)}).
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardDataList extends AbstractList<Card> implements LazyCardList {
+
+    /**
+     * Default number of materialized cards retained
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64;
+
+    protected final Context mContext;
+    protected final List<CardData> mData;
+
+    /**
+     * Materialized cards (data -> card)
+     */
+    protected final LruCache<CardData, DataCard> mWindow;
+
+    protected OnRangeLoadedListener mOnRangeLoadedListener;
+
+    /**
+     * Scheduler which prepares the cards ahead of the accessed position
+     */
+    protected CardPrepareScheduler mPrepareScheduler = new CardPrepareScheduler();
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param context context
+     * @param data    card data
+     */
+    public CardDataList(Context context, List<CardData> data) {
+        this(context, data, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param context    context
+     * @param data       card data
+     * @param windowSize number of materialized cards retained.
+     *                   It should be greater than the number of visible cards.
+     */
+    public CardDataList(Context context, List<CardData> data, int windowSize) {
+        mContext = context;
+        mData = data != null ? data : new ArrayList<CardData>();
+        mWindow = new LruCache<CardData, DataCard>(Math.max(1, windowSize));
+    }
+
+    // -------------------------------------------------------------
+    // List
+    // -------------------------------------------------------------
+
+    @Override
+    public int size() {
+        return mData.size();
+    }
+
+    /**
+     * Returns the card at the given position, creating it if it is not materialized
+     */
+    @Override
+    public Card get(int position) {
+        CardData data = mData.get(position);
+        DataCard card = mWindow.get(data);
+        if (card == null) {
+            card = createCard(data);
+            mWindow.put(data, card);
+        }
+        if (mPrepareScheduler != null)
+            mPrepareScheduler.scheduleAhead(mData, position);
+        return card;
+    }
+
+    @Override
+    public Card peek(int position) {
+        if (position < 0 || position >= mData.size()) return null;
+        return mWindow.get(mData.get(position));
+    }
+
+    @Override
+    public String getCardId(int position) {
+        if (position < 0 || position >= mData.size()) return null;
+        return mData.get(position).getId();
+    }
+
+    /**
+     * Searches the data, without materializing the cards
+     */
+    @Override
+    public int indexOf(Object object) {
+        if (!(object instanceof DataCard)) return -1;
+        return mData.indexOf(((DataCard) object).getData());
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object) >= 0;
+    }
+
+    @Override
+    public Card set(int position, Card card) {
+        CardData old = mData.set(position, toData(card));
+        return removeFromWindow(old);
+    }
+
+    @Override
+    public void add(int position, Card card) {
+        mData.add(position, toData(card));
+    }
+
+    @Override
+    public Card remove(int position) {
+        return removeFromWindow(mData.remove(position));
+    }
+
+    @Override
+    public void clear() {
+        mData.clear();
+        mWindow.evictAll();
+        if (mPrepareScheduler != null)
+            mPrepareScheduler.clear();
+    }
+
+    @Override
+    public void setOnRangeLoadedListener(OnRangeLoadedListener listener) {
+        mOnRangeLoadedListener = listener;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    // -------------------------------------------------------------
+    // Data
+    // -------------------------------------------------------------
+
+    /**
+     * Creates the card bound to the data.
+     * Override this method to use your {@link DataCard} subclass.
+     *
+     * @param data card data
+     * @return card
+     */
+    public DataCard createCard(CardData data) {
+        DataCard card = new DataCard(mContext, data);
+        card.setPrepareScheduler(mPrepareScheduler);
+        return card;
+    }
+
+    /**
+     * Returns the data at the given position, without materializing the card
+     *
+     * @param position position
+     * @return data
+     */
+    public CardData getData(int position) {
+        return mData.get(position);
+    }
+
+    public CardPrepareScheduler getPrepareScheduler() {
+        return mPrepareScheduler;
+    }
+
+    /**
+     * Sets the scheduler used to prepare the cards on a worker thread.
+     * Use <code>null</code> to disable the two-phase bind.
+     *
+     * @param prepareScheduler scheduler
+     */
+    public void setPrepareScheduler(CardPrepareScheduler prepareScheduler) {
+        mPrepareScheduler = prepareScheduler;
+        mWindow.evictAll();
+    }
+
+    /**
+     * @return the backing list of data
+     */
+    public List<CardData> getDataList() {
+        return mData;
+    }
+
+    protected CardData toData(Card card) {
+        if (!(card instanceof DataCard))
+            throw new IllegalArgumentException("CardDataList accepts only DataCard");
+        DataCard dataCard = (DataCard) card;
+        mWindow.put(dataCard.getData(), dataCard);
+        return dataCard.getData();
+    }
+
+    protected Card removeFromWindow(CardData data) {
+        if (data == null) return null;
+        DataCard card = mWindow.remove(data);
+        return card != null ? card : createCard(data);
+    }
+}
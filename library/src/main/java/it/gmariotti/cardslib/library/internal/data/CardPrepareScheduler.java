@@ -0,0 +1,293 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import it.gmariotti.cardslib.library.view.CardView;
+
+/**
+ * Runs {@link CardBehavior#prepare(CardData)} on a worker thread and applies the results
+ * to the bound {@link DataCard}s on the UI thread.
+ * </p>
+ * The {@link CardDataList} schedules the cards ahead of the scroll direction, so the prepared
+ * values are usually ready when the card is bound. A card which is bound before its values
+ * are ready is moved in front of the queue and the values are applied when they are delivered.
+ * </p>
+ * All methods must be called on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardPrepareScheduler {
+
+    protected static String TAG = "CardPrepareScheduler";
+
+    /**
+     * Default number of cards prepared ahead of the scroll position
+     */
+    public static final int DEFAULT_LOOKAHEAD = 8;
+
+    /**
+     * Default number of prepared results retained
+     */
+    public static final int DEFAULT_CACHE_SIZE = 128;
+
+    /**
+     * Shared executor
+     */
+    private static ExecutorService sExecutor;
+
+    protected final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Prepared results (UI thread)
+     */
+    protected final LruCache<CardData, PreparedCard> mPrepared;
+
+    /**
+     * Scheduled data (UI thread)
+     */
+    protected final HashSet<CardData> mScheduled = new HashSet<CardData>();
+
+    /**
+     * Cards bound before their results were ready (UI thread)
+     */
+    protected final HashMap<CardData, DataCard> mWaitingCards = new HashMap<CardData, DataCard>();
+
+    /**
+     * Work queue shared with the worker thread. Bound cards are added in front.
+     */
+    protected final LinkedList<CardData> mQueue = new LinkedList<CardData>();
+
+    protected int mLookahead = DEFAULT_LOOKAHEAD;
+    protected Executor mExecutor;
+
+    protected int mLastPosition = -1;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    public CardPrepareScheduler() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param cacheSize number of prepared results retained
+     */
+    public CardPrepareScheduler(int cacheSize) {
+        mPrepared = new LruCache<CardData, PreparedCard>(Math.max(1, cacheSize));
+    }
+
+    // -------------------------------------------------------------
+    // Schedule
+    // -------------------------------------------------------------
+
+    /**
+     * Schedules the cards after (or before, scrolling up) the accessed position
+     *
+     * @param data     list of data
+     * @param position accessed position
+     */
+    public void scheduleAhead(List<CardData> data, int position) {
+        int direction = position >= mLastPosition ? 1 : -1;
+        mLastPosition = position;
+
+        for (int i = 1; i <= mLookahead; i++) {
+            int next = position + i * direction;
+            if (next < 0 || next >= data.size()) break;
+            schedule(data.get(next), false);
+        }
+    }
+
+    /**
+     * Applies the prepared values to a bound card.
+     * If they are not ready, the card is prepared with priority and they are applied later.
+     *
+     * @param card bound card
+     */
+    public void requestApply(DataCard card) {
+        CardData data = card.getData();
+        PreparedCard prepared = mPrepared.get(data);
+        if (prepared != null) {
+            apply(card, prepared);
+            return;
+        }
+        //Waits only for a prepare which is really scheduled
+        schedule(data, true);
+        if (mScheduled.contains(data))
+            mWaitingCards.put(data, card);
+    }
+
+    /**
+     * Returns the prepared values, if they are ready
+     *
+     * @param data card data
+     * @return prepared values or <code>null</code>
+     */
+    public PreparedCard getPrepared(CardData data) {
+        return mPrepared.get(data);
+    }
+
+    /**
+     * Drops the scheduled work and the prepared values
+     */
+    public void clear() {
+        synchronized (mQueue) {
+            mQueue.clear();
+        }
+        mScheduled.clear();
+        mWaitingCards.clear();
+        mPrepared.evictAll();
+    }
+
+    protected void schedule(CardData data, boolean urgent) {
+        if (data == null || data.getBehavior() == null || !data.getBehavior().hasPrepare())
+            return;
+        if (mPrepared.get(data) != null)
+            return;
+
+        if (mScheduled.contains(data)) {
+            if (urgent) {
+                //Move it in front of the queue
+                synchronized (mQueue) {
+                    if (mQueue.remove(data))
+                        mQueue.addFirst(data);
+                }
+            }
+            return;
+        }
+
+        mScheduled.add(data);
+        synchronized (mQueue) {
+            if (urgent)
+                mQueue.addFirst(data);
+            else
+                mQueue.addLast(data);
+        }
+
+        try {
+            getExecutor().execute(mWorker);
+        } catch (RejectedExecutionException e) {
+            mScheduled.remove(data);
+            Log.w(TAG, "Prepare rejected by the executor", e);
+        }
+    }
+
+    /**
+     * Prepares the first queued data. It is submitted once for each queued data.
+     */
+    protected final Runnable mWorker = new Runnable() {
+        @Override
+        public void run() {
+            final CardData data;
+            synchronized (mQueue) {
+                data = mQueue.poll();
+            }
+            if (data == null) return;
+
+            PreparedCard prepared = null;
+            try {
+                prepared = data.getBehavior().prepare(data);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Error while preparing the card " + data.getId(), e);
+            }
+
+            final PreparedCard result = prepared;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onPrepared(data, result);
+                }
+            });
+        }
+    };
+
+    /**
+     * Delivers a result (UI thread)
+     */
+    protected void onPrepared(CardData data, PreparedCard prepared) {
+        //The waiting card is released also when the prepare failed
+        boolean scheduled = mScheduled.remove(data);
+        DataCard card = mWaitingCards.remove(data);
+        if (!scheduled || prepared == null) return; //cleared, or failed
+
+        mPrepared.put(data, prepared);
+        if (card != null)
+            apply(card, prepared);
+    }
+
+    /**
+     * Applies the values only if the card is still bound to its view
+     */
+    protected void apply(DataCard card, PreparedCard prepared) {
+        CardView cardView = card.getCardView();
+        if (cardView != null && cardView.getCard() == card)
+            prepared.apply(cardView);
+    }
+
+    protected Executor getExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+        if (sExecutor == null)
+            sExecutor = Executors.newSingleThreadExecutor();
+        return sExecutor;
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    public int getLookahead() {
+        return mLookahead;
+    }
+
+    /**
+     * Sets the number of cards prepared ahead of the scroll position
+     *
+     * @param lookahead number of cards
+     */
+    public void setLookahead(int lookahead) {
+        mLookahead = Math.max(0, lookahead);
+    }
+
+    /**
+     * Sets the executor used to prepare the cards.
+     * By default a single worker thread shared by all schedulers is used.
+     *
+     * @param executor executor
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+}
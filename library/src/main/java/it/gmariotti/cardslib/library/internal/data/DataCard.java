@@ -0,0 +1,136 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardThumbnail;
+
+/**
+ * {@link Card} bound to an immutable {@link CardData}.
+ * </p>
+ * It is created only for the displayed positions (see {@link CardDataList}) and it uses the shared
+ * {@link CardBehavior} of its data as listener.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class DataCard extends Card {
+
+    protected CardData mData;
+
+    /**
+     * Scheduler which provides the prepared values
+     */
+    protected CardPrepareScheduler mPrepareScheduler;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param context context
+     * @param data    card data
+     */
+    public DataCard(Context context, CardData data) {
+        super(context, data.getInnerLayout());
+        bind(data);
+    }
+
+    // -------------------------------------------------------------
+    // Bind
+    // -------------------------------------------------------------
+
+    /**
+     * Copies the values of the data in the card
+     *
+     * @param data card data
+     */
+    protected void bind(CardData data) {
+        mData = data;
+        mId = data.getId();
+        mTitle = data.getTitle();
+        mInnerLayout = data.getInnerLayout();
+        type = data.getType();
+        mShadow = data.hasFlag(CardData.FLAG_SHADOW);
+
+        CardBehavior behavior = getBehavior();
+        setOnClickListener(data.hasFlag(CardData.FLAG_CLICKABLE) ? behavior : null);
+        setOnLongClickListener(data.hasFlag(CardData.FLAG_LONG_CLICKABLE) ? behavior : null);
+        setOnSwipeListener(data.hasFlag(CardData.FLAG_SWIPEABLE) ? behavior : null);
+        setOnUndoSwipeListListener(behavior);
+
+        if (data.hasThumbnail()) {
+            CardThumbnail thumbnail = new CardThumbnail(mContext);
+            if (data.getThumbnailUrl() != null)
+                thumbnail.setUrlResource(data.getThumbnailUrl());
+            else
+                thumbnail.setDrawableResource(data.getThumbnailResourceId());
+            addCardThumbnail(thumbnail);
+        }
+    }
+
+    @Override
+    public void setupInnerViewElements(ViewGroup parent, View view) {
+        CardBehavior behavior = getBehavior();
+        behavior.setupInnerViewElements(mData, parent, view);
+
+        //Apply the values prepared on the worker thread
+        if (mPrepareScheduler != null && behavior.hasPrepare())
+            mPrepareScheduler.requestApply(this);
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * @return the bound data
+     */
+    public CardData getData() {
+        return mData;
+    }
+
+    /**
+     * The data is immutable: the hash depends on the data and on the expanded state
+     */
+    @Override
+    public int getContentHash() {
+        return 31 * mData.getContentHash() + (isExpanded() ? 1 : 0);
+    }
+
+    public CardPrepareScheduler getPrepareScheduler() {
+        return mPrepareScheduler;
+    }
+
+    public void setPrepareScheduler(CardPrepareScheduler prepareScheduler) {
+        mPrepareScheduler = prepareScheduler;
+    }
+
+    /**
+     * @return the behavior of the data, or {@link CardBehavior#DEFAULT}
+     */
+    public CardBehavior getBehavior() {
+        return mData.getBehavior() != null ? mData.getBehavior() : CardBehavior.DEFAULT;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.data;
+
+import it.gmariotti.cardslib.library.view.CardView;
+
+/**
+ * Result of {@link CardBehavior#prepare(CardData)}.
+ * </p>
+ * It holds the values computed on a worker thread (formatted strings, spans, sizes...).
+ * {@link #apply(CardView)} runs on the UI thread and it should only set these values in the views.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public interface PreparedCard {
+
+    /**
+     * Sets the prepared values in the card view (UI thread)
+     *
+     * @param cardView card view bound to the card
+     */
+    void apply(CardView cardView);
+}
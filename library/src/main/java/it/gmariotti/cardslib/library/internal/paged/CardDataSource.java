@@ -0,0 +1,97 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.paged;
+
+import android.content.Context;
+
+import java.util.List;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * Backing store of a {@link PagedCardList}.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * public class ArchiveDataSource extends CardDataSource<Message> {
+ *
+ *      public int getCount() {
+ *          return mDatabase.countMessages();
+ *      }
+ *
+ *      public List<Message> loadRange(int startPosition, int count) {
+ *          return mDatabase.queryMessages(startPosition, count);
+ *      }
+ *
+ *      public Card createCard(Context context, Message message) {
+ *          MessageCard card = new MessageCard(context, message);
+ *          card.setId(message.getId());
+ *          return card;
+ *      }
+ * }
+ * </code></pre>
+ *
+ * @param <T> type of the items loaded from the store
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public abstract class CardDataSource<T> {
+
+    /**
+     * Returns the total number of items.
+     * It is called on the UI thread, so it should be cheap.
+     *
+     * @return number of items
+     */
+    public abstract int getCount();
+
+    /**
+     * Loads a range of items.
+     * It is called on a worker thread.
+     *
+     * @param startPosition position of the first item
+     * @param count         number of items
+     * @return items (it can contain fewer items at the end of the store)
+     */
+    public abstract List<T> loadRange(int startPosition, int count);
+
+    /**
+     * Creates the card for an item.
+     * It is called on the UI thread when a page is delivered.
+     *
+     * @param context context
+     * @param item    item
+     * @return card
+     */
+    public abstract Card createCard(Context context, T item);
+
+    /**
+     * Creates the placeholder shown for the positions which are not loaded.
+     * A single placeholder is shared by all these positions.
+     *
+     * @param context context
+     * @return placeholder card
+     */
+    public Card createPlaceholder(Context context) {
+        Card card = new Card(context);
+        card.setSwipeable(false);
+        card.setClickable(false);
+        card.setLongClickable(false);
+        return card;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.internal.paged;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.LazyCardList;
+
+/**
+ * Read-only list of {@link Card} which loads its cards by pages from a {@link CardDataSource}.
+ * The adapters don't allow the swipe of its cards (see {@link #isReadOnly()}).
+ * </p>
+ * Positions which are not loaded return a shared placeholder card and schedule the load of their
+ * page on a worker thread. When a page is delivered the cards are created on the UI thread and
+ * the adapter refreshes the range. Pages far from the last accessed page are evicted, so only
+ * about <code>(2 * retainDistance + 1) * pageSize</code> cards are alive.
+ * </p>
+ * It can be used with all card adapters:
+ * <pre><code>
+ * PagedCardList<Message> cards = new PagedCardList<Message>(getActivity(), new ArchiveDataSource());
+ * CardArrayAdapter adapter = new CardArrayAdapter(getActivity(), cards);
+ * listView.setAdapter(adapter);
+ * </code></pre>
+ * The list must be accessed from the UI thread.
+ *
+ * @param <T> type of the items loaded from the store
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class PagedCardList<T> extends AbstractList<Card> implements LazyCardList {
+
+    protected static String TAG = "PagedCardList";
+
+    /**
+     * Default number of cards in a page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Default number of pages retained around the last accessed page
+     */
+    public static final int DEFAULT_RETAIN_DISTANCE = 2;
+
+    /**
+     * Shared executor used to load the pages
+     */
+    private static ExecutorService sExecutor;
+
+    protected final Context mContext;
+    protected final CardDataSource<T> mDataSource;
+    protected final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    protected int mPageSize = DEFAULT_PAGE_SIZE;
+    protected int mRetainDistance = DEFAULT_RETAIN_DISTANCE;
+    protected Executor mExecutor;
+
+    /**
+     * Loaded pages (page index -> cards)
+     */
+    protected final SparseArray<Card[]> mPages = new SparseArray<Card[]>();
+
+    /**
+     * Pages which are loading
+     */
+    protected final SparseArray<Boolean> mLoadingPages = new SparseArray<Boolean>();
+
+    protected int mCount;
+    protected int mLastAccessedPage = 0;
+
+    /**
+     * Incremented by {@link #refresh()} to discard the pages loaded before
+     */
+    protected int mGeneration = 0;
+
+    protected Card mPlaceholder;
+
+    protected OnRangeLoadedListener mOnRangeLoadedListener;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param context    context
+     * @param dataSource backing store
+     */
+    public PagedCardList(Context context, CardDataSource<T> dataSource) {
+        this(context, dataSource, DEFAULT_PAGE_SIZE, DEFAULT_RETAIN_DISTANCE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param context        context
+     * @param dataSource     backing store
+     * @param pageSize       number of cards in a page
+     * @param retainDistance number of pages retained before and after the last accessed page
+     */
+    public PagedCardList(Context context, CardDataSource<T> dataSource, int pageSize, int retainDistance) {
+        mContext = context;
+        mDataSource = dataSource;
+        mPageSize = Math.max(1, pageSize);
+        mRetainDistance = Math.max(1, retainDistance);
+        mCount = dataSource.getCount();
+    }
+
+    // -------------------------------------------------------------
+    // List
+    // -------------------------------------------------------------
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the card at the given position.
+     * If its page is not loaded, it returns the placeholder and it schedules the load.
+     */
+    @Override
+    public Card get(int position) {
+        if (position < 0 || position >= mCount)
+            throw new IndexOutOfBoundsException("Invalid position " + position + ", size is " + mCount);
+
+        int page = position / mPageSize;
+        onPageAccessed(page);
+
+        Card[] cards = mPages.get(page);
+        if (cards != null) {
+            Card card = cards[position - page * mPageSize];
+            if (card != null)
+                return card;
+        }
+        return getPlaceholder();
+    }
+
+    @Override
+    public Card peek(int position) {
+        if (position < 0 || position >= mCount) return null;
+        int page = position / mPageSize;
+        Card[] cards = mPages.get(page);
+        return cards != null ? cards[position - page * mPageSize] : null;
+    }
+
+    @Override
+    public String getCardId(int position) {
+        Card card = peek(position);
+        return card != null ? card.getId() : null;
+    }
+
+    /**
+     * Searches only the loaded pages
+     */
+    @Override
+    public int indexOf(Object object) {
+        for (int i = 0; i < mPages.size(); i++) {
+            Card[] cards = mPages.valueAt(i);
+            for (int j = 0; j < cards.length; j++) {
+                if (cards[j] != null && cards[j].equals(object))
+                    return mPages.keyAt(i) * mPageSize + j;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object) >= 0;
+    }
+
+    @Override
+    public void setOnRangeLoadedListener(OnRangeLoadedListener listener) {
+        mOnRangeLoadedListener = listener;
+    }
+
+    /**
+     * The cards come from the data source: they can't be removed, inserted or moved
+     */
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    // -------------------------------------------------------------
+    // Pages
+    // -------------------------------------------------------------
+
+    /**
+     * Loads the accessed page and its neighbours, then evicts the far pages
+     */
+    protected void onPageAccessed(int page) {
+        if (page == mLastAccessedPage && mPages.get(page) != null) return;
+
+        mLastAccessedPage = page;
+        loadPage(page);
+        loadPage(page + 1);
+        if (page > 0)
+            loadPage(page - 1);
+        evictPages();
+    }
+
+    protected void loadPage(final int page) {
+        final int start = page * mPageSize;
+        if (start >= mCount || mPages.get(page) != null || mLoadingPages.get(page) != null)
+            return;
+
+        mLoadingPages.put(page, Boolean.TRUE);
+        final int generation = mGeneration;
+        final int count = Math.min(mPageSize, mCount - start);
+
+        try {
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<T> items = null;
+                    try {
+                        items = mDataSource.loadRange(start, count);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Error while loading the page " + page, e);
+                    }
+                    final List<T> result = items;
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPageLoaded(generation, page, result);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mLoadingPages.remove(page);
+            Log.w(TAG, "Page " + page + " rejected by the executor", e);
+        }
+    }
+
+    /**
+     * Creates the cards of a loaded page (UI thread)
+     */
+    protected void onPageLoaded(int generation, int page, List<T> items) {
+        if (generation != mGeneration) return;
+        mLoadingPages.remove(page);
+        if (items == null) return;
+
+        //The page can be too far after a fast scroll
+        if (Math.abs(page - mLastAccessedPage) > mRetainDistance) return;
+
+        int start = page * mPageSize;
+        int count = Math.min(items.size(), Math.min(mPageSize, mCount - start));
+        if (count <= 0) return;
+
+        Card[] cards = new Card[mPageSize];
+        for (int i = 0; i < count; i++) {
+            cards[i] = mDataSource.createCard(mContext, items.get(i));
+        }
+        mPages.put(page, cards);
+
+        if (mOnRangeLoadedListener != null)
+            mOnRangeLoadedListener.onRangeLoaded(start, count);
+    }
+
+    /**
+     * Drops the pages far from the last accessed page.
+     * The listener is notified before, so the adapter can drop the ids of the evicted cards.
+     */
+    protected void evictPages() {
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            int page = mPages.keyAt(i);
+            if (Math.abs(page - mLastAccessedPage) > mRetainDistance) {
+                int start = page * mPageSize;
+                if (mOnRangeLoadedListener != null && start < mCount)
+                    mOnRangeLoadedListener.onRangeEvicted(start, Math.min(mPageSize, mCount - start));
+                mPages.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * Reloads the count from the data source and drops all pages.
+     * The adapter must be notified with notifyDataSetChanged().
+     */
+    public void refresh() {
+        mGeneration++;
+        mPages.clear();
+        mLoadingPages.clear();
+        mCount = mDataSource.getCount();
+    }
+
+    /**
+     * Indicates if the page which contains the position is loaded
+     *
+     * @param position position
+     * @return <code>true</code> if the card at this position is not a placeholder
+     */
+    public boolean isLoaded(int position) {
+        return peek(position) != null;
+    }
+
+    /**
+     * Indicates if a card is the placeholder of this list
+     *
+     * @param card card
+     * @return <code>true</code> if it is the placeholder
+     */
+    public boolean isPlaceholder(Card card) {
+        return card != null && card == mPlaceholder;
+    }
+
+    protected Card getPlaceholder() {
+        if (mPlaceholder == null)
+            mPlaceholder = mDataSource.createPlaceholder(mContext);
+        return mPlaceholder;
+    }
+
+    protected Executor getExecutor() {
+        if (mExecutor != null)
+            return mExecutor;
+        if (sExecutor == null)
+            sExecutor = Executors.newSingleThreadExecutor();
+        return sExecutor;
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    public CardDataSource<T> getDataSource() {
+        return mDataSource;
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getRetainDistance() {
+        return mRetainDistance;
+    }
+
+    /**
+     * Sets the executor used to load the pages.
+     * By default a single worker thread shared by all lists is used.
+     *
+     * @param executor executor
+     */
+    public void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * @return number of loaded pages
+     */
+    public int getLoadedPageCount() {
+        return mPages.size();
+    }
+}
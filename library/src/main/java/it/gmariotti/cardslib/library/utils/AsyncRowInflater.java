@@ -0,0 +1,358 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import android.util.Xml;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import it.gmariotti.cardslib.library.view.BaseCardView;
+
+/**
+ * Inflates the rows of the card adapters on a background thread and keeps them in a pool of ready rows.
+ * It is disabled by default: enable it with
+ * {@link it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter#setAsyncInflationEnabled(boolean)}.
+ * </p>
+ * A row ({@link it.gmariotti.cardslib.library.view.CardView} with its header, thumbnail and inner frame)
+ * needs several nested inflations. The adapter takes a ready row from the pool with {@link #inflate(int, ViewGroup)}
+ * and it inflates synchronously only when the pool is empty. Each taken row is replaced in the background.
+ * </p>
+ * The background thread has no {@link Looper}: a view which creates a {@link Handler} in its constructor
+ * fails to inflate there, and its layout is then always inflated synchronously.
+ * Use it only with row layouts whose views can be built off the UI thread (i.e. without a
+ * {@link android.view.TextureView}, as the video thumbnails).
+ * The background thread never touches the list: the rows are inflated without a parent, and their
+ * LayoutParams are generated by the list on the UI thread when they enter the pool.
+ * </p>
+ * All methods must be called on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class AsyncRowInflater implements CardResourceGovernor.Trimmable, CardMemoryAccountant.Accountable {
+
+    protected static String TAG = "AsyncRowInflater";
+
+    /**
+     * Default number of ready rows for each layout
+     */
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    /**
+     * Shared background thread (without a Looper)
+     */
+    private static ExecutorService sWorker;
+
+    protected final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Inflater used on the UI thread
+     */
+    protected final LayoutInflater mInflater;
+
+    /**
+     * Inflater used only on the background thread
+     */
+    protected final LayoutInflater mWorkerInflater;
+
+    /**
+     * Ready rows (layout -> rows)
+     */
+    protected final SparseArray<LinkedList<View>> mPool = new SparseArray<LinkedList<View>>();
+
+    /**
+     * Rows requested to the background thread (layout -> count)
+     */
+    protected final SparseIntArray mPending = new SparseIntArray();
+
+    /**
+     * Layouts which can't be inflated in the background
+     */
+    protected final SparseBooleanArray mSyncOnly = new SparseBooleanArray();
+
+    /**
+     * Parent used to generate the LayoutParams of the rows
+     */
+    protected WeakReference<ViewGroup> mParent;
+
+    protected int mPoolSize = DEFAULT_POOL_SIZE;
+
+    /**
+     * Incremented by {@link #clear()} to discard the rows requested before
+     */
+    protected int mGeneration = 0;
+
+    protected int mHitCount;
+    protected int mMissCount;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param context context used to inflate the rows
+     */
+    public AsyncRowInflater(Context context) {
+        mInflater = LayoutInflater.from(context);
+        mWorkerInflater = mInflater.cloneInContext(context);
+        CardResourceGovernor.getInstance().register(this);
+        CardMemoryAccountant.getInstance().register(this);
+    }
+
+    // -------------------------------------------------------------
+    // Inflate
+    // -------------------------------------------------------------
+
+    /**
+     * Returns a ready row, or inflates it synchronously if the pool is empty.
+     * In both cases the pool is refilled in the background.
+     *
+     * @param layout row layout
+     * @param parent parent of the row (it is not attached)
+     * @return row
+     */
+    public View inflate(int layout, ViewGroup parent) {
+        setParent(parent);
+
+        View view = poll(layout);
+        if (view != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+            view = mInflater.inflate(layout, parent, false);
+        }
+
+        refill(layout);
+        return view;
+    }
+
+    /**
+     * Fills the pool of a layout in the background, before the first rows are requested
+     *
+     * @param layout row layout
+     * @param parent parent of the rows
+     */
+    public void prefetch(int layout, ViewGroup parent) {
+        setParent(parent);
+        refill(layout);
+    }
+
+    /**
+     * Drops the ready rows and the pending requests
+     */
+    public void clear() {
+        mGeneration++;
+        mPool.clear();
+        mPending.clear();
+    }
+
+    protected View poll(int layout) {
+        LinkedList<View> rows = mPool.get(layout);
+        return rows != null ? rows.poll() : null;
+    }
+
+    protected void refill(int layout) {
+        if (mPoolSize <= 0 || mSyncOnly.get(layout)) return;
+
+        LinkedList<View> rows = mPool.get(layout);
+        int missing = mPoolSize - (rows != null ? rows.size() : 0) - mPending.get(layout);
+        for (int i = 0; i < missing; i++) {
+            request(layout);
+        }
+    }
+
+    protected void request(final int layout) {
+        mPending.put(layout, mPending.get(layout) + 1);
+
+        final int generation = mGeneration;
+
+        getWorker().execute(new Runnable() {
+            @Override
+            public void run() {
+                View view = null;
+                try {
+                    //The list is a live view: it is used only on the UI thread
+                    view = mWorkerInflater.inflate(layout, null, false);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Layout " + layout + " can't be inflated in the background", e);
+                }
+
+                final View result = view;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onInflated(generation, layout, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Adds a row inflated in the background to the pool (UI thread)
+     */
+    protected void onInflated(int generation, int layout, View view) {
+        if (generation != mGeneration) return;
+        mPending.put(layout, Math.max(0, mPending.get(layout) - 1));
+
+        if (view == null) {
+            mSyncOnly.put(layout, true);
+            return;
+        }
+
+        LinkedList<View> rows = mPool.get(layout);
+        if (rows == null) {
+            rows = new LinkedList<View>();
+            mPool.put(layout, rows);
+        }
+        if (rows.size() < mPoolSize) {
+            applyLayoutParams(layout, view);
+            rows.add(view);
+        }
+    }
+
+    /**
+     * Sets the LayoutParams which the parent generates from the root attributes of the layout (UI thread),
+     * as {@link LayoutInflater} does when a row is inflated with its parent
+     */
+    protected void applyLayoutParams(int layout, View view) {
+        ViewGroup parent = mParent != null ? mParent.get() : null;
+        if (parent == null) return;
+
+        XmlResourceParser parser = view.getResources().getLayout(layout);
+        try {
+            int type;
+            while ((type = parser.next()) != XmlPullParser.START_TAG && type != XmlPullParser.END_DOCUMENT) {
+                //Skip to the root tag
+            }
+            if (type == XmlPullParser.START_TAG)
+                view.setLayoutParams(parent.generateLayoutParams(Xml.asAttributeSet(parser)));
+        } catch (XmlPullParserException e) {
+            Log.w(TAG, "LayoutParams of layout " + layout + " can't be read", e);
+        } catch (IOException e) {
+            Log.w(TAG, "LayoutParams of layout " + layout + " can't be read", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    protected void setParent(ViewGroup parent) {
+        if (parent != null && (mParent == null || mParent.get() != parent))
+            mParent = new WeakReference<ViewGroup>(parent);
+    }
+
+    protected static synchronized ExecutorService getWorker() {
+        if (sWorker == null) {
+            sWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sWorker;
+    }
+
+    // -------------------------------------------------------------
+    // Memory
+    // -------------------------------------------------------------
+
+    @Override
+    public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            clear();
+    }
+
+    @Override
+    public void onAccount(CardMemoryAccountant.MemorySnapshot snapshot) {
+        //The card views account themselves
+        int rows = 0;
+        for (int i = 0; i < mPool.size(); i++) {
+            for (View row : mPool.valueAt(i)) {
+                if (!(row instanceof BaseCardView))
+                    rows++;
+            }
+        }
+        snapshot.add(CardMemoryAccountant.METRIC_POOLED_VIEWS, rows);
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    public int getPoolSize() {
+        return mPoolSize;
+    }
+
+    /**
+     * Sets the number of ready rows for each layout. Use 0 to inflate all rows synchronously.
+     *
+     * @param poolSize number of rows
+     */
+    public void setPoolSize(int poolSize) {
+        mPoolSize = Math.max(0, poolSize);
+        if (mPoolSize == 0)
+            clear();
+    }
+
+    /**
+     * @return number of rows taken from the pool
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of rows inflated synchronously
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.view.BaseCardView;
+
+/**
+ * Debug tool which reports the card views retained after their activity was destroyed.
+ * </p>
+ * Card views and thumbnail views are watched when they are detached from the window.
+ * A few seconds later the detector runs the garbage collector: a watched view which is still
+ * reachable and whose activity is finishing or destroyed is a leak.
+ * </p>
+ * Usage (debug builds only, the check runs the GC on the UI thread):
+ * <pre><code>
+ * CardLeakDetector detector = CardLeakDetector.getInstance();
+ * detector.setEnabled(BuildConfig.DEBUG);
+ * detector.setOnLeakListener(new CardLeakDetector.OnLeakListener() {
+ *      public void onLeaks(List&lt;CardLeakDetector.Leak&gt; leaks) {
+ *          for (CardLeakDetector.Leak leak : leaks)
+ *              Log.e(TAG, leak.toString());
+ *      }
+ * });
+ * </code></pre>
+ * </p>
+ * Without listener the leaks are logged. Each view is reported only once.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardLeakDetector {
+
+    protected static String TAG = "CardLeakDetector";
+
+    /**
+     * Default time between the detach of a view and its check (ms)
+     */
+    public static final long DEFAULT_WATCH_DELAY = 5000;
+
+    protected boolean mEnabled;
+
+    protected long mWatchDelay = DEFAULT_WATCH_DELAY;
+
+    /**
+     * Detached views (weak keys) -> detach time
+     */
+    protected final Map<View, Long> mDetached = new WeakHashMap<View, Long>();
+
+    /**
+     * Views already reported (weak keys)
+     */
+    protected final Map<View, Boolean> mReported = new WeakHashMap<View, Boolean>();
+
+    protected int mRetainedCount;
+
+    protected OnLeakListener mOnLeakListener;
+
+    protected final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    protected boolean mCheckScheduled;
+
+    protected final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCheckScheduled = false;
+            check();
+        }
+    };
+
+    //Singleton
+    private static CardLeakDetector sInstance;
+
+    protected CardLeakDetector(){}
+
+    public static CardLeakDetector getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new CardLeakDetector();
+    }
+
+    // -------------------------------------------------------------
+    // Interfaces
+    // -------------------------------------------------------------
+
+    /**
+     * Interface to listen the leaks found by a check
+     */
+    public interface OnLeakListener {
+        void onLeaks(List<Leak> leaks);
+    }
+
+    // -------------------------------------------------------------
+    // Watch
+    // -------------------------------------------------------------
+
+    /**
+     * Starts watching a view which was detached from the window (UI thread).
+     *
+     * @param view view
+     */
+    public void watch(View view) {
+        if (!mEnabled || view == null) return;
+        mDetached.put(view, SystemClock.uptimeMillis());
+        if (!mCheckScheduled) {
+            mCheckScheduled = true;
+            mHandler.postDelayed(mCheckRunnable, mWatchDelay);
+        }
+    }
+
+    /**
+     * Stops watching a view which was attached again (UI thread).
+     *
+     * @param view view
+     */
+    public void unwatch(View view) {
+        if (view != null)
+            mDetached.remove(view);
+    }
+
+    // -------------------------------------------------------------
+    // Check
+    // -------------------------------------------------------------
+
+    /**
+     * Runs the garbage collector and reports the watched views which are still retained
+     * after their activity was destroyed. It has to be called on the UI thread.
+     *
+     * @return new leaks
+     */
+    public List<Leak> check() {
+        List<Leak> leaks = new ArrayList<Leak>();
+        if (!mEnabled) return leaks;
+
+        runGc();
+
+        long now = SystemClock.uptimeMillis();
+        long nextCheck = -1;
+        int retained = 0;
+        for (View view : new ArrayList<View>(mDetached.keySet())) {
+            if (view == null) continue;
+
+            Long detachTime = mDetached.get(view);
+            if (view.getWindowToken() != null || detachTime == null) {
+                mDetached.remove(view);
+                continue;
+            }
+            retained++;
+
+            long elapsed = now - detachTime;
+            if (elapsed < mWatchDelay) {
+                //Detached after the check was scheduled
+                nextCheck = Math.max(nextCheck, mWatchDelay - elapsed);
+                continue;
+            }
+
+            Activity activity = findActivity(view.getContext());
+            if (activity == null || !isDestroyed(activity) || mReported.containsKey(view))
+                continue;
+
+            mReported.put(view, Boolean.TRUE);
+            mDetached.remove(view);
+            leaks.add(new Leak(view, activity, elapsed));
+        }
+        mRetainedCount = retained;
+
+        if (nextCheck >= 0 && !mCheckScheduled) {
+            mCheckScheduled = true;
+            mHandler.postDelayed(mCheckRunnable, nextCheck);
+        }
+
+        if (!leaks.isEmpty()) {
+            if (mOnLeakListener != null) {
+                mOnLeakListener.onLeaks(leaks);
+            } else {
+                for (Leak leak : leaks)
+                    Log.w(TAG, leak.toString());
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * Runs the garbage collector and the finalizers
+     */
+    protected void runGc() {
+        Runtime.getRuntime().gc();
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.runFinalization();
+        Runtime.getRuntime().gc();
+    }
+
+    protected static Activity findActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity)
+                return (Activity) context;
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    @SuppressLint("NewApi")
+    protected static boolean isDestroyed(Activity activity) {
+        if (activity.isFinishing())
+            return true;
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && activity.isDestroyed();
+    }
+
+    // -------------------------------------------------------------
+    // Leak
+    // -------------------------------------------------------------
+
+    /**
+     * A retained view. It doesn't hold any reference to the view.
+     */
+    public static class Leak {
+
+        protected final String mViewClass;
+        protected final String mActivityClass;
+        protected final String mCardClass;
+        protected final String mCardId;
+        protected final long mDetachedMillis;
+
+        protected Leak(View view, Activity activity, long detachedMillis) {
+            mViewClass = view.getClass().getName();
+            mActivityClass = activity.getClass().getName();
+            mDetachedMillis = detachedMillis;
+
+            Card card = view instanceof BaseCardView ? ((BaseCardView) view).getCard() : null;
+            mCardClass = card != null ? card.getClass().getName() : null;
+            mCardId = card != null ? card.getId() : null;
+        }
+
+        public String getViewClass() {
+            return mViewClass;
+        }
+
+        public String getActivityClass() {
+            return mActivityClass;
+        }
+
+        /**
+         * @return class of the bound card, or <code>null</code>
+         */
+        public String getCardClass() {
+            return mCardClass;
+        }
+
+        /**
+         * @return id of the bound card, or <code>null</code>
+         */
+        public String getCardId() {
+            return mCardId;
+        }
+
+        /**
+         * @return time since the view was detached (ms)
+         */
+        public long getDetachedMillis() {
+            return mDetachedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Leak{view=" + mViewClass + ", activity=" + mActivityClass + ", card=" + mCardClass
+                    + ", cardId=" + mCardId + ", detached=" + mDetachedMillis + "ms}";
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enables the detector. Use it only in debug builds.
+     *
+     * @param enabled <code>true</code> to watch the detached views
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            mDetached.clear();
+            mHandler.removeCallbacks(mCheckRunnable);
+            mCheckScheduled = false;
+        }
+    }
+
+    public long getWatchDelay() {
+        return mWatchDelay;
+    }
+
+    /**
+     * Sets the time between the detach of a view and its check
+     *
+     * @param watchDelay delay (ms)
+     */
+    public void setWatchDelay(long watchDelay) {
+        mWatchDelay = Math.max(0, watchDelay);
+    }
+
+    /**
+     * @return number of detached views still retained after the last check (leaks included)
+     */
+    public int getRetainedCount() {
+        return mRetainedCount;
+    }
+
+    public void setOnLeakListener(OnLeakListener onLeakListener) {
+        mOnLeakListener = onLeakListener;
+    }
+}
@@ -0,0 +1,560 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.graphics.Bitmap;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.nostra13.universalimageloader.core.ImageLoader;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Accounts the memory held by the library.
+ * </p>
+ * The accountant asks the registered {@link Accountable} participants (card views, thumbnail views,
+ * row inflaters, adapters, ...) to add what they hold to a {@link MemorySnapshot}:
+ * <ul>
+ * <li>live card views, and the rows which wait to be reused (list scrap heaps, recycler pools, inflater pools)</li>
+ * <li>bytes of the bitmaps held by the thumbnail memory caches ({@link CacheUtil} and Universal Image Loader)</li>
+ * <li>active {@link MediaPlayer} and {@link android.hardware.Camera} instances</li>
+ * <li>pending undo entries and lifecycle subscribers registered on the EventBus</li>
+ * </ul>
+ * </p>
+ * Usage:
+ * <pre><code>
+ * CardMemoryAccountant accountant = CardMemoryAccountant.getInstance();
+ * Log.d(TAG, accountant.snapshot().toString());
+ *
+ * accountant.setThreshold(CardMemoryAccountant.METRIC_BITMAP_BYTES, 8 * 1024 * 1024);
+ * accountant.setOnThresholdListener(new CardMemoryAccountant.OnThresholdListener() {
+ *      public void onThresholdExceeded(int metric, long value, long threshold, MemorySnapshot snapshot) {
+ *          Log.w(TAG, CardMemoryAccountant.getMetricName(metric) + "=" + value);
+ *      }
+ * });
+ * </code></pre>
+ * </p>
+ * While a listener and at least one threshold are set, the thresholds are checked every
+ * {@link #getCheckInterval()} ms on the UI thread and after each trim of the {@link CardResourceGovernor}.
+ * The listener is called once when a metric goes above its threshold, and again only after
+ * the metric went back under it.
+ * </p>
+ * Participants are held with weak references, so they don't need to unregister themselves.
+ * The snapshot has to be taken on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardMemoryAccountant {
+
+    protected static String TAG = "CardMemoryAccountant";
+
+    /**
+     * Live card views (not yet collected), pooled rows included
+     */
+    public static final int METRIC_CARD_VIEWS = 0;
+
+    /**
+     * Rows which wait to be reused: card views in the scrap heap of a list (temporarily detached),
+     * card views not attached to a window (rows in a RecyclerView pool or in the {@link AsyncRowInflater}
+     * pools, and detached rows not yet collected) and the other rows of the inflater pools
+     */
+    public static final int METRIC_POOLED_VIEWS = 1;
+
+    /**
+     * Bytes of the bitmaps held by the thumbnail memory caches
+     */
+    public static final int METRIC_BITMAP_BYTES = 2;
+
+    /**
+     * Active media players
+     */
+    public static final int METRIC_MEDIA_PLAYERS = 3;
+
+    /**
+     * Open cameras
+     */
+    public static final int METRIC_CAMERAS = 4;
+
+    /**
+     * Cards kept by the undo journals
+     */
+    public static final int METRIC_UNDO_ENTRIES = 5;
+
+    /**
+     * Objects registered on the EventBus to follow the lifecycle
+     */
+    public static final int METRIC_LIFECYCLE_SUBSCRIBERS = 6;
+
+    /**
+     * Number of metrics
+     */
+    public static final int METRIC_COUNT = 7;
+
+    private static final String[] METRIC_NAMES = {
+            "cardViews", "pooledViews", "bitmapBytes", "mediaPlayers", "cameras", "undoEntries", "lifecycleSubscribers"
+    };
+
+    /**
+     * Default interval between two threshold checks (ms)
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 5000;
+
+    /**
+     * Value used for the metrics without threshold
+     */
+    public static final long NO_THRESHOLD = -1;
+
+    /**
+     * Participants (weak keys)
+     */
+    protected final Map<Accountable, Boolean> mAccountables = new WeakHashMap<Accountable, Boolean>();
+
+    protected final long[] mThresholds = new long[METRIC_COUNT];
+
+    /**
+     * Metrics which are above their threshold
+     */
+    protected final boolean[] mExceeded = new boolean[METRIC_COUNT];
+
+    protected long mCheckInterval = DEFAULT_CHECK_INTERVAL;
+
+    protected OnThresholdListener mOnThresholdListener;
+
+    protected final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    protected boolean mCheckScheduled;
+
+    protected final Runnable mCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCheckScheduled = false;
+            check();
+            scheduleCheck();
+        }
+    };
+
+    /**
+     * Checks the thresholds after each trim.
+     * It is held by the accountant, so the weak registration in the governor never expires.
+     */
+    protected final CardResourceGovernor.Trimmable mTrimCheck = new CardResourceGovernor.Trimmable() {
+        @Override
+        public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isChecking())
+                        check();
+                }
+            });
+        }
+    };
+
+    //Singleton
+    private static CardMemoryAccountant sInstance;
+
+    protected CardMemoryAccountant() {
+        for (int i = 0; i < METRIC_COUNT; i++)
+            mThresholds[i] = NO_THRESHOLD;
+        CardResourceGovernor.getInstance().register(mTrimCheck);
+    }
+
+    public static synchronized CardMemoryAccountant getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new CardMemoryAccountant();
+    }
+
+    // -------------------------------------------------------------
+    // Interfaces
+    // -------------------------------------------------------------
+
+    /**
+     * Interface implemented by the objects which hold memory or native resources
+     */
+    public interface Accountable {
+
+        /**
+         * Called on the UI thread when a snapshot is taken.
+         *
+         * @param snapshot snapshot to fill with the held resources
+         */
+        void onAccount(MemorySnapshot snapshot);
+    }
+
+    /**
+     * Interface to listen when a metric goes above its threshold
+     */
+    public interface OnThresholdListener {
+
+        /**
+         * @param metric    metric (one of the <code>METRIC_*</code> constants)
+         * @param value     current value
+         * @param threshold threshold
+         * @param snapshot  snapshot which contains the value
+         */
+        void onThresholdExceeded(int metric, long value, long threshold, MemorySnapshot snapshot);
+    }
+
+    // -------------------------------------------------------------
+    // Register
+    // -------------------------------------------------------------
+
+    /**
+     * Registers a participant. It is held with a weak reference.
+     *
+     * @param accountable participant
+     */
+    public synchronized void register(Accountable accountable) {
+        if (accountable != null)
+            mAccountables.put(accountable, Boolean.TRUE);
+    }
+
+    /**
+     * Unregisters a participant
+     *
+     * @param accountable participant
+     */
+    public synchronized void unregister(Accountable accountable) {
+        if (accountable != null)
+            mAccountables.remove(accountable);
+    }
+
+    // -------------------------------------------------------------
+    // Snapshot
+    // -------------------------------------------------------------
+
+    /**
+     * Takes a snapshot of the resources held by the library.
+     * It has to be called on the UI thread.
+     *
+     * @return snapshot
+     */
+    public MemorySnapshot snapshot() {
+        MemorySnapshot snapshot = new MemorySnapshot();
+
+        //Bitmap caches
+        accountCache(CacheUtil.getMemoryCache(), snapshot);
+        accountImageLoaderCache(snapshot);
+
+        //Participants
+        List<Accountable> accountables;
+        synchronized (this) {
+            accountables = new ArrayList<Accountable>(mAccountables.keySet());
+        }
+        for (Accountable accountable : accountables) {
+            if (accountable == null) continue;
+            try {
+                accountable.onAccount(snapshot);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Error while accounting " + accountable, e);
+            }
+        }
+
+        snapshot.seal();
+        return snapshot;
+    }
+
+    /**
+     * Adds the bitmaps held by a {@link LruCache} to a snapshot
+     *
+     * @param cache    cache
+     * @param snapshot snapshot to fill
+     */
+    public static <K> void accountCache(LruCache<K, Bitmap> cache, MemorySnapshot snapshot) {
+        if (cache == null) return;
+        for (Bitmap bitmap : cache.snapshot().values()) {
+            snapshot.addBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Adds the bitmaps held by the Universal Image Loader memory cache to a snapshot
+     */
+    protected void accountImageLoaderCache(MemorySnapshot snapshot) {
+        ImageLoader imageLoader = ImageLoader.getInstance();
+        if (!imageLoader.isInited()) return;
+        for (String key : new ArrayList<String>(imageLoader.getMemoryCache().keys())) {
+            snapshot.addBitmap(imageLoader.getMemoryCache().get(key));
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Thresholds
+    // -------------------------------------------------------------
+
+    /**
+     * Takes a snapshot and notifies the listener for each metric which went above its threshold.
+     * It has to be called on the UI thread.
+     *
+     * @return snapshot
+     */
+    public MemorySnapshot check() {
+        MemorySnapshot snapshot = snapshot();
+        for (int metric = 0; metric < METRIC_COUNT; metric++) {
+            long threshold = mThresholds[metric];
+            if (threshold == NO_THRESHOLD) continue;
+
+            long value = snapshot.get(metric);
+            if (value > threshold) {
+                if (!mExceeded[metric]) {
+                    mExceeded[metric] = true;
+                    if (mOnThresholdListener != null)
+                        mOnThresholdListener.onThresholdExceeded(metric, value, threshold, snapshot);
+                }
+            } else {
+                mExceeded[metric] = false;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sets the threshold of a metric. Use {@link #NO_THRESHOLD} to remove it.
+     *
+     * @param metric    metric (one of the <code>METRIC_*</code> constants)
+     * @param threshold max value before the listener is notified
+     */
+    public void setThreshold(int metric, long threshold) {
+        checkMetric(metric);
+        mThresholds[metric] = threshold < 0 ? NO_THRESHOLD : threshold;
+        mExceeded[metric] = false;
+        scheduleCheck();
+    }
+
+    /**
+     * Returns the threshold of a metric, or {@link #NO_THRESHOLD}
+     *
+     * @param metric metric (one of the <code>METRIC_*</code> constants)
+     */
+    public long getThreshold(int metric) {
+        checkMetric(metric);
+        return mThresholds[metric];
+    }
+
+    /**
+     * Removes all thresholds
+     */
+    public void clearThresholds() {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            mThresholds[i] = NO_THRESHOLD;
+            mExceeded[i] = false;
+        }
+        scheduleCheck();
+    }
+
+    /**
+     * Indicates if the thresholds are checked
+     *
+     * @return <code>true</code> if a listener and at least one threshold are set
+     */
+    public boolean isChecking() {
+        if (mOnThresholdListener == null) return false;
+        for (long threshold : mThresholds) {
+            if (threshold != NO_THRESHOLD) return true;
+        }
+        return false;
+    }
+
+    protected void scheduleCheck() {
+        boolean checking = isChecking() && mCheckInterval > 0;
+        if (checking && !mCheckScheduled) {
+            mCheckScheduled = true;
+            mHandler.postDelayed(mCheckRunnable, mCheckInterval);
+        } else if (!checking && mCheckScheduled) {
+            mCheckScheduled = false;
+            mHandler.removeCallbacks(mCheckRunnable);
+        }
+    }
+
+    protected static void checkMetric(int metric) {
+        if (metric < 0 || metric >= METRIC_COUNT)
+            throw new IllegalArgumentException("Unknown metric " + metric);
+    }
+
+    /**
+     * Returns the name of a metric
+     *
+     * @param metric metric (one of the <code>METRIC_*</code> constants)
+     * @return name
+     */
+    public static String getMetricName(int metric) {
+        checkMetric(metric);
+        return METRIC_NAMES[metric];
+    }
+
+    // -------------------------------------------------------------
+    // Snapshot
+    // -------------------------------------------------------------
+
+    /**
+     * Resources held by the library at a given time
+     */
+    public static class MemorySnapshot {
+
+        protected final long mTime = System.currentTimeMillis();
+        protected final long[] mValues = new long[METRIC_COUNT];
+
+        /**
+         * Objects already accounted. Caches and views can share the same bitmap or player.
+         */
+        protected Map<Object, Boolean> mSeen = new IdentityHashMap<Object, Boolean>();
+
+        protected MemorySnapshot() {
+        }
+
+        /**
+         * Adds a value to a metric
+         *
+         * @param metric metric (one of the <code>METRIC_*</code> constants)
+         * @param value  value to add
+         */
+        public void add(int metric, long value) {
+            checkMetric(metric);
+            mValues[metric] += value;
+        }
+
+        /**
+         * Adds a bitmap. The same bitmap is accounted only once.
+         *
+         * @param bitmap bitmap (it can be null)
+         */
+        public void addBitmap(Bitmap bitmap) {
+            if (bitmap == null || bitmap.isRecycled() || !markSeen(bitmap)) return;
+            mValues[METRIC_BITMAP_BYTES] += (long) bitmap.getRowBytes() * bitmap.getHeight();
+        }
+
+        /**
+         * Adds a media player. The same player is accounted only once.
+         *
+         * @param mediaPlayer player (it can be null)
+         */
+        public void addMediaPlayer(MediaPlayer mediaPlayer) {
+            if (mediaPlayer == null || !markSeen(mediaPlayer)) return;
+            mValues[METRIC_MEDIA_PLAYERS]++;
+        }
+
+        protected boolean markSeen(Object object) {
+            if (mSeen == null)
+                throw new IllegalStateException("The snapshot is sealed");
+            return mSeen.put(object, Boolean.TRUE) == null;
+        }
+
+        /**
+         * Drops the references to the accounted objects
+         */
+        protected void seal() {
+            mSeen = null;
+        }
+
+        /**
+         * Returns the value of a metric
+         *
+         * @param metric metric (one of the <code>METRIC_*</code> constants)
+         */
+        public long get(int metric) {
+            checkMetric(metric);
+            return mValues[metric];
+        }
+
+        /**
+         * @return time of the snapshot (ms)
+         */
+        public long getTime() {
+            return mTime;
+        }
+
+        public long getCardViews() {
+            return mValues[METRIC_CARD_VIEWS];
+        }
+
+        public long getPooledViews() {
+            return mValues[METRIC_POOLED_VIEWS];
+        }
+
+        public long getBitmapBytes() {
+            return mValues[METRIC_BITMAP_BYTES];
+        }
+
+        public long getMediaPlayers() {
+            return mValues[METRIC_MEDIA_PLAYERS];
+        }
+
+        public long getCameras() {
+            return mValues[METRIC_CAMERAS];
+        }
+
+        public long getUndoEntries() {
+            return mValues[METRIC_UNDO_ENTRIES];
+        }
+
+        public long getLifecycleSubscribers() {
+            return mValues[METRIC_LIFECYCLE_SUBSCRIBERS];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("MemorySnapshot{");
+            for (int i = 0; i < METRIC_COUNT; i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(METRIC_NAMES[i]).append('=').append(mValues[i]);
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public void setOnThresholdListener(OnThresholdListener onThresholdListener) {
+        mOnThresholdListener = onThresholdListener;
+        scheduleCheck();
+    }
+
+    public long getCheckInterval() {
+        return mCheckInterval;
+    }
+
+    /**
+     * Sets the interval between two threshold checks. Use 0 to check only after the trims
+     * or with {@link #check()}.
+     *
+     * @param checkInterval interval (ms)
+     */
+    public void setCheckInterval(long checkInterval) {
+        mCheckInterval = Math.max(0, checkInterval);
+        if (mCheckScheduled) {
+            mCheckScheduled = false;
+            mHandler.removeCallbacks(mCheckRunnable);
+        }
+        scheduleCheck();
+    }
+}
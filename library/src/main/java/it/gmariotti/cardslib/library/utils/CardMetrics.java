@@ -0,0 +1,389 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Trace;
+
+import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.assist.LoadedFrom;
+import com.nostra13.universalimageloader.core.display.BitmapDisplayer;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * Instrumentation of the card binds.
+ * </p>
+ * The {@link it.gmariotti.cardslib.library.view.CardView} reports the time of each phase of
+ * <code>buildUI</code> (header, main, thumbnail, expand, listeners, drawables), the whole bind
+ * (with the inflate/recycle and the force-replace of the inner layouts) and the source of the thumbnails.
+ * The events are delivered to the {@link Listener}s, for example a {@link CardMetricsRecorder}:
+ * <pre><code>
+ *     CardMetricsRecorder recorder = new CardMetricsRecorder();
+ *     CardMetrics.getInstance().addListener(recorder);
+ *     ...
+ *     recorder.dump();
+ * </code></pre>
+ * Without listeners the views don't read the clock.
+ * </p>
+ * The source of a thumbnail is the {@link LoadedFrom} of the Universal Image Loader: while there are listeners
+ * which track it (see {@link #isThumbnailSourceEnabled()}) the thumbnails are loaded with {@link #getThumbnailOptions()},
+ * whose displayer reports it. If your loader
+ * configuration has default display options, pass them to {@link #setThumbnailOptions(DisplayImageOptions)}.
+ * </p>
+ * With {@link #setTraceEnabled(boolean)} (API 18+) each phase is also a trace section
+ * (<code>Card:bind</code>, <code>Card:header</code>, ...), so the phases show up in the systrace captures.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardMetrics {
+
+    protected static String TAG = "CardMetrics";
+
+    /**
+     * Phases of <code>CardView.buildUI</code>
+     */
+    public static final int PHASE_HEADER = 0;
+    public static final int PHASE_MAIN = 1;
+    public static final int PHASE_THUMBNAIL = 2;
+    public static final int PHASE_EXPAND = 3;
+    public static final int PHASE_LISTENERS = 4;
+    public static final int PHASE_DRAWABLES = 5;
+    public static final int PHASE_COUNT = 6;
+
+    /**
+     * Sources of the thumbnails
+     */
+    public static final int THUMBNAIL_MEMORY_CACHE = 0;
+    public static final int THUMBNAIL_DISK_CACHE = 1;
+    public static final int THUMBNAIL_LOADED = 2;
+    public static final int THUMBNAIL_SOURCE_COUNT = 3;
+
+    /**
+     * Source of a thumbnail loaded while no listener tracks the sources (see {@link #addListener(Listener, boolean)})
+     */
+    public static final int THUMBNAIL_UNKNOWN = -1;
+
+    /**
+     * Trace sections
+     */
+    protected static final String SECTION_BIND = "Card:bind";
+    protected static final String[] SECTION_PHASES = {
+            "Card:header",
+            "Card:main",
+            "Card:thumbnail",
+            "Card:expand",
+            "Card:listeners",
+            "Card:drawables"
+    };
+
+    /**
+     * Listener of the bind events.
+     * The events are delivered on the UI thread.
+     */
+    public interface Listener {
+
+        /**
+         * A phase of <code>buildUI</code> ended
+         *
+         * @param card  card bound
+         * @param phase one of the <code>PHASE_*</code> constants
+         * @param nanos duration of the phase
+         */
+        void onPhase(Card card, int phase, long nanos);
+
+        /**
+         * A card was bound to its view
+         *
+         * @param card         card bound
+         * @param recycled     <code>true</code> if the view was recycled, <code>false</code> if it was just inflated
+         * @param forceReplace <code>true</code> if the inner layouts of the recycled view were replaced
+         * @param nanos        duration of the bind
+         */
+        void onBind(Card card, boolean recycled, boolean forceReplace, long nanos);
+
+        /**
+         * The thumbnail of a card was shown
+         *
+         * @param card   card of the thumbnail
+         * @param source one of the <code>THUMBNAIL_*</code> constants
+         * @param nanos  time from the request to the bitmap
+         */
+        void onThumbnail(Card card, int source, long nanos);
+    }
+
+    protected final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Listeners which track the sources of the thumbnails
+     */
+    protected final CopyOnWriteArrayList<Listener> mSourceListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Indicates if there are listeners
+     */
+    protected volatile boolean mEnabled;
+
+    /**
+     * Indicates if there are listeners which track the sources of the thumbnails
+     */
+    protected volatile boolean mSourcesEnabled;
+
+    /**
+     * Indicates if the trace sections are emitted (disabled by default)
+     */
+    protected boolean mTraceEnabled;
+
+    /**
+     * Number of trace sections not closed yet
+     */
+    protected int mOpenSections;
+
+    /**
+     * Options of the measured thumbnail loads
+     */
+    protected DisplayImageOptions mThumbnailOptions;
+    protected DisplayImageOptions mMeasuredThumbnailOptions;
+
+    /**
+     * Target of a measured thumbnail load, notified by the displayer of {@link #getThumbnailOptions()}
+     */
+    public interface ThumbnailTarget {
+
+        /**
+         * The bitmap was delivered
+         *
+         * @param source one of the <code>THUMBNAIL_*</code> constants
+         */
+        void onThumbnailLoaded(int source);
+    }
+
+    //Singleton
+    private static CardMetrics sInstance;
+
+    protected CardMetrics() {
+    }
+
+    public static CardMetrics getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new CardMetrics();
+    }
+
+    // -------------------------------------------------------------
+    // Listeners
+    // -------------------------------------------------------------
+
+    public void addListener(Listener listener) {
+        addListener(listener, true);
+    }
+
+    /**
+     * Adds a listener
+     *
+     * @param listener         listener
+     * @param thumbnailSources <code>false</code> if the listener doesn't need the sources of the thumbnails:
+     *                         without other listeners the thumbnails keep the default loads of the views
+     *                         and they are reported as {@link #THUMBNAIL_UNKNOWN} (or {@link #THUMBNAIL_MEMORY_CACHE})
+     */
+    public void addListener(Listener listener, boolean thumbnailSources) {
+        if (listener == null) return;
+        if (mListeners.addIfAbsent(listener))
+            mEnabled = true;
+        if (thumbnailSources && mSourceListeners.addIfAbsent(listener))
+            mSourcesEnabled = true;
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+        mSourceListeners.remove(listener);
+        mEnabled = !mListeners.isEmpty();
+        mSourcesEnabled = !mSourceListeners.isEmpty();
+    }
+
+    /**
+     * Returns <code>true</code> if there are listeners
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Returns <code>true</code> if some listener tracks the sources of the thumbnails:
+     * the views load them with {@link #getThumbnailOptions()}
+     */
+    public boolean isThumbnailSourceEnabled() {
+        return mSourcesEnabled;
+    }
+
+    /**
+     * Returns <code>true</code> if the phases are emitted as trace sections
+     */
+    public boolean isTraceEnabled() {
+        return mTraceEnabled;
+    }
+
+    /**
+     * Enables the trace sections (API 18+). The sections already open are closed anyway.
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        mTraceEnabled = traceEnabled && Build.VERSION.SDK_INT >= 18;
+    }
+
+    // -------------------------------------------------------------
+    // Events
+    // -------------------------------------------------------------
+
+    /**
+     * Starts a bind. Call {@link #endBind} in a <code>finally</code> block, so the trace section is closed.
+     *
+     * @return the start time, to pass to {@link #endBind}
+     */
+    public long beginBind() {
+        beginSection(SECTION_BIND);
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    public void endBind(Card card, boolean recycled, boolean forceReplace, long start) {
+        endSection();
+        if (mEnabled && start != 0) {
+            long nanos = System.nanoTime() - start;
+            for (Listener listener : mListeners)
+                listener.onBind(card, recycled, forceReplace, nanos);
+        }
+    }
+
+    /**
+     * Starts a phase of <code>buildUI</code>. Call {@link #endPhase} in a <code>finally</code> block.
+     *
+     * @param phase one of the <code>PHASE_*</code> constants
+     * @return the start time, to pass to {@link #endPhase}
+     */
+    public long beginPhase(int phase) {
+        beginSection(SECTION_PHASES[phase]);
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    public void endPhase(Card card, int phase, long start) {
+        endSection();
+        if (mEnabled && start != 0) {
+            long nanos = System.nanoTime() - start;
+            for (Listener listener : mListeners)
+                listener.onPhase(card, phase, nanos);
+        }
+    }
+
+    /**
+     * Reports the source of a thumbnail
+     *
+     * @param card   card of the thumbnail
+     * @param source one of the <code>THUMBNAIL_*</code> constants
+     * @param start  time of the request
+     */
+    public void onThumbnail(Card card, int source, long start) {
+        if (mEnabled && start != 0) {
+            long nanos = System.nanoTime() - start;
+            for (Listener listener : mListeners)
+                listener.onThumbnail(card, source, nanos);
+        }
+    }
+
+    /**
+     * Returns the source of a thumbnail
+     *
+     * @param loadedFrom source reported by the loader
+     * @return one of the <code>THUMBNAIL_*</code> constants
+     */
+    public static int getThumbnailSource(LoadedFrom loadedFrom) {
+        if (loadedFrom == LoadedFrom.MEMORY_CACHE)
+            return THUMBNAIL_MEMORY_CACHE;
+        if (loadedFrom == LoadedFrom.DISC_CACHE)
+            return THUMBNAIL_DISK_CACHE;
+        return THUMBNAIL_LOADED;
+    }
+
+    /**
+     * Sets the options of the measured thumbnail loads (by default {@link DisplayImageOptions#createSimple()})
+     *
+     * @param options options
+     */
+    public void setThumbnailOptions(DisplayImageOptions options) {
+        mThumbnailOptions = options;
+        mMeasuredThumbnailOptions = null;
+    }
+
+    /**
+     * Returns the options of a measured thumbnail load.
+     * Their displayer reports the source of the bitmap to the {@link ThumbnailTarget}s.
+     *
+     * @return options
+     */
+    public DisplayImageOptions getThumbnailOptions() {
+        if (mMeasuredThumbnailOptions == null) {
+            DisplayImageOptions options = mThumbnailOptions != null ? mThumbnailOptions : DisplayImageOptions.createSimple();
+            mMeasuredThumbnailOptions = new DisplayImageOptions.Builder()
+                    .cloneFrom(options)
+                    .displayer(new SourceDisplayer(options.getDisplayer()))
+                    .build();
+        }
+        return mMeasuredThumbnailOptions;
+    }
+
+    /**
+     * Displayer which reports the {@link LoadedFrom} of the bitmaps
+     */
+    protected static class SourceDisplayer implements BitmapDisplayer {
+
+        protected final BitmapDisplayer mDisplayer;
+
+        public SourceDisplayer(BitmapDisplayer displayer) {
+            mDisplayer = displayer;
+        }
+
+        @Override
+        public void display(Bitmap bitmap, ImageAware imageAware, LoadedFrom loadedFrom) {
+            if (imageAware instanceof ThumbnailTarget)
+                ((ThumbnailTarget) imageAware).onThumbnailLoaded(getThumbnailSource(loadedFrom));
+            mDisplayer.display(bitmap, imageAware, loadedFrom);
+        }
+    }
+
+    @SuppressLint("NewApi")
+    protected void beginSection(String section) {
+        if (mTraceEnabled) {
+            Trace.beginSection(section);
+            mOpenSections++;
+        }
+    }
+
+    @SuppressLint("NewApi")
+    protected void endSection() {
+        if (mOpenSections > 0) {
+            Trace.endSection();
+            mOpenSections--;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.gmariotti.cardslib.library.internal.Card;
+
+/**
+ * {@link CardMetrics.Listener} which aggregates the events in latency histograms,
+ * for each card class and inner layout.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardMetricsRecorder implements CardMetrics.Listener {
+
+    protected static String TAG = "CardMetricsRecorder";
+
+    /**
+     * Card class -> inner layout -> stats
+     */
+    protected final Map<Class<?>, SparseArray<CardTypeStats>> mStats = new HashMap<Class<?>, SparseArray<CardTypeStats>>();
+
+    /**
+     * Stats of a card type (card class and inner layout)
+     */
+    public static class CardTypeStats {
+
+        protected final Class<?> mCardClass;
+        protected final int mInnerLayout;
+
+        protected long mInflations;
+        protected long mRecycles;
+        protected long mForceReplaces;
+
+        protected final LatencyHistogram mBind;
+        protected final LatencyHistogram[] mPhases = new LatencyHistogram[CardMetrics.PHASE_COUNT];
+        protected final LatencyHistogram[] mThumbnails = new LatencyHistogram[CardMetrics.THUMBNAIL_SOURCE_COUNT];
+
+        protected CardTypeStats(Class<?> cardClass, int innerLayout) {
+            mCardClass = cardClass;
+            mInnerLayout = innerLayout;
+            mBind = new LatencyHistogram();
+            for (int i = 0; i < mPhases.length; i++)
+                mPhases[i] = new LatencyHistogram();
+            for (int i = 0; i < mThumbnails.length; i++)
+                mThumbnails[i] = new LatencyHistogram();
+        }
+
+        /**
+         * Copy constructor
+         */
+        protected CardTypeStats(CardTypeStats other) {
+            mCardClass = other.mCardClass;
+            mInnerLayout = other.mInnerLayout;
+            mInflations = other.mInflations;
+            mRecycles = other.mRecycles;
+            mForceReplaces = other.mForceReplaces;
+            mBind = new LatencyHistogram(other.mBind);
+            for (int i = 0; i < mPhases.length; i++)
+                mPhases[i] = new LatencyHistogram(other.mPhases[i]);
+            for (int i = 0; i < mThumbnails.length; i++)
+                mThumbnails[i] = new LatencyHistogram(other.mThumbnails[i]);
+        }
+
+        public Class<?> getCardClass() {
+            return mCardClass;
+        }
+
+        public int getInnerLayout() {
+            return mInnerLayout;
+        }
+
+        /**
+         * Returns the binds on a view just inflated
+         */
+        public long getInflations() {
+            return mInflations;
+        }
+
+        /**
+         * Returns the binds on a recycled view
+         */
+        public long getRecycles() {
+            return mRecycles;
+        }
+
+        /**
+         * Returns the recycled binds which replaced the inner layouts
+         */
+        public long getForceReplaces() {
+            return mForceReplaces;
+        }
+
+        /**
+         * Returns the latencies of the whole binds
+         */
+        public LatencyHistogram getBind() {
+            return mBind;
+        }
+
+        /**
+         * Returns the latencies of a phase
+         *
+         * @param phase one of the <code>CardMetrics.PHASE_*</code> constants
+         */
+        public LatencyHistogram getPhase(int phase) {
+            return mPhases[phase];
+        }
+
+        /**
+         * Returns the latencies of the thumbnails of a source
+         *
+         * @param source one of the <code>CardMetrics.THUMBNAIL_*</code> constants
+         */
+        public LatencyHistogram getThumbnail(int source) {
+            return mThumbnails[source];
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Listener
+    // -------------------------------------------------------------
+
+    @Override
+    public synchronized void onPhase(Card card, int phase, long nanos) {
+        getStats(card).mPhases[phase].record(nanos);
+    }
+
+    @Override
+    public synchronized void onBind(Card card, boolean recycled, boolean forceReplace, long nanos) {
+        CardTypeStats stats = getStats(card);
+        if (recycled) {
+            stats.mRecycles++;
+            if (forceReplace)
+                stats.mForceReplaces++;
+        } else {
+            stats.mInflations++;
+        }
+        stats.mBind.record(nanos);
+    }
+
+    @Override
+    public synchronized void onThumbnail(Card card, int source, long nanos) {
+        if (source == CardMetrics.THUMBNAIL_UNKNOWN) return;
+        getStats(card).mThumbnails[source].record(nanos);
+    }
+
+    protected CardTypeStats getStats(Card card) {
+        Class<?> cardClass = card != null ? card.getClass() : Card.class;
+        int innerLayout = card != null ? card.getInnerLayout() : -1;
+
+        SparseArray<CardTypeStats> layouts = mStats.get(cardClass);
+        if (layouts == null) {
+            layouts = new SparseArray<CardTypeStats>();
+            mStats.put(cardClass, layouts);
+        }
+        CardTypeStats stats = layouts.get(innerLayout);
+        if (stats == null) {
+            stats = new CardTypeStats(cardClass, innerLayout);
+            layouts.put(innerLayout, stats);
+        }
+        return stats;
+    }
+
+    // -------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------
+
+    /**
+     * Returns a copy of the stats of all the card types
+     */
+    public synchronized List<CardTypeStats> getStats() {
+        List<CardTypeStats> result = new ArrayList<CardTypeStats>();
+        for (SparseArray<CardTypeStats> layouts : mStats.values()) {
+            for (int i = 0; i < layouts.size(); i++)
+                result.add(new CardTypeStats(layouts.valueAt(i)));
+        }
+        return result;
+    }
+
+    public synchronized void reset() {
+        mStats.clear();
+    }
+
+    /**
+     * Logs the stats of all the card types
+     */
+    public void dump() {
+        for (CardTypeStats stats : getStats()) {
+            Log.i(TAG, stats.getCardClass().getSimpleName() + " layout=0x" + Integer.toHexString(stats.getInnerLayout())
+                    + " inflations=" + stats.getInflations() + " recycles=" + stats.getRecycles()
+                    + " forceReplaces=" + stats.getForceReplaces());
+            Log.i(TAG, "  bind " + stats.getBind());
+            for (int phase = 0; phase < CardMetrics.PHASE_COUNT; phase++) {
+                if (stats.getPhase(phase).getCount() > 0)
+                    Log.i(TAG, "  " + CardMetrics.SECTION_PHASES[phase] + " " + stats.getPhase(phase));
+            }
+            for (int source = 0; source < CardMetrics.THUMBNAIL_SOURCE_COUNT; source++) {
+                if (stats.getThumbnail(source).getCount() > 0)
+                    Log.i(TAG, "  thumbnail " + THUMBNAIL_SOURCES[source] + " " + stats.getThumbnail(source));
+            }
+        }
+    }
+
+    protected static final String[] THUMBNAIL_SOURCES = {"memory", "disk", "loaded"};
+}
@@ -0,0 +1,490 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.nostra13.universalimageloader.core.ImageLoader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Central point which reacts to the memory pressure signals sent by the system.
+ * </p>
+ * The governor is registered as {@link ComponentCallbacks2} on the application context and
+ * it dispatches each trim level to the registered {@link Trimmable} participants
+ * (thumbnail views, adapters, ...). It trims the {@link CacheUtil} memory cache and the
+ * Universal Image Loader memory cache by itself.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * CardResourceGovernor governor = CardResourceGovernor.getInstance();
+ * governor.install(getApplicationContext());
+ * governor.setCacheRetainRatios(0.5f, 0.25f);
+ * governor.setOnTrimListener(new CardResourceGovernor.OnTrimListener() {
+ *      public void onTrim(CardResourceGovernor.TrimReport report) {
+ *          Log.d(TAG, report.toString());
+ *      }
+ * });
+ * </code></pre>
+ * </p>
+ * Participants are held with weak references, so they don't need to unregister themselves.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardResourceGovernor implements ComponentCallbacks2 {
+
+    protected static String TAG = "CardResourceGovernor";
+
+    /**
+     * Default ratio of the caches retained when the process is running low on memory
+     */
+    public static final float DEFAULT_LOW_RETAIN_RATIO = 0.5f;
+
+    /**
+     * Default ratio of the caches retained when the process is running critically low on memory
+     */
+    public static final float DEFAULT_CRITICAL_RETAIN_RATIO = 0.25f;
+
+    /**
+     * Default number of pending undo entries retained when the app goes in background
+     */
+    public static final int DEFAULT_UNDO_BUDGET = 16;
+
+    /**
+     * Participants (weak keys)
+     */
+    protected final Map<Trimmable, Boolean> mTrimmables = new WeakHashMap<Trimmable, Boolean>();
+
+    /**
+     * Ratio of the caches retained with {@link #TRIM_MEMORY_RUNNING_LOW}
+     */
+    protected float mLowRetainRatio = DEFAULT_LOW_RETAIN_RATIO;
+
+    /**
+     * Ratio of the caches retained with {@link #TRIM_MEMORY_RUNNING_CRITICAL}
+     */
+    protected float mCriticalRetainRatio = DEFAULT_CRITICAL_RETAIN_RATIO;
+
+    /**
+     * Max number of pending undo entries retained with {@link #TRIM_MEMORY_BACKGROUND}
+     */
+    protected int mUndoBudget = DEFAULT_UNDO_BUDGET;
+
+    /**
+     * Application context used to register the callbacks
+     */
+    protected Context mContext;
+
+    protected OnTrimListener mOnTrimListener;
+
+    protected TrimReport mLastReport;
+
+    //Singleton
+    private static CardResourceGovernor sInstance;
+
+    protected CardResourceGovernor(){}
+
+    public static CardResourceGovernor getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new CardResourceGovernor();
+    }
+
+    // -------------------------------------------------------------
+    // Interfaces
+    // -------------------------------------------------------------
+
+    /**
+     * Interface implemented by the objects which hold resources that can be released
+     */
+    public interface Trimmable {
+
+        /**
+         * Called when the governor receives a trim level.
+         *
+         * @param level    trim level (see {@link ComponentCallbacks2})
+         * @param governor governor which holds the budgets
+         * @param report   report to fill with the released resources
+         */
+        void onTrimMemory(int level, CardResourceGovernor governor, TrimReport report);
+    }
+
+    /**
+     * Interface to listen what the governor freed
+     */
+    public interface OnTrimListener {
+        void onTrim(TrimReport report);
+    }
+
+    // -------------------------------------------------------------
+    // Install
+    // -------------------------------------------------------------
+
+    /**
+     * Registers the governor on the application context.
+     * It is safe to call this method more than once.
+     *
+     * @param context context
+     */
+    public void install(Context context) {
+        if (context == null || mContext != null) return;
+        mContext = context.getApplicationContext();
+        if (mContext == null) mContext = context;
+        mContext.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Unregisters the governor
+     */
+    public void uninstall() {
+        if (mContext == null) return;
+        mContext.unregisterComponentCallbacks(this);
+        mContext = null;
+    }
+
+    /**
+     * Indicates if the governor is registered
+     *
+     * @return <code>true</code> if the governor receives the trim callbacks
+     */
+    public boolean isInstalled() {
+        return mContext != null;
+    }
+
+    /**
+     * Registers a participant. It is held with a weak reference.
+     *
+     * @param trimmable participant
+     */
+    public synchronized void register(Trimmable trimmable) {
+        if (trimmable != null)
+            mTrimmables.put(trimmable, Boolean.TRUE);
+    }
+
+    /**
+     * Unregisters a participant
+     *
+     * @param trimmable participant
+     */
+    public synchronized void unregister(Trimmable trimmable) {
+        if (trimmable != null)
+            mTrimmables.remove(trimmable);
+    }
+
+    // -------------------------------------------------------------
+    // ComponentCallbacks2
+    // -------------------------------------------------------------
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Releases the resources for the given trim level.
+     * <ul>
+     * <li>{@link #TRIM_MEMORY_RUNNING_MODERATE}, {@link #TRIM_MEMORY_RUNNING_LOW}: caches are trimmed
+     * to the low ratio, off-screen players and cameras are released</li>
+     * <li>{@link #TRIM_MEMORY_RUNNING_CRITICAL}: caches are trimmed to the critical ratio</li>
+     * <li>{@link #TRIM_MEMORY_UI_HIDDEN}: all players and cameras are released</li>
+     * <li>{@link #TRIM_MEMORY_BACKGROUND}: undo storage is compacted to the undo budget</li>
+     * <li>{@link #TRIM_MEMORY_MODERATE}, {@link #TRIM_MEMORY_COMPLETE}: caches are evicted</li>
+     * </ul>
+     *
+     * @param level trim level
+     * @return report with the released resources
+     */
+    public TrimReport trim(int level) {
+        TrimReport report = new TrimReport(level);
+
+        //Bitmap caches
+        float ratio = getCacheRetainRatio(level);
+        if (ratio < 1f) {
+            trimCache(CacheUtil.getMemoryCache(), ratio, report);
+            if (ratio == 0f)
+                clearImageLoaderCache(report);
+        }
+
+        //Participants
+        List<Trimmable> trimmables;
+        synchronized (this) {
+            trimmables = new ArrayList<Trimmable>(mTrimmables.keySet());
+        }
+        for (Trimmable trimmable : trimmables) {
+            if (trimmable == null) continue;
+            try {
+                trimmable.onTrimMemory(level, this, report);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Error while trimming " + trimmable, e);
+            }
+        }
+
+        mLastReport = report;
+        if (mOnTrimListener != null)
+            mOnTrimListener.onTrim(report);
+        return report;
+    }
+
+    /**
+     * Returns the ratio of the caches to retain for a trim level
+     *
+     * @param level trim level
+     * @return a value between 0 (evict all) and 1 (retain all)
+     */
+    public float getCacheRetainRatio(int level) {
+        if (level >= TRIM_MEMORY_MODERATE)
+            return 0f;
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL)
+            return mCriticalRetainRatio;
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE)
+            return mLowRetainRatio;
+        return 1f;
+    }
+
+    /**
+     * Indicates if the players and cameras of the views which are not visible have to be released
+     *
+     * @param level trim level
+     * @return <code>true</code> if off-screen players have to be released
+     */
+    public boolean shouldReleaseOffscreenPlayers(int level) {
+        return level >= TRIM_MEMORY_RUNNING_MODERATE;
+    }
+
+    /**
+     * Indicates if all players and cameras have to be released
+     *
+     * @param level trim level
+     * @return <code>true</code> if all players have to be released
+     */
+    public boolean shouldReleaseAllPlayers(int level) {
+        return level >= TRIM_MEMORY_UI_HIDDEN;
+    }
+
+    /**
+     * Indicates if the undo storage has to be compacted
+     *
+     * @param level trim level
+     * @return <code>true</code> if the undo storage has to be compacted
+     */
+    public boolean shouldCompactUndo(int level) {
+        return level >= TRIM_MEMORY_BACKGROUND;
+    }
+
+    /**
+     * Returns the max number of pending undo entries to retain for a trim level
+     *
+     * @param level trim level
+     * @return max number of entries
+     */
+    public int getUndoBudget(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE)
+            return 0;
+        return mUndoBudget;
+    }
+
+    // -------------------------------------------------------------
+    // Cache utils
+    // -------------------------------------------------------------
+
+    /**
+     * Trims a {@link LruCache} to a ratio of its max size.
+     * The least recently used entries are removed first.
+     *
+     * @param cache  cache
+     * @param ratio  ratio of max size to retain
+     * @param report report to fill (it can be null)
+     */
+    public static <K, V> void trimCache(LruCache<K, V> cache, float ratio, TrimReport report) {
+        if (cache == null) return;
+
+        int sizeBefore = cache.size();
+        int entriesBefore = cache.snapshot().size();
+        if (ratio <= 0f) {
+            cache.evictAll();
+        } else {
+            int target = (int) (cache.maxSize() * ratio);
+            //LruCache.trimToSize is public only from API 17. The snapshot is ordered from least to most recently used.
+            Iterator<K> it = cache.snapshot().keySet().iterator();
+            while (cache.size() > target && it.hasNext()) {
+                cache.remove(it.next());
+            }
+        }
+
+        if (report != null) {
+            report.addCacheSize(sizeBefore - cache.size());
+            report.addCacheEntries(entriesBefore - cache.snapshot().size());
+        }
+    }
+
+    /**
+     * Clears the Universal Image Loader memory cache
+     */
+    protected void clearImageLoaderCache(TrimReport report) {
+        ImageLoader imageLoader = ImageLoader.getInstance();
+        if (!imageLoader.isInited()) return;
+        int entries = imageLoader.getMemoryCache().keys().size();
+        imageLoader.clearMemoryCache();
+        report.addCacheEntries(entries);
+    }
+
+    // -------------------------------------------------------------
+    // Report
+    // -------------------------------------------------------------
+
+    /**
+     * Report of the resources released by a trim
+     */
+    public static class TrimReport {
+
+        protected final int mLevel;
+        protected int mCacheSize;
+        protected int mCacheEntries;
+        protected int mPlayers;
+        protected int mCameras;
+        protected int mUndoEntries;
+
+        public TrimReport(int level) {
+            mLevel = level;
+        }
+
+        public void addCacheSize(int size) {
+            mCacheSize += size;
+        }
+
+        public void addCacheEntries(int entries) {
+            mCacheEntries += entries;
+        }
+
+        public void addPlayers(int players) {
+            mPlayers += players;
+        }
+
+        public void addCameras(int cameras) {
+            mCameras += cameras;
+        }
+
+        public void addUndoEntries(int entries) {
+            mUndoEntries += entries;
+        }
+
+        /**
+         * @return trim level
+         */
+        public int getLevel() {
+            return mLevel;
+        }
+
+        /**
+         * @return size released by the caches (in cache size unit)
+         */
+        public int getCacheSize() {
+            return mCacheSize;
+        }
+
+        /**
+         * @return number of cache entries released
+         */
+        public int getCacheEntries() {
+            return mCacheEntries;
+        }
+
+        /**
+         * @return number of media players released
+         */
+        public int getPlayers() {
+            return mPlayers;
+        }
+
+        /**
+         * @return number of cameras released
+         */
+        public int getCameras() {
+            return mCameras;
+        }
+
+        /**
+         * @return number of undo entries dropped
+         */
+        public int getUndoEntries() {
+            return mUndoEntries;
+        }
+
+        @Override
+        public String toString() {
+            return "TrimReport{level=" + mLevel + ", cacheSize=" + mCacheSize + ", cacheEntries=" + mCacheEntries
+                    + ", players=" + mPlayers + ", cameras=" + mCameras + ", undoEntries=" + mUndoEntries + "}";
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Sets the ratios of the caches retained when the process is running low and critically low on memory.
+     *
+     * @param lowRatio      ratio retained with {@link #TRIM_MEMORY_RUNNING_MODERATE} and {@link #TRIM_MEMORY_RUNNING_LOW}
+     * @param criticalRatio ratio retained with {@link #TRIM_MEMORY_RUNNING_CRITICAL} and above
+     */
+    public void setCacheRetainRatios(float lowRatio, float criticalRatio) {
+        mLowRetainRatio = Math.max(0f, Math.min(1f, lowRatio));
+        mCriticalRetainRatio = Math.max(0f, Math.min(mLowRetainRatio, criticalRatio));
+    }
+
+    /**
+     * Sets the max number of pending undo entries retained when the app goes in background
+     *
+     * @param undoBudget max number of entries
+     */
+    public void setUndoBudget(int undoBudget) {
+        mUndoBudget = Math.max(0, undoBudget);
+    }
+
+    public void setOnTrimListener(OnTrimListener onTrimListener) {
+        mOnTrimListener = onTrimListener;
+    }
+
+    /**
+     * @return the report of the last trim, or <code>null</code>
+     */
+    public TrimReport getLastReport() {
+        return mLastReport;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import java.util.Locale;
+
+/**
+ * Histogram of latencies, with power-of-two buckets of microseconds
+ * (bucket 0 is [0,1) us, bucket <code>i</code> is [2^(i-1), 2^i) us, the last bucket is open).
+ * It doesn't allocate when a value is recorded.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets (the last one starts at about 4s)
+     */
+    public static final int BUCKETS = 24;
+
+    protected final long[] mBuckets = new long[BUCKETS];
+    protected long mCount;
+    protected long mTotalNanos;
+    protected long mMaxNanos;
+
+    public LatencyHistogram() {
+    }
+
+    /**
+     * Copy constructor
+     */
+    public LatencyHistogram(LatencyHistogram other) {
+        System.arraycopy(other.mBuckets, 0, mBuckets, 0, BUCKETS);
+        mCount = other.mCount;
+        mTotalNanos = other.mTotalNanos;
+        mMaxNanos = other.mMaxNanos;
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        long micros = nanos / 1000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        mBuckets[Math.min(bucket, BUCKETS - 1)]++;
+        mCount++;
+        mTotalNanos += nanos;
+        if (nanos > mMaxNanos)
+            mMaxNanos = nanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            mBuckets[i] = 0;
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * Returns the upper bound of a percentile, in microseconds
+     *
+     * @param percentile percentile (0-100)
+     * @return the upper bound of the bucket which contains the percentile, or 0 if the histogram is empty
+     */
+    public long getPercentileMicros(double percentile) {
+        if (mCount == 0)
+            return 0;
+        long threshold = (long) Math.ceil(mCount * percentile / 100d);
+        long count = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            count += mBuckets[i];
+            if (count >= threshold)
+                return 1L << i;
+        }
+        return mMaxNanos / 1000;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getBucketCount(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    public double getMeanMicros() {
+        return mCount > 0 ? mTotalNanos / 1000d / mCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n=%d mean=%.1fus p50<%dus p90<%dus p99<%dus max=%dus",
+                mCount, getMeanMicros(), getPercentileMicros(50), getPercentileMicros(90),
+                getPercentileMicros(99), mMaxNanos / 1000);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.widget.ClippedBackgroundDrawable;
+import it.gmariotti.cardslib.library.widget.SquareImageView;
+
+/**
+ * Debug tool which estimates the overdraw of a row.
+ * </p>
+ * It collects the layers painted by the row (backgrounds, images, placeholders, videos) and
+ * the backgrounds of its ancestors (list and window), and it counts how many times the pixels
+ * of the row are painted. The layers skipped by the library (the placeholder below an opaque
+ * image, the card background clipped below an opaque thumbnail) are not counted.
+ * </p>
+ * Usage:
+ * <pre><code>
+ * //Logs a report for each visible row
+ * OverdrawInspector.dump(listView);
+ *
+ * //Single row
+ * OverdrawInspector.Report report = OverdrawInspector.inspect(row);
+ * float overdraw = report.getOverdraw();
+ * </code></pre>
+ * It is an estimate: text and custom drawing in <code>onDraw</code> are not counted.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class OverdrawInspector {
+
+    protected static String TAG = "OverdrawInspector";
+
+    /**
+     * Number of samples for each side of the row
+     */
+    protected static final int GRID_SIZE = 16;
+
+    private OverdrawInspector() {
+    }
+
+    // -------------------------------------------------------------
+    // Report
+    // -------------------------------------------------------------
+
+    /**
+     * Overdraw of a row
+     */
+    public static class Report {
+
+        protected final List<String> mLayers = new ArrayList<String>();
+        protected float mOverdraw;
+        protected int mMaxDepth;
+
+        /**
+         * @return the description of the painted layers, from the bottom
+         */
+        public List<String> getLayers() {
+            return mLayers;
+        }
+
+        /**
+         * Average number of times a pixel of the row is painted (1 means no overdraw)
+         */
+        public float getOverdraw() {
+            return mOverdraw;
+        }
+
+        /**
+         * Maximum number of layers painted on the same pixel
+         */
+        public int getMaxDepth() {
+            return mMaxDepth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("overdraw=%.2fx maxDepth=%d layers=%s", mOverdraw, mMaxDepth, mLayers);
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Inspect
+    // -------------------------------------------------------------
+
+    /**
+     * Logs a report for each visible row of the list
+     *
+     * @param listView list
+     */
+    public static void dump(AbsListView listView) {
+        int first = listView.getFirstVisiblePosition();
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            Log.d(TAG, "row " + (first + i) + ": " + inspect(listView.getChildAt(i)));
+        }
+    }
+
+    /**
+     * Estimates the overdraw of a row
+     *
+     * @param row row (for example a CardView)
+     * @return report
+     */
+    public static Report inspect(View row) {
+        Report report = new Report();
+        int width = row.getWidth();
+        int height = row.getHeight();
+        if (width <= 0 || height <= 0) return report;
+
+        int[] depth = new int[GRID_SIZE * GRID_SIZE];
+
+        //Ancestors: list, window...
+        List<View> ancestors = new ArrayList<View>();
+        ViewParent parent = row.getParent();
+        while (parent instanceof View) {
+            ancestors.add(0, (View) parent);
+            parent = parent.getParent();
+        }
+        Rect rect = new Rect(0, 0, width, height);
+        for (View ancestor : ancestors) {
+            if (isPainted(ancestor.getBackground()))
+                addLayer(report, depth, rect, null, width, height, name(ancestor) + ":background");
+        }
+
+        collect(row, 0, 0, width, height, depth, report);
+
+        int sum = 0;
+        for (int value : depth) {
+            sum += value;
+            report.mMaxDepth = Math.max(report.mMaxDepth, value);
+        }
+        report.mOverdraw = (float) sum / depth.length;
+        return report;
+    }
+
+    /**
+     * Collects the layers of a view and its children
+     */
+    protected static void collect(View view, int left, int top, int width, int height, int[] depth, Report report) {
+        if (view.getVisibility() != View.VISIBLE || view.getAlpha() <= 0f) return;
+
+        Rect rect = new Rect(left, top, left + view.getWidth(), top + view.getHeight());
+        if (rect.isEmpty()) return;
+
+        //Background
+        Drawable background = view.getBackground();
+        if (isPainted(background)) {
+            Rect hole = null;
+            if (background instanceof ClippedBackgroundDrawable) {
+                Rect clip = ((ClippedBackgroundDrawable) background).getClipRect();
+                if (!clip.isEmpty()) {
+                    hole = new Rect(clip);
+                    hole.offset(left, top);
+                }
+            }
+            addLayer(report, depth, rect, hole, width, height, name(view) + ":background");
+        }
+
+        //Content
+        if (view instanceof SquareImageView) {
+            SquareImageView imageView = (SquareImageView) view;
+            if (isPainted(imageView.getPlaceholder()) && !imageView.isContentOpaque())
+                addLayer(report, depth, rect, null, width, height, name(view) + ":placeholder");
+        }
+        if (view instanceof ImageView) {
+            Drawable drawable = ((ImageView) view).getDrawable();
+            if (isPainted(drawable)) {
+                Rect bounds = new Rect(drawable.getBounds());
+                bounds.offset(left + view.getPaddingLeft(), top + view.getPaddingTop());
+                if (!bounds.intersect(rect) || bounds.isEmpty()) bounds = rect;
+                addLayer(report, depth, bounds, null, width, height, name(view) + ":image");
+            }
+        } else if (view instanceof TextureView) {
+            addLayer(report, depth, rect, null, width, height, name(view) + ":texture");
+        }
+
+        //Children
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                View child = group.getChildAt(i);
+                collect(child,
+                        left + child.getLeft() + (int) child.getTranslationX() - group.getScrollX(),
+                        top + child.getTop() + (int) child.getTranslationY() - group.getScrollY(),
+                        width, height, depth, report);
+            }
+        }
+    }
+
+    /**
+     * Adds a layer to the samples
+     */
+    protected static void addLayer(Report report, int[] depth, Rect rect, Rect hole, int width, int height, String name) {
+        report.mLayers.add(name);
+        for (int y = 0; y < GRID_SIZE; y++) {
+            int py = (2 * y + 1) * height / (2 * GRID_SIZE);
+            for (int x = 0; x < GRID_SIZE; x++) {
+                int px = (2 * x + 1) * width / (2 * GRID_SIZE);
+                if (rect.contains(px, py) && (hole == null || !hole.contains(px, py)))
+                    depth[y * GRID_SIZE + x]++;
+            }
+        }
+    }
+
+    protected static boolean isPainted(Drawable drawable) {
+        return drawable != null && drawable.isVisible() && drawable.getOpacity() != PixelFormat.TRANSPARENT;
+    }
+
+    protected static String name(View view) {
+        String name = view.getClass().getSimpleName();
+        if (view.getId() != View.NO_ID) {
+            try {
+                name += "/" + view.getResources().getResourceEntryName(view.getId());
+            } catch (Exception e) {
+                //Id without name
+            }
+        }
+        return name;
+    }
+}
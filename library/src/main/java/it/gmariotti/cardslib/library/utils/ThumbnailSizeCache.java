@@ -0,0 +1,100 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.utils;
+
+import android.util.SparseArray;
+
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+
+/**
+ * Cache of the thumbnail sizes for each thumbnail layout and column width.
+ * </p>
+ * The thumbnail slots have a fixed aspect, so in a given layout their size depends only on the width
+ * of the column (the row of a list, or the column of a grid). The size is stored after the first layout
+ * and it is used to start the loads at bind time, before the row is laid out again.
+ * A row which was never laid out has no column width: its size is not guessed.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ThumbnailSizeCache {
+
+    /**
+     * Layout resource id -> (column width -> thumbnail size)
+     */
+    protected final SparseArray<SparseArray<ImageSize>> mSizes = new SparseArray<SparseArray<ImageSize>>();
+
+    //Singleton
+    private static ThumbnailSizeCache sInstance;
+
+    protected ThumbnailSizeCache() {
+    }
+
+    public static ThumbnailSizeCache getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new ThumbnailSizeCache();
+    }
+
+    // -------------------------------------------------------------
+    // Cache
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the thumbnail size for a layout and a column width
+     *
+     * @param layoutResourceId resource id of the thumbnail layout
+     * @param columnWidth      width of the column, or 0 if it is not known
+     * @return the size, or <code>null</code> if it is not cached or the column width is not known
+     */
+    public ImageSize get(int layoutResourceId, int columnWidth) {
+        if (columnWidth <= 0) return null;
+        SparseArray<ImageSize> sizes = mSizes.get(layoutResourceId);
+        return sizes != null ? sizes.get(columnWidth) : null;
+    }
+
+    /**
+     * Stores the thumbnail size laid out in a column
+     *
+     * @param layoutResourceId resource id of the thumbnail layout
+     * @param columnWidth      width of the column
+     * @param width            width of the thumbnail
+     * @param height           height of the thumbnail
+     */
+    public void put(int layoutResourceId, int columnWidth, int width, int height) {
+        if (columnWidth <= 0 || width <= 0 || height <= 0) return;
+
+        SparseArray<ImageSize> sizes = mSizes.get(layoutResourceId);
+        if (sizes == null) {
+            sizes = new SparseArray<ImageSize>();
+            mSizes.put(layoutResourceId, sizes);
+        }
+        ImageSize size = sizes.get(columnWidth);
+        if (size == null || size.getWidth() != width || size.getHeight() != height)
+            sizes.put(columnWidth, new ImageSize(width, height));
+    }
+
+    /**
+     * Clears the cache
+     */
+    public void clear() {
+        mSizes.clear();
+    }
+}
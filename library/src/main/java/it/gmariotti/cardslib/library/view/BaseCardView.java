@@ -19,17 +19,23 @@
 package it.gmariotti.cardslib.library.view;
 
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.LinearLayout;
 
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.utils.CardLeakDetector;
+import it.gmariotti.cardslib.library.utils.CardMemoryAccountant;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
+import it.gmariotti.cardslib.library.view.base.CardMeasureCache;
 import it.gmariotti.cardslib.library.view.base.CardViewInterface;
 import it.gmariotti.cardslib.library.view.component.CardHeaderView;
+import it.gmariotti.cardslib.library.view.component.CardShadowPainter;
 import it.gmariotti.cardslib.library.view.component.CardShadowView;
 import it.gmariotti.cardslib.library.view.component.CardThumbnailView;
 
@@ -38,7 +44,7 @@ import it.gmariotti.cardslib.library.view.component.CardThumbnailView;
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
-public class BaseCardView extends LinearLayout implements CardViewInterface {
+public class BaseCardView extends LinearLayout implements CardViewInterface, CardMemoryAccountant.Accountable {
 
     protected static String TAG = "BaseCardView";
 
@@ -87,6 +93,50 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
      */
     protected boolean mForceReplaceInnerLayout =false;
 
+    /**
+     * Shadow rendered by a {@link CardShadowView}
+     */
+    public static final int SHADOW_MODE_VIEW = 0;
+
+    /**
+     * Shadow drawn by the card with the shared {@link CardShadowPainter}
+     */
+    public static final int SHADOW_MODE_DRAW = 1;
+
+    /**
+     * How the shadow is rendered
+     */
+    protected int mShadowMode = SHADOW_MODE_VIEW;
+
+    /**
+     * View drawn above the shadow (in draw mode)
+     */
+    protected View mShadowAnchor;
+
+    /**
+     * Shared painter of the shadow (in draw mode), resolved by {@link #setupShadowView()}
+     */
+    protected CardShadowPainter mShadowPainter;
+
+    /**
+     * Indicates if the space of the shadow is reserved below the anchor
+     */
+    protected boolean mShadowSpaceReserved = false;
+
+    /**
+     * Key of the last measure (card id, content hash, expanded state and specs)
+     */
+    private String mMeasuredId;
+    private int mMeasuredContentHash;
+    private boolean mMeasuredExpanded;
+    private int mMeasuredWidthSpec;
+    private int mMeasuredHeightSpec;
+
+    /**
+     * Indicates if the next measure follows a bind (it can be skipped if the card is unchanged)
+     */
+    private boolean mMeasureAfterBind;
+
     private ViewAspectRatioMeasurer mAspectRatioMeasurer;
 
     private float mAspectRatio;
@@ -124,6 +174,8 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
         //Init attrs
         initAttrs(attrs, defStyle);
 
+        CardMemoryAccountant.getInstance().register(this);
+
         //Init view
         if (!isInEditMode())
             initView();
@@ -141,15 +193,10 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
      */
     protected void initAttrs(AttributeSet attrs, int defStyle) {
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            mAspectRatio = a.getFloat(R.styleable.card_options_aspect_ratio, -1);
-            card_layout_resourceID = a.getResourceId(R.styleable.card_options_card_layout_resourceID, card_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        mAspectRatio = a.getFloat(R.styleable.card_options_aspect_ratio, -1);
+        card_layout_resourceID = a.getResourceId(R.styleable.card_options_card_layout_resourceID, card_layout_resourceID);
+        mShadowMode = a.getInt(R.styleable.card_options_card_shadow_mode, mShadowMode);
     }
 
     /**
@@ -176,6 +223,7 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
      */
     public void setCard(Card card) {
         mCard = card;
+        mMeasureAfterBind = true;
     }
 
     /**
@@ -198,6 +246,14 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
      * @return
      */
     protected void setupShadowView() {
+        if (mShadowMode == SHADOW_MODE_DRAW && mShadowAnchor != null) {
+            if (mShadowPainter == null)
+                mShadowPainter = CardShadowPainter.getInstance(getResources());
+            mInternalShadowLayout.setVisibility(GONE);
+            reserveShadowSpace(mCard == null || mCard.isShadow());
+            return;
+        }
+
         if (mInternalShadowLayout != null) {
             if (mCard != null) {
                 if (!mCard.isShadow()) {
@@ -216,6 +272,105 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
 
         // Get Shadow Layout
         mInternalShadowLayout = (CardShadowView) findViewById(R.id.card_shadow_layout);
+
+        //The shadow is drawn below the view which precedes the shadow layout
+        mShadowAnchor = null;
+        mShadowSpaceReserved = false;
+        if (mInternalShadowLayout != null && mInternalShadowLayout.getParent() instanceof ViewGroup) {
+            ViewGroup parent = (ViewGroup) mInternalShadowLayout.getParent();
+            int index = parent.indexOfChild(mInternalShadowLayout);
+            if (index > 0 && parent.getChildAt(index - 1).getLayoutParams() instanceof MarginLayoutParams)
+                mShadowAnchor = parent.getChildAt(index - 1);
+        }
+    }
+
+    /**
+     * Adds (or removes) the space of the shadow below the anchor
+     *
+     * @param reserve <code>true</code> to reserve the space
+     */
+    protected void reserveShadowSpace(boolean reserve) {
+        if (mShadowAnchor == null || mShadowPainter == null || reserve == mShadowSpaceReserved) return;
+
+        MarginLayoutParams params = (MarginLayoutParams) mShadowAnchor.getLayoutParams();
+        int height = mShadowPainter.getHeight();
+        params.bottomMargin += reserve ? height : -height;
+        mShadowAnchor.setLayoutParams(params);
+        mShadowSpaceReserved = reserve;
+    }
+
+    /**
+     * Draws the shared shadow below the anchor (in draw mode)
+     */
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+
+        if (mShadowSpaceReserved && mShadowPainter != null && mShadowAnchor != null
+                && mShadowAnchor.getVisibility() == VISIBLE) {
+            //Position of the anchor in this view
+            int left = 0;
+            int top = 0;
+            View view = mShadowAnchor;
+            while (view != null && view != this) {
+                left += view.getLeft() + (int) view.getTranslationX();
+                top += view.getTop() + (int) view.getTranslationY();
+                view = view.getParent() instanceof View ? (View) view.getParent() : null;
+            }
+            if (view == this) {
+                mShadowPainter.draw(canvas, left,
+                        top + mShadowAnchor.getHeight(), left + mShadowAnchor.getWidth());
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Memory
+    //--------------------------------------------------------------------------
+
+    /**
+     * Indicates if the view is attached to a window
+     */
+    private boolean mAttachedToWindow;
+
+    /**
+     * Indicates if the view is in the scrap heap of a list (temporarily detached)
+     */
+    private boolean mTemporaryDetached;
+
+    @Override
+    public void onAccount(CardMemoryAccountant.MemorySnapshot snapshot) {
+        snapshot.add(CardMemoryAccountant.METRIC_CARD_VIEWS, 1);
+        if (!mAttachedToWindow || mTemporaryDetached)
+            snapshot.add(CardMemoryAccountant.METRIC_POOLED_VIEWS, 1);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        mTemporaryDetached = false;
+        CardLeakDetector.getInstance().unwatch(this);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttachedToWindow = false;
+        mTemporaryDetached = false;
+        CardLeakDetector.getInstance().watch(this);
+    }
+
+    @Override
+    public void onStartTemporaryDetach() {
+        super.onStartTemporaryDetach();
+        mTemporaryDetached = true;
+    }
+
+    @Override
+    public void onFinishTemporaryDetach() {
+        super.onFinishTemporaryDetach();
+        mTemporaryDetached = false;
     }
 
     //--------------------------------------------------------------------------
@@ -245,6 +400,31 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
         return mInternalShadowLayout;
     }
 
+    /**
+     * Returns how the shadow is rendered
+     *
+     * @return {@link #SHADOW_MODE_VIEW} or {@link #SHADOW_MODE_DRAW}
+     */
+    public int getShadowMode() {
+        return mShadowMode;
+    }
+
+    /**
+     * Sets how the shadow is rendered. It is applied when the card is set.
+     * In {@link #SHADOW_MODE_DRAW} the {@link CardShadowView} is hidden and it is never inflated.
+     *
+     * @param shadowMode {@link #SHADOW_MODE_VIEW} or {@link #SHADOW_MODE_DRAW}
+     */
+    public void setShadowMode(int shadowMode) {
+        if (mShadowMode == shadowMode) return;
+        mShadowMode = shadowMode;
+        if (shadowMode == SHADOW_MODE_VIEW)
+            reserveShadowSpace(false);
+        if (mCard != null)
+            setupShadowView();
+        invalidate();
+    }
+
     /**
      * Returns the view used for Header
      *
@@ -309,6 +489,30 @@ public class BaseCardView extends LinearLayout implements CardViewInterface {
                     MeasureSpec.EXACTLY);
         }
 
+        //Unchanged card bound again: the children keep their measures
+        String id = mCard != null ? mCard.getId() : null;
+        int contentHash = id != null ? mCard.getContentHash() : 0;
+        boolean expanded = mCard != null && mCard.isExpanded();
+        boolean afterBind = mMeasureAfterBind;
+        mMeasureAfterBind = false;
+        if (afterBind && contentHash != 0 && id.equals(mMeasuredId) && contentHash == mMeasuredContentHash
+                && expanded == mMeasuredExpanded
+                && widthMeasureSpec == mMeasuredWidthSpec && heightMeasureSpec == mMeasuredHeightSpec
+                && getMeasuredHeight() > 0) {
+            setMeasuredDimension(getMeasuredWidth(), getMeasuredHeight());
+            return;
+        }
+
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+
+        mMeasuredId = id;
+        mMeasuredContentHash = contentHash;
+        mMeasuredExpanded = expanded;
+        mMeasuredWidthSpec = widthMeasureSpec;
+        mMeasuredHeightSpec = heightMeasureSpec;
+
+        //Natural height only (a row measured with an exact height is not a reference)
+        if (contentHash != 0 && MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY)
+            CardMeasureCache.getInstance().put(id, contentHash, expanded, widthMeasureSpec, getMeasuredHeight());
     }
 }
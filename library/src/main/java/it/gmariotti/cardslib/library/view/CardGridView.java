@@ -24,11 +24,11 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.GridView;
@@ -41,6 +41,11 @@ import java.util.List;
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardGridArrayAdapter;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
+import it.gmariotti.cardslib.library.view.base.ExpandTranslations;
+import it.gmariotti.cardslib.library.view.base.GridReflowAnimator;
+import it.gmariotti.cardslib.library.view.base.ScrollJankDelegate;
+import it.gmariotti.cardslib.library.view.base.ScrollJankMonitor;
 
 /**
  * Card Grid View.
@@ -67,7 +72,8 @@ import it.gmariotti.cardslib.library.internal.CardGridArrayAdapter;
  * CardGridView gridView = (CardGridView) getActivity().findViewById(R.id.gridId);
  * gridView.setAdapter(mCardGridArrayAdapter);
  * </code></pre>
- * This type of view, doesn't support swipe and collapse/expand actions.
+ * The swiped cards are removed with a reflow animation of the remaining cells (see {@link GridReflowAnimator}).
+ * This type of view, doesn't support collapse/expand actions.
  * </p>
  * Currently you have to use the same inner layout for each card in gridView.
  * </p>
@@ -82,6 +88,11 @@ public class CardGridView extends GridView implements CardView.OnExpandListAnima
      */
     protected CardGridArrayAdapter mAdapter;
 
+    /**
+     * Animates the cells after the removals and the undo actions
+     */
+    protected GridReflowAnimator mReflowAnimator;
+
     //--------------------------------------------------------------------------
     // Fields for expand/collapse animation
     //--------------------------------------------------------------------------
@@ -149,14 +160,8 @@ public class CardGridView extends GridView implements CardView.OnExpandListAnima
 
         list_card_layout_resourceID = R.layout.list_card_layout;
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
     }
 
     //--------------------------------------------------------------------------
@@ -193,6 +198,60 @@ public class CardGridView extends GridView implements CardView.OnExpandListAnima
         mAdapter=adapter;
     }
 
+    /**
+     * Returns the animator used to move the cells after the removals and the undo actions
+     *
+     * @return {@link GridReflowAnimator}
+     */
+    public GridReflowAnimator getReflowAnimator() {
+        if (mReflowAnimator == null)
+            mReflowAnimator = new GridReflowAnimator(this);
+        return mReflowAnimator;
+    }
+
+    //--------------------------------------------------------------------------
+    // Jank monitor
+    //--------------------------------------------------------------------------
+
+    /**
+     * Monitor of the frames while the grid scrolls
+     */
+    protected final ScrollJankDelegate mJankDelegate = new ScrollJankDelegate(this);
+
+    /**
+     * Enables the jank monitor, see {@link ScrollJankMonitor}
+     *
+     * @param enabled <code>true</code> to record the frames
+     */
+    public void setJankMonitorEnabled(boolean enabled) {
+        mJankDelegate.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the jank monitor, or <code>null</code> if it was never enabled
+     */
+    public ScrollJankMonitor getJankMonitor() {
+        return mJankDelegate.getMonitor();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        mJankDelegate.onTouchEvent(ev);
+        return super.dispatchTouchEvent(ev);
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        mJankDelegate.onScroll();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mJankDelegate.onDetachedFromWindow();
+    }
+
     //--------------------------------------------------------------------------
     // Expand and Collapse animator
     // Don't use this animator in a grid.
@@ -572,59 +631,20 @@ public class CardGridView extends GridView implements CardView.OnExpandListAnima
 
 
     /**
-     * Calculates the top and bottom bound changes of the selected item. These values are
-     * also used to move the bounds of the items around the one that is actually being
-     * expanded or collapsed.
-     *
-     * This method can be modified to achieve different user experiences depending
-     * on how you want the cells to expand or collapse. In this specific demo, the cells
-     * always try to expand downwards (leaving top bound untouched), and similarly,
-     * collapse upwards (leaving top bound untouched). If the change in bounds
-     * results in the complete disappearance of a cell, its lower bound is moved is
-     * moved to the top of the screen so as not to hide any additional content that
-     * the user has not interacted with yet. Furthermore, if the collapsed cell is
-     * partially off screen when it is first clicked, it is translated such that its
-     * full contents are visible. Lastly, this behaviour varies slightly near the bottom
-     * of the listview in order to account for the fact that the bottom bounds of the actual
-     * listview cannot be modified.
+     * Calculates the top and bottom bound changes of the selected item.
+     * These values are also used to move the bounds of the items around the one that is actually
+     * being expanded or collapsed (see {@link ExpandTranslations}).
      */
     private int[] getTopAndBottomTranslations(int top, int bottom, int yDelta,
                                               boolean isExpanding) {
-        int yTranslateTop = 0;
-        int yTranslateBottom = yDelta;
-
-        int height = bottom - top;
-
-        if (isExpanding) {
-            boolean isOverTop = top < 0;
-            boolean isBelowBottom = (top + height + yDelta) > getHeight();
-            if (isOverTop) {
-                yTranslateTop = top;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isBelowBottom){
-                int deltaBelow = top + height + yDelta - getHeight();
-                yTranslateTop = top - deltaBelow < 0 ? top : deltaBelow;
-                yTranslateBottom = yDelta - yTranslateTop;
-            }
-        } else {
+        int leftoverExtent = 0;
+        if (!isExpanding) {
             int offset = computeVerticalScrollOffset();
             int range = computeVerticalScrollRange();
             int extent = computeVerticalScrollExtent();
-            int leftoverExtent = range-offset - extent;
-
-            boolean isCollapsingBelowBottom = (yTranslateBottom > leftoverExtent);
-            boolean isCellCompletelyDisappearing = bottom - yTranslateBottom < 0;
-
-            if (isCollapsingBelowBottom) {
-                yTranslateTop = yTranslateBottom - leftoverExtent;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isCellCompletelyDisappearing) {
-                yTranslateBottom = bottom;
-                yTranslateTop = yDelta - yTranslateBottom;
-            }
+            leftoverExtent = range - offset - extent;
         }
-
-        return new int[] {yTranslateTop, yTranslateBottom};
+        return ExpandTranslations.compute(top, bottom, yDelta, isExpanding, getHeight(), leftoverExtent);
     }
 
 
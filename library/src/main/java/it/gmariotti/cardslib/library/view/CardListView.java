@@ -23,12 +23,14 @@ import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
+import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
@@ -42,6 +44,14 @@ import java.util.List;
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardArrayAdapter;
+import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
+import it.gmariotti.cardslib.library.view.base.CardDragReorderController;
+import it.gmariotti.cardslib.library.view.base.ExpandTranslations;
+import it.gmariotti.cardslib.library.view.base.ScrollJankDelegate;
+import it.gmariotti.cardslib.library.view.base.ScrollJankMonitor;
+import it.gmariotti.cardslib.library.view.base.CardHeightEstimator;
+import it.gmariotti.cardslib.library.view.component.CardHeaderView;
 
 /**
  * Card List View.
@@ -94,6 +104,78 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
 
     private int[] mTranslate;
 
+    //--------------------------------------------------------------------------
+    // Fields for height estimates
+    //--------------------------------------------------------------------------
+
+    /**
+     * Estimated heights of the rows, used by the scrollbar
+     */
+    protected CardHeightEstimator mHeightEstimator = new CardHeightEstimator();
+
+    private boolean mHeightEstimatesEnabled = true;
+
+    private boolean mHeightEstimatesDirty = true;
+
+    private int mEstimatedWidth;
+
+    private boolean mHeightEstimatesRebuildPending;
+
+    /**
+     * Changes without a range event (i.e. a notifyDataSetChanged() of the app) rebuild the estimates
+     */
+    private final DataSetObserver mEstimatesObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            if (mAdapter == null || !mAdapter.isNotifyingRangeChange())
+                mHeightEstimatesDirty = true;
+        }
+
+        @Override
+        public void onInvalidated() {
+            mHeightEstimatesDirty = true;
+        }
+    };
+
+    /**
+     * Applies the adapter operations to the estimates, reading the cache only for the changed positions
+     */
+    private final BaseCardArrayAdapter.OnRangeChangeListener mEstimatesRangeListener =
+            new BaseCardArrayAdapter.OnRangeChangeListener() {
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            if (!mHeightEstimatesDirty)
+                mHeightEstimator.onItemRangeChanged(mAdapter, mEstimatedWidth, positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (!mHeightEstimatesDirty)
+                mHeightEstimator.onItemRangeInserted(mAdapter, mEstimatedWidth, positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (!mHeightEstimatesDirty)
+                mHeightEstimator.onItemRangeRemoved(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            if (!mHeightEstimatesDirty)
+                mHeightEstimator.onItemMoved(fromPosition, toPosition);
+        }
+    };
+
+    private final Runnable mRebuildHeightEstimates = new Runnable() {
+        @Override
+        public void run() {
+            mHeightEstimatesRebuildPending = false;
+            rebuildHeightEstimates();
+            awakenScrollBars();
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Custom Attrs
     //--------------------------------------------------------------------------
@@ -154,14 +236,8 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
 
         list_card_layout_resourceID = R.layout.list_card_layout;
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
     }
 
     //--------------------------------------------------------------------------
@@ -189,6 +265,12 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
      * @param adapter {@link CardArrayAdapter}
      */
     public void setAdapter(CardArrayAdapter adapter) {
+        if (mAdapter != null) {
+            mAdapter.unregisterDataSetObserver(mEstimatesObserver);
+            mAdapter.unregisterOnRangeChangeListener(mEstimatesRangeListener);
+        }
+        mHeightEstimatesDirty = true;
+
         super.setAdapter(adapter);
 
         //Set Layout used by items
@@ -196,23 +278,473 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
 
         adapter.setParentView(this);
         adapter.setExpandListAnimatorListener(this);
+        adapter.registerDataSetObserver(mEstimatesObserver);
+        adapter.registerOnRangeChangeListener(mEstimatesRangeListener);
         mAdapter=adapter;
     }
 
+    //--------------------------------------------------------------------------
+    // Height estimates
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        updateHeightEstimates();
+    }
+
+    /**
+     * Stores the heights of the rows laid out.
+     * A full rebuild of the estimates is posted after the layout, so it never runs in the layout pass.
+     */
+    protected void updateHeightEstimates() {
+        if (!mHeightEstimatesEnabled || mAdapter == null) return;
+
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (width != mEstimatedWidth)
+            mHeightEstimatesDirty = true;
+        if (mHeightEstimatesDirty || mHeightEstimator.getCount() != mAdapter.getCount()) {
+            mHeightEstimatesDirty = true;
+            if (!mHeightEstimatesRebuildPending) {
+                mHeightEstimatesRebuildPending = true;
+                post(mRebuildHeightEstimates);
+            }
+            return;
+        }
+
+        storeLaidOutHeights();
+    }
+
+    /**
+     * Reloads the estimates of all positions from the cache
+     */
+    protected void rebuildHeightEstimates() {
+        if (!mHeightEstimatesEnabled || mAdapter == null) return;
+
+        mEstimatedWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        mHeightEstimator.rebuild(mAdapter, mEstimatedWidth);
+        mHeightEstimatesDirty = false;
+        storeLaidOutHeights();
+    }
+
+    private void storeLaidOutHeights() {
+        int first = getFirstVisiblePosition() - getHeaderViewsCount();
+        for (int i = 0; i < getChildCount(); i++) {
+            mHeightEstimator.setHeight(first + i, getChildAt(i).getHeight());
+        }
+    }
+
+    /**
+     * Indicates if the scrollbar uses the estimated heights
+     */
+    protected boolean useHeightEstimates() {
+        return mHeightEstimatesEnabled && !mHeightEstimatesDirty && getChildCount() > 0
+                && mHeightEstimator.hasEstimates() && mHeightEstimator.getCount() == mAdapter.getCount();
+    }
+
+    @Override
+    protected int computeVerticalScrollRange() {
+        if (!useHeightEstimates()) return super.computeVerticalScrollRange();
+        return getEstimatedOffset(mHeightEstimator.getCount()) + getPaddingTop() + getPaddingBottom();
+    }
+
+    @Override
+    protected int computeVerticalScrollOffset() {
+        if (!useHeightEstimates()) return super.computeVerticalScrollOffset();
+
+        int position = getFirstVisiblePosition() - getHeaderViewsCount();
+        int top = getChildAt(0).getTop();
+        if (position < 0)
+            return Math.max(0, getPaddingTop() - top);
+        return Math.max(0, getEstimatedOffset(position) + getPaddingTop() - top);
+    }
+
+    @Override
+    protected int computeVerticalScrollExtent() {
+        if (!useHeightEstimates()) return super.computeVerticalScrollExtent();
+        return getHeight();
+    }
+
+    /**
+     * Returns the estimated offset of the top of a card, from the top of the first card.
+     * The rows never laid out use the heights cached by {@link it.gmariotti.cardslib.library.view.base.CardMeasureCache}
+     * or the average height.
+     *
+     * @param position position in the adapter
+     * @return offset in pixels
+     */
+    public int getEstimatedOffset(int position) {
+        return mHeightEstimator.getOffset(position) + position * getDividerHeight();
+    }
+
+    /**
+     * Jumps to an estimated offset (for example the position of a custom scroll thumb)
+     *
+     * @param offset offset from the top of the first card
+     */
+    public void scrollToEstimatedOffset(int offset) {
+        if (mAdapter == null || mAdapter.getCount() == 0) return;
+        if (mHeightEstimatesDirty)
+            rebuildHeightEstimates();
+
+        int position = mHeightEstimator.getPositionForOffset(offset);
+        while (position > 0 && getEstimatedOffset(position) > offset)
+            position--;
+        setSelectionFromTop(position + getHeaderViewsCount(), getEstimatedOffset(position) - offset);
+    }
+
+    public CardHeightEstimator getHeightEstimator() {
+        return mHeightEstimator;
+    }
+
+    public boolean isHeightEstimatesEnabled() {
+        return mHeightEstimatesEnabled;
+    }
+
+    /**
+     * Enables the scrollbar based on the estimated heights (enabled by default)
+     *
+     * @param heightEstimatesEnabled <code>false</code> to use the default scrollbar of the ListView
+     */
+    public void setHeightEstimatesEnabled(boolean heightEstimatesEnabled) {
+        mHeightEstimatesEnabled = heightEstimatesEnabled;
+        mHeightEstimatesDirty = true;
+        awakenScrollBars();
+    }
+
+    //--------------------------------------------------------------------------
+    // Jank monitor
+    //--------------------------------------------------------------------------
+
+    /**
+     * Monitor of the frames while the list scrolls
+     */
+    protected final ScrollJankDelegate mJankDelegate = new ScrollJankDelegate(this);
+
+    /**
+     * Enables the jank monitor, see {@link ScrollJankMonitor}
+     *
+     * @param enabled <code>true</code> to record the frames
+     */
+    public void setJankMonitorEnabled(boolean enabled) {
+        mJankDelegate.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the jank monitor, or <code>null</code> if it was never enabled
+     */
+    public ScrollJankMonitor getJankMonitor() {
+        return mJankDelegate.getMonitor();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        mJankDelegate.onTouchEvent(ev);
+        if (mDragReorderController != null && mDragReorderController.dispatchTouchEvent(ev))
+            return true;
+        return super.dispatchTouchEvent(ev);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mHeightEstimatesRebuildPending) {
+            removeCallbacks(mRebuildHeightEstimates);
+            mHeightEstimatesRebuildPending = false;
+        }
+        mJankDelegate.onDetachedFromWindow();
+        if (mDragReorderController != null)
+            mDragReorderController.cancelDrag();
+    }
+
+    //--------------------------------------------------------------------------
+    // Drag and drop reorder
+    //--------------------------------------------------------------------------
+
+    /**
+     * Controller of the drag and drop reorder
+     */
+    protected CardDragReorderController mDragReorderController;
+
+    /**
+     * Enables the reorder of the cards with a long press drag and drop, see {@link CardDragReorderController}.
+     * The cards which are long clickable can't be dragged.
+     *
+     * @param enabled <code>true</code> to enable the drag
+     */
+    public void setDragReorderEnabled(boolean enabled) {
+        if (enabled && mDragReorderController == null)
+            mDragReorderController = new CardDragReorderController(this, mDragReorderHost);
+        if (mDragReorderController != null)
+            mDragReorderController.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the drag and drop controller, or <code>null</code> if it was never enabled
+     */
+    public CardDragReorderController getDragReorderController() {
+        return mDragReorderController;
+    }
+
+    private final CardDragReorderController.Host mDragReorderHost = new CardDragReorderController.Host() {
+        @Override
+        public int getPositionForView(View child) {
+            int index = indexOfChild(child);
+            if (index < 0 || mAdapter == null) return CardDragReorderController.INVALID_POSITION;
+            int position = getFirstVisiblePosition() + index - getHeaderViewsCount();
+            return position >= 0 && position < mAdapter.getCount() ? position : CardDragReorderController.INVALID_POSITION;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mAdapter != null ? mAdapter.getCount() : 0;
+        }
+
+        @Override
+        public boolean canDrag(int position) {
+            Card card = mAdapter != null ? mAdapter.getItem(position) : null;
+            return card != null && !card.isLongClickable();
+        }
+
+        @Override
+        public boolean isVertical() {
+            return true;
+        }
+
+        @Override
+        public void cancelTouch(MotionEvent cancelEvent) {
+            CardListView.super.dispatchTouchEvent(cancelEvent);
+        }
+
+        @SuppressLint("NewApi")
+        @Override
+        public void scrollBy(int delta) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                scrollListBy(delta);
+            else
+                smoothScrollBy(delta, 0);
+        }
+
+        @Override
+        public boolean onMove(int fromPosition, int toPosition) {
+            return mAdapter != null && mAdapter.move(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onMoveLaidOut() {
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Expand and Collapse animator
     //--------------------------------------------------------------------------
 
     @Override
     public void onExpandStart(CardView viewCard,View expandingLayout) {
+        mJankDelegate.onExpandStart();
+
+        if (mAdapter != null && mAdapter.isAccordionMode()) {
+            //The expanded card which is visible is collapsed with the same animation
+            CardView collapseView = findExpandedCardView(viewCard);
+            Card card = viewCard.getCard();
+            mAdapter.setExpandedCard(card, getPositionForView(viewCard) - getHeaderViewsCount());
+            if (collapseView != null) {
+                prepareAccordionView(viewCard, expandingLayout, collapseView,
+                        collapseView.getInternalExpandLayout());
+                return;
+            }
+        }
         prepareExpandView(viewCard,expandingLayout);
     }
 
     @Override
     public void onCollapseStart(CardView viewCard,View expandingLayout) {
+        mJankDelegate.onExpandStart();
+
+        if (mAdapter != null && mAdapter.isAccordionMode()) {
+            Card card = viewCard.getCard();
+            if (card != null && mAdapter.isExpandedCard(card, getPositionForView(viewCard) - getHeaderViewsCount()))
+                mAdapter.setExpandedCard(null, -1);
+        }
         prepareCollapseView(viewCard,expandingLayout);
     }
 
+    /**
+     * Returns the visible card, other than the given one, whose expand layout is visible
+     */
+    private CardView findExpandedCardView(CardView expandView) {
+        int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child == expandView || !(child instanceof CardView)) continue;
+
+            CardView cardView = (CardView) child;
+            View expandLayout = cardView.getInternalExpandLayout();
+            if (cardView.isExpanded() && expandLayout != null && expandLayout.getVisibility() == View.VISIBLE)
+                return cardView;
+        }
+        return null;
+    }
+
+    /**
+     * Accordion mode: expands a card and collapses the expanded one with a single layout and a single
+     * set of animations.
+     *
+     * 1. The new heights of the two cards are measured, so the position which keeps the expanding card
+     *    on the screen is known before the layout: only one layout runs.
+     * 2. In the pre-draw pass after the layout, the cells are returned to their old bounds and animated
+     *    to the new ones. The cells which leave the screen are drawn in dispatchDraw, the new cells
+     *    move with their neighbours.
+     * 3. The extra content of the expanding card fades in while the other one fades out.
+     */
+    private void prepareAccordionView(final CardView expandView, final View expandingLayout,
+                                      final CardView collapseView, final View collapsingLayout) {
+        final Card expandCard = expandView.getCard();
+        final Card collapseCard = collapseView.getCard();
+
+        /* Store the original top and bottom bounds of all the cells.*/
+        final HashMap<View, int[]> oldCoordinates = new HashMap<View, int[]>();
+        int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View v = getChildAt(i);
+            if (Build.VERSION.SDK_INT >= 16){
+                v.setHasTransientState(true);
+            }
+            oldCoordinates.put(v, new int[] {v.getTop(), v.getBottom()});
+        }
+
+        /* Measure the new heights: the collapsing card keeps its extra content until the end of the animation.*/
+        int widthSpec = MeasureSpec.makeMeasureSpec(collapseView.getWidth(), MeasureSpec.EXACTLY);
+        int heightSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        if (collapsingLayout != null)
+            collapsingLayout.setVisibility(View.GONE);
+        collapseView.measure(widthSpec, heightSpec);
+        int collapsedHeight = collapseView.getMeasuredHeight();
+        if (collapsingLayout != null)
+            collapsingLayout.setVisibility(View.VISIBLE);
+        collapseView.setLayoutParams(new AbsListView.LayoutParams(AbsListView.LayoutParams.MATCH_PARENT,
+                collapsedHeight));
+
+        if (expandingLayout != null)
+            expandingLayout.setVisibility(View.VISIBLE);
+        expandView.measure(MeasureSpec.makeMeasureSpec(expandView.getWidth(), MeasureSpec.EXACTLY), heightSpec);
+        int expandedHeight = expandView.getMeasuredHeight();
+
+        /* The new top of the expanding card, if the first cell doesn't move.*/
+        int newTop = expandView.getTop();
+        if (collapseView.getTop() < expandView.getTop())
+            newTop += collapsedHeight - collapseView.getHeight();
+        int newBottom = newTop + expandedHeight;
+
+        /* Scroll the list (in the same layout) so that the expanding card is on the screen.*/
+        int listTop = getPaddingTop();
+        int listBottom = getHeight() - getPaddingBottom();
+        int shift = 0;
+        if (newBottom > listBottom)
+            shift = Math.max(0, Math.min(newBottom - listBottom, newTop - listTop));
+        if (newTop < listTop)
+            shift = newTop - listTop;
+        setSelectionFromTop(getPositionForView(expandView), newTop - shift - listTop);
+
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+
+            @Override
+            public boolean onPreDraw() {
+                observer.removeOnPreDrawListener(this);
+
+                /* The movement of the first and of the last cells which stay on the screen.*/
+                int childCount = getChildCount();
+                int firstSurvivor = -1;
+                int firstDelta = 0;
+                int lastDelta = 0;
+                for (int i = 0; i < childCount; i++) {
+                    View v = getChildAt(i);
+                    int[] old = oldCoordinates.get(v);
+                    if (old == null || v == expandView || v == collapseView) continue;
+                    if (firstSurvivor < 0) {
+                        firstSurvivor = i;
+                        firstDelta = v.getTop() - old[0];
+                    }
+                    lastDelta = v.getTop() - old[0];
+                }
+
+                ArrayList<Animator> animations = new ArrayList<Animator>();
+
+                /* The cells on the screen after the layout are animated from their old bounds.*/
+                for (int i = 0; i < childCount; i++) {
+                    View v = getChildAt(i);
+                    int top = v.getTop();
+                    int bottom = v.getBottom();
+                    int[] old = oldCoordinates.remove(v);
+                    if (old == null) {
+                        int delta = firstSurvivor >= 0 && i < firstSurvivor ? firstDelta : lastDelta;
+                        old = new int[] {top - delta, bottom - delta};
+                    } else if (Build.VERSION.SDK_INT >= 16){
+                        v.setHasTransientState(false);
+                    }
+                    v.setTop(old[0]);
+                    v.setBottom(old[1]);
+                    animations.add(getAnimation(v, top - old[0], bottom - old[1]));
+                }
+
+                /* The cells which left the screen move with their neighbours.*/
+                int expandOldTop = expandView.getTop();
+                for (View v : oldCoordinates.keySet()) {
+                    int[] old = oldCoordinates.get(v);
+                    v.setTop(old[0]);
+                    v.setBottom(old[1]);
+                    mViewsToDraw.add(v);
+                    int delta = old[0] < expandOldTop ? firstDelta : lastDelta;
+                    animations.add(getAnimation(v, delta, delta));
+                }
+
+                /* Fade the extra contents.*/
+                if (expandingLayout != null)
+                    animations.add(ObjectAnimator.ofFloat(expandingLayout, View.ALPHA, 0, 1));
+                if (collapsingLayout != null)
+                    animations.add(ObjectAnimator.ofFloat(collapsingLayout, View.ALPHA, 1, 0));
+
+                CardHeaderView header = collapseView.getInternalHeaderLayout();
+                if (header != null && header.getImageButtonExpand() != null)
+                    header.getImageButtonExpand().setSelected(false);
+
+                /* Disabled the ListView for the duration of the animation.*/
+                setEnabled(false);
+                setClickable(false);
+
+                AnimatorSet s = new AnimatorSet();
+                s.playTogether(animations);
+                s.addListener(new AnimatorListenerAdapter() {
+                    @Override
+                    public void onAnimationEnd(Animator animation) {
+                        mJankDelegate.onExpandEnd();
+
+                        //The same end as a collapse and an expand of a single card
+                        endCollapse(collapseView, collapsingLayout);
+                        expandView.setExpanded(true);
+
+                        setEnabled(true);
+                        setClickable(true);
+                        for (View v : mViewsToDraw) {
+                            if (Build.VERSION.SDK_INT >= 16){
+                                v.setHasTransientState(false);
+                            }
+                        }
+                        mViewsToDraw.clear();
+
+                        if (collapseCard != null && collapseCard.getOnCollapseAnimatorEndListener() != null)
+                            collapseCard.getOnCollapseAnimatorEndListener().onCollapseEnd(collapseCard);
+                        if (expandCard != null && expandCard.getOnExpandAnimatorEndListener() != null)
+                            expandCard.getOnExpandAnimatorEndListener().onExpandEnd(expandCard);
+                    }
+                });
+                s.start();
+                return true;
+            }
+        });
+    }
+
     private void prepareExpandView(final CardView view,final View expandingLayout) {
         final Card card = (Card)getItemAtPosition(getPositionForView
                 (view));
@@ -350,6 +882,7 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
                 s.addListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationEnd(Animator animation) {
+                        mJankDelegate.onExpandEnd();
                         view.setExpanded(true);//card.setExpanded(true);
                         setEnabled(true);
                         setClickable(true);
@@ -540,16 +1073,10 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
                 s.addListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationEnd(Animator animation) {
-                        expandingLayout.setVisibility(View.GONE);
-                        view.setLayoutParams(new AbsListView.LayoutParams(AbsListView
-                                .LayoutParams.MATCH_PARENT, AbsListView.LayoutParams.WRAP_CONTENT));
-                        view.setExpanded(false);
+                        mJankDelegate.onExpandEnd();
+                        endCollapse(view, expandingLayout);
                         setEnabled(true);
                         setClickable(true);
-                        /* Note that alpha must be set back to 1 in case this view is reused
-                        * by a cell that was expanded, but not yet collapsed, so its state
-                        * should persist in an expanded state with the extra content visible.*/
-                        expandingLayout.setAlpha(1);
 
                         if (card.getOnCollapseAnimatorEndListener()!=null)
                             card.getOnCollapseAnimatorEndListener().onCollapseEnd(card);
@@ -565,59 +1092,37 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
 
 
     /**
-     * Calculates the top and bottom bound changes of the selected item. These values are
-     * also used to move the bounds of the items around the one that is actually being
-     * expanded or collapsed.
-     *
-     * This method can be modified to achieve different user experiences depending
-     * on how you want the cells to expand or collapse. In this specific demo, the cells
-     * always try to expand downwards (leaving top bound untouched), and similarly,
-     * collapse upwards (leaving top bound untouched). If the change in bounds
-     * results in the complete disappearance of a cell, its lower bound is moved is
-     * moved to the top of the screen so as not to hide any additional content that
-     * the user has not interacted with yet. Furthermore, if the collapsed cell is
-     * partially off screen when it is first clicked, it is translated such that its
-     * full contents are visible. Lastly, this behaviour varies slightly near the bottom
-     * of the listview in order to account for the fact that the bottom bounds of the actual
-     * listview cannot be modified.
+     * Ends the collapse of a card: it hides the extra content, restores the height of the cell
+     * and marks the card as collapsed.
+     */
+    private void endCollapse(CardView view, View expandingLayout) {
+        if (expandingLayout != null)
+            expandingLayout.setVisibility(View.GONE);
+        view.setLayoutParams(new AbsListView.LayoutParams(AbsListView
+                .LayoutParams.MATCH_PARENT, AbsListView.LayoutParams.WRAP_CONTENT));
+        view.setExpanded(false);
+        /* Note that alpha must be set back to 1 in case this view is reused
+        * by a cell that was expanded, but not yet collapsed, so its state
+        * should persist in an expanded state with the extra content visible.*/
+        if (expandingLayout != null)
+            expandingLayout.setAlpha(1);
+    }
+
+    /**
+     * Calculates the top and bottom bound changes of the selected item.
+     * These values are also used to move the bounds of the items around the one that is actually
+     * being expanded or collapsed (see {@link ExpandTranslations}).
      */
     private int[] getTopAndBottomTranslations(int top, int bottom, int yDelta,
                                               boolean isExpanding) {
-        int yTranslateTop = 0;
-        int yTranslateBottom = yDelta;
-
-        int height = bottom - top;
-
-        if (isExpanding) {
-            boolean isOverTop = top < 0;
-            boolean isBelowBottom = (top + height + yDelta) > getHeight();
-            if (isOverTop) {
-                yTranslateTop = top;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isBelowBottom){
-                int deltaBelow = top + height + yDelta - getHeight();
-                yTranslateTop = top - deltaBelow < 0 ? top : deltaBelow;
-                yTranslateBottom = yDelta - yTranslateTop;
-            }
-        } else {
+        int leftoverExtent = 0;
+        if (!isExpanding) {
             int offset = computeVerticalScrollOffset();
             int range = computeVerticalScrollRange();
             int extent = computeVerticalScrollExtent();
-            int leftoverExtent = range-offset - extent;
-
-            boolean isCollapsingBelowBottom = (yTranslateBottom > leftoverExtent);
-            boolean isCellCompletelyDisappearing = bottom - yTranslateBottom < 0;
-
-            if (isCollapsingBelowBottom) {
-                yTranslateTop = yTranslateBottom - leftoverExtent;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isCellCompletelyDisappearing) {
-                yTranslateBottom = bottom;
-                yTranslateTop = yDelta - yTranslateBottom;
-            }
+            leftoverExtent = range - offset - extent;
         }
-
-        return new int[] {yTranslateTop, yTranslateBottom};
+        return ExpandTranslations.compute(top, bottom, yDelta, isExpanding, getHeight(), leftoverExtent);
     }
 
 
@@ -654,21 +1159,22 @@ public class CardListView extends ListView implements CardView.OnExpandListAnima
     protected void dispatchDraw(Canvas canvas) {
         super.dispatchDraw(canvas);
 
-        if (mViewsToDraw.size() == 0) {
-            return;
-        }
-
         for (View v: mViewsToDraw) {
             canvas.translate(0, v.getTop());
             v.draw(canvas);
             canvas.translate(0, -v.getTop());
         }
+
+        //The dragged card is drawn over the rows
+        if (mDragReorderController != null)
+            mDragReorderController.draw(canvas);
     }
 
     @Override
     protected void onScrollChanged(int l, int t, int oldl, int oldt) {
         super.onScrollChanged(l, t, oldl, oldt);
 
+        mJankDelegate.onScroll();
         preloadImage();
     }
 
@@ -1,12 +1,18 @@
 package it.gmariotti.cardslib.library.view;
 
 import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardArrayAdapter;
 import it.gmariotti.cardslib.library.internal.CardArrayRecyclerAdapter;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
+import it.gmariotti.cardslib.library.view.base.CardDragReorderController;
+import it.gmariotti.cardslib.library.view.base.ScrollJankDelegate;
+import it.gmariotti.cardslib.library.view.base.ScrollJankMonitor;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.view.MotionEvent;
 import android.view.View;
 
 public class CardRecyclerView extends RecyclerView implements CardView.OnExpandListAnimatorListener {
@@ -53,16 +59,165 @@ public class CardRecyclerView extends RecyclerView implements CardView.OnExpandL
 
         list_card_layout_resourceID = R.layout.list_card_layout;
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
+    }
 
-        try {
-            list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+    //--------------------------------------------------------------------------
+    // Jank monitor
+    //--------------------------------------------------------------------------
+
+    /**
+     * Monitor of the frames while the list scrolls
+     */
+    protected final ScrollJankDelegate mJankDelegate = new ScrollJankDelegate(this);
+
+    /**
+     * Enables the jank monitor, see {@link ScrollJankMonitor}
+     *
+     * @param enabled <code>true</code> to record the frames
+     */
+    public void setJankMonitorEnabled(boolean enabled) {
+        mJankDelegate.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the jank monitor, or <code>null</code> if it was never enabled
+     */
+    public ScrollJankMonitor getJankMonitor() {
+        return mJankDelegate.getMonitor();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        mJankDelegate.onTouchEvent(ev);
+        if (mDragReorderController != null && mDragReorderController.dispatchTouchEvent(ev))
+            return true;
+        return super.dispatchTouchEvent(ev);
+    }
+
+    @Override
+    public void smoothScrollBy(int dx, int dy) {
+        mJankDelegate.onScroll();
+        super.smoothScrollBy(dx, dy);
+    }
+
+    @Override
+    public void smoothScrollToPosition(int position) {
+        mJankDelegate.onScroll();
+        super.smoothScrollToPosition(position);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mJankDelegate.onDetachedFromWindow();
+        if (mDragReorderController != null)
+            mDragReorderController.cancelDrag();
+    }
+
+    //--------------------------------------------------------------------------
+    // Drag and drop reorder
+    //--------------------------------------------------------------------------
+
+    /**
+     * Controller of the drag and drop reorder
+     */
+    protected CardDragReorderController mDragReorderController;
+
+    /**
+     * Item animator suspended while the dropped card is laid out
+     */
+    private ItemAnimator mSuspendedItemAnimator;
+
+    /**
+     * Enables the reorder of the cards with a long press drag and drop, see {@link CardDragReorderController}.
+     * The cards which are long clickable can't be dragged.
+     * The cards are dragged along the axis of the layout manager.
+     *
+     * @param enabled <code>true</code> to enable the drag
+     */
+    public void setDragReorderEnabled(boolean enabled) {
+        if (enabled && mDragReorderController == null)
+            mDragReorderController = new CardDragReorderController(this, mDragReorderHost);
+        if (mDragReorderController != null)
+            mDragReorderController.setEnabled(enabled);
     }
 
+    /**
+     * Returns the drag and drop controller, or <code>null</code> if it was never enabled
+     */
+    public CardDragReorderController getDragReorderController() {
+        return mDragReorderController;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+
+        //The dragged card is drawn over the rows
+        if (mDragReorderController != null)
+            mDragReorderController.draw(canvas);
+    }
+
+    private final CardDragReorderController.Host mDragReorderHost = new CardDragReorderController.Host() {
+        @Override
+        public int getPositionForView(View child) {
+            int position = getChildPosition(child);
+            return position == NO_POSITION ? CardDragReorderController.INVALID_POSITION : position;
+        }
+
+        @Override
+        public int getItemCount() {
+            return getAdapter() != null ? getAdapter().getItemCount() : 0;
+        }
+
+        @Override
+        public boolean canDrag(int position) {
+            Card card = mAdapter != null && position < mAdapter.getCount() ? mAdapter.getItem(position) : null;
+            return card != null && !card.isLongClickable();
+        }
+
+        @Override
+        public boolean isVertical() {
+            LayoutManager layoutManager = getLayoutManager();
+            return layoutManager == null || layoutManager.canScrollVertically() || !layoutManager.canScrollHorizontally();
+        }
+
+        @Override
+        public void cancelTouch(MotionEvent cancelEvent) {
+            CardRecyclerView.super.dispatchTouchEvent(cancelEvent);
+        }
+
+        @Override
+        public void scrollBy(int delta) {
+            if (isVertical())
+                CardRecyclerView.this.scrollBy(0, delta);
+            else
+                CardRecyclerView.this.scrollBy(delta, 0);
+        }
+
+        @Override
+        public boolean onMove(int fromPosition, int toPosition) {
+            if (mAdapter == null) return false;
+            //The rows are already in their new positions: the item animator would move them from the old ones
+            mSuspendedItemAnimator = getItemAnimator();
+            setItemAnimator(null);
+            boolean moved = mAdapter.move(fromPosition, toPosition);
+            if (!moved)
+                onMoveLaidOut();
+            return moved;
+        }
+
+        @Override
+        public void onMoveLaidOut() {
+            if (mSuspendedItemAnimator != null) {
+                setItemAnimator(mSuspendedItemAnimator);
+                mSuspendedItemAnimator = null;
+            }
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Adapter
     //--------------------------------------------------------------------------
@@ -74,7 +229,12 @@ public class CardRecyclerView extends RecyclerView implements CardView.OnExpandL
      * @param adapter {@link CardArrayAdapter}
      */
     public void setAdapter(CardArrayAdapter adapter) {
-        super.setAdapter(new CardArrayRecyclerAdapter(adapter));
+        //Reuse the wrapper of the same adapter
+        RecyclerView.Adapter<?> current = getAdapter();
+        if (!(current instanceof CardArrayRecyclerAdapter)
+                || ((CardArrayRecyclerAdapter) current).getCardArrayAdapter() != adapter) {
+            super.setAdapter(new CardArrayRecyclerAdapter(adapter));
+        }
 
         //Set Layout used by items
         adapter.setRowLayoutId(list_card_layout_resourceID);
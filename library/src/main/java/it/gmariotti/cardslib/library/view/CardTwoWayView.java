@@ -24,11 +24,11 @@ import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
@@ -42,6 +42,10 @@ import org.lucasr.twowayview.TwoWayView;
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardArrayAdapter;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
+import it.gmariotti.cardslib.library.view.base.ExpandTranslations;
+import it.gmariotti.cardslib.library.view.base.ScrollJankDelegate;
+import it.gmariotti.cardslib.library.view.base.ScrollJankMonitor;
 
 /**
  * Card List View.
@@ -147,14 +151,8 @@ public class CardTwoWayView extends TwoWayView implements CardView.OnExpandListA
 
         list_card_layout_resourceID = R.layout.list_card_layout;
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        list_card_layout_resourceID = a.getResourceId(R.styleable.card_options_list_card_layout_resourceID, this.list_card_layout_resourceID);
     }
 
     //--------------------------------------------------------------------------
@@ -192,17 +190,62 @@ public class CardTwoWayView extends TwoWayView implements CardView.OnExpandListA
         mAdapter = adapter;
     }
 
+    //--------------------------------------------------------------------------
+    // Jank monitor
+    //--------------------------------------------------------------------------
+
+    /**
+     * Monitor of the frames while the list scrolls
+     */
+    protected final ScrollJankDelegate mJankDelegate = new ScrollJankDelegate(this);
+
+    /**
+     * Enables the jank monitor, see {@link ScrollJankMonitor}
+     *
+     * @param enabled <code>true</code> to record the frames
+     */
+    public void setJankMonitorEnabled(boolean enabled) {
+        mJankDelegate.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the jank monitor, or <code>null</code> if it was never enabled
+     */
+    public ScrollJankMonitor getJankMonitor() {
+        return mJankDelegate.getMonitor();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        mJankDelegate.onTouchEvent(ev);
+        return super.dispatchTouchEvent(ev);
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        mJankDelegate.onScroll();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mJankDelegate.onDetachedFromWindow();
+    }
+
     //--------------------------------------------------------------------------
     // Expand and Collapse animator
     //--------------------------------------------------------------------------
 
     @Override
     public void onExpandStart(CardView viewCard,View expandingLayout) {
+        mJankDelegate.onExpandStart();
         prepareExpandView(viewCard,expandingLayout);
     }
 
     @Override
     public void onCollapseStart(CardView viewCard,View expandingLayout) {
+        mJankDelegate.onExpandStart();
         prepareCollapseView(viewCard,expandingLayout);
     }
 
@@ -342,6 +385,7 @@ public class CardTwoWayView extends TwoWayView implements CardView.OnExpandListA
                 s.addListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationEnd(Animator animation) {
+                        mJankDelegate.onExpandEnd();
                         view.setExpanded(true);//card.setExpanded(true);
                         setEnabled(true);
                         setClickable(true);
@@ -532,6 +576,7 @@ public class CardTwoWayView extends TwoWayView implements CardView.OnExpandListA
                 s.addListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationEnd(Animator animation) {
+                        mJankDelegate.onExpandEnd();
                         expandingLayout.setVisibility(View.GONE);
                         view.setLayoutParams(new AbsListView.LayoutParams(
                                 AbsListView.LayoutParams.MATCH_PARENT,
@@ -558,59 +603,20 @@ public class CardTwoWayView extends TwoWayView implements CardView.OnExpandListA
 
 
     /**
-     * Calculates the top and bottom bound changes of the selected item. These values are
-     * also used to move the bounds of the items around the one that is actually being
-     * expanded or collapsed.
-     *
-     * This method can be modified to achieve different user experiences depending
-     * on how you want the cells to expand or collapse. In this specific demo, the cells
-     * always try to expand downwards (leaving top bound untouched), and similarly,
-     * collapse upwards (leaving top bound untouched). If the change in bounds
-     * results in the complete disappearance of a cell, its lower bound is moved is
-     * moved to the top of the screen so as not to hide any additional content that
-     * the user has not interacted with yet. Furthermore, if the collapsed cell is
-     * partially off screen when it is first clicked, it is translated such that its
-     * full contents are visible. Lastly, this behaviour varies slightly near the bottom
-     * of the TwoWayView in order to account for the fact that the bottom bounds of the actual
-     * TwoWayView cannot be modified.
+     * Calculates the top and bottom bound changes of the selected item.
+     * These values are also used to move the bounds of the items around the one that is actually
+     * being expanded or collapsed (see {@link ExpandTranslations}).
      */
     private int[] getTopAndBottomTranslations(int top, int bottom, int yDelta,
                                               boolean isExpanding) {
-        int yTranslateTop = 0;
-        int yTranslateBottom = yDelta;
-
-        int height = bottom - top;
-
-        if (isExpanding) {
-            boolean isOverTop = top < 0;
-            boolean isBelowBottom = (top + height + yDelta) > getHeight();
-            if (isOverTop) {
-                yTranslateTop = top;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isBelowBottom) {
-                int deltaBelow = top + height + yDelta - getHeight();
-                yTranslateTop = top - deltaBelow < 0 ? top : deltaBelow;
-                yTranslateBottom = yDelta - yTranslateTop;
-            }
-        } else {
+        int leftoverExtent = 0;
+        if (!isExpanding) {
             int offset = computeVerticalScrollOffset();
             int range = computeVerticalScrollRange();
             int extent = computeVerticalScrollExtent();
-            int leftoverExtent = range-offset - extent;
-
-            boolean isCollapsingBelowBottom = (yTranslateBottom > leftoverExtent);
-            boolean isCellCompletelyDisappearing = bottom - yTranslateBottom < 0;
-
-            if (isCollapsingBelowBottom) {
-                yTranslateTop = yTranslateBottom - leftoverExtent;
-                yTranslateBottom = yDelta - yTranslateTop;
-            } else if (isCellCompletelyDisappearing) {
-                yTranslateBottom = bottom;
-                yTranslateTop = yDelta - yTranslateBottom;
-            }
+            leftoverExtent = range - offset - extent;
         }
-
-        return new int[] {yTranslateTop, yTranslateBottom};
+        return ExpandTranslations.compute(top, bottom, yDelta, isExpanding, getHeight(), leftoverExtent);
     }
 
 
@@ -25,6 +25,8 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.view.View;
@@ -38,10 +40,13 @@ import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardExpand;
 import it.gmariotti.cardslib.library.internal.CardHeader;
 import it.gmariotti.cardslib.library.internal.CardThumbnail;
+import it.gmariotti.cardslib.library.utils.CardMetrics;
 import it.gmariotti.cardslib.library.view.component.CardHeaderView;
 import it.gmariotti.cardslib.library.view.component.CardThumbnailView;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissAdapterViewTouchListener;
 import it.gmariotti.cardslib.library.view.listener.SwipeDismissViewTouchListener;
+import it.gmariotti.cardslib.library.widget.ClippedBackgroundDrawable;
+import it.gmariotti.cardslib.library.widget.SquareImageView;
 
 /**
  * Card view
@@ -130,6 +135,11 @@ public class CardView extends BaseCardView {
      */
     protected View mInternalMainCardLayout;
 
+    /**
+     * Area of the main layout covered by an opaque thumbnail
+     */
+    private final Rect mOpaqueRect = new Rect();
+
     /**
      *  Content Layout
      */
@@ -207,20 +217,28 @@ public class CardView extends BaseCardView {
     @Override
     public void setCard(Card card){
 
-        super.setCard(card);
-        if (card!=null){
-            mCardHeader=card.getCardHeader();
-            mCardThumbnail=card.getCardThumbnail();
-            mCardExpand=card.getCardExpand();
-        }
+        CardMetrics metrics = CardMetrics.getInstance();
+        boolean recycled = isRecycle();
+        boolean forceReplace = isForceReplaceInnerLayout();
+        long start = metrics.beginBind();
+        try {
+            super.setCard(card);
+            if (card!=null){
+                mCardHeader=card.getCardHeader();
+                mCardThumbnail=card.getCardThumbnail();
+                mCardExpand=card.getCardExpand();
+            }
 
-        //Retrieve all IDs
-        if (!isRecycle()){
-            retrieveLayoutIDs();
-        }
+            //Retrieve all IDs
+            if (!isRecycle()){
+                retrieveLayoutIDs();
+            }
 
-        //Build UI
-        buildUI();
+            //Build UI
+            buildUI();
+        } finally {
+            metrics.endBind(card, recycled, recycled && forceReplace, start);
+        }
     }
 
     /**
@@ -256,23 +274,56 @@ public class CardView extends BaseCardView {
 
         mCard.setCardView(this);
 
+        CardMetrics metrics = CardMetrics.getInstance();
+        long start;
+
         //Setup Header view
-        setupHeaderView();
+        start = metrics.beginPhase(CardMetrics.PHASE_HEADER);
+        try {
+            setupHeaderView();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_HEADER, start);
+        }
 
         //Setup Main View
-        setupMainView();
+        start = metrics.beginPhase(CardMetrics.PHASE_MAIN);
+        try {
+            setupMainView();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_MAIN, start);
+        }
 
         //setup Thumbnail
-        setupThumbnailView();
+        start = metrics.beginPhase(CardMetrics.PHASE_THUMBNAIL);
+        try {
+            setupThumbnailView();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_THUMBNAIL, start);
+        }
 
         //Setup Expand View
-        setupExpandView();
+        start = metrics.beginPhase(CardMetrics.PHASE_EXPAND);
+        try {
+            setupExpandView();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_EXPAND, start);
+        }
 
         //Setup Listeners
-        setupListeners();
+        start = metrics.beginPhase(CardMetrics.PHASE_LISTENERS);
+        try {
+            setupListeners();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_LISTENERS, start);
+        }
 
         //Setup Drawable Resources
-        setupDrawableResources();
+        start = metrics.beginPhase(CardMetrics.PHASE_DRAWABLES);
+        try {
+            setupDrawableResources();
+        } finally {
+            metrics.endPhase(mCard, CardMetrics.PHASE_DRAWABLES, start);
+        }
     }
 
 
@@ -298,6 +349,8 @@ public class CardView extends BaseCardView {
 
         //Get ThumbnailLayout
         mInternalThumbnailLayout = (CardThumbnailView) findViewById(R.id.card_thumbnail_layout);
+
+        setupClippedBackground();
     }
 
     public boolean playVideo() {
@@ -894,10 +947,73 @@ public class CardView extends BaseCardView {
         if (drawableResourceId!=0){
             if (mInternalMainCardLayout!=null){
                 mInternalMainCardLayout.setBackgroundResource(drawableResourceId);
+                setupClippedBackground();
             }
         }
     }
 
+    //--------------------------------------------------------------------------
+    // Overdraw
+    //--------------------------------------------------------------------------
+
+    /**
+     * Wraps the background of the MainLayout with a {@link ClippedBackgroundDrawable},
+     * so it isn't painted below an opaque thumbnail.
+     */
+    @SuppressWarnings("deprecation")
+    protected void setupClippedBackground() {
+        if (mInternalMainCardLayout == null || mInternalThumbnailLayout == null) return;
+
+        Drawable background = mInternalMainCardLayout.getBackground();
+        if (background == null || background instanceof ClippedBackgroundDrawable) return;
+
+        //Keep the padding of the layout
+        int left = mInternalMainCardLayout.getPaddingLeft();
+        int top = mInternalMainCardLayout.getPaddingTop();
+        int right = mInternalMainCardLayout.getPaddingRight();
+        int bottom = mInternalMainCardLayout.getPaddingBottom();
+        mInternalMainCardLayout.setBackgroundDrawable(new ClippedBackgroundDrawable(background));
+        mInternalMainCardLayout.setPadding(left, top, right, bottom);
+
+        mInternalThumbnailLayout.setOnOpacityChangedListener(new SquareImageView.OnOpacityChangedListener() {
+            @Override
+            public void onOpacityChanged(SquareImageView view, boolean opaque) {
+                updateBackgroundClip();
+            }
+        });
+    }
+
+    /**
+     * Updates the area of the background covered by the thumbnail.
+     * It is called when the opacity of the thumbnail changes and on layout: the background
+     * invalidates itself only if the area changed.
+     */
+    protected void updateBackgroundClip() {
+        if (mInternalMainCardLayout == null) return;
+        Drawable background = mInternalMainCardLayout.getBackground();
+        if (!(background instanceof ClippedBackgroundDrawable)) return;
+
+        boolean opaque = mInternalThumbnailLayout != null && mInternalThumbnailLayout.getOpaqueRect(mOpaqueRect);
+        if (opaque) {
+            //Position of the thumbnail in the MainLayout
+            View view = mInternalThumbnailLayout;
+            while (view != null && view != mInternalMainCardLayout) {
+                mOpaqueRect.offset(view.getLeft() + (int) view.getTranslationX(),
+                        view.getTop() + (int) view.getTranslationY());
+                view = view.getParent() instanceof View ? (View) view.getParent() : null;
+            }
+            opaque = view == mInternalMainCardLayout;
+        }
+        ((ClippedBackgroundDrawable) background).setClipRect(opaque ? mOpaqueRect : null);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        //The thumbnail may have moved or changed size
+        updateBackgroundClip();
+    }
+
     @Override
     public void setOnTouchListener(OnTouchListener l) {
         super.setOnTouchListener(l);
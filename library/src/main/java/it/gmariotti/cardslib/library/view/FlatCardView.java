@@ -0,0 +1,961 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.MenuItem;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.PopupMenu;
+
+import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.ViewScaleType;
+import com.nostra13.universalimageloader.core.display.SimpleBitmapDisplayer;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+import com.nostra13.universalimageloader.core.imageaware.NonViewAware;
+import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardHeader;
+import it.gmariotti.cardslib.library.internal.CardThumbnail;
+import it.gmariotti.cardslib.library.internal.data.CardBehavior;
+import it.gmariotti.cardslib.library.internal.data.DataCard;
+import it.gmariotti.cardslib.library.utils.CardMetrics;
+import it.gmariotti.cardslib.library.view.component.CardShadowPainter;
+
+/**
+ * {@link CardView} which draws the standard cards in a single view.
+ * </p>
+ * A standard card uses the base inner layouts: a header with a title and an optional overflow button,
+ * a thumbnail with a drawable or url resource, a title and the shadow. These elements are drawn with
+ * cached {@link StaticLayout}s and drawables, without child views.
+ * When a card needs a custom layout (custom inner layout, expand, header buttons, video, camera...)
+ * the view is promoted: it inflates the standard card layout and works as a {@link CardView}.
+ * </p>
+ * Use it in a list with the <code>list_card_flat_layout</code> row layout:
+ * <pre><code>
+ *  <it.gmariotti.cardslib.library.view.CardListView
+ *      android:layout_width="match_parent"
+ *      android:layout_height="match_parent"
+ *      android:id="@+id/carddemo_list"
+ *      card:list_card_layout_resourceID="@layout/list_card_flat_layout" />
+ * </code></pre>
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class FlatCardView extends CardView {
+
+    protected static String TAG = "FlatCardView";
+
+    /**
+     * Classes which don't override the setup of the base inner layouts (class -> standard)
+     */
+    private static final Map<Class<?>, Boolean> sStandardClasses = new HashMap<Class<?>, Boolean>();
+
+    /**
+     * Attributes read by {@link #initOverflowDrawable(int)} (sorted as required by obtainStyledAttributes)
+     */
+    private static final int[] OVERFLOW_ATTRS = {
+            android.R.attr.src,
+            android.R.attr.alpha
+    };
+
+    /**
+     * Attributes read by {@link #initTextPaint(TextPaint, int)} (sorted as required by obtainStyledAttributes)
+     */
+    private static final int[] TEXT_ATTRS = {
+            android.R.attr.textSize,
+            android.R.attr.typeface,
+            android.R.attr.textStyle,
+            android.R.attr.textColor,
+            android.R.attr.fontFamily
+    };
+
+    /**
+     * <code>true</code> when the view uses the child views of a {@link CardView}
+     */
+    protected boolean mPromoted = false;
+
+    protected TextPaint mHeaderTitlePaint;
+    protected TextPaint mTitlePaint;
+
+    protected StaticLayout mHeaderTitleLayout;
+    protected StaticLayout mTitleLayout;
+
+    protected Drawable mCardBackground;
+    protected Drawable mOverflowDrawable;
+    protected Drawable mThumbnailDrawable;
+
+    /**
+     * Url loaded for the current thumbnail
+     */
+    protected String mThumbnailUri;
+
+    /**
+     * Indicates if the loader is called synchronously
+     */
+    protected boolean mLoadingThumbnail;
+
+    /**
+     * Target of the thumbnail load in progress, or <code>null</code>
+     */
+    protected ImageAware mThumbnailAware;
+
+    /**
+     * Indicates if the load cancelled when the view was detached must start again when it is attached
+     */
+    protected boolean mThumbnailReloadOnAttach;
+
+    /**
+     * Default options of the thumbnail loads
+     */
+    private static DisplayImageOptions sThumbnailOptions;
+
+    protected final Rect mCardBounds = new Rect();
+    protected final Rect mOverflowBounds = new Rect();
+    protected final Rect mThumbnailBounds = new Rect();
+
+    protected int mHeaderHeight;
+    protected int mTitleLeft;
+    protected int mTitleTop;
+
+    /**
+     * Shared painter of the shadow
+     */
+    protected CardShadowPainter mShadowPainter;
+    protected int mShadowHeight;
+    protected int mThumbnailWidth;
+    protected int mThumbnailHeight;
+    protected int mContentMinHeight;
+    protected int mHeaderTitleMarginTop;
+    protected int mTitleMarginLeft;
+    protected int mButtonPaddingLeft;
+
+    protected boolean mOverflowPressed;
+
+    //--------------------------------------------------------------------------
+    // Constructor
+    //--------------------------------------------------------------------------
+
+    public FlatCardView(Context context) {
+        super(context);
+        initFlat();
+    }
+
+    public FlatCardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initFlat();
+    }
+
+    public FlatCardView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        initFlat();
+    }
+
+    //--------------------------------------------------------------------------
+    // Init
+    //--------------------------------------------------------------------------
+
+    /**
+     * The card layout is inflated only when the view is promoted
+     */
+    @Override
+    protected void initView() {
+        if (mPromoted)
+            super.initView();
+    }
+
+    /**
+     * Inits the paints, the drawables and the dimensions used to draw the cards
+     */
+    protected void initFlat() {
+        Resources res = getResources();
+
+        mHeaderTitlePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        initTextPaint(mHeaderTitlePaint, R.style.card_header_simple_title);
+
+        mTitlePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        initTextPaint(mTitlePaint, R.style.card_base_simple_title);
+
+        mCardBackground = res.getDrawable(R.drawable.card_selector);
+        mCardBackground.setCallback(this);
+        initOverflowDrawable(R.style.card_header_button_base_overflow);
+
+        mShadowPainter = CardShadowPainter.getInstance(res);
+        mShadowHeight = mShadowPainter.getHeight();
+        mThumbnailWidth = res.getDimensionPixelSize(R.dimen.card_thumbnail_width);
+        mThumbnailHeight = res.getDimensionPixelSize(R.dimen.card_thumbnail_height);
+        mContentMinHeight = res.getDimensionPixelSize(R.dimen.card_base_empty_height);
+        mHeaderTitleMarginTop = res.getDimensionPixelSize(R.dimen.card_header_simple_title_margin_top);
+        mTitleMarginLeft = res.getDimensionPixelSize(R.dimen.card_main_simple_title_margin_left);
+        mButtonPaddingLeft = res.getDimensionPixelSize(R.dimen.card_header_button_padding_left);
+
+        setWillNotDraw(false);
+    }
+
+    /**
+     * Takes the overflow drawable and its alpha from the style of the overflow button of the header
+     *
+     * @param styleResId style of the overflow button
+     */
+    protected void initOverflowDrawable(int styleResId) {
+        TypedArray a = getContext().obtainStyledAttributes(styleResId, OVERFLOW_ATTRS);
+        mOverflowDrawable = a.getDrawable(0);
+        if (mOverflowDrawable == null)
+            mOverflowDrawable = getResources().getDrawable(R.drawable.card_menu_button_overflow);
+        mOverflowDrawable = mOverflowDrawable.mutate();
+        mOverflowDrawable.setAlpha((int) (255 * a.getFloat(1, 1f)));
+        mOverflowDrawable.setCallback(this);
+        a.recycle();
+    }
+
+    /**
+     * Sets the size, the typeface and the color of the paint as a {@link android.widget.TextView} with the style:
+     * the text appearance of the theme, then the values of the <code>textViewStyle</code> of the theme,
+     * then the values of the style.
+     *
+     * @param paint      paint
+     * @param styleResId style of the TextView in the base inner layout
+     */
+    protected void initTextPaint(TextPaint paint, int styleResId) {
+        Context context = getContext();
+
+        TypedArray a = context.obtainStyledAttributes(null, new int[]{android.R.attr.textAppearance},
+                android.R.attr.textViewStyle, 0);
+        int appearance = a.getResourceId(0, 0);
+        a.recycle();
+        a = context.obtainStyledAttributes(styleResId, new int[]{android.R.attr.textAppearance});
+        appearance = a.getResourceId(0, appearance);
+        a.recycle();
+
+        TextStyle style = new TextStyle();
+        if (appearance != 0) {
+            a = context.obtainStyledAttributes(appearance, TEXT_ATTRS);
+            style.read(a);
+            a.recycle();
+        }
+        a = context.obtainStyledAttributes(null, TEXT_ATTRS, android.R.attr.textViewStyle, 0);
+        style.read(a);
+        a.recycle();
+        a = context.obtainStyledAttributes(styleResId, TEXT_ATTRS);
+        style.read(a);
+        a.recycle();
+
+        paint.setTextSize(style.mTextSize > 0 ? style.mTextSize : 14 * getResources().getDisplayMetrics().scaledDensity);
+        paint.setColor(style.mTextColor != null ? style.mTextColor.getDefaultColor() : 0xff000000);
+        paint.setTypeface(style.createTypeface());
+    }
+
+    //--------------------------------------------------------------------------
+    // Card
+    //--------------------------------------------------------------------------
+
+    /**
+     * Draws the card if it is a standard card, otherwise it promotes the view.
+     * A promoted view is demoted when it is bound to a standard card.
+     *
+     * @param card {@link Card} model
+     */
+    @Override
+    public void setCard(Card card) {
+        if (card != null && isFlatCard(card)) {
+            //A recycled row which was promoted for a previous card
+            if (mPromoted)
+                demote();
+            bindFlat(card);
+            return;
+        }
+
+        if (!mPromoted)
+            promote();
+        super.setCard(card);
+    }
+
+    /**
+     * Indicates if the card can be drawn without child views.
+     * Override it to exclude your cards.
+     *
+     * @param card card
+     * @return <code>true</code> if the card can be drawn by this view
+     */
+    protected boolean isFlatCard(Card card) {
+        //Content
+        if (card.getInnerLayout() != R.layout.inner_base_main)
+            return false;
+        if (card instanceof DataCard) {
+            if (((DataCard) card).getBehavior() != CardBehavior.DEFAULT)
+                return false;
+        } else if (!isStandardClass(card.getClass(), Card.class)) {
+            return false;
+        }
+        if (card.getCardExpand() != null || card.hasPartialOnClickListeners())
+            return false;
+
+        //Header
+        CardHeader header = card.getCardHeader();
+        if (header != null) {
+            if (header.getInnerLayout() != R.layout.inner_base_header || !isStandardClass(header.getClass(), CardHeader.class))
+                return false;
+            if (header.isButtonExpandVisible() || header.isOtherButtonVisible())
+                return false;
+        }
+
+        //Thumbnail
+        CardThumbnail thumbnail = card.getCardThumbnail();
+        if (thumbnail != null) {
+            if (!isStandardClass(thumbnail.getClass(), CardThumbnail.class))
+                return false;
+            if (thumbnail.isExternalUsage() || thumbnail.isCameraEnabled()
+                    || thumbnail.getVideoResource() != null || thumbnail.getFileResource() != null)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Promotes the view: it inflates the card layout and uses the child views from now on
+     */
+    protected void promote() {
+        mPromoted = true;
+        setWillNotDraw(true);
+        cancelThumbnail();
+        mHeaderTitleLayout = null;
+        mTitleLayout = null;
+
+        super.initView();
+
+        //The layout ids are retrieved only for a new layout
+        setRecycle(false);
+        requestLayout();
+    }
+
+    /**
+     * Demotes the view: it removes the card layout and draws the cards without child views again
+     */
+    protected void demote() {
+        mPromoted = false;
+        if (mExpandAnimator != null) {
+            mExpandAnimator.cancel();
+            mExpandAnimator = null;
+        }
+        removeAllViews();
+
+        mInternalOuterView = null;
+        mInternalShadowLayout = null;
+        mInternalHeaderLayout = null;
+        mInternalThumbnailLayout = null;
+        mInternalMainCardLayout = null;
+        mInternalContentLayout = null;
+        mInternalInnerView = null;
+        mInternalExpandLayout = null;
+        mInternalExpandInnerView = null;
+        mShadowAnchor = null;
+        mShadowSpaceReserved = false;
+
+        setWillNotDraw(false);
+        requestLayout();
+    }
+
+    /**
+     * Binds a standard card
+     */
+    protected void bindFlat(Card card) {
+        CardMetrics metrics = CardMetrics.getInstance();
+        long bindStart = metrics.beginBind();
+        long start;
+
+        try {
+            mCard = card;
+            mCardHeader = card.getCardHeader();
+            mCardThumbnail = card.getCardThumbnail();
+            mCardExpand = null;
+
+            mCard.setCardView(this);
+
+            start = metrics.beginPhase(CardMetrics.PHASE_THUMBNAIL);
+            try {
+                bindThumbnail(mCardThumbnail);
+            } finally {
+                metrics.endPhase(card, CardMetrics.PHASE_THUMBNAIL, start);
+            }
+
+            start = metrics.beginPhase(CardMetrics.PHASE_LISTENERS);
+            try {
+                setupListeners();
+            } finally {
+                metrics.endPhase(card, CardMetrics.PHASE_LISTENERS, start);
+            }
+
+            start = metrics.beginPhase(CardMetrics.PHASE_DRAWABLES);
+            try {
+                int backgroundId = card.getBackgroundResourceId();
+                if (backgroundId != 0) {
+                    mCardBackground.setCallback(null);
+                    mCardBackground = getResources().getDrawable(backgroundId);
+                    mCardBackground.setCallback(this);
+                    mCardBackground.setState(getDrawableState());
+                }
+            } finally {
+                metrics.endPhase(card, CardMetrics.PHASE_DRAWABLES, start);
+            }
+
+            requestLayout();
+            invalidate();
+        } finally {
+            //The flat card has no inner layouts to replace
+            metrics.endBind(card, isRecycle(), false, bindStart);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Thumbnail
+    //--------------------------------------------------------------------------
+
+    protected void bindThumbnail(CardThumbnail thumbnail) {
+        Drawable drawable = null;
+        String uri = null;
+
+        if (thumbnail != null) {
+            if (thumbnail.getUrlResource() != null) {
+                uri = thumbnail.getUrlResource();
+            } else if (thumbnail.getDrawableResource() > 0) {
+                drawable = getResources().getDrawable(thumbnail.getDrawableResource());
+            }
+        }
+
+        if (uri == null || !uri.equals(mThumbnailUri)) {
+            cancelThumbnail();
+            setThumbnailDrawable(drawable);
+            if (uri != null)
+                loadThumbnail(uri, thumbnail);
+        }
+    }
+
+    protected void loadThumbnail(final String uri, final CardThumbnail thumbnail) {
+        mThumbnailUri = uri;
+
+        final CardMetrics metrics = CardMetrics.getInstance();
+        final long start = metrics.isEnabled() && !metrics.isThumbnailSourceEnabled() ? System.nanoTime() : 0;
+
+        ImageSize size = new ImageSize(mThumbnailWidth, mThumbnailHeight);
+        final ThumbnailAware aware = new ThumbnailAware(uri, size, mCard);
+        SimpleImageLoadingListener listener = new SimpleImageLoadingListener() {
+            @Override
+            public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+                //The view can be bound to another card
+                if (aware == mThumbnailAware && loadedImage != null) {
+                    mThumbnailAware = null;
+                    setThumbnailDrawable(new BitmapDrawable(getResources(), loadedImage));
+                    //Source not tracked: a bitmap delivered during displayImage comes from the memory cache
+                    if (start != 0)
+                        metrics.onThumbnail(mCard, mLoadingThumbnail ?
+                                CardMetrics.THUMBNAIL_MEMORY_CACHE : CardMetrics.THUMBNAIL_UNKNOWN, start);
+                }
+            }
+
+            @Override
+            public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+                if (aware == mThumbnailAware) {
+                    mThumbnailAware = null;
+                    if (thumbnail.getErrorResourceId() != 0)
+                        setThumbnailDrawable(getResources().getDrawable(thumbnail.getErrorResourceId()));
+                }
+            }
+        };
+
+        //The load is owned by the view: it is cancelled on a new bind and when the view is detached
+        mThumbnailAware = aware;
+        if (metrics.isThumbnailSourceEnabled()) {
+            //The displayer of the measured options reports the source of the bitmap
+            ImageLoader.getInstance().displayImage(uri, aware, metrics.getThumbnailOptions(), listener);
+        } else {
+            mLoadingThumbnail = true;
+            ImageLoader.getInstance().displayImage(uri, aware, getThumbnailOptions(), listener);
+            mLoadingThumbnail = false;
+        }
+    }
+
+    /**
+     * Returns the options of the thumbnail loads.
+     * The bitmap is delivered to the loading listener, so the displayer must accept an {@link ImageAware} without view.
+     * Override it to use your options.
+     *
+     * @return options
+     */
+    protected DisplayImageOptions getThumbnailOptions() {
+        if (sThumbnailOptions == null) {
+            sThumbnailOptions = new DisplayImageOptions.Builder()
+                    .cacheInMemory(true)
+                    .cacheOnDisk(true)
+                    .displayer(new SimpleBitmapDisplayer())
+                    .build();
+        }
+        return sThumbnailOptions;
+    }
+
+    /**
+     * Target of a thumbnail load, owned by the view which started it
+     */
+    private class ThumbnailAware extends NonViewAware implements CardMetrics.ThumbnailTarget {
+
+        private final Card mThumbnailCard;
+        private final long mStart = System.nanoTime();
+
+        ThumbnailAware(String uri, ImageSize size, Card card) {
+            super(uri, size, ViewScaleType.CROP);
+            mThumbnailCard = card;
+        }
+
+        /**
+         * Each load has its own id, so cancelling it doesn't cancel the loads of the same url in other views
+         */
+        @Override
+        public int getId() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public void onThumbnailLoaded(int source) {
+            if (this == mThumbnailAware)
+                CardMetrics.getInstance().onThumbnail(mThumbnailCard, source, mStart);
+        }
+    }
+
+    /**
+     * Cancels the load of the thumbnail
+     */
+    protected void cancelThumbnail() {
+        if (mThumbnailAware != null) {
+            if (ImageLoader.getInstance().isInited())
+                ImageLoader.getInstance().cancelDisplayTask(mThumbnailAware);
+            mThumbnailAware = null;
+        }
+        mThumbnailUri = null;
+        mThumbnailReloadOnAttach = false;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mThumbnailReloadOnAttach) {
+            mThumbnailReloadOnAttach = false;
+            if (!mPromoted && mCardThumbnail != null && mCardThumbnail.getUrlResource() != null)
+                loadThumbnail(mCardThumbnail.getUrlResource(), mCardThumbnail);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //A detached row doesn't decode its bitmap; the load starts again if it is attached without a new bind
+        if (mThumbnailAware != null) {
+            cancelThumbnail();
+            mThumbnailReloadOnAttach = true;
+        }
+    }
+
+    protected void setThumbnailDrawable(Drawable drawable) {
+        mThumbnailDrawable = drawable;
+        updateThumbnailBounds();
+        invalidate();
+    }
+
+    /**
+     * Scales the thumbnail as the <code>centerCrop</code> scale type of <code>base_thumbnail_layout</code>:
+     * the drawable keeps its aspect, fills the thumbnail bounds and it is clipped when it is drawn
+     */
+    protected void updateThumbnailBounds() {
+        Drawable drawable = mThumbnailDrawable;
+        if (drawable == null) return;
+
+        int drawableWidth = drawable.getIntrinsicWidth();
+        int drawableHeight = drawable.getIntrinsicHeight();
+        int width = mThumbnailBounds.width();
+        int height = mThumbnailBounds.height();
+        if (drawableWidth <= 0 || drawableHeight <= 0 || width <= 0 || height <= 0) {
+            drawable.setBounds(mThumbnailBounds);
+            return;
+        }
+
+        float scale = Math.max((float) width / drawableWidth, (float) height / drawableHeight);
+        int scaledWidth = Math.round(drawableWidth * scale);
+        int scaledHeight = Math.round(drawableHeight * scale);
+        int left = mThumbnailBounds.left + (width - scaledWidth) / 2;
+        int top = mThumbnailBounds.top + (height - scaledHeight) / 2;
+        drawable.setBounds(left, top, left + scaledWidth, top + scaledHeight);
+    }
+
+    //--------------------------------------------------------------------------
+    // Measure and draw
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mPromoted || mCard == null) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        int width = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+                ? getSuggestedMinimumWidth() : MeasureSpec.getSize(widthMeasureSpec);
+        int contentWidth = Math.max(0, width - getPaddingLeft() - getPaddingRight());
+
+        //Header
+        mHeaderHeight = 0;
+        boolean overflow = mCardHeader != null && mCardHeader.isButtonOverflowVisible();
+        if (mCardHeader != null) {
+            int overflowWidth = overflow ? mOverflowDrawable.getIntrinsicWidth() + mButtonPaddingLeft : 0;
+            mHeaderTitleLayout = buildLayout(mHeaderTitleLayout, mCardHeader.getTitle(), mHeaderTitlePaint,
+                    contentWidth - overflowWidth);
+            mHeaderHeight = mHeaderTitleMarginTop + (mHeaderTitleLayout != null ? mHeaderTitleLayout.getHeight() : 0);
+            if (overflow)
+                mHeaderHeight = Math.max(mHeaderHeight, mOverflowDrawable.getIntrinsicHeight());
+        } else {
+            mHeaderTitleLayout = null;
+        }
+
+        //Content
+        int thumbnailWidth = mCardThumbnail != null ? mThumbnailWidth : 0;
+        mTitleLayout = buildLayout(mTitleLayout, mCard.getTitle(), mTitlePaint,
+                contentWidth - thumbnailWidth - mTitleMarginLeft);
+        int contentHeight = Math.max(mContentMinHeight, mCardThumbnail != null ? mThumbnailHeight : 0);
+        if (mTitleLayout != null)
+            contentHeight = Math.max(contentHeight, mTitleLayout.getHeight());
+
+        int cardHeight = mHeaderHeight + contentHeight;
+        int height = getPaddingTop() + cardHeight + getPaddingBottom();
+        if (mCard.isShadow())
+            height += mShadowHeight;
+
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+
+        //Bounds
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        mCardBounds.set(left, top, left + contentWidth, top + cardHeight);
+        if (overflow) {
+            int right = left + contentWidth;
+            mOverflowBounds.set(right - mOverflowDrawable.getIntrinsicWidth() - mButtonPaddingLeft, top,
+                    right, top + mOverflowDrawable.getIntrinsicHeight());
+        } else {
+            mOverflowBounds.setEmpty();
+        }
+        mThumbnailBounds.set(left, top + mHeaderHeight, left + thumbnailWidth, top + mHeaderHeight + mThumbnailHeight);
+        updateThumbnailBounds();
+
+        mTitleLeft = left + thumbnailWidth + mTitleMarginLeft;
+        mTitleTop = top + mHeaderHeight;
+    }
+
+    /**
+     * Returns the cached layout if the text and the width are the same
+     */
+    protected StaticLayout buildLayout(StaticLayout cached, String text, TextPaint paint, int width) {
+        if (TextUtils.isEmpty(text) || width <= 0)
+            return null;
+        if (cached != null && cached.getWidth() == width && TextUtils.equals(cached.getText(), text))
+            return cached;
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mPromoted)
+            super.onLayout(changed, l, t, r, b);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mPromoted || mCard == null) return;
+
+        //Card
+        mCardBackground.setBounds(mCardBounds);
+        mCardBackground.draw(canvas);
+
+        //Header
+        if (mHeaderTitleLayout != null) {
+            canvas.save();
+            canvas.translate(mCardBounds.left, mCardBounds.top + mHeaderTitleMarginTop);
+            mHeaderTitleLayout.draw(canvas);
+            canvas.restore();
+        }
+        if (!mOverflowBounds.isEmpty()) {
+            int width = mOverflowDrawable.getIntrinsicWidth();
+            int height = mOverflowDrawable.getIntrinsicHeight();
+            mOverflowDrawable.setBounds(mOverflowBounds.right - width, mOverflowBounds.top,
+                    mOverflowBounds.right, mOverflowBounds.top + height);
+            mOverflowDrawable.draw(canvas);
+        }
+
+        //Content
+        if (mThumbnailDrawable != null) {
+            canvas.save();
+            canvas.clipRect(mThumbnailBounds);
+            mThumbnailDrawable.draw(canvas);
+            canvas.restore();
+        }
+        if (mTitleLayout != null) {
+            canvas.save();
+            canvas.translate(mTitleLeft, mTitleTop);
+            mTitleLayout.draw(canvas);
+            canvas.restore();
+        }
+
+        //Shadow
+        if (mCard.isShadow()) {
+            mShadowPainter.draw(canvas, mCardBounds.left, mCardBounds.bottom, mCardBounds.right);
+        }
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (mCardBackground != null && mCardBackground.isStateful())
+            mCardBackground.setState(getDrawableState());
+        if (mOverflowDrawable != null && mOverflowDrawable.isStateful())
+            mOverflowDrawable.setState(mOverflowPressed ? PRESSED_ENABLED_STATE_SET : getDrawableState());
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return super.verifyDrawable(who) || who == mCardBackground || who == mOverflowDrawable;
+    }
+
+    @Override
+    public void jumpDrawablesToCurrentState() {
+        super.jumpDrawablesToCurrentState();
+        if (mCardBackground != null)
+            mCardBackground.jumpToCurrentState();
+    }
+
+    //--------------------------------------------------------------------------
+    // Overflow button
+    //--------------------------------------------------------------------------
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!mPromoted && !mOverflowBounds.isEmpty()) {
+            boolean inside = mOverflowBounds.contains((int) event.getX(), (int) event.getY());
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    if (inside) {
+                        setOverflowPressed(true);
+                        return true;
+                    }
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    if (mOverflowPressed) {
+                        if (!inside) setOverflowPressed(false);
+                        return true;
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                    if (mOverflowPressed) {
+                        setOverflowPressed(false);
+                        if (inside) showPopupMenu();
+                        return true;
+                    }
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    if (mOverflowPressed) {
+                        setOverflowPressed(false);
+                        return true;
+                    }
+                    break;
+            }
+        }
+        return super.onTouchEvent(event);
+    }
+
+    protected void setOverflowPressed(boolean pressed) {
+        mOverflowPressed = pressed;
+        drawableStateChanged();
+        invalidate(mOverflowBounds);
+    }
+
+    /**
+     * Shows the popup menu of the header, like the overflow button of {@link it.gmariotti.cardslib.library.view.component.CardHeaderView}
+     */
+    protected void showPopupMenu() {
+        final CardHeader header = mCardHeader;
+        if (header == null || header.getPopupMenu() <= 0) return;
+
+        PopupMenu popup = new PopupMenu(getContext(), this);
+        popup.getMenuInflater().inflate(header.getPopupMenu(), popup.getMenu());
+        popup.setOnMenuItemClickListener(new PopupMenu.OnMenuItemClickListener() {
+            @Override
+            public boolean onMenuItemClick(MenuItem item) {
+                if (header.getPopupMenuListener() != null)
+                    header.getPopupMenuListener().onMenuItemClick(header, item);
+                return false;
+            }
+        });
+        popup.show();
+        if (header.getPopupMenuListener() != null)
+            header.getPopupMenuListener().onMenuClick(header, popup);
+    }
+
+    //--------------------------------------------------------------------------
+    // Promoted elements
+    //--------------------------------------------------------------------------
+
+    @Override
+    public boolean hasSetupThumbnailView() {
+        return mPromoted ? super.hasSetupThumbnailView() : true;
+    }
+
+    @Override
+    public boolean playVideo() {
+        return mInternalThumbnailLayout != null && super.playVideo();
+    }
+
+    @Override
+    public void stopVideo() {
+        if (mInternalThumbnailLayout != null) super.stopVideo();
+    }
+
+    @Override
+    public void resumeVideo() {
+        if (mInternalThumbnailLayout != null) super.resumeVideo();
+    }
+
+    @Override
+    public void pauseVideo() {
+        if (mInternalThumbnailLayout != null) super.pauseVideo();
+    }
+
+    @Override
+    public void changeBackgroundResourceId(int drawableResourceId) {
+        if (mPromoted || drawableResourceId == 0) {
+            super.changeBackgroundResourceId(drawableResourceId);
+            return;
+        }
+        mCardBackground.setCallback(null);
+        mCardBackground = getResources().getDrawable(drawableResourceId);
+        mCardBackground.setCallback(this);
+        mCardBackground.setState(getDrawableState());
+        invalidate();
+    }
+
+    /**
+     * Indicates if the view uses child views
+     *
+     * @return <code>true</code> if the view has been promoted to a {@link CardView}
+     */
+    public boolean isPromoted() {
+        return mPromoted;
+    }
+
+    //--------------------------------------------------------------------------
+    // Internal
+    //--------------------------------------------------------------------------
+
+    /**
+     * Indicates if a class doesn't override the setup of the base inner layout of its library class
+     */
+    private static boolean isStandardClass(Class<?> cls, Class<?> base) {
+        if (cls == base) return true;
+        synchronized (sStandardClasses) {
+            Boolean standard = sStandardClasses.get(cls);
+            if (standard == null) {
+                try {
+                    standard = cls.getMethod("setupInnerViewElements", ViewGroup.class, View.class)
+                            .getDeclaringClass().isAssignableFrom(base)
+                            && cls.getMethod("getInnerView", Context.class, ViewGroup.class)
+                            .getDeclaringClass().isAssignableFrom(base);
+                } catch (NoSuchMethodException e) {
+                    standard = false;
+                }
+                sStandardClasses.put(cls, standard);
+            }
+            return standard;
+        }
+    }
+
+    /**
+     * Text values merged from the appearance, the default TextView style and the style
+     */
+    private static class TextStyle {
+
+        float mTextSize;
+        int mTypeface = -1;
+        int mTextStyle = Typeface.NORMAL;
+        ColorStateList mTextColor;
+        String mFontFamily;
+
+        void read(TypedArray a) {
+            if (a.hasValue(0))
+                mTextSize = a.getDimension(0, mTextSize);
+            if (a.hasValue(1))
+                mTypeface = a.getInt(1, mTypeface);
+            if (a.hasValue(2))
+                mTextStyle = a.getInt(2, mTextStyle);
+            if (a.hasValue(3) && a.getColorStateList(3) != null)
+                mTextColor = a.getColorStateList(3);
+            if (a.hasValue(4))
+                mFontFamily = a.getString(4);
+        }
+
+        Typeface createTypeface() {
+            Typeface typeface = null;
+            if (mFontFamily != null) {
+                typeface = Typeface.create(mFontFamily, mTextStyle);
+                if (typeface != null)
+                    return typeface;
+            }
+            //Values of the android:typeface enum
+            switch (mTypeface) {
+                case 1:
+                    typeface = Typeface.SANS_SERIF;
+                    break;
+                case 2:
+                    typeface = Typeface.SERIF;
+                    break;
+                case 3:
+                    typeface = Typeface.MONOSPACE;
+                    break;
+            }
+            return Typeface.create(typeface, mTextStyle);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import it.gmariotti.cardslib.library.R;
+
+/**
+ * Resolved values of the <code>card_options</code> attributes.
+ * </p>
+ * All card component views read the same styleable in their constructors, so each row inflation
+ * resolved it several times. The values are resolved once for each theme, default style and set of
+ * xml attributes, and then they are read from the cache.
+ * </p>
+ * Usage (it mirrors {@link TypedArray}):
+ * <pre><code>
+ * CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+ * card_layout_resourceID = a.getResourceId(R.styleable.card_options_card_layout_resourceID, card_layout_resourceID);
+ * </code></pre>
+ * It can be used from any thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class CardAttributes {
+
+    /**
+     * Resolved values (theme -> key -> values)
+     */
+    private static final Map<Resources.Theme, Map<String, CardAttributes>> sCache =
+            new WeakHashMap<Resources.Theme, Map<String, CardAttributes>>();
+
+    private final boolean[] mHasValue;
+    private final int[] mResourceIds;
+    private final float[] mFloats;
+    private final boolean[] mIsFloat;
+    private final int[] mInts;
+    private final boolean[] mIsInt;
+
+    private CardAttributes(TypedArray a) {
+        int count = R.styleable.card_options.length;
+        mHasValue = new boolean[count];
+        mResourceIds = new int[count];
+        mFloats = new float[count];
+        mIsFloat = new boolean[count];
+        mInts = new int[count];
+        mIsInt = new boolean[count];
+
+        TypedValue value = new TypedValue();
+        for (int i = 0; i < count; i++) {
+            if (!a.getValue(i, value)) continue;
+            mHasValue[i] = true;
+            mResourceIds[i] = a.getResourceId(i, 0);
+            if (value.type == TypedValue.TYPE_FLOAT) {
+                mIsFloat[i] = true;
+                mFloats[i] = value.getFloat();
+            } else if (value.type >= TypedValue.TYPE_FIRST_INT && value.type <= TypedValue.TYPE_LAST_INT) {
+                mIsInt[i] = true;
+                mInts[i] = value.data;
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Obtain
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the resolved <code>card_options</code> values
+     *
+     * @param context  context of the view
+     * @param attrs    xml attributes (it can be <code>null</code>)
+     * @param defStyle default style
+     * @return resolved values
+     */
+    public static CardAttributes obtain(Context context, AttributeSet attrs, int defStyle) {
+        Resources.Theme theme = context.getTheme();
+        String key = buildKey(attrs, defStyle);
+
+        synchronized (sCache) {
+            Map<String, CardAttributes> values = sCache.get(theme);
+            if (values == null) {
+                values = new HashMap<String, CardAttributes>();
+                sCache.put(theme, values);
+            }
+
+            CardAttributes attributes = values.get(key);
+            if (attributes == null) {
+                TypedArray a = theme.obtainStyledAttributes(attrs, R.styleable.card_options, defStyle, defStyle);
+                try {
+                    attributes = new CardAttributes(a);
+                } finally {
+                    a.recycle();
+                }
+                values.put(key, attributes);
+            }
+            return attributes;
+        }
+    }
+
+    /**
+     * Drops the resolved values.
+     * Call it if you change a theme with {@link Resources.Theme#applyStyle(int, boolean)}.
+     */
+    public static void clear() {
+        synchronized (sCache) {
+            sCache.clear();
+        }
+    }
+
+    /**
+     * Builds the key from the default style, the style attribute and the card_options attributes set in xml
+     */
+    private static String buildKey(AttributeSet attrs, int defStyle) {
+        StringBuilder key = new StringBuilder().append(defStyle);
+        if (attrs == null)
+            return key.toString();
+
+        key.append('|').append(attrs.getStyleAttribute());
+        for (int i = 0; i < attrs.getAttributeCount(); i++) {
+            int nameResource = attrs.getAttributeNameResource(i);
+            if (isCardOption(nameResource))
+                key.append('|').append(nameResource).append('=').append(attrs.getAttributeValue(i));
+        }
+        return key.toString();
+    }
+
+    private static boolean isCardOption(int nameResource) {
+        if (nameResource == 0) return false;
+        for (int attr : R.styleable.card_options) {
+            if (attr == nameResource) return true;
+        }
+        return false;
+    }
+
+    // -------------------------------------------------------------
+    // Values
+    // -------------------------------------------------------------
+
+    /**
+     * @param index index in <code>R.styleable.card_options</code>
+     * @return <code>true</code> if the attribute has a value
+     */
+    public boolean hasValue(int index) {
+        return mHasValue[index];
+    }
+
+    /**
+     * @param index    index in <code>R.styleable.card_options</code>
+     * @param defValue value returned if the attribute is not defined
+     * @return resource id
+     */
+    public int getResourceId(int index, int defValue) {
+        return mHasValue[index] && mResourceIds[index] != 0 ? mResourceIds[index] : defValue;
+    }
+
+    /**
+     * @param index    index in <code>R.styleable.card_options</code>
+     * @param defValue value returned if the attribute is not defined or it is not a float
+     * @return float value
+     */
+    public float getFloat(int index, float defValue) {
+        return mIsFloat[index] ? mFloats[index] : defValue;
+    }
+
+    /**
+     * @param index    index in <code>R.styleable.card_options</code>
+     * @param defValue value returned if the attribute is not defined or it is not an integer (or enum)
+     * @return integer value
+     */
+    public int getInt(int index, int defValue) {
+        return mIsInt[index] ? mInts[index] : defValue;
+    }
+}
@@ -0,0 +1,656 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.view.CardView;
+
+/**
+ * Long press drag and drop reorder of the cards of a list.
+ * </p>
+ * A long press on a card starts the drag: the card is hidden and a snapshot of it (see {@link CardView#createBitmap()})
+ * follows the finger, drawn by the list over its children with {@link #draw(Canvas)}.
+ * The neighbours between the original position and the target position are translated to open a gap,
+ * so the adapter is not changed while the card is dragged: only the translation and the alpha of the rows change,
+ * and the drag never triggers a layout.
+ * Near the edges the list scrolls, faster as the finger gets closer to the edge.
+ * </p>
+ * When the card is dropped the {@link Host} moves the card once (see
+ * {@link it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter#move(int, int)}) and the card
+ * settles from the snapshot to its new row. The work done on each frame is proportional to the
+ * number of visible rows, not to the number of cards.
+ * </p>
+ * The controller receives the events from {@link #dispatchTouchEvent(MotionEvent)} of the list,
+ * and it has to be used on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardDragReorderController {
+
+    protected static String TAG = "CardDragReorderController";
+
+    public static final int INVALID_POSITION = -1;
+
+    /**
+     * Size of the auto scroll edges (dp), at most a quarter of the list
+     */
+    protected static final int EDGE_SIZE_DP = 64;
+
+    /**
+     * Scroll of a frame (dp) when the finger is on the edge of the list
+     */
+    protected static final int MAX_SCROLL_SPEED_DP = 16;
+
+    /**
+     * Alpha of the snapshot
+     */
+    protected static final int SHADOW_ALPHA = 220;
+
+    /**
+     * Interface implemented by the lists which use the controller
+     */
+    public interface Host {
+
+        /**
+         * Returns the adapter position of a row, or {@link #INVALID_POSITION} for the headers and the footers
+         */
+        int getPositionForView(View child);
+
+        /**
+         * Returns the number of cards
+         */
+        int getItemCount();
+
+        /**
+         * Called to determine whether the card at the given position can be dragged
+         */
+        boolean canDrag(int position);
+
+        /**
+         * Indicates if the rows are laid out along the y axis
+         */
+        boolean isVertical();
+
+        /**
+         * Called when the drag starts, to cancel the gesture of the list and of the rows.
+         *
+         * @param cancelEvent a {@link MotionEvent#ACTION_CANCEL} event
+         */
+        void cancelTouch(MotionEvent cancelEvent);
+
+        /**
+         * Scrolls the list immediately by the given distance along its axis
+         */
+        void scrollBy(int delta);
+
+        /**
+         * Called when a card is dropped in a new position: it has to move the card in the adapter.
+         *
+         * @return <code>true</code> if the card was moved
+         */
+        boolean onMove(int fromPosition, int toPosition);
+
+        /**
+         * Called after the layout which follows {@link #onMove(int, int)}
+         */
+        void onMoveLaidOut();
+    }
+
+    /**
+     * Interface to listen the drags
+     */
+    public interface OnDragListener {
+
+        void onDragStarted(int position);
+
+        /**
+         * Called when the card is dropped
+         *
+         * @param fromPosition original position
+         * @param toPosition   new position (it is <code>fromPosition</code> if the card wasn't moved)
+         */
+        void onDragEnded(int fromPosition, int toPosition);
+    }
+
+    // Fixed properties
+    protected final ViewGroup mList;
+    protected final Host mHost;
+    protected final int mSlop;
+    protected final int mLongPressTimeout;
+    protected final long mAnimationTime;
+    protected final float mDensity;
+    protected final Paint mShadowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    protected boolean mEnabled = true;
+    protected OnDragListener mOnDragListener;
+
+    // Transient properties
+    protected float mDownX;
+    protected float mDownY;
+    protected float mLastX;
+    protected float mLastY;
+    protected boolean mPendingLongPress;
+    protected boolean mDragging;
+    protected boolean mVertical = true;
+    protected int mFromPosition = INVALID_POSITION;
+    protected int mTargetPosition = INVALID_POSITION;
+    protected int mGap;
+    protected float mTouchOffset;
+    protected Bitmap mShadow;
+    protected float mShadowLeft;
+    protected float mShadowTop;
+    protected boolean mAutoScrolling;
+
+    /**
+     * Rows translated during the drag (they can leave the list while the drag is running)
+     */
+    protected final List<View> mShiftedViews = new ArrayList<View>();
+
+    public CardDragReorderController(ViewGroup list, Host host) {
+        mList = list;
+        mHost = host;
+        ViewConfiguration vc = ViewConfiguration.get(list.getContext());
+        mSlop = vc.getScaledTouchSlop();
+        mLongPressTimeout = ViewConfiguration.getLongPressTimeout();
+        mAnimationTime = list.getResources().getInteger(android.R.integer.config_shortAnimTime);
+        mDensity = list.getResources().getDisplayMetrics().density;
+        mShadowPaint.setAlpha(SHADOW_ALPHA);
+    }
+
+    // -------------------------------------------------------------
+    //  Touch
+    // -------------------------------------------------------------
+
+    /**
+     * Receives the touch events of the list.
+     *
+     * @return <code>true</code> if the event was consumed by a drag: the list must not dispatch it
+     */
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        if (!mEnabled && !mDragging) return false;
+
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = mLastX = ev.getX();
+                mDownY = mLastY = ev.getY();
+                mPendingLongPress = true;
+                mList.postDelayed(mLongPressRunnable, mLongPressTimeout);
+                return false;
+
+            case MotionEvent.ACTION_MOVE:
+                mLastX = ev.getX();
+                mLastY = ev.getY();
+                if (mDragging) {
+                    onDragMove();
+                    return true;
+                }
+                if (mPendingLongPress && (Math.abs(mLastX - mDownX) > mSlop || Math.abs(mLastY - mDownY) > mSlop))
+                    cancelLongPress();
+                return false;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                cancelLongPress();
+                return mDragging;
+
+            case MotionEvent.ACTION_UP:
+                cancelLongPress();
+                if (mDragging) {
+                    drop(true);
+                    return true;
+                }
+                return false;
+
+            case MotionEvent.ACTION_CANCEL:
+                cancelLongPress();
+                if (mDragging) {
+                    drop(false);
+                    return true;
+                }
+                return false;
+        }
+        return mDragging;
+    }
+
+    protected void cancelLongPress() {
+        if (mPendingLongPress) {
+            mPendingLongPress = false;
+            mList.removeCallbacks(mLongPressRunnable);
+        }
+    }
+
+    protected final Runnable mLongPressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPendingLongPress = false;
+            startDrag(mDownX, mDownY);
+        }
+    };
+
+    // -------------------------------------------------------------
+    //  Drag
+    // -------------------------------------------------------------
+
+    /**
+     * Starts the drag of the row under the given point
+     *
+     * @return <code>true</code> if the drag started
+     */
+    protected boolean startDrag(float x, float y) {
+        if (mDragging || !mEnabled) return false;
+
+        View child = findChildUnder(x, y);
+        if (child == null) return false;
+        int position = mHost.getPositionForView(child);
+        if (position == INVALID_POSITION || !mHost.canDrag(position)) return false;
+
+        mVertical = mHost.isVertical();
+        Bitmap shadow = createShadow(child);
+        if (shadow == null) return false;
+
+        //The rows and the list lose the gesture
+        long now = SystemClock.uptimeMillis();
+        MotionEvent cancelEvent = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, x, y, 0);
+        mHost.cancelTouch(cancelEvent);
+        cancelEvent.recycle();
+
+        mShadow = shadow;
+        mShadowLeft = child.getLeft() + child.getTranslationX();
+        mShadowTop = child.getTop() + child.getTranslationY();
+        mTouchOffset = mVertical ? y - mShadowTop : x - mShadowLeft;
+        mGap = computeGap(child);
+        mFromPosition = mTargetPosition = position;
+        mDragging = true;
+
+        mList.getViewTreeObserver().addOnPreDrawListener(mDragPreDrawListener);
+        mList.getParent().requestDisallowInterceptTouchEvent(true);
+        mList.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        updateRows();
+        mList.invalidate();
+
+        if (mOnDragListener != null)
+            mOnDragListener.onDragStarted(position);
+        return true;
+    }
+
+    protected void onDragMove() {
+        float size = mVertical ? mList.getHeight() : mList.getWidth();
+        float shadowSize = mVertical ? mShadow.getHeight() : mShadow.getWidth();
+        float start = Math.max(-shadowSize / 2, Math.min(size - shadowSize / 2, axis(mLastX, mLastY) - mTouchOffset));
+        if (mVertical)
+            mShadowTop = start;
+        else
+            mShadowLeft = start;
+
+        updateRows();
+        mList.invalidate();
+
+        if (!mAutoScrolling && getAutoScrollDelta() != 0) {
+            mAutoScrolling = true;
+            postOnAnimation(mAutoScrollRunnable);
+        }
+    }
+
+    /**
+     * Updates the target position and the translations of the visible rows
+     */
+    protected void updateRows() {
+        updateTarget();
+
+        int childCount = mList.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = mList.getChildAt(i);
+            int position = mHost.getPositionForView(child);
+            if (position == INVALID_POSITION) continue;
+
+            int target = 0;
+            if (mFromPosition < mTargetPosition && position > mFromPosition && position <= mTargetPosition)
+                target = -mGap;
+            else if (mFromPosition > mTargetPosition && position >= mTargetPosition && position < mFromPosition)
+                target = mGap;
+
+            int[] state = (int[]) child.getTag(R.id.card_drag_state);
+            if (state == null) {
+                state = new int[]{position, target};
+                child.setTag(R.id.card_drag_state, state);
+                mShiftedViews.add(child);
+                setTranslation(child, target);
+            } else if (state[0] != position) {
+                //A row bound to another card while the list scrolls: no animation
+                state[0] = position;
+                state[1] = target;
+                child.animate().cancel();
+                setTranslation(child, target);
+            } else if (state[1] != target) {
+                state[1] = target;
+                if (mVertical)
+                    child.animate().translationY(target).setDuration(mAnimationTime).setListener(null);
+                else
+                    child.animate().translationX(target).setDuration(mAnimationTime).setListener(null);
+            }
+            child.setAlpha(position == mFromPosition ? 0f : 1f);
+        }
+    }
+
+    /**
+     * The target is the row whose layout bounds (without the translations) contain the center of the snapshot
+     */
+    protected void updateTarget() {
+        float center = mVertical ? mShadowTop + mShadow.getHeight() / 2f : mShadowLeft + mShadow.getWidth() / 2f;
+
+        int first = INVALID_POSITION;
+        int last = INVALID_POSITION;
+        int childCount = mList.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = mList.getChildAt(i);
+            int position = mHost.getPositionForView(child);
+            if (position == INVALID_POSITION) continue;
+
+            int start = mVertical ? child.getTop() : child.getLeft();
+            int end = mVertical ? child.getBottom() : child.getRight();
+            if (center >= start && center < end) {
+                mTargetPosition = position;
+                return;
+            }
+            if (first == INVALID_POSITION || position < first) first = position;
+            if (position > last) last = position;
+        }
+
+        //Before the first row or after the last one
+        if (first == INVALID_POSITION) return;
+        float size = mVertical ? mList.getHeight() : mList.getWidth();
+        mTargetPosition = center < size / 2 ? first : last;
+        mTargetPosition = Math.min(mTargetPosition, mHost.getItemCount() - 1);
+    }
+
+    // -------------------------------------------------------------
+    //  Auto scroll
+    // -------------------------------------------------------------
+
+    /**
+     * Returns the scroll of the current frame, proportional to the depth of the finger in the edge
+     */
+    protected int getAutoScrollDelta() {
+        float size = mVertical ? mList.getHeight() : mList.getWidth();
+        float edge = Math.min(EDGE_SIZE_DP * mDensity, size / 4);
+        if (edge <= 0) return 0;
+        float maxSpeed = MAX_SCROLL_SPEED_DP * mDensity;
+        float coord = axis(mLastX, mLastY);
+
+        if (coord < edge && canScroll(-1))
+            return -Math.max(1, (int) (maxSpeed * Math.min(1f, (edge - coord) / edge)));
+        if (coord > size - edge && canScroll(1))
+            return Math.max(1, (int) (maxSpeed * Math.min(1f, (coord - size + edge) / edge)));
+        return 0;
+    }
+
+    protected boolean canScroll(int direction) {
+        return mVertical ? mList.canScrollVertically(direction) : mList.canScrollHorizontally(direction);
+    }
+
+    protected final Runnable mAutoScrollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int delta = mDragging ? getAutoScrollDelta() : 0;
+            if (delta == 0) {
+                mAutoScrolling = false;
+                return;
+            }
+            mHost.scrollBy(delta);
+            //The rows are updated before the next draw
+            mList.invalidate();
+            postOnAnimation(this);
+        }
+    };
+
+    @SuppressLint("NewApi")
+    protected void postOnAnimation(Runnable runnable) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            mList.postOnAnimation(runnable);
+        else
+            mList.postDelayed(runnable, 16);
+    }
+
+    /**
+     * The rows bound or moved by a layout during the drag (scroll, auto scroll) are updated before they are drawn
+     */
+    protected final ViewTreeObserver.OnPreDrawListener mDragPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (mDragging)
+                updateRows();
+            return true;
+        }
+    };
+
+    // -------------------------------------------------------------
+    //  Drop
+    // -------------------------------------------------------------
+
+    /**
+     * Ends the drag
+     *
+     * @param move <code>true</code> to move the card to the target position
+     */
+    protected void drop(boolean move) {
+        final int from = mFromPosition;
+        final int to = move ? mTargetPosition : from;
+
+        mDragging = false;
+        mAutoScrolling = false;
+        mList.removeCallbacks(mAutoScrollRunnable);
+        mList.getViewTreeObserver().removeOnPreDrawListener(mDragPreDrawListener);
+
+        final boolean moved = from != to && to != INVALID_POSITION && mHost.onMove(from, to);
+        final int settlePosition = moved ? to : from;
+        final float shadowLeft = mShadowLeft;
+        final float shadowTop = mShadowTop;
+
+        //The rows are reset after the layout of the moved card, so the old order is never drawn without the gap
+        mList.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mList.isLayoutRequested())
+                    return true;
+                mList.getViewTreeObserver().removeOnPreDrawListener(this);
+
+                resetRows();
+                releaseShadow();
+                settle(settlePosition, shadowLeft, shadowTop);
+                if (moved)
+                    mHost.onMoveLaidOut();
+                return true;
+            }
+        });
+        mList.invalidate();
+
+        if (mOnDragListener != null)
+            mOnDragListener.onDragEnded(from, moved ? to : from);
+    }
+
+    /**
+     * Animates the dropped card from the snapshot to its row
+     */
+    protected void settle(int position, float shadowLeft, float shadowTop) {
+        int childCount = mList.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            View child = mList.getChildAt(i);
+            if (mHost.getPositionForView(child) != position) continue;
+
+            if (mVertical) {
+                child.setTranslationY(shadowTop - child.getTop());
+                child.animate().translationY(0).setDuration(mAnimationTime).setListener(null);
+            } else {
+                child.setTranslationX(shadowLeft - child.getLeft());
+                child.animate().translationX(0).setDuration(mAnimationTime).setListener(null);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Resets the rows translated during the drag, also the ones which left the list
+     */
+    protected void resetRows() {
+        for (View view : mShiftedViews) {
+            view.animate().cancel();
+            view.setTag(R.id.card_drag_state, null);
+            setTranslation(view, 0);
+            view.setAlpha(1f);
+        }
+        mShiftedViews.clear();
+    }
+
+    protected void releaseShadow() {
+        if (mShadow != null && !mDragging) {
+            mShadow.recycle();
+            mShadow = null;
+        }
+    }
+
+    /**
+     * Cancels the running drag: the card stays in its position
+     */
+    public void cancelDrag() {
+        cancelLongPress();
+        if (mDragging) {
+            drop(false);
+        }
+    }
+
+    // -------------------------------------------------------------
+    //  Draw
+    // -------------------------------------------------------------
+
+    /**
+     * Draws the snapshot of the dragged card. The list has to call it after drawing its children.
+     */
+    public void draw(Canvas canvas) {
+        if (mShadow == null || mShadow.isRecycled()) return;
+        canvas.drawBitmap(mShadow, mShadowLeft, mShadowTop, mShadowPaint);
+    }
+
+    /**
+     * Creates the snapshot of a row
+     */
+    protected Bitmap createShadow(View child) {
+        try {
+            if (child instanceof CardView)
+                return ((CardView) child).createBitmap();
+            if (child.getWidth() <= 0 || child.getHeight() <= 0) return null;
+            Bitmap bitmap = Bitmap.createBitmap(child.getWidth(), child.getHeight(), Bitmap.Config.ARGB_8888);
+            child.draw(new Canvas(bitmap));
+            return bitmap;
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Not enough memory for the snapshot of the dragged card", e);
+            return null;
+        }
+    }
+
+    // -------------------------------------------------------------
+    //  Utils
+    // -------------------------------------------------------------
+
+    protected View findChildUnder(float x, float y) {
+        for (int i = mList.getChildCount() - 1; i >= 0; i--) {
+            View child = mList.getChildAt(i);
+            float left = child.getLeft() + child.getTranslationX();
+            float top = child.getTop() + child.getTranslationY();
+            if (x >= left && x < left + child.getWidth() && y >= top && y < top + child.getHeight())
+                return child;
+        }
+        return null;
+    }
+
+    /**
+     * The gap is the size of the row plus the space to the next row (dividers, decorations)
+     */
+    protected int computeGap(View child) {
+        int size = mVertical ? child.getHeight() : child.getWidth();
+        int index = mList.indexOfChild(child);
+        if (index + 1 < mList.getChildCount()) {
+            View next = mList.getChildAt(index + 1);
+            int space = mVertical ? next.getTop() - child.getBottom() : next.getLeft() - child.getRight();
+            if (space >= 0) return size + space;
+        }
+        if (index > 0) {
+            View previous = mList.getChildAt(index - 1);
+            int space = mVertical ? child.getTop() - previous.getBottom() : child.getLeft() - previous.getRight();
+            if (space >= 0) return size + space;
+        }
+        return size;
+    }
+
+    protected float axis(float x, float y) {
+        return mVertical ? y : x;
+    }
+
+    protected void setTranslation(View view, float translation) {
+        if (mVertical)
+            view.setTranslationY(translation);
+        else
+            view.setTranslationX(translation);
+    }
+
+    // -------------------------------------------------------------
+    //  Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Enables or disables the drag. Disabling the controller cancels the running drag.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled)
+            cancelDrag();
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Indicates if a card is dragged
+     */
+    public boolean isDragging() {
+        return mDragging;
+    }
+
+    public void setOnDragListener(OnDragListener onDragListener) {
+        mOnDragListener = onDragListener;
+    }
+}
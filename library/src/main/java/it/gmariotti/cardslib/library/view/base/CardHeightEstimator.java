@@ -0,0 +1,358 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.view.View;
+import android.widget.Adapter;
+
+import java.util.Arrays;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.base.BaseCardArrayAdapter;
+import it.gmariotti.cardslib.library.internal.base.LazyCardList;
+
+/**
+ * Estimates the offsets of the rows of a list, also for the rows which are not laid out.
+ * </p>
+ * The heights come from the rows laid out by the list and from the {@link CardMeasureCache};
+ * the rows never measured use the average height. The sums are kept in a Fenwick tree, so
+ * offsets and updates cost O(log n) also on very long feeds.
+ * </p>
+ * {@link #rebuild(Adapter, int)} reads the whole adapter: the lists call it only when the data
+ * changes without a range event. The adapter operations are applied with the range methods,
+ * which only read the cache for the changed positions.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardHeightEstimator {
+
+    protected final CardMeasureCache mCache;
+
+    /**
+     * Height of each position (-1 if unknown)
+     */
+    protected int[] mHeights = new int[0];
+
+    /**
+     * Fenwick trees: sum of the known heights, number of known heights
+     */
+    protected long[] mSumTree = new long[1];
+    protected int[] mCountTree = new int[1];
+
+    protected long mKnownSum;
+    protected int mKnownCount;
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    public CardHeightEstimator() {
+        this(CardMeasureCache.getInstance());
+    }
+
+    public CardHeightEstimator(CardMeasureCache cache) {
+        mCache = cache;
+    }
+
+    // -------------------------------------------------------------
+    // Update
+    // -------------------------------------------------------------
+
+    /**
+     * Reloads the heights of all positions from the cache.
+     * Call it when the data of the adapter changes.
+     *
+     * @param adapter adapter
+     * @param width   width of the rows
+     */
+    public void rebuild(Adapter adapter, int width) {
+        int count = adapter != null ? adapter.getCount() : 0;
+        mHeights = new int[count];
+        Arrays.fill(mHeights, -1);
+        mSumTree = new long[count + 1];
+        mCountTree = new int[count + 1];
+        mKnownSum = 0;
+        mKnownCount = 0;
+
+        for (int position = 0; position < count; position++) {
+            int height = getCachedHeight(adapter, position, width);
+            if (height >= 0)
+                setHeight(position, height);
+        }
+    }
+
+    /**
+     * Reloads the heights of a range of changed positions from the cache
+     *
+     * @param adapter       adapter
+     * @param width         width of the rows
+     * @param positionStart first changed position
+     * @param itemCount     number of changed positions
+     */
+    public void onItemRangeChanged(Adapter adapter, int width, int positionStart, int itemCount) {
+        int end = Math.min(positionStart + itemCount, mHeights.length);
+        for (int position = Math.max(0, positionStart); position < end; position++) {
+            int height = getCachedHeight(adapter, position, width);
+            if (height >= 0)
+                setHeight(position, height);
+            else
+                clearHeight(position);
+        }
+    }
+
+    /**
+     * Shifts the heights after an insert. Only the inserted positions are read from the cache.
+     *
+     * @param adapter       adapter
+     * @param width         width of the rows
+     * @param positionStart position of the first inserted card
+     * @param itemCount     number of inserted cards
+     */
+    public void onItemRangeInserted(Adapter adapter, int width, int positionStart, int itemCount) {
+        if (itemCount <= 0) return;
+        positionStart = Math.max(0, Math.min(positionStart, mHeights.length));
+
+        int[] heights = new int[mHeights.length + itemCount];
+        System.arraycopy(mHeights, 0, heights, 0, positionStart);
+        Arrays.fill(heights, positionStart, positionStart + itemCount, -1);
+        System.arraycopy(mHeights, positionStart, heights, positionStart + itemCount, mHeights.length - positionStart);
+        for (int position = positionStart; position < positionStart + itemCount; position++)
+            heights[position] = getCachedHeight(adapter, position, width);
+        setHeights(heights);
+    }
+
+    /**
+     * Shifts the heights after a remove
+     *
+     * @param positionStart position of the first removed card
+     * @param itemCount     number of removed cards
+     */
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        positionStart = Math.max(0, Math.min(positionStart, mHeights.length));
+        itemCount = Math.min(itemCount, mHeights.length - positionStart);
+        if (itemCount <= 0) return;
+
+        int[] heights = new int[mHeights.length - itemCount];
+        System.arraycopy(mHeights, 0, heights, 0, positionStart);
+        System.arraycopy(mHeights, positionStart + itemCount, heights, positionStart, heights.length - positionStart);
+        setHeights(heights);
+    }
+
+    /**
+     * Moves the height of a position. Only the positions between the two positions are updated.
+     *
+     * @param fromPosition old position
+     * @param toPosition   new position
+     */
+    public void onItemMoved(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition || fromPosition < 0 || toPosition < 0
+                || fromPosition >= mHeights.length || toPosition >= mHeights.length)
+            return;
+
+        int min = Math.min(fromPosition, toPosition);
+        int max = Math.max(fromPosition, toPosition);
+        int[] moved = new int[max - min + 1];
+        System.arraycopy(mHeights, min, moved, 0, moved.length);
+        if (fromPosition < toPosition) {
+            System.arraycopy(moved, 1, moved, 0, moved.length - 1);
+            moved[moved.length - 1] = mHeights[fromPosition];
+        } else {
+            System.arraycopy(moved, 0, moved, 1, moved.length - 1);
+            moved[0] = mHeights[fromPosition];
+        }
+        for (int i = 0; i < moved.length; i++) {
+            if (moved[i] >= 0)
+                setHeight(min + i, moved[i]);
+            else
+                clearHeight(min + i);
+        }
+    }
+
+    /**
+     * Sets the height of a position (for example after a layout)
+     *
+     * @param position position
+     * @param height   height
+     */
+    public void setHeight(int position, int height) {
+        if (position < 0 || position >= mHeights.length || height < 0) return;
+
+        int old = mHeights[position];
+        if (old == height) return;
+
+        mHeights[position] = height;
+        long delta = old < 0 ? height : height - old;
+        int countDelta = old < 0 ? 1 : 0;
+        mKnownSum += delta;
+        mKnownCount += countDelta;
+        for (int i = position + 1; i < mSumTree.length; i += i & -i) {
+            mSumTree[i] += delta;
+            mCountTree[i] += countDelta;
+        }
+    }
+
+    /**
+     * Forgets the height of a position, which uses the average again
+     *
+     * @param position position
+     */
+    public void clearHeight(int position) {
+        if (position < 0 || position >= mHeights.length) return;
+
+        int old = mHeights[position];
+        if (old < 0) return;
+
+        mHeights[position] = -1;
+        mKnownSum -= old;
+        mKnownCount--;
+        for (int i = position + 1; i < mSumTree.length; i += i & -i) {
+            mSumTree[i] -= old;
+            mCountTree[i]--;
+        }
+    }
+
+    /**
+     * Replaces all heights and builds the trees in O(n), without reading the cache
+     */
+    protected void setHeights(int[] heights) {
+        int count = heights.length;
+        mHeights = heights;
+        mSumTree = new long[count + 1];
+        mCountTree = new int[count + 1];
+        mKnownSum = 0;
+        mKnownCount = 0;
+
+        for (int i = 1; i <= count; i++) {
+            int height = heights[i - 1];
+            if (height >= 0) {
+                mSumTree[i] += height;
+                mCountTree[i]++;
+                mKnownSum += height;
+                mKnownCount++;
+            }
+            int parent = i + (i & -i);
+            if (parent <= count) {
+                mSumTree[parent] += mSumTree[i];
+                mCountTree[parent] += mCountTree[i];
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Estimates
+    // -------------------------------------------------------------
+
+    /**
+     * @return the number of positions
+     */
+    public int getCount() {
+        return mHeights.length;
+    }
+
+    /**
+     * @return <code>true</code> if at least one height is known
+     */
+    public boolean hasEstimates() {
+        return mKnownCount > 0;
+    }
+
+    /**
+     * @return the average of the known heights
+     */
+    public int getAverageHeight() {
+        return mKnownCount > 0 ? (int) (mKnownSum / mKnownCount) : 0;
+    }
+
+    /**
+     * Returns the height of a position, or the average if it is not known
+     */
+    public int getHeight(int position) {
+        if (position < 0 || position >= mHeights.length) return 0;
+        return mHeights[position] >= 0 ? mHeights[position] : getAverageHeight();
+    }
+
+    /**
+     * Returns the estimated offset of the top of a position
+     *
+     * @param position position (from 0 to {@link #getCount()})
+     * @return offset
+     */
+    public int getOffset(int position) {
+        position = Math.max(0, Math.min(position, mHeights.length));
+        long sum = 0;
+        int known = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            sum += mSumTree[i];
+            known += mCountTree[i];
+        }
+        return (int) (sum + (long) (position - known) * getAverageHeight());
+    }
+
+    /**
+     * @return the estimated height of all rows
+     */
+    public int getTotalHeight() {
+        return getOffset(mHeights.length);
+    }
+
+    /**
+     * Returns the position which contains the given offset
+     *
+     * @param offset offset
+     * @return position
+     */
+    public int getPositionForOffset(int offset) {
+        int low = 0;
+        int high = mHeights.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getOffset(mid) <= offset)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return Math.max(0, low);
+    }
+
+    /**
+     * Returns the cached height of the card at a position, or -1.
+     * The height is keyed by the content and the expanded state of the card
+     * (see {@link CardMeasureCache#getHeight(String, int, boolean, int)});
+     * a card of a lazy list which is not materialized can only use the last height measured for its id.
+     */
+    protected int getCachedHeight(Adapter adapter, int position, int width) {
+        if (adapter == null || position < 0 || position >= adapter.getCount()) return -1;
+
+        Card card;
+        if (adapter instanceof BaseCardArrayAdapter
+                && ((BaseCardArrayAdapter) adapter).getList() instanceof LazyCardList) {
+            LazyCardList cards = (LazyCardList) ((BaseCardArrayAdapter) adapter).getList();
+            card = cards.peek(position);
+            if (card == null)
+                return mCache.getEstimatedHeight(cards.getCardId(position), width);
+        } else {
+            Object item = adapter.getItem(position);
+            card = item instanceof Card ? (Card) item : null;
+        }
+        if (card == null) return -1;
+        return mCache.getHeight(card.getId(), card.getContentHash(), card.isExpanded(),
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY));
+    }
+}
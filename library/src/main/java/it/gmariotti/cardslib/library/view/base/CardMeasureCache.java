@@ -0,0 +1,157 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+import android.view.View;
+
+import it.gmariotti.cardslib.library.utils.CardResourceGovernor;
+
+/**
+ * Cache of the measured heights of the cards.
+ * </p>
+ * The heights are keyed by card id, content hash (see {@link it.gmariotti.cardslib.library.internal.Card#getContentHash()}),
+ * expanded state and width. The card views store their natural heights, and the lists read them to estimate the heights
+ * of the rows which are not laid out (see {@link CardHeightEstimator}).
+ * A card view which binds again the card it measured keeps its own measure, so it doesn't read this cache.
+ * </p>
+ * It must be used on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class CardMeasureCache implements CardResourceGovernor.Trimmable {
+
+    protected static String TAG = "CardMeasureCache";
+
+    /**
+     * Default number of cards retained
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * Measured height of a card
+     */
+    protected static class Entry {
+        int contentHash;
+        boolean expanded;
+        int width;
+        int height;
+    }
+
+    /**
+     * Card id -> last measure
+     */
+    protected LruCache<String, Entry> mEntries = new LruCache<String, Entry>(DEFAULT_MAX_SIZE);
+
+    //Singleton
+    private static CardMeasureCache sInstance;
+
+    protected CardMeasureCache() {
+        CardResourceGovernor.getInstance().register(this);
+    }
+
+    public static CardMeasureCache getInstance() {
+        if (sInstance != null)
+            return sInstance;
+        else
+            return sInstance = new CardMeasureCache();
+    }
+
+    // -------------------------------------------------------------
+    // Cache
+    // -------------------------------------------------------------
+
+    /**
+     * Stores a measured height
+     *
+     * @param id               card id
+     * @param contentHash      content hash of the card
+     * @param expanded         expanded state of the card
+     * @param widthMeasureSpec width spec used to measure the card
+     * @param height           measured height
+     */
+    public void put(String id, int contentHash, boolean expanded, int widthMeasureSpec, int height) {
+        if (id == null || contentHash == 0) return;
+
+        int width = View.MeasureSpec.getSize(widthMeasureSpec);
+        Entry entry = mEntries.get(id);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(id, entry);
+        } else if (entry.contentHash == contentHash && entry.expanded == expanded
+                && entry.width == width && entry.height == height) {
+            return;
+        }
+        entry.contentHash = contentHash;
+        entry.expanded = expanded;
+        entry.width = width;
+        entry.height = height;
+    }
+
+    /**
+     * Returns the height of a card measured with the same content, expanded state and width
+     *
+     * @param id               card id
+     * @param contentHash      content hash of the card
+     * @param expanded         expanded state of the card
+     * @param widthMeasureSpec width spec
+     * @return the height, or -1 if it is not cached
+     */
+    public int getHeight(String id, int contentHash, boolean expanded, int widthMeasureSpec) {
+        if (id == null || contentHash == 0) return -1;
+
+        Entry entry = mEntries.get(id);
+        if (entry == null || entry.contentHash != contentHash || entry.expanded != expanded ||
+                entry.width != View.MeasureSpec.getSize(widthMeasureSpec))
+            return -1;
+        return entry.height;
+    }
+
+    /**
+     * Returns the last height measured for a card with the given width, whatever its content.
+     * Use it only when the content of the card is not known (i.e. a card of a lazy list which is not materialized),
+     * otherwise use {@link #getHeight(String, int, boolean, int)}.
+     *
+     * @param id    card id
+     * @param width width
+     * @return the height, or -1 if it is not cached
+     */
+    public int getEstimatedHeight(String id, int width) {
+        if (id == null) return -1;
+
+        Entry entry = mEntries.get(id);
+        if (entry == null || entry.width != width) return -1;
+        return entry.height;
+    }
+
+    /**
+     * Clears the cache
+     */
+    public void clear() {
+        mEntries.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            clear();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+/**
+ * Translations of the rows around a card which expands or collapses in a list
+ * (used by {@link it.gmariotti.cardslib.library.view.CardListView}, {@link it.gmariotti.cardslib.library.view.CardGridView}
+ * and {@link it.gmariotti.cardslib.library.view.CardTwoWayView}).
+ * </p>
+ * The cells always try to expand downwards (leaving top bound untouched), and similarly,
+ * collapse upwards (leaving top bound untouched). If the change in bounds results in the complete
+ * disappearance of a cell, its lower bound is moved to the top of the screen so as not to hide any
+ * additional content. If the expanded cell is partially off screen, it is translated such that its
+ * full contents are visible. Near the bottom of the list the bottom bound can't be modified.
+ * </p>
+ * It doesn't depend on the views, so it can run on a plain JVM.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class ExpandTranslations {
+
+    private ExpandTranslations() {
+    }
+
+    /**
+     * Calculates the top and bottom bound changes of the selected item
+     *
+     * @param top            top of the item
+     * @param bottom         bottom of the item
+     * @param yDelta         change of the height
+     * @param isExpanding    <code>true</code> if the item expands
+     * @param listHeight     height of the list (used when expanding)
+     * @param leftoverExtent scroll range below the visible area (used when collapsing)
+     * @return {translateTop, translateBottom}
+     */
+    public static int[] compute(int top, int bottom, int yDelta, boolean isExpanding,
+                                int listHeight, int leftoverExtent) {
+        int yTranslateTop = 0;
+        int yTranslateBottom = yDelta;
+
+        int height = bottom - top;
+
+        if (isExpanding) {
+            boolean isOverTop = top < 0;
+            boolean isBelowBottom = (top + height + yDelta) > listHeight;
+            if (isOverTop) {
+                yTranslateTop = top;
+                yTranslateBottom = yDelta - yTranslateTop;
+            } else if (isBelowBottom) {
+                int deltaBelow = top + height + yDelta - listHeight;
+                yTranslateTop = top - deltaBelow < 0 ? top : deltaBelow;
+                yTranslateBottom = yDelta - yTranslateTop;
+            }
+        } else {
+            boolean isCollapsingBelowBottom = (yTranslateBottom > leftoverExtent);
+            boolean isCellCompletelyDisappearing = bottom - yTranslateBottom < 0;
+
+            if (isCollapsingBelowBottom) {
+                yTranslateTop = yTranslateBottom - leftoverExtent;
+                yTranslateBottom = yDelta - yTranslateTop;
+            } else if (isCellCompletelyDisappearing) {
+                yTranslateBottom = bottom;
+                yTranslateTop = yDelta - yTranslateBottom;
+            }
+        }
+
+        return new int[] {yTranslateTop, yTranslateBottom};
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Animates the cells of a grid to their new positions after a change of the adapter (removals, undo).
+ * </p>
+ * The positions of the visible cells are recorded before the change. After the next layout each cell
+ * which was visible is translated back to its old position and animated to the new one,
+ * the other cells fade in. Only the translation and the alpha of the cells are animated,
+ * so the animation never triggers a layout.
+ * </p>
+ * The cells are matched by the identity of their adapter items.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class GridReflowAnimator {
+
+    protected final AbsListView mListView;
+
+    protected long mDuration;
+
+    /**
+     * Old positions (item -> left, top) of the running change
+     */
+    protected Map<Object, int[]> mOldPositions;
+
+    public GridReflowAnimator(AbsListView listView) {
+        mListView = listView;
+        mDuration = listView.getResources().getInteger(android.R.integer.config_shortAnimTime);
+    }
+
+    /**
+     * Runs a change of the adapter and animates the cells to their new positions.
+     *
+     * @param change change (it has to notify the adapter)
+     */
+    public void animateChange(Runnable change) {
+        Adapter adapter = mListView.getAdapter();
+        //A change before the layout of the previous one: the recorded positions are still the drawn ones
+        if (adapter == null || mListView.getChildCount() == 0 || mOldPositions != null) {
+            change.run();
+            return;
+        }
+
+        Map<Object, int[]> oldPositions = new IdentityHashMap<Object, int[]>();
+        int first = mListView.getFirstVisiblePosition();
+        for (int i = 0; i < mListView.getChildCount(); i++) {
+            int position = first + i;
+            if (position >= adapter.getCount()) break;
+            View child = mListView.getChildAt(i);
+            //A cell which is still moving is recorded where it is drawn
+            oldPositions.put(adapter.getItem(position), new int[]{
+                    child.getLeft() + (int) child.getTranslationX(), child.getTop() + (int) child.getTranslationY()});
+        }
+        mOldPositions = oldPositions;
+
+        change.run();
+
+        final ViewTreeObserver observer = mListView.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (observer.isAlive())
+                    observer.removeOnPreDrawListener(this);
+                else
+                    mListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                animateCells();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Moves the cells back to their old positions and animates them (after the layout)
+     */
+    protected void animateCells() {
+        Map<Object, int[]> oldPositions = mOldPositions;
+        mOldPositions = null;
+        Adapter adapter = mListView.getAdapter();
+        if (oldPositions == null || adapter == null) return;
+
+        int first = mListView.getFirstVisiblePosition();
+        for (int i = 0; i < mListView.getChildCount(); i++) {
+            int position = first + i;
+            if (position >= adapter.getCount()) break;
+
+            View child = mListView.getChildAt(i);
+            child.animate().cancel();
+
+            int[] old = oldPositions.get(adapter.getItem(position));
+            if (old != null) {
+                float dx = old[0] - child.getLeft();
+                float dy = old[1] - child.getTop();
+                if (dx == 0 && dy == 0) {
+                    child.setTranslationX(0);
+                    child.setTranslationY(0);
+                    continue;
+                }
+                child.setTranslationX(dx);
+                child.setTranslationY(dy);
+                child.animate().translationX(0).translationY(0).setDuration(mDuration).setListener(null);
+            } else {
+                child.setTranslationX(0);
+                child.setTranslationY(0);
+                child.setAlpha(0f);
+                child.animate().alpha(1f).setDuration(mDuration).setListener(null);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    public void setDuration(long duration) {
+        mDuration = Math.max(0, duration);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Connects a card list to its {@link ScrollJankMonitor}.
+ * </p>
+ * The lists (<code>CardListView</code>, <code>CardGridView</code>, <code>CardTwoWayView</code>, <code>CardRecyclerView</code>)
+ * forward their touch, scroll, expand and detach events to it. The monitor is created when it is enabled the first time.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ScrollJankDelegate {
+
+    protected final View mView;
+
+    protected ScrollJankMonitor mMonitor;
+
+    /**
+     * @param view list to monitor
+     */
+    public ScrollJankDelegate(View view) {
+        mView = view;
+    }
+
+    // -------------------------------------------------------------
+    // Monitor
+    // -------------------------------------------------------------
+
+    /**
+     * Enables the monitor: it records the duration of the frames while the list is touched,
+     * scrolled or animated (API 16+)
+     *
+     * @param enabled <code>true</code> to record the frames
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && mMonitor == null)
+            mMonitor = new ScrollJankMonitor(mView);
+        if (mMonitor != null)
+            mMonitor.setEnabled(enabled);
+    }
+
+    /**
+     * Returns the monitor, or <code>null</code> if it was never enabled
+     */
+    public ScrollJankMonitor getMonitor() {
+        return mMonitor;
+    }
+
+    // -------------------------------------------------------------
+    // Events from the list
+    // -------------------------------------------------------------
+
+    public void onTouchEvent(MotionEvent event) {
+        if (mMonitor != null)
+            mMonitor.onTouchEvent(event);
+    }
+
+    public void onScroll() {
+        if (mMonitor != null)
+            mMonitor.onScroll();
+    }
+
+    public void onExpandStart() {
+        if (mMonitor != null)
+            mMonitor.onExpandStart();
+    }
+
+    public void onExpandEnd() {
+        if (mMonitor != null)
+            mMonitor.onExpandEnd();
+    }
+
+    public void onDetachedFromWindow() {
+        if (mMonitor != null)
+            mMonitor.stop();
+    }
+}
@@ -0,0 +1,562 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.base;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.SparseArray;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.utils.CardMetrics;
+
+/**
+ * Jank monitor of a card list.
+ * </p>
+ * While the list is touched, scrolled, flung or animates an expand, the monitor records the duration of each frame
+ * with the {@link Choreographer} frame callbacks (API 16+). The binds, the thumbnail callbacks and the expand
+ * animations which run in a frame (they are received as a {@link CardMetrics.Listener}) are attributed to it:
+ * the card types bound in the slow frames are the worst offenders.
+ * The monitor stops when the list doesn't move for {@link #IDLE_FRAMES} frames.
+ * </p>
+ * The results are read with {@link #getReport()}, from any thread. Note that the binds of all the lists
+ * are attributed to the frames, as they all run on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ScrollJankMonitor implements CardMetrics.Listener {
+
+    protected static String TAG = "ScrollJankMonitor";
+
+    /**
+     * Frames without movement before the monitor stops
+     */
+    public static final int IDLE_FRAMES = 30;
+
+    /**
+     * A frame longer than this multiple of the refresh interval is janky
+     */
+    public static final float JANK_THRESHOLD = 1.5f;
+
+    /**
+     * Number of recent frames used for the percentiles
+     */
+    public static final int WINDOW = 1024;
+
+    /**
+     * Max binds attributed to a frame
+     */
+    protected static final int MAX_FRAME_BINDS = 64;
+
+    /**
+     * Max duration of an expand animation, if its end is not reported
+     */
+    protected static final long EXPAND_TIMEOUT_NANOS = 1000000000L;
+
+    protected final View mView;
+    protected final long mFrameIntervalNanos;
+
+    protected boolean mEnabled = true;
+    protected boolean mRunning;
+    protected Object mFrameCallback;
+
+    // -------------------------------------------------------------
+    // Current frame (UI thread)
+    // -------------------------------------------------------------
+
+    protected long mLastFrameTimeNanos;
+    protected long mLastSignature;
+    protected int mIdleFrames;
+    protected boolean mTouching;
+    protected int mActiveExpands;
+    protected long mExpandDeadlineNanos;
+
+    protected int mFrameBinds;
+    protected final Class<?>[] mBindClasses = new Class<?>[MAX_FRAME_BINDS];
+    protected final int[] mBindLayouts = new int[MAX_FRAME_BINDS];
+    protected final long[] mBindNanos = new long[MAX_FRAME_BINDS];
+    protected int mFrameThumbnails;
+    protected int mFrameExpands;
+
+    // -------------------------------------------------------------
+    // Results (guarded by this)
+    // -------------------------------------------------------------
+
+    protected final int[] mRecentFrames = new int[WINDOW];
+    protected int mRecentIndex;
+    protected int mRecentCount;
+
+    protected long mFrames;
+    protected long mJankyFrames;
+    protected long mDroppedFrames;
+    protected long mWorstFrameNanos;
+    protected long mJankyFramesWithBinds;
+    protected long mJankyFramesWithThumbnails;
+    protected long mJankyFramesWithExpands;
+
+    /**
+     * Card class -> inner layout -> offender
+     */
+    protected final Map<Class<?>, SparseArray<Offender>> mOffenders = new HashMap<Class<?>, SparseArray<Offender>>();
+
+    /**
+     * Card type bound in the janky frames
+     */
+    public static class Offender {
+
+        protected final Class<?> mCardClass;
+        protected final int mInnerLayout;
+        protected long mJankyFrames;
+        protected long mBinds;
+        protected long mBindNanos;
+        long mLastFrame;
+
+        protected Offender(Class<?> cardClass, int innerLayout) {
+            mCardClass = cardClass;
+            mInnerLayout = innerLayout;
+        }
+
+        protected Offender(Offender other) {
+            this(other.mCardClass, other.mInnerLayout);
+            mJankyFrames = other.mJankyFrames;
+            mBinds = other.mBinds;
+            mBindNanos = other.mBindNanos;
+        }
+
+        public Class<?> getCardClass() {
+            return mCardClass;
+        }
+
+        public int getInnerLayout() {
+            return mInnerLayout;
+        }
+
+        /**
+         * Returns the janky frames which bound this card type
+         */
+        public long getJankyFrames() {
+            return mJankyFrames;
+        }
+
+        /**
+         * Returns the binds of this card type in the janky frames
+         */
+        public long getBinds() {
+            return mBinds;
+        }
+
+        /**
+         * Returns the time of the binds of this card type in the janky frames
+         */
+        public long getBindNanos() {
+            return mBindNanos;
+        }
+    }
+
+    /**
+     * Snapshot of the results
+     */
+    public static class Report {
+
+        protected long mFrames;
+        protected long mJankyFrames;
+        protected long mDroppedFrames;
+        protected long mWorstFrameNanos;
+        protected long mJankyFramesWithBinds;
+        protected long mJankyFramesWithThumbnails;
+        protected long mJankyFramesWithExpands;
+        protected long mFrameIntervalNanos;
+        protected int[] mSortedFrames;
+        protected List<Offender> mOffenders;
+
+        /**
+         * Returns the frames recorded while the list was moving
+         */
+        public long getFrames() {
+            return mFrames;
+        }
+
+        /**
+         * Returns the frames longer than {@link #JANK_THRESHOLD} refresh intervals
+         */
+        public long getJankyFrames() {
+            return mJankyFrames;
+        }
+
+        /**
+         * Returns the refresh intervals missed by the janky frames
+         */
+        public long getDroppedFrames() {
+            return mDroppedFrames;
+        }
+
+        public float getWorstFrameMillis() {
+            return mWorstFrameNanos / 1000000f;
+        }
+
+        public float getFrameIntervalMillis() {
+            return mFrameIntervalNanos / 1000000f;
+        }
+
+        public long getJankyFramesWithBinds() {
+            return mJankyFramesWithBinds;
+        }
+
+        public long getJankyFramesWithThumbnails() {
+            return mJankyFramesWithThumbnails;
+        }
+
+        public long getJankyFramesWithExpands() {
+            return mJankyFramesWithExpands;
+        }
+
+        /**
+         * Returns a percentile of the duration of the last {@link #WINDOW} frames
+         *
+         * @param percentile percentile (0-100)
+         * @return the duration in milliseconds, 0 if there are no frames
+         */
+        public float getFramePercentileMillis(double percentile) {
+            if (mSortedFrames.length == 0)
+                return 0;
+            int index = (int) Math.ceil(mSortedFrames.length * percentile / 100d) - 1;
+            index = Math.max(0, Math.min(mSortedFrames.length - 1, index));
+            return mSortedFrames[index] / 1000f;
+        }
+
+        /**
+         * Returns the card types bound in the janky frames, the slowest first
+         */
+        public List<Offender> getOffenders() {
+            return mOffenders;
+        }
+    }
+
+    // -------------------------------------------------------------
+    // Constructor
+    // -------------------------------------------------------------
+
+    /**
+     * @param view list to monitor
+     */
+    public ScrollJankMonitor(View view) {
+        mView = view;
+        mFrameIntervalNanos = getFrameIntervalNanos(view.getContext());
+    }
+
+    protected static long getFrameIntervalNanos(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        Display display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        float refreshRate = display != null ? display.getRefreshRate() : 0;
+        if (refreshRate < 10)
+            refreshRate = 60;
+        return (long) (1000000000L / refreshRate);
+    }
+
+    // -------------------------------------------------------------
+    // Events from the list
+    // -------------------------------------------------------------
+
+    /**
+     * The list scrolled
+     */
+    public void onScroll() {
+        start();
+    }
+
+    /**
+     * Touch events of the list: the monitor runs while the list is touched
+     */
+    public void onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mTouching = true;
+                start();
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mTouching = false;
+                break;
+        }
+    }
+
+    /**
+     * An expand (or collapse) animation starts
+     */
+    public void onExpandStart() {
+        if (!mEnabled)
+            return;
+        start();
+        mActiveExpands++;
+        mFrameExpands++;
+        mExpandDeadlineNanos = System.nanoTime() + EXPAND_TIMEOUT_NANOS;
+    }
+
+    /**
+     * An expand (or collapse) animation ended
+     */
+    public void onExpandEnd() {
+        if (mActiveExpands > 0)
+            mActiveExpands--;
+    }
+
+    // -------------------------------------------------------------
+    // CardMetrics.Listener
+    // -------------------------------------------------------------
+
+    @Override
+    public void onPhase(Card card, int phase, long nanos) {
+    }
+
+    @Override
+    public void onBind(Card card, boolean recycled, boolean forceReplace, long nanos) {
+        if (mFrameBinds < MAX_FRAME_BINDS) {
+            mBindClasses[mFrameBinds] = card != null ? card.getClass() : Card.class;
+            mBindLayouts[mFrameBinds] = card != null ? card.getInnerLayout() : -1;
+            mBindNanos[mFrameBinds] = nanos;
+            mFrameBinds++;
+        }
+    }
+
+    @Override
+    public void onThumbnail(Card card, int source, long nanos) {
+        mFrameThumbnails++;
+    }
+
+    // -------------------------------------------------------------
+    // Frames
+    // -------------------------------------------------------------
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    protected class FrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame(frameTimeNanos);
+            if (mRunning)
+                Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Starts the frame callbacks, if they are not running
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    protected void start() {
+        mIdleFrames = 0;
+        if (mRunning || !mEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+            return;
+        if (mFrameCallback == null)
+            mFrameCallback = new FrameCallback();
+
+        mRunning = true;
+        mLastFrameTimeNanos = 0;
+        mLastSignature = getScrollSignature();
+        clearFrame();
+        //The monitor only counts the thumbnails: the loads keep their default options
+        CardMetrics.getInstance().addListener(this, false);
+        Choreographer.getInstance().postFrameCallback((FrameCallback) mFrameCallback);
+    }
+
+    /**
+     * Stops the frame callbacks. The results are kept.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void stop() {
+        if (!mRunning)
+            return;
+        mRunning = false;
+        mTouching = false;
+        mActiveExpands = 0;
+        CardMetrics.getInstance().removeListener(this);
+        Choreographer.getInstance().removeFrameCallback((FrameCallback) mFrameCallback);
+    }
+
+    /**
+     * A frame starts: the previous one, which ran since the last callback, ended
+     */
+    protected void onFrame(long frameTimeNanos) {
+        long signature = getScrollSignature();
+        boolean moved = signature != mLastSignature;
+        mLastSignature = signature;
+
+        if (mActiveExpands > 0 && System.nanoTime() > mExpandDeadlineNanos)
+            mActiveExpands = 0;
+        boolean expanding = mActiveExpands > 0 || mFrameExpands > 0;
+
+        boolean active = moved || mTouching || expanding || mFrameBinds > 0 || mFrameThumbnails > 0;
+        if (mLastFrameTimeNanos != 0 && active)
+            recordFrame(frameTimeNanos - mLastFrameTimeNanos, expanding);
+        mLastFrameTimeNanos = frameTimeNanos;
+        clearFrame();
+
+        if (active)
+            mIdleFrames = 0;
+        else if (++mIdleFrames >= IDLE_FRAMES)
+            stop();
+    }
+
+    protected synchronized void recordFrame(long durationNanos, boolean expanding) {
+        mFrames++;
+        mRecentFrames[mRecentIndex] = (int) Math.min(Integer.MAX_VALUE, durationNanos / 1000);
+        mRecentIndex = (mRecentIndex + 1) % WINDOW;
+        if (mRecentCount < WINDOW)
+            mRecentCount++;
+        if (durationNanos > mWorstFrameNanos)
+            mWorstFrameNanos = durationNanos;
+
+        if (durationNanos <= mFrameIntervalNanos * JANK_THRESHOLD)
+            return;
+
+        //Janky frame
+        mJankyFrames++;
+        mDroppedFrames += Math.max(1, Math.round((double) durationNanos / mFrameIntervalNanos) - 1);
+        if (mFrameBinds > 0)
+            mJankyFramesWithBinds++;
+        if (mFrameThumbnails > 0)
+            mJankyFramesWithThumbnails++;
+        if (expanding)
+            mJankyFramesWithExpands++;
+
+        for (int i = 0; i < mFrameBinds; i++) {
+            Offender offender = getOffender(mBindClasses[i], mBindLayouts[i]);
+            if (offender.mLastFrame != mJankyFrames) {
+                offender.mLastFrame = mJankyFrames;
+                offender.mJankyFrames++;
+            }
+            offender.mBinds++;
+            offender.mBindNanos += mBindNanos[i];
+        }
+    }
+
+    protected Offender getOffender(Class<?> cardClass, int innerLayout) {
+        SparseArray<Offender> layouts = mOffenders.get(cardClass);
+        if (layouts == null) {
+            layouts = new SparseArray<Offender>();
+            mOffenders.put(cardClass, layouts);
+        }
+        Offender offender = layouts.get(innerLayout);
+        if (offender == null) {
+            offender = new Offender(cardClass, innerLayout);
+            layouts.put(innerLayout, offender);
+        }
+        return offender;
+    }
+
+    protected void clearFrame() {
+        for (int i = 0; i < mFrameBinds; i++)
+            mBindClasses[i] = null;
+        mFrameBinds = 0;
+        mFrameThumbnails = 0;
+        mFrameExpands = 0;
+    }
+
+    /**
+     * Returns a value which changes when the rows of the list move
+     */
+    protected long getScrollSignature() {
+        if (!(mView instanceof ViewGroup) || ((ViewGroup) mView).getChildCount() == 0)
+            return 0;
+        View first = ((ViewGroup) mView).getChildAt(0);
+        return ((long) System.identityHashCode(first) << 32) ^ (first.getTop() * 31 + first.getLeft());
+    }
+
+    // -------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------
+
+    /**
+     * Returns a snapshot of the results. It can be called from any thread.
+     */
+    public synchronized Report getReport() {
+        Report report = new Report();
+        report.mFrames = mFrames;
+        report.mJankyFrames = mJankyFrames;
+        report.mDroppedFrames = mDroppedFrames;
+        report.mWorstFrameNanos = mWorstFrameNanos;
+        report.mJankyFramesWithBinds = mJankyFramesWithBinds;
+        report.mJankyFramesWithThumbnails = mJankyFramesWithThumbnails;
+        report.mJankyFramesWithExpands = mJankyFramesWithExpands;
+        report.mFrameIntervalNanos = mFrameIntervalNanos;
+
+        report.mSortedFrames = Arrays.copyOf(mRecentFrames, mRecentCount);
+        Arrays.sort(report.mSortedFrames);
+
+        List<Offender> offenders = new ArrayList<Offender>();
+        for (SparseArray<Offender> layouts : mOffenders.values()) {
+            for (int i = 0; i < layouts.size(); i++)
+                offenders.add(new Offender(layouts.valueAt(i)));
+        }
+        Collections.sort(offenders, new Comparator<Offender>() {
+            @Override
+            public int compare(Offender lhs, Offender rhs) {
+                return lhs.mBindNanos < rhs.mBindNanos ? 1 : (lhs.mBindNanos == rhs.mBindNanos ? 0 : -1);
+            }
+        });
+        report.mOffenders = offenders;
+        return report;
+    }
+
+    /**
+     * Clears the results (for example after a sample has been sent)
+     */
+    public synchronized void reset() {
+        mRecentIndex = 0;
+        mRecentCount = 0;
+        mFrames = 0;
+        mJankyFrames = 0;
+        mDroppedFrames = 0;
+        mWorstFrameNanos = 0;
+        mJankyFramesWithBinds = 0;
+        mJankyFramesWithThumbnails = 0;
+        mJankyFramesWithExpands = 0;
+        mOffenders.clear();
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enables the monitor (enabled by default)
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled)
+            stop();
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+}
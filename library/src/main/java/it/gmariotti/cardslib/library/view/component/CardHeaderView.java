@@ -20,7 +20,6 @@ package it.gmariotti.cardslib.library.view.component;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.os.Build;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
@@ -34,6 +33,7 @@ import android.widget.PopupMenu;
 
 import it.gmariotti.cardslib.library.R;
 import it.gmariotti.cardslib.library.internal.CardHeader;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
 import it.gmariotti.cardslib.library.view.base.CardViewInterface;
 
 /**
@@ -181,14 +181,8 @@ public class CardHeaderView extends FrameLayout implements CardViewInterface {
      */
     protected void initAttrs(AttributeSet attrs, int defStyle) {
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            card_header_layout_resourceID = a.getResourceId(R.styleable.card_options_card_header_layout_resourceID, card_header_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        card_header_layout_resourceID = a.getResourceId(R.styleable.card_options_card_header_layout_resourceID, card_header_layout_resourceID);
     }
 
     /**
@@ -0,0 +1,91 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.view.component;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import it.gmariotti.cardslib.library.R;
+
+/**
+ * Draws the card shadow with a pre-rendered bitmap shared by all cards.
+ * </p>
+ * The <code>card_shadow</code> drawable is rendered once in a bitmap one pixel wide and
+ * <code>card_shadow_height</code> tall, then it is stretched under each card.
+ * It replaces a {@link CardShadowView} when the card uses <code>card:card_shadow_mode="draw"</code>.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public final class CardShadowPainter {
+
+    private static CardShadowPainter sInstance;
+
+    private final Bitmap mBitmap;
+    private final int mHeight;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mDst = new Rect();
+
+    private CardShadowPainter(Resources res) {
+        mHeight = res.getDimensionPixelSize(R.dimen.card_shadow_height);
+
+        mBitmap = Bitmap.createBitmap(1, Math.max(1, mHeight), Bitmap.Config.ARGB_8888);
+        Drawable shadow = res.getDrawable(R.drawable.card_shadow);
+        shadow.setBounds(0, 0, 1, mBitmap.getHeight());
+        shadow.draw(new Canvas(mBitmap));
+    }
+
+    /**
+     * Returns the shared painter
+     *
+     * @param res resources used to render the shadow
+     * @return painter
+     */
+    public static synchronized CardShadowPainter getInstance(Resources res) {
+        int height = res.getDimensionPixelSize(R.dimen.card_shadow_height);
+        if (sInstance == null || sInstance.mHeight != height)
+            sInstance = new CardShadowPainter(res);
+        return sInstance;
+    }
+
+    /**
+     * Draws the shadow under a card
+     *
+     * @param canvas canvas
+     * @param left   left of the card
+     * @param top    bottom of the card
+     * @param right  right of the card
+     */
+    public void draw(Canvas canvas, int left, int top, int right) {
+        if (mHeight <= 0 || right <= left) return;
+        mDst.set(left, top, right, top + mHeight);
+        canvas.drawBitmap(mBitmap, null, mDst, mPaint);
+    }
+
+    /**
+     * @return height of the shadow
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+}
@@ -19,13 +19,13 @@
 package it.gmariotti.cardslib.library.view.component;
 
 import android.content.Context;
-import android.content.res.TypedArray;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.FrameLayout;
 
 import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
 import it.gmariotti.cardslib.library.view.base.CardViewInterface;
 
 /**
@@ -36,6 +36,10 @@ import it.gmariotti.cardslib.library.view.base.CardViewInterface;
  * </p>
  * You can customize it with your style files. Please see card.shadow_image style.
  * </p>
+ * The shadow layout is inflated the first time the view is made visible with {@link #setVisibility(int)}
+ * (the card does it when it is bound to a card with a shadow) or when {@link #getInternalOuterView()} is called,
+ * so a hidden shadow doesn't inflate it.
+ * </p>
  * Also you can use a custom layout for Shadow Component in your xml layout.
  * <pre><code>
  *
@@ -98,9 +102,7 @@ public class CardShadowView extends FrameLayout implements CardViewInterface {
         //Init attrs
         initAttrs(attrs,defStyle);
 
-        //Init View
-        if(!isInEditMode())
-            initView();
+        //The view is inflated when it is made visible (see #setVisibility)
     }
     /**
      * Init custom attrs.
@@ -110,14 +112,8 @@ public class CardShadowView extends FrameLayout implements CardViewInterface {
      */
     protected void initAttrs(AttributeSet attrs, int defStyle) {
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            card_shadow_layout_resourceID= a.getResourceId(R.styleable.card_options_card_shadow_layout_resourceID, card_shadow_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        card_shadow_layout_resourceID= a.getResourceId(R.styleable.card_options_card_shadow_layout_resourceID, card_shadow_layout_resourceID);
     }
 
     /**
@@ -130,12 +126,24 @@ public class CardShadowView extends FrameLayout implements CardViewInterface {
 
      }
 
+    /**
+     * Inflates the shadow layout the first time the view is made visible
+     */
+    @Override
+    public void setVisibility(int visibility) {
+        if (visibility != GONE && mInternalOuterView == null && !isInEditMode())
+            initView();
+        super.setVisibility(visibility);
+    }
+
     //--------------------------------------------------------------------------
     // Getters and Setters
     //--------------------------------------------------------------------------
 
     @Override
     public View getInternalOuterView() {
+        if (mInternalOuterView == null && !isInEditMode())
+            initView();
         return mInternalOuterView;
     }
 
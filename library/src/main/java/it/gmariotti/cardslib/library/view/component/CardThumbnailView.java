@@ -21,10 +21,10 @@ package it.gmariotti.cardslib.library.view.component;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.content.res.TypedArray;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.graphics.drawable.BitmapDrawable;
 import android.hardware.Camera;
@@ -34,6 +34,7 @@ import android.media.MediaPlayer.OnVideoSizeChangedListener;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore.Images.ImageColumns;
 import android.text.TextUtils;
 import android.util.AttributeSet;
@@ -60,14 +61,24 @@ import com.nostra13.universalimageloader.core.ImageLoader;
 import com.nostra13.universalimageloader.core.assist.ImageSize;
 import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
 import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
 
 import de.greenrobot.event.EventBus;
 
 import it.gmariotti.cardslib.library.Constants;
 import it.gmariotti.cardslib.library.R;
+import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.internal.CardThumbnail;
 import it.gmariotti.cardslib.library.util.BitmapUtils;
+import it.gmariotti.cardslib.library.utils.CardLeakDetector;
+import it.gmariotti.cardslib.library.utils.CardMemoryAccountant;
+import it.gmariotti.cardslib.library.utils.CardMetrics;
+import it.gmariotti.cardslib.library.utils.CardResourceGovernor;
+import it.gmariotti.cardslib.library.utils.ThumbnailSizeCache;
+import it.gmariotti.cardslib.library.view.base.CardAttributes;
 import it.gmariotti.cardslib.library.view.base.CardViewInterface;
+import it.gmariotti.cardslib.library.widget.SquareImageView;
 
 /**
  * Compound View for Thumbnail Component.
@@ -82,7 +93,8 @@ import it.gmariotti.cardslib.library.view.base.CardViewInterface;
  *
  * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
  */
-public class CardThumbnailView extends FrameLayout implements CardViewInterface, TextureView.SurfaceTextureListener {
+public class CardThumbnailView extends FrameLayout implements CardViewInterface, TextureView.SurfaceTextureListener,
+        CardResourceGovernor.Trimmable, CardMemoryAccountant.Accountable {
 
     public static final String SCHEME_DRAWABLE = "drawable";
 
@@ -121,6 +133,24 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
 
     protected boolean mLoadingErrorResource = false;
 
+    /**
+     * Size requested for the current load
+     */
+    protected ImageSize mTargetSize;
+
+    /**
+     * Indicates if the load waits for the first layout (the size is not known yet)
+     */
+    protected boolean mLoadPending = false;
+
+    private final Runnable mDeferredLoad = new Runnable() {
+        @Override
+        public void run() {
+            if (mCardThumbnail != null)
+                loadBitmap();
+        }
+    };
+
     //--------------------------------------------------------------------------
     // Constructors
     //--------------------------------------------------------------------------
@@ -165,8 +195,10 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         initAttrs(attrs,defStyle);
 
         //Init View
-        if(!isInEditMode())
+        if(!isInEditMode()) {
             initView();
+            CardResourceGovernor.getInstance().register(this);
+        }
     }
     /**
      * Init custom attrs.
@@ -176,14 +208,8 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
      */
     protected void initAttrs(AttributeSet attrs, int defStyle) {
 
-        TypedArray a = getContext().getTheme().obtainStyledAttributes(
-                attrs, R.styleable.card_options, defStyle, defStyle);
-
-        try {
-            card_thumbnail_layout_resourceID= a.getResourceId(R.styleable.card_options_card_thumbnail_layout_resourceID, card_thumbnail_layout_resourceID);
-        } finally {
-            a.recycle();
-        }
+        CardAttributes a = CardAttributes.obtain(getContext(), attrs, defStyle);
+        card_thumbnail_layout_resourceID= a.getResourceId(R.styleable.card_options_card_thumbnail_layout_resourceID, card_thumbnail_layout_resourceID);
     }
 
     /**
@@ -200,6 +226,198 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         mVideoView.setSurfaceTextureListener(this);
     }
 
+    //--------------------------------------------------------------------------
+    // Size
+    //--------------------------------------------------------------------------
+
+    /**
+     * Stores the size of the slot for this layout and column width.
+     * It reloads the image if it was requested with a different size.
+     */
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (mImageView == null) return;
+
+        int width = mImageView.getWidth();
+        int height = mImageView.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        ThumbnailSizeCache.getInstance().put(card_thumbnail_layout_resourceID, getColumnWidth(), width, height);
+
+        if (mLoadPending || (mTargetSize != null &&
+                (mTargetSize.getWidth() != width || mTargetSize.getHeight() != height))) {
+            mLoadPending = false;
+            removeCallbacks(mDeferredLoad);
+            post(mDeferredLoad);
+        }
+    }
+
+    /**
+     * Returns the size of the image to load.
+     * It is the size of the slot if it is laid out, otherwise the size cached for this layout and column width.
+     *
+     * @return the size, or <code>null</code> if it is not known yet
+     */
+    protected ImageSize getTargetSize() {
+        if (mImageView.getWidth() > 0 && mImageView.getHeight() > 0 && !mImageView.isLayoutRequested())
+            return new ImageSize(mImageView.getWidth(), mImageView.getHeight());
+        return ThumbnailSizeCache.getInstance().get(card_thumbnail_layout_resourceID, getColumnWidth());
+    }
+
+    /**
+     * Returns the width of the column which contains this thumbnail (the width of the outer card)
+     *
+     * @return the width, or 0 if the card is not laid out
+     */
+    protected int getColumnWidth() {
+        View column = null;
+        View view = this;
+        while (view != null) {
+            if (view instanceof CardViewInterface)
+                column = view;
+            view = view.getParent() instanceof View ? (View) view.getParent() : null;
+        }
+        return column != null ? column.getWidth() : 0;
+    }
+
+    /**
+     * {@link ImageViewAware} with the size of the slot, so the loader doesn't wait for a layout.
+     * The bitmaps delivered during {@link ImageLoader#displayImage} come from the memory cache
+     * and they are shown without crossfade.
+     */
+    private static class SizedImageViewAware extends ImageViewAware implements CardMetrics.ThumbnailTarget {
+
+        private final ImageSize mSize;
+
+        /**
+         * Indicates if the loader is called synchronously
+         */
+        boolean mSynchronous;
+
+        /**
+         * Metrics of the load: card and time of the request
+         */
+        Card mCard;
+        long mStart;
+
+        public SizedImageViewAware(ImageView imageView, ImageSize size) {
+            super(imageView);
+            mSize = size;
+        }
+
+        @Override
+        public void onThumbnailLoaded(int source) {
+            if (mStart != 0) {
+                CardMetrics.getInstance().onThumbnail(mCard, source, mStart);
+                mStart = 0;
+            }
+        }
+
+        @Override
+        public boolean setImageBitmap(Bitmap bitmap) {
+            //Source not tracked by the displayer
+            onThumbnailLoaded(mSynchronous ? CardMetrics.THUMBNAIL_MEMORY_CACHE : CardMetrics.THUMBNAIL_UNKNOWN);
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                ImageView imageView = getWrappedView();
+                if (imageView instanceof SquareImageView) {
+                    ((SquareImageView) imageView).setImageBitmap(bitmap, !mSynchronous);
+                    return true;
+                }
+            }
+            return super.setImageBitmap(bitmap);
+        }
+
+        @Override
+        public int getWidth() {
+            return mSize.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return mSize.getHeight();
+        }
+    }
+
+    /**
+     * Returns the target of the loader, or <code>null</code> if the size is not known yet
+     */
+    protected ImageAware createImageAware(ImageView imageView) {
+        ImageSize size = getTargetSize();
+        if (size == null) {
+            //Waits for the first layout
+            ImageLoader.getInstance().cancelDisplayTask(imageView);
+            mTargetSize = null;
+            mLoadPending = true;
+            return null;
+        }
+        mTargetSize = size;
+        mLoadPending = false;
+        return new SizedImageViewAware(imageView, size);
+    }
+
+    /**
+     * Starts the load. A bitmap taken from the memory cache is shown without crossfade.
+     */
+    protected void displayImage(String uri, ImageAware imageAware) {
+        if (imageAware instanceof SizedImageViewAware) {
+            SizedImageViewAware sizedImageAware = (SizedImageViewAware) imageAware;
+            CardMetrics metrics = CardMetrics.getInstance();
+            sizedImageAware.mSynchronous = true;
+            if (metrics.isEnabled()) {
+                sizedImageAware.mCard = mCardThumbnail != null ? mCardThumbnail.getParentCard() : null;
+                sizedImageAware.mStart = System.nanoTime();
+            }
+            if (metrics.isThumbnailSourceEnabled()) {
+                //The displayer of the measured options reports the source of the bitmap
+                ImageLoader.getInstance().displayImage(uri, imageAware, metrics.getThumbnailOptions());
+            } else {
+                ImageLoader.getInstance().displayImage(uri, imageAware);
+            }
+            sizedImageAware.mSynchronous = false;
+        } else {
+            ImageLoader.getInstance().displayImage(uri, imageAware);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Overdraw
+    //--------------------------------------------------------------------------
+
+    /**
+     * Returns the area of this view painted by an opaque image.
+     * The layers below this area (for example the card background) don't need to be drawn.
+     *
+     * @param outRect area in the coordinates of this view
+     * @return <code>true</code> if the image is opaque, <code>false</code> otherwise
+     */
+    public boolean getOpaqueRect(Rect outRect) {
+        if (getVisibility() != VISIBLE || getAlpha() < 1f) return false;
+        if (!(mImageView instanceof SquareImageView)) return false;
+
+        SquareImageView imageView = (SquareImageView) mImageView;
+        if (imageView.getVisibility() != VISIBLE || !imageView.isContentOpaque()) return false;
+
+        outRect.set(0, 0, imageView.getWidth(), imageView.getHeight());
+        View view = imageView;
+        while (view != null && view != this) {
+            outRect.offset(view.getLeft() + (int) view.getTranslationX(),
+                    view.getTop() + (int) view.getTranslationY());
+            view = view.getParent() instanceof View ? (View) view.getParent() : null;
+        }
+        return view == this && !outRect.isEmpty();
+    }
+
+    /**
+     * Sets a listener called when the image becomes opaque (or translucent)
+     *
+     * @param listener listener
+     */
+    public void setOnOpacityChangedListener(SquareImageView.OnOpacityChangedListener listener) {
+        if (mImageView instanceof SquareImageView)
+            ((SquareImageView) mImageView).setOnOpacityChangedListener(listener);
+    }
+
     //--------------------------------------------------------------------------
     // Add Thumbnail
     //--------------------------------------------------------------------------
@@ -234,27 +452,53 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
      *
      */
     protected void setupInnerView(){
-        if (!EventBus.getDefault().isRegistered(this)) {
-            EventBus.getDefault().register(this);
-        }
+        //The view is registered only while it is attached, so the EventBus never retains a recycled or dead row
+        if (getWindowToken() != null)
+            registerLifecycle();
 
         //Setup Elements before load image
         if (mInternalOuterView!=null)
             mCardThumbnail.setupInnerViewElements((ViewGroup)mInternalOuterView,mImageView);
 
         mVideoView.setAlpha(0f);
-        mImageView.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
-            @Override
-            public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
-                loadBitmap();
-                v.removeOnLayoutChangeListener(this);
-            }
-        });
-        mImageView.requestLayout();
+
+        //The size is known (or cached): load without waiting for a layout
+        removeCallbacks(mDeferredLoad);
+        loadBitmap();
         playVideo(); // try to play
         startCamera(); // try to openCamera
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        CardLeakDetector.getInstance().unwatch(this);
+        if (mCardThumbnail != null)
+            registerLifecycle();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        unregisterLifecycle();
+        CardLeakDetector.getInstance().watch(this);
+    }
+
+    /**
+     * Registers the view on the EventBus to receive {@link OnResume} and {@link OnPause}
+     */
+    protected void registerLifecycle() {
+        if (!EventBus.getDefault().isRegistered(this)) {
+            EventBus.getDefault().register(this);
+        }
+    }
+
+    protected void unregisterLifecycle() {
+        if (EventBus.getDefault().isRegistered(this)) {
+            EventBus.getDefault().unregister(this);
+        }
+    }
+
     public void onEvent(OnResume l) {
         resumeVideo();
         startCamera();
@@ -292,6 +536,7 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         if (mCamera == null) return;
         mCamera.stopPreview();
         mCamera.release();
+        mCamera = null;
     }
 
     private boolean checkCameraHardware() {
@@ -544,9 +789,12 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
             videoIndicator.setVisibility(isVideoUri(uri) ? View.VISIBLE : View.GONE);
         }
 
+        final ImageAware imageAware = createImageAware(imageView);
+        if (imageAware == null) return;
+
         // Disable ProgressBar
         if (true) {
-            ImageLoader.getInstance().displayImage(uri, imageView);
+            displayImage(uri, imageAware);
             return;
         }
 
@@ -559,7 +807,7 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         };
         final Handler handler = new Handler();
 
-        ImageLoader.getInstance().displayImage(uri, imageView, new SimpleImageLoadingListener() {
+        ImageLoader.getInstance().displayImage(uri, imageAware, new SimpleImageLoadingListener() {
             @Override
             public void onLoadingStarted(String imageUri, View view) {
                 // onStableShowAfterFiveMilliseconds()
@@ -625,6 +873,7 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         String i = sPlayingPlayers.get(mMediaPlayer);
         Log.d("Log8", "remove: : " + i);
         sPlayingPlayers.remove(mMediaPlayer);
+        mMediaPlayer = null;
     }
 
     public boolean playVideo() {
@@ -706,6 +955,77 @@ public class CardThumbnailView extends FrameLayout implements CardViewInterface,
         return false;
     }
 
+    //--------------------------------------------------------------------------
+    // Memory pressure
+    //--------------------------------------------------------------------------
+
+    /**
+     * Trims the static metadata caches shared by all thumbnails.
+     * It is held by the class, so the weak registration in the governor never expires.
+     */
+    private static final CardResourceGovernor.Trimmable sCacheTrimmable = new CardResourceGovernor.Trimmable() {
+        @Override
+        public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+            float ratio = governor.getCacheRetainRatio(level);
+            if (ratio < 1f) {
+                CardResourceGovernor.trimCache(sVideoCache, ratio, report);
+                CardResourceGovernor.trimCache(sRotationCache, ratio, report);
+            }
+        }
+    };
+
+    /**
+     * Accounts the players shared by all thumbnails.
+     * It is held by the class, so the weak registration in the accountant never expires.
+     */
+    private static final CardMemoryAccountant.Accountable sPlayersAccountable = new CardMemoryAccountant.Accountable() {
+        @Override
+        public void onAccount(CardMemoryAccountant.MemorySnapshot snapshot) {
+            for (MediaPlayer mediaPlayer : sMediaPlayers)
+                snapshot.addMediaPlayer(mediaPlayer);
+            for (MediaPlayer mediaPlayer : sPlayingPlayers.keySet())
+                snapshot.addMediaPlayer(mediaPlayer);
+        }
+    };
+
+    static {
+        CardResourceGovernor.getInstance().register(sCacheTrimmable);
+        CardMemoryAccountant.getInstance().register(sPlayersAccountable);
+    }
+
+    /**
+     * Accounts the player, the camera and the lifecycle subscription of this view.
+     */
+    @Override
+    public void onAccount(CardMemoryAccountant.MemorySnapshot snapshot) {
+        snapshot.addMediaPlayer(mMediaPlayer);
+        if (mCamera != null)
+            snapshot.add(CardMemoryAccountant.METRIC_CAMERAS, 1);
+        if (EventBus.getDefault().isRegistered(this))
+            snapshot.add(CardMemoryAccountant.METRIC_LIFECYCLE_SUBSCRIBERS, 1);
+        if (mMemoryCache != null)
+            CardMemoryAccountant.accountCache(mMemoryCache, snapshot);
+    }
+
+    /**
+     * Releases the player and the camera when the view is not visible or when the UI is hidden.
+     */
+    @Override
+    public void onTrimMemory(int level, CardResourceGovernor governor, CardResourceGovernor.TrimReport report) {
+        boolean release = governor.shouldReleaseAllPlayers(level) ||
+                (governor.shouldReleaseOffscreenPlayers(level) && !isShown());
+        if (!release) return;
+
+        if (mMediaPlayer != null) {
+            stopVideo();
+            report.addPlayers(1);
+        }
+        if (mCamera != null) {
+            stopCamera();
+            report.addCameras(1);
+        }
+    }
+
     //--------------------------------------------------------------------------
     // Broadcast
     //--------------------------------------------------------------------------
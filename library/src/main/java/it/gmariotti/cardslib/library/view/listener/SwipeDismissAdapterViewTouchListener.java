@@ -106,11 +106,21 @@ public interface SwipeDismissAdapterViewTouchListener extends View.OnTouchListen
         public int position;
         public View view;
 
+        /**
+         * Layout size (height or width) of the view before the dismiss animation
+         */
+        public int originalSize;
+
         public PendingDismissData(int position, View view) {
             this.position = position;
             this.view = view;
         }
 
+        public PendingDismissData(int position, View view, int originalSize) {
+            this(position, view);
+            this.originalSize = originalSize;
+        }
+
         @Override
         public int compareTo(PendingDismissData other) {
             // Sort by descending position
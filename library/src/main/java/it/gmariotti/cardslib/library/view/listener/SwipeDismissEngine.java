@@ -0,0 +1,516 @@
+package it.gmariotti.cardslib.library.view.listener;
+
+/* Copyright 2013 Roman Nurik, Gabriele Mariotti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewPropertyAnimator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * It is based on Roman Nurik code.
+ * See this link for original code https://github.com/romannurik/Android-SwipeToDismiss
+ * </p>
+ * Swipe-to-dismiss gesture shared by all the swipe listeners: the {@link Host} maps the touched views
+ * to positions and receives the dismissed positions, the engine tracks the gesture, moves the views and
+ * runs the dismiss animations.
+ * </p>
+ * While a view is dragged only its translation and alpha change, so the drag never triggers a layout.
+ * Dismisses which end while another view is dragged wait the end of the gesture.
+ * </p>
+ * The velocity trackers are taken from a small pool shared by all the engines and the cancel event
+ * sent to the host is reused, so a gesture doesn't allocate.
+ * </p>
+ * The engine has to be used on the UI thread.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class SwipeDismissEngine {
+
+    /**
+     * Views are swiped along the x axis (vertical lists)
+     */
+    public static final int HORIZONTAL = 0;
+
+    /**
+     * Views are swiped along the y axis (horizontal lists)
+     */
+    public static final int VERTICAL = 1;
+
+    public static final int INVALID_POSITION = -1;
+
+    /**
+     * Max number of velocity trackers kept in the pool
+     */
+    private static final int TRACKER_POOL_SIZE = 2;
+
+    private static final ArrayDeque<VelocityTracker> sTrackerPool = new ArrayDeque<VelocityTracker>(TRACKER_POOL_SIZE);
+
+    // Cached ViewConfiguration and system-wide constant values
+    private final int mSlop;
+    private final int mMinFlingVelocity;
+    private final int mMaxFlingVelocity;
+    private final long mAnimationTime;
+
+    // Fixed properties
+    private final View mHostView;
+    private final Host mHost;
+    private int mOrientation;
+    private boolean mCollapseOnDismiss = true;
+
+    // Transient properties
+    private final List<SwipeDismissAdapterViewTouchListener.PendingDismissData> mPendingDismisses =
+            new ArrayList<SwipeDismissAdapterViewTouchListener.PendingDismissData>();
+    private final List<SwipeDismissAdapterViewTouchListener.PendingDismissData> mDeferredDismisses =
+            new ArrayList<SwipeDismissAdapterViewTouchListener.PendingDismissData>();
+    private int mDismissAnimationRefCount = 0;
+    private float mDownCoord;
+    private boolean mSwiping;
+    private boolean mItemPressed;
+    private VelocityTracker mVelocityTracker;
+    private int mDownPosition = INVALID_POSITION;
+    private View mDownView;
+    private boolean mPaused;
+    private MotionEvent mCancelEvent;
+
+    /**
+     * Interface implemented by the containers which use the engine
+     */
+    public interface Host {
+
+        /**
+         * Returns the position of a touched view, or {@link #INVALID_POSITION}
+         */
+        int getPositionForView(View view);
+
+        /**
+         * Called to determine whether the given position can be dismissed.
+         */
+        boolean canDismiss(int position);
+
+        /**
+         * Called when a swipe starts, so the container doesn't steal the gesture to scroll.
+         */
+        void requestDisallowInterceptTouchEvent(boolean disallow);
+
+        /**
+         * Called when a swipe starts to release the pressed state of the view.
+         *
+         * @param view        swiped view
+         * @param cancelEvent a {@link MotionEvent#ACTION_CANCEL} event. It is reused: don't keep it.
+         */
+        void onCancelPress(View view, MotionEvent cancelEvent);
+
+        /**
+         * Called when all running dismiss animations have completed.
+         *
+         * @param reverseSortedPositions positions to dismiss, sorted in descending order
+         */
+        void onDismiss(int[] reverseSortedPositions);
+    }
+
+    /**
+     * Constructs a new engine.
+     *
+     * @param hostView    view used to read the configuration and the size of the swipe
+     * @param orientation {@link #HORIZONTAL} or {@link #VERTICAL}
+     * @param host        container
+     */
+    public SwipeDismissEngine(View hostView, int orientation, Host host) {
+        ViewConfiguration vc = ViewConfiguration.get(hostView.getContext());
+        mSlop = vc.getScaledTouchSlop();
+        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity() * 16;
+        mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
+        mAnimationTime = hostView.getContext().getResources().getInteger(
+                android.R.integer.config_shortAnimTime);
+        mHostView = hostView;
+        mOrientation = orientation;
+        mHost = host;
+    }
+
+    // -------------------------------------------------------------
+    // Touch
+    // -------------------------------------------------------------
+
+    /**
+     * Handles a touch event of a child of the host.
+     * The {@link MotionEvent#ACTION_DOWN} is never consumed, so the host keeps handling clicks and pressed states.
+     *
+     * @return <code>true</code> if the event was consumed by a swipe
+     */
+    public boolean onTouch(View view, MotionEvent motionEvent) {
+        switch (motionEvent.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                if (mVelocityTracker != null)
+                    endGesture(true);
+                if (mPaused) {
+                    return false;
+                }
+
+                // TODO: ensure this is a finger, and set a flag
+
+                int position = mHost.getPositionForView(view);
+                if (position != INVALID_POSITION && mHost.canDismiss(position)) {
+                    mDownView = view;
+                    mDownPosition = position;
+                    mDownCoord = getRawCoord(motionEvent);
+                    mVelocityTracker = obtainTracker();
+                    addMovement(motionEvent);
+                    mItemPressed = true;
+                }
+                break;
+            }
+
+            case MotionEvent.ACTION_UP: {
+                if (mVelocityTracker == null) {
+                    break;
+                }
+
+                float delta = getRawCoord(motionEvent) - mDownCoord;
+                addMovement(motionEvent);
+                mVelocityTracker.computeCurrentVelocity(1000);
+                float velocity = mOrientation == HORIZONTAL ? mVelocityTracker.getXVelocity() : mVelocityTracker.getYVelocity();
+                float crossVelocity = mOrientation == HORIZONTAL ? mVelocityTracker.getYVelocity() : mVelocityTracker.getXVelocity();
+                float absVelocity = Math.abs(velocity);
+                boolean dismiss = false;
+                boolean dismissForward = false;
+                if (Math.abs(delta) > getExtent() / 2) {
+                    dismiss = true;
+                    dismissForward = delta > 0;
+                } else if (mMinFlingVelocity <= absVelocity && absVelocity <= mMaxFlingVelocity
+                        && Math.abs(crossVelocity) < absVelocity) {
+                    // dismiss only if flinging in the same direction as dragging
+                    dismiss = (velocity < 0) == (delta < 0);
+                    dismissForward = velocity > 0;
+                }
+                if (dismiss) {
+                    animateDismiss(mDownView, mDownPosition, dismissForward);
+                } else {
+                    animateCancel(mDownView);
+                }
+
+                boolean swiping = mSwiping;
+                endGesture(false);
+                return swiping;
+            }
+
+            case MotionEvent.ACTION_CANCEL: {
+                if (mVelocityTracker == null) {
+                    break;
+                }
+                endGesture(true);
+                break;
+            }
+
+            case MotionEvent.ACTION_MOVE: {
+                if (mVelocityTracker == null || mPaused) {
+                    break;
+                }
+
+                addMovement(motionEvent);
+                float delta = getRawCoord(motionEvent) - mDownCoord;
+                if (!mSwiping && Math.abs(delta) > mSlop) {
+                    mSwiping = true;
+                    mHost.requestDisallowInterceptTouchEvent(true);
+                }
+
+                if (mSwiping) {
+                    if (mItemPressed) {
+                        cancelItemPressed(motionEvent);
+                        mItemPressed = false;
+                    }
+
+                    //Translation and alpha only: no layout while dragging
+                    setTranslation(mDownView, delta);
+                    mDownView.setAlpha(Math.max(0f, Math.min(1f,
+                            1f - 2f * Math.abs(delta) / getExtent())));
+                    return true;
+                }
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the tracker and the state of the current gesture
+     *
+     * @param cancel <code>true</code> to move back the dragged view
+     */
+    private void endGesture(boolean cancel) {
+        if (cancel && mDownView != null)
+            animateCancel(mDownView);
+
+        if (mVelocityTracker != null) {
+            releaseTracker(mVelocityTracker);
+            mVelocityTracker = null;
+        }
+        if (mSwiping)
+            mHost.requestDisallowInterceptTouchEvent(false);
+
+        mDownCoord = 0;
+        mDownPosition = INVALID_POSITION;
+        mDownView = null;
+        mSwiping = false;
+        mItemPressed = false;
+
+        //Dismisses which ended during the gesture
+        if (!mDeferredDismisses.isEmpty()) {
+            List<SwipeDismissAdapterViewTouchListener.PendingDismissData> deferred =
+                    new ArrayList<SwipeDismissAdapterViewTouchListener.PendingDismissData>(mDeferredDismisses);
+            mDeferredDismisses.clear();
+            for (SwipeDismissAdapterViewTouchListener.PendingDismissData data : deferred)
+                performDismiss(data.view, data.position);
+        }
+    }
+
+    private void cancelItemPressed(MotionEvent motionEvent) {
+        if (mCancelEvent == null) {
+            mCancelEvent = MotionEvent.obtain(motionEvent);
+        }
+        mCancelEvent.setAction(MotionEvent.ACTION_CANCEL);
+        mCancelEvent.setLocation(motionEvent.getX(), motionEvent.getY());
+        mHost.onCancelPress(mDownView, mCancelEvent);
+        mDownView.cancelLongPress();
+    }
+
+    /**
+     * Adds a movement to the tracker in screen coordinates: the touched view moves during the swipe.
+     */
+    private void addMovement(MotionEvent motionEvent) {
+        float dx = motionEvent.getRawX() - motionEvent.getX();
+        float dy = motionEvent.getRawY() - motionEvent.getY();
+        motionEvent.offsetLocation(dx, dy);
+        mVelocityTracker.addMovement(motionEvent);
+        motionEvent.offsetLocation(-dx, -dy);
+    }
+
+    private float getRawCoord(MotionEvent motionEvent) {
+        return mOrientation == HORIZONTAL ? motionEvent.getRawX() : motionEvent.getRawY();
+    }
+
+    private int getExtent() {
+        int extent = mOrientation == HORIZONTAL ? mHostView.getWidth() : mHostView.getHeight();
+        return Math.max(extent, 1); // 1 and not 0 to prevent dividing by zero
+    }
+
+    private void setTranslation(View view, float translation) {
+        if (mOrientation == HORIZONTAL)
+            view.setTranslationX(translation);
+        else
+            view.setTranslationY(translation);
+    }
+
+    // -------------------------------------------------------------
+    // Dismiss
+    // -------------------------------------------------------------
+
+    /**
+     * Dismisses a child of the host without gesture
+     *
+     * @param dismissView child view
+     */
+    public void dismiss(View dismissView) {
+        int dismissPosition = mHost.getPositionForView(dismissView);
+        if (dismissPosition == INVALID_POSITION || !mHost.canDismiss(dismissPosition)) {
+            return;
+        }
+
+        animateDismiss(dismissView, dismissPosition, false);
+    }
+
+    private void animateCancel(View view) {
+        ViewPropertyAnimator animator = view.animate().alpha(1).setDuration(mAnimationTime).setListener(null);
+        if (mOrientation == HORIZONTAL)
+            animator.translationX(0);
+        else
+            animator.translationY(0);
+    }
+
+    private void animateDismiss(final View dismissView, final int dismissPosition, boolean dismissForward) {
+        ++mDismissAnimationRefCount;
+        int extent = getExtent();
+        ViewPropertyAnimator animator = dismissView.animate().alpha(0).setDuration(mAnimationTime);
+        if (mOrientation == HORIZONTAL)
+            animator.translationX(dismissForward ? extent : -extent);
+        else
+            animator.translationY(dismissForward ? extent : -extent);
+        animator.setListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                dismissView.animate().setListener(null);
+                if (mSwiping)
+                    mDeferredDismisses.add(new SwipeDismissAdapterViewTouchListener.PendingDismissData(dismissPosition, dismissView));
+                else
+                    performDismiss(dismissView, dismissPosition);
+            }
+        });
+    }
+
+    private void performDismiss(final View dismissView, final int dismissPosition) {
+        final ViewGroup.LayoutParams lp = dismissView.getLayoutParams();
+        final SwipeDismissAdapterViewTouchListener.PendingDismissData data =
+                new SwipeDismissAdapterViewTouchListener.PendingDismissData(dismissPosition, dismissView,
+                        lp == null ? 0 : (mOrientation == HORIZONTAL ? lp.height : lp.width));
+        mPendingDismisses.add(data);
+
+        if (!mCollapseOnDismiss || lp == null) {
+            onDismissAnimationEnd();
+            return;
+        }
+
+        // Animate the dismissed item to zero-height (zero-width in horizontal lists) and fire the dismiss
+        // callback when all dismissed item animations have completed. This triggers layout on each animation
+        // frame, but only after the gesture.
+        int originalSize = mOrientation == HORIZONTAL ? dismissView.getHeight() : dismissView.getWidth();
+        ValueAnimator animator = ValueAnimator.ofInt(originalSize, 1).setDuration(mAnimationTime);
+
+        animator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                onDismissAnimationEnd();
+            }
+        });
+
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator valueAnimator) {
+                if (mOrientation == HORIZONTAL)
+                    lp.height = (Integer) valueAnimator.getAnimatedValue();
+                else
+                    lp.width = (Integer) valueAnimator.getAnimatedValue();
+                dismissView.setLayoutParams(lp);
+            }
+        });
+
+        animator.start();
+    }
+
+    private void onDismissAnimationEnd() {
+        --mDismissAnimationRefCount;
+        if (mDismissAnimationRefCount > 0) return;
+
+        // No active animations, process all pending dismisses.
+        // Sort by descending position
+        Collections.sort(mPendingDismisses);
+
+        int[] dismissPositions = new int[mPendingDismisses.size()];
+        for (int i = mPendingDismisses.size() - 1; i >= 0; i--) {
+            dismissPositions[i] = mPendingDismisses.get(i).position;
+        }
+        mHost.onDismiss(dismissPositions);
+
+        for (SwipeDismissAdapterViewTouchListener.PendingDismissData pendingDismiss : mPendingDismisses) {
+            // Reset view presentation
+            View view = pendingDismiss.view;
+            setTranslation(view, 0);
+            if (mCollapseOnDismiss) {
+                view.setAlpha(1f);
+                ViewGroup.LayoutParams lp = view.getLayoutParams();
+                if (lp != null) {
+                    if (mOrientation == HORIZONTAL)
+                        lp.height = pendingDismiss.originalSize;
+                    else
+                        lp.width = pendingDismiss.originalSize;
+                    view.setLayoutParams(lp);
+                }
+            }
+        }
+
+        mPendingDismisses.clear();
+    }
+
+    // -------------------------------------------------------------
+    // Tracker pool
+    // -------------------------------------------------------------
+
+    private static VelocityTracker obtainTracker() {
+        VelocityTracker tracker = sTrackerPool.poll();
+        return tracker != null ? tracker : VelocityTracker.obtain();
+    }
+
+    private static void releaseTracker(VelocityTracker tracker) {
+        tracker.clear();
+        if (sTrackerPool.size() < TRACKER_POOL_SIZE)
+            sTrackerPool.push(tracker);
+        else
+            tracker.recycle();
+    }
+
+    // -------------------------------------------------------------
+    // Getters and Setters
+    // -------------------------------------------------------------
+
+    /**
+     * Enables or disables (pauses or resumes) watching for swipe-to-dismiss gestures.
+     *
+     * @param enabled Whether or not to watch for gestures.
+     */
+    public void setEnabled(boolean enabled) {
+        mPaused = !enabled;
+    }
+
+    public boolean isEnabled() {
+        return !mPaused;
+    }
+
+    /**
+     * @return <code>true</code> while a view is dragged
+     */
+    public boolean isSwiping() {
+        return mSwiping;
+    }
+
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * Sets the swipe axis. It is applied only between two gestures.
+     *
+     * @param orientation {@link #HORIZONTAL} or {@link #VERTICAL}
+     */
+    public void setOrientation(int orientation) {
+        if (mVelocityTracker == null && mDismissAnimationRefCount == 0)
+            mOrientation = orientation;
+    }
+
+    public boolean isCollapseOnDismiss() {
+        return mCollapseOnDismiss;
+    }
+
+    /**
+     * Sets if the dismissed views are collapsed before the dismiss callback.
+     * Containers which animate the removals by themselves (for example a <code>RecyclerView</code>) don't need it:
+     * in this case the dismissed views keep alpha 0 and the container has to restore it when they are bound again.
+     *
+     * @param collapseOnDismiss <code>true</code> to collapse the views
+     */
+    public void setCollapseOnDismiss(boolean collapseOnDismiss) {
+        mCollapseOnDismiss = collapseOnDismiss;
+    }
+}
@@ -16,25 +16,12 @@ package it.gmariotti.cardslib.library.view.listener;
  */
 
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
-import android.graphics.Rect;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
-import android.view.ViewConfiguration;
-import android.view.ViewGroup;
 import android.view.ViewPropertyAnimator;
 import android.widget.AbsListView;
 import android.widget.ListView;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-import org.lucasr.twowayview.TwoWayView;
-
 import it.gmariotti.cardslib.library.internal.Card;
 
 /**
@@ -79,27 +66,11 @@ import it.gmariotti.cardslib.library.internal.Card;
  *
  */
 public class SwipeDismissListViewTouchListener implements SwipeDismissAdapterViewTouchListener {
-    // Cached ViewConfiguration and system-wide constant values
-    private int mSlop;
-    private int mMinFlingVelocity;
-    private int mMaxFlingVelocity;
-    private long mAnimationTime;
 
     // Fixed properties
-    private ListView mListView;
+    private AbsListView mListView;
     private DismissCallbacks mCallbacks;
-    private int mViewWidth = 1; // 1 and not 0 to prevent dividing by zero
-
-    // Transient properties
-    private List<PendingDismissData> mPendingDismisses = new ArrayList<PendingDismissData>();
-    private int mDismissAnimationRefCount = 0;
-    private float mDownX;
-    private boolean mSwiping;
-    private boolean mItemPressed;
-    private VelocityTracker mVelocityTracker;
-    private int mDownPosition;
-    private View mDownView;
-    private boolean mPaused;
+    private SwipeDismissEngine mEngine;
 
     /**
      * Constructs a new swipe-to-dismiss touch listener for the given list view.
@@ -109,14 +80,20 @@ public class SwipeDismissListViewTouchListener implements SwipeDismissAdapterVie
      *                  dismiss one or more list items.
      */
     public SwipeDismissListViewTouchListener(ListView listView, DismissCallbacks callbacks) {
-        ViewConfiguration vc = ViewConfiguration.get(listView.getContext());
-        mSlop = vc.getScaledTouchSlop();
-        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity() * 16;
-        mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
-        mAnimationTime = listView.getContext().getResources().getInteger(
-                android.R.integer.config_shortAnimTime);
+        this((AbsListView) listView, callbacks);
+    }
+
+    /**
+     * Constructs a new swipe-to-dismiss touch listener for the given list or grid view.
+     *
+     * @param listView  The list view whose items should be dismissable.
+     * @param callbacks The callback to trigger when the user has indicated that she would like to
+     *                  dismiss one or more list items.
+     */
+    public SwipeDismissListViewTouchListener(AbsListView listView, DismissCallbacks callbacks) {
         mListView = listView;
         mCallbacks = callbacks;
+        mEngine = new SwipeDismissEngine(listView, SwipeDismissEngine.HORIZONTAL, mHost);
     }
 
     /**
@@ -125,232 +102,52 @@ public class SwipeDismissListViewTouchListener implements SwipeDismissAdapterVie
      * @param enabled Whether or not to watch for gestures.
      */
     public void setEnabled(boolean enabled) {
-        mPaused = !enabled;
+        mEngine.setEnabled(enabled);
     }
 
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
-        if (mViewWidth < 2) {
-            mViewWidth = mListView.getWidth();
-        }
-
-        switch (motionEvent.getActionMasked()) {
-            case MotionEvent.ACTION_DOWN: {
-                if (mPaused) {
-                    return false;
-                }
-
-                // TODO: ensure this is a finger, and set a flag
-
-                // Find the child view that was touched (perform a hit test)
-                int index = mListView.indexOfChild(view);
-                if (index != -1) {
-                    mDownView = view;
-                }
-
-                if (mDownView != null) {
-
-                    mDownX = motionEvent.getRawX();
-                    mDownPosition = mListView.getPositionForView(mDownView);
-                    if (mCallbacks.canDismiss(mDownPosition,(Card) mListView.getAdapter().getItem(mDownPosition))) {
-                        mVelocityTracker = VelocityTracker.obtain();
-                        mVelocityTracker.addMovement(motionEvent);
-                        mItemPressed = true;
-                    } else {
-                        mDownView = null;
-                    }
-                }
-                break;
-            }
-
-            case MotionEvent.ACTION_UP: {
-                if (mVelocityTracker == null) {
-                    break;
-                }
-
-                float deltaX = motionEvent.getRawX() - mDownX;
-                mVelocityTracker.addMovement(motionEvent);
-                mVelocityTracker.computeCurrentVelocity(1000);
-                float velocityX = mVelocityTracker.getXVelocity();
-                float absVelocityX = Math.abs(velocityX);
-                float absVelocityY = Math.abs(mVelocityTracker.getYVelocity());
-                boolean dismiss = false;
-                boolean dismissRight = false;
-                if (Math.abs(deltaX) > mViewWidth / 2) {
-                    dismiss = true;
-                    dismissRight = deltaX > 0;
-                } else if (mMinFlingVelocity <= absVelocityX && absVelocityX <= mMaxFlingVelocity
-                        && absVelocityY < absVelocityX) {
-                    // dismiss only if flinging in the same direction as dragging
-                    dismiss = (velocityX < 0) == (deltaX < 0);
-                    dismissRight = mVelocityTracker.getXVelocity() > 0;
-                }
-                if (dismiss) {
-                    // dismiss
-                    swipe(mDownView, mDownPosition, dismissRight);
-                } else {
-                    // cancel
-                    mDownView.animate()
-                            .translationX(0)
-                            .alpha(1)
-                            .setDuration(mAnimationTime)
-                            .setListener(null);
-                }
-                mVelocityTracker.recycle();
-                mVelocityTracker = null;
-                mDownX = 0;
-                mDownPosition = ListView.INVALID_POSITION;
-
-                if (mSwiping) {
-                    if (mItemPressed) {
-                        cancelItemPressed(motionEvent);
-                        mItemPressed = false;
-                    }
-
-                    mListView.requestDisallowInterceptTouchEvent(false);
-                    mSwiping = false;
-                    return true;
-                }
-                mDownView = null;
-
-                break;
-            }
-
-            case MotionEvent.ACTION_MOVE: {
-                if (mVelocityTracker == null || mPaused) {
-                    break;
-                }
-
-                mVelocityTracker.addMovement(motionEvent);
-                float deltaX = motionEvent.getRawX() - mDownX;
-                if (!mSwiping && Math.abs(deltaX) > mSlop) {
-                    mSwiping = true;
-                }
-
-                if (mSwiping) {
-                    mListView.requestDisallowInterceptTouchEvent(true);
-
-                    if (mItemPressed) {
-                        cancelItemPressed(motionEvent);
-                        mItemPressed = false;
-                    }
-
-                    mDownView.setTranslationX(deltaX);
-                    mDownView.setAlpha(Math.max(0f, Math.min(1f,
-                            1f - 2f * Math.abs(deltaX) / mViewWidth)));
-                    return true;
-                }
-                break;
-            }
-        }
-        return false;
+        return mEngine.onTouch(view, motionEvent);
     }
 
-    private void cancelItemPressed(MotionEvent motionEvent) {
-        // Cancel ListView's touch (un-highlighting the item)
-        MotionEvent cancelEvent = MotionEvent.obtain(motionEvent);
-        cancelEvent.setAction(MotionEvent.ACTION_CANCEL | (motionEvent
-                    .getActionIndex() << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
-        mListView.onTouchEvent(cancelEvent);
-        mDownView.cancelLongPress();
-        cancelEvent.recycle();
+    @Override
+    public void swipe(View dismissView) {
+        mEngine.dismiss(dismissView);
     }
 
-    class PendingDismissData implements Comparable<PendingDismissData> {
-        public int position;
-        public View view;
+    /**
+     * @return the gesture engine
+     */
+    public SwipeDismissEngine getEngine() {
+        return mEngine;
+    }
 
-        public PendingDismissData(int position, View view) {
-            this.position = position;
-            this.view = view;
+    private final SwipeDismissEngine.Host mHost = new SwipeDismissEngine.Host() {
+        @Override
+        public int getPositionForView(View view) {
+            if (mListView.indexOfChild(view) == -1) return SwipeDismissEngine.INVALID_POSITION;
+            return mListView.getPositionForView(view);
         }
 
         @Override
-        public int compareTo(PendingDismissData other) {
-            // Sort by descending position
-            return other.position - position;
+        public boolean canDismiss(int position) {
+            return mCallbacks.canDismiss(position, (Card) mListView.getAdapter().getItem(position));
         }
-    }
 
-    @Override
-    public void swipe(View dismissView) {
-        if (mViewWidth < 2) {
-            mViewWidth = mListView.getHeight();
+        @Override
+        public void requestDisallowInterceptTouchEvent(boolean disallow) {
+            mListView.requestDisallowInterceptTouchEvent(disallow);
         }
 
-        int dismissPosition = mListView.getPositionForView(dismissView);
-        if (dismissPosition == -1) {
-            return;
+        @Override
+        public void onCancelPress(View view, MotionEvent cancelEvent) {
+            // Cancel ListView's touch (un-highlighting the item)
+            mListView.onTouchEvent(cancelEvent);
         }
 
-        if (!mCallbacks.canDismiss(dismissPosition, (Card) mListView.getAdapter()
-                .getItem(dismissPosition))) {
-            return;
+        @Override
+        public void onDismiss(int[] reverseSortedPositions) {
+            mCallbacks.onDismiss(mListView, reverseSortedPositions);
         }
-
-        swipe(dismissView, dismissPosition, false);
-    }
-
-    private void swipe(final View dismissView, final int dismissPosition, boolean dismissRight) {
-        ++mDismissAnimationRefCount;
-        dismissView.animate().translationX(dismissRight ? mViewWidth : -mViewWidth)
-                .alpha(0).setDuration(mAnimationTime).setListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                performDismiss(dismissView, dismissPosition);
-            }
-        });
-    }
-
-    private void performDismiss(final View dismissView, final int dismissPosition) {
-        // Animate the dismissed list item to zero-height and fire the dismiss callback when
-        // all dismissed list item animations have completed. This triggers layout on each animation
-        // frame; in the future we may want to do something smarter and more performant.
-
-        final ViewGroup.LayoutParams lp = dismissView.getLayoutParams();
-        final int originalHeight = dismissView.getHeight();
-
-        ValueAnimator animator = ValueAnimator.ofInt(originalHeight, 1).setDuration(mAnimationTime);
-
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                --mDismissAnimationRefCount;
-                if (mDismissAnimationRefCount == 0) {
-                    // No active animations, process all pending dismisses.
-                    // Sort by descending position
-                    Collections.sort(mPendingDismisses);
-
-                    int[] dismissPositions = new int[mPendingDismisses.size()];
-                    for (int i = mPendingDismisses.size() - 1; i >= 0; i--) {
-                        dismissPositions[i] = mPendingDismisses.get(i).position;
-                    }
-                    mCallbacks.onDismiss(mListView, dismissPositions);
-
-                    ViewGroup.LayoutParams lp;
-                    for (PendingDismissData pendingDismiss : mPendingDismisses) {
-                        // Reset view presentation
-                        pendingDismiss.view.setAlpha(1f);
-                        pendingDismiss.view.setTranslationX(0);
-                        lp = pendingDismiss.view.getLayoutParams();
-                        lp.height = originalHeight;
-                        pendingDismiss.view.setLayoutParams(lp);
-                    }
-
-                    mPendingDismisses.clear();
-                }
-            }
-        });
-
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                lp.height = (Integer) valueAnimator.getAnimatedValue();
-                dismissView.setLayoutParams(lp);
-            }
-        });
-
-        mPendingDismisses.add(new PendingDismissData(dismissPosition, dismissView));
-        animator.start();
-    }
+    };
 }
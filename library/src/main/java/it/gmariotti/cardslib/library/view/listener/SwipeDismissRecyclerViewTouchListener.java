@@ -0,0 +1,131 @@
+package it.gmariotti.cardslib.library.view.listener;
+
+/* Copyright 2013 Roman Nurik, Gabriele Mariotti
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+
+import it.gmariotti.cardslib.library.internal.Card;
+import it.gmariotti.cardslib.library.internal.CardArrayRecyclerAdapter;
+
+/**
+ * It is based on Roman Nurik code.
+ * See this link for original code https://github.com/romannurik/Android-SwipeToDismiss
+ * </p>
+ * It provides a SwipeDismissViewTouchListener for a {@link RecyclerView}.
+ * </p>
+ * The items are swiped along the x axis, or along the y axis when the layout manager scrolls horizontally.
+ * The dismissed items are not collapsed: the removal is animated by the item animator of the {@link RecyclerView},
+ * and {@link CardArrayRecyclerAdapter} restores the alpha of the rows when they are bound again.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class SwipeDismissRecyclerViewTouchListener implements SwipeDismissAdapterViewTouchListener {
+
+    // Fixed properties
+    private RecyclerView mRecyclerView;
+    private DismissCallbacks mCallbacks;
+    private SwipeDismissEngine mEngine;
+
+    /**
+     * Constructs a new swipe-to-dismiss touch listener for the given recycler view.
+     *
+     * @param recyclerView The recycler view whose items should be dismissable.
+     * @param callbacks    The callback to trigger when the user has indicated that she would like to
+     *                     dismiss one or more items.
+     */
+    public SwipeDismissRecyclerViewTouchListener(RecyclerView recyclerView, DismissCallbacks callbacks) {
+        mRecyclerView = recyclerView;
+        mCallbacks = callbacks;
+        mEngine = new SwipeDismissEngine(recyclerView, SwipeDismissEngine.HORIZONTAL, mHost);
+        mEngine.setCollapseOnDismiss(false);
+    }
+
+    /**
+     * Enables or disables (pauses or resumes) watching for swipe-to-dismiss gestures.
+     *
+     * @param enabled Whether or not to watch for gestures.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        mEngine.setEnabled(enabled);
+    }
+
+    @Override
+    public boolean onTouch(View view, MotionEvent motionEvent) {
+        if (motionEvent.getActionMasked() == MotionEvent.ACTION_DOWN)
+            updateOrientation();
+        return mEngine.onTouch(view, motionEvent);
+    }
+
+    @Override
+    public void swipe(View dismissView) {
+        updateOrientation();
+        mEngine.dismiss(dismissView);
+    }
+
+    /**
+     * @return the gesture engine
+     */
+    public SwipeDismissEngine getEngine() {
+        return mEngine;
+    }
+
+    /**
+     * The layout manager can be changed at any time
+     */
+    private void updateOrientation() {
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        boolean horizontalList = layoutManager != null && layoutManager.canScrollHorizontally()
+                && !layoutManager.canScrollVertically();
+        mEngine.setOrientation(horizontalList ? SwipeDismissEngine.VERTICAL : SwipeDismissEngine.HORIZONTAL);
+    }
+
+    private final SwipeDismissEngine.Host mHost = new SwipeDismissEngine.Host() {
+        @Override
+        public int getPositionForView(View view) {
+            if (mRecyclerView.indexOfChild(view) == -1) return SwipeDismissEngine.INVALID_POSITION;
+            int position = mRecyclerView.getChildPosition(view);
+            return position == RecyclerView.NO_POSITION ? SwipeDismissEngine.INVALID_POSITION : position;
+        }
+
+        @Override
+        public boolean canDismiss(int position) {
+            RecyclerView.Adapter<?> adapter = mRecyclerView.getAdapter();
+            if (!(adapter instanceof CardArrayRecyclerAdapter)) return false;
+            Card card = ((CardArrayRecyclerAdapter) adapter).getItem(position);
+            return card != null && mCallbacks.canDismiss(position, card);
+        }
+
+        @Override
+        public void requestDisallowInterceptTouchEvent(boolean disallow) {
+            mRecyclerView.requestDisallowInterceptTouchEvent(disallow);
+        }
+
+        @Override
+        public void onCancelPress(View view, MotionEvent cancelEvent) {
+            // The RecyclerView doesn't draw a pressed state: only the card has to be released
+            view.onTouchEvent(cancelEvent);
+        }
+
+        @Override
+        public void onDismiss(int[] reverseSortedPositions) {
+            mCallbacks.onDismiss(mRecyclerView, reverseSortedPositions);
+        }
+    };
+}
@@ -16,14 +16,8 @@ package it.gmariotti.cardslib.library.view.listener;
  * limitations under the License.
  */
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
-import android.view.ViewConfiguration;
-import android.view.ViewGroup;
 
 import it.gmariotti.cardslib.library.internal.Card;
 import it.gmariotti.cardslib.library.view.CardView;
@@ -41,24 +35,11 @@ import it.gmariotti.cardslib.library.view.CardView;
  */
 public class SwipeDismissViewTouchListener implements View.OnTouchListener {
 
-    // Cached ViewConfiguration and system-wide constant values
-    private int mSlop;
-    private int mMinFlingVelocity;
-    private int mMaxFlingVelocity;
-    private long mAnimationTime;
-
     // Fixed properties
     private CardView mCardView;
     private DismissCallbacks mCallbacks;
-    private int mViewWidth = 1; // 1 and not 0 to prevent dividing by zero
-
-    // Transient properties
-    private float mDownX;
     private Card mToken;
-    private boolean mSwiping;
-    private VelocityTracker mVelocityTracker;
-    private boolean mPaused;
-    private float mTranslationX;
+    private SwipeDismissEngine mEngine;
 
     /**
      * The callback interface used by {@link SwipeDismissViewTouchListener}
@@ -88,15 +69,10 @@ public class SwipeDismissViewTouchListener implements View.OnTouchListener {
     public SwipeDismissViewTouchListener(CardView cardView,
                                          Card card,
                                          DismissCallbacks callbacks) {
-        ViewConfiguration vc = ViewConfiguration.get(cardView.getContext());
-        mSlop = vc.getScaledTouchSlop();
-        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity() * 16;
-        mMaxFlingVelocity = vc.getScaledMaximumFlingVelocity();
-        mAnimationTime = cardView.getContext().getResources()
-                .getInteger(android.R.integer.config_shortAnimTime);
         mCardView = cardView;
         mToken= card;
         mCallbacks = callbacks;
+        mEngine = new SwipeDismissEngine(cardView, SwipeDismissEngine.HORIZONTAL, mHost);
     }
 
     /**
@@ -106,151 +82,55 @@ public class SwipeDismissViewTouchListener implements View.OnTouchListener {
      * @param enabled Whether or not to watch for gestures.
      */
     public void setEnabled(boolean enabled) {
-        mPaused = !enabled;
+        mEngine.setEnabled(enabled);
     }
 
 
     @Override
     public boolean onTouch(View view, MotionEvent motionEvent) {
-        // offset because the view is translated during swipe
-        motionEvent.offsetLocation(mTranslationX, 0);
-
-        if (mViewWidth < 2) {
-            mViewWidth = mCardView.getWidth();
+        // the engine tracks the gesture in screen coordinates, so the translation of the view doesn't matter
+        boolean handled = mEngine.onTouch(view, motionEvent);
+        if (motionEvent.getActionMasked() == MotionEvent.ACTION_DOWN && mEngine.isEnabled()) {
+            view.onTouchEvent(motionEvent);
+            return true;
+            //return false;  fixing swipe and click together
         }
-
-        switch (motionEvent.getActionMasked()) {
-            case MotionEvent.ACTION_DOWN: {
-                if (mPaused) {
-                    return false;
-                }
-
-                // TODO: ensure this is a finger, and set a flag
-
-                mDownX = motionEvent.getRawX();
-                if (mCallbacks.canDismiss(mToken)) {
-                    mVelocityTracker = VelocityTracker.obtain();
-                    mVelocityTracker.addMovement(motionEvent);
-                }
-                view.onTouchEvent(motionEvent);
-                return true;
-                //return false;  fixing swipe and click together
-            }
-
-            case MotionEvent.ACTION_UP: {
-                if (mVelocityTracker == null) {
-                    break;
-                }
-
-                float deltaX = motionEvent.getRawX() - mDownX;
-                mVelocityTracker.addMovement(motionEvent);
-                mVelocityTracker.computeCurrentVelocity(1000);
-                float velocityX = mVelocityTracker.getXVelocity();
-                float absVelocityX = Math.abs(velocityX);
-                float absVelocityY = Math.abs(mVelocityTracker.getYVelocity());
-                boolean dismiss = false;
-                boolean dismissRight = false;
-                if (Math.abs(deltaX) > mViewWidth / 2) {
-                    dismiss = true;
-                    dismissRight = deltaX > 0;
-                } else if (mMinFlingVelocity <= absVelocityX
-                        && absVelocityX <= mMaxFlingVelocity
-                        && absVelocityY < absVelocityX) {
-                    // dismiss only if flinging in the same direction as dragging
-                    dismiss = (velocityX < 0) == (deltaX < 0);
-                    dismissRight = mVelocityTracker.getXVelocity() > 0;
-                }
-                if (dismiss) {
-                    // dismiss
-
-                    mCardView.animate()
-                            .translationX(dismissRight ? mViewWidth : -mViewWidth)
-                            .alpha(0).setDuration(mAnimationTime)
-                            .setListener(new AnimatorListenerAdapter() {
-                                @Override
-                                public void onAnimationEnd(Animator animation) {
-                                    performDismiss();
-                                }
-                            });
-                } else {
-                    // cancel
-                    mCardView.animate().translationX(0).alpha(1)
-                            .setDuration(mAnimationTime).setListener(null);
-                }
-                mVelocityTracker.recycle();
-                mVelocityTracker = null;
-                mDownX = 0;
-                mSwiping = false;
-                break;
-            }
-
-            case MotionEvent.ACTION_MOVE: {
-                if (mVelocityTracker == null || mPaused) {
-                    break;
-                }
-
-                mVelocityTracker.addMovement(motionEvent);
-                float deltaX = motionEvent.getRawX() - mDownX;
-                if (Math.abs(deltaX) > mSlop) {
-                    mSwiping = true;
-                    mCardView.getParent().requestDisallowInterceptTouchEvent(true);
-
-                    // Cancel ListView's touch (un-highlighting the item)
-                    MotionEvent cancelEvent = MotionEvent.obtain(motionEvent);
-                    cancelEvent
-                            .setAction(MotionEvent.ACTION_CANCEL
-                                    | (motionEvent.getActionIndex() << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
-                    mCardView.onTouchEvent(cancelEvent);
-                    cancelEvent.recycle();
-                }
-
-                if (mSwiping) {
-                    mTranslationX = deltaX;
-                    mCardView.setTranslationX(deltaX);
-                    mCardView.setAlpha(Math.max(0f,
-                            Math.min(1f, 1f - 2f * Math.abs(deltaX) / mViewWidth)));
-                    return true;
-                }
-                break;
-            }
-        }
-        return false;
+        return handled;
     }
 
+    /**
+     * @return the gesture engine
+     */
+    public SwipeDismissEngine getEngine() {
+        return mEngine;
+    }
 
-    private void performDismiss() {
-        // Animate the dismissed view to zero-height and then fire the dismiss callback.
-        // This triggers layout on each animation frame; in the future we may want to do something
-        // smarter and more performant.
-
-        final ViewGroup.LayoutParams lp = mCardView.getLayoutParams();
-        final int originalHeight = mCardView.getHeight();
-
-        ValueAnimator animator = ValueAnimator.ofInt(originalHeight, 1)
-                .setDuration(mAnimationTime);
+    private final SwipeDismissEngine.Host mHost = new SwipeDismissEngine.Host() {
+        @Override
+        public int getPositionForView(View view) {
+            return 0;
+        }
 
-        animator.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
+        @Override
+        public boolean canDismiss(int position) {
+            return mCallbacks.canDismiss(mToken);
+        }
 
-                mCallbacks.onDismiss(mCardView,mToken);
-                // Reset view presentation
-                mCardView.setAlpha(1f);
-                mCardView.setTranslationX(0);
-                //ViewGroup.LayoutParams lp = mCardView.getLayoutParams();
-                lp.height = originalHeight;
-                mCardView.setLayoutParams(lp);
-            }
-        });
+        @Override
+        public void requestDisallowInterceptTouchEvent(boolean disallow) {
+            if (mCardView.getParent() != null)
+                mCardView.getParent().requestDisallowInterceptTouchEvent(disallow);
+        }
 
-        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                lp.height = (Integer) valueAnimator.getAnimatedValue();
-                mCardView.setLayoutParams(lp);
-            }
-        });
+        @Override
+        public void onCancelPress(View view, MotionEvent cancelEvent) {
+            // Cancel the touch of the card (un-highlighting it)
+            mCardView.onTouchEvent(cancelEvent);
+        }
 
-        animator.start();
-    }
-}
\ No newline at end of file
+        @Override
+        public void onDismiss(int[] reverseSortedPositions) {
+            mCallbacks.onDismiss(mCardView, mToken);
+        }
+    };
+}
@@ -25,6 +25,8 @@ import android.view.ViewPropertyAnimator;
 import android.widget.Button;
 import android.widget.TextView;
 
+import java.lang.ref.WeakReference;
+
 import it.gmariotti.cardslib.library.R;
 
 /**
@@ -48,8 +50,11 @@ public class UndoBarController {
     private Parcelable mUndoToken;
     private CharSequence mUndoMessage;
 
-    static private UndoBarController sUndoBarController;
-    static private View sBarView;
+    /**
+     * Last controller. It is held weakly: the adapter which uses it keeps it alive,
+     * and the bar view (with its activity) is released with the adapter.
+     */
+    static private WeakReference<UndoBarController> sUndoBarController;
 
     /**
      * Interface to listen the undo controller actions
@@ -74,12 +79,13 @@ public class UndoBarController {
     }
 
     public static UndoBarController getInstance(View undoBarView) {
-        if ((sUndoBarController == null) || (sBarView != undoBarView)) {
-            sBarView = undoBarView;
-            sUndoBarController = new UndoBarController(undoBarView);
+        UndoBarController controller = sUndoBarController != null ? sUndoBarController.get() : null;
+        if ((controller == null) || (controller.mBarView != undoBarView)) {
+            controller = new UndoBarController(undoBarView);
+            sUndoBarController = new WeakReference<UndoBarController>(controller);
         }
 
-        return sUndoBarController;
+        return controller;
     }
 
     public void showUndoBar(boolean immediate, CharSequence message, Parcelable undoToken,
@@ -161,4 +167,8 @@ public class UndoBarController {
     public Parcelable getUndoToken(){
         return mUndoToken;
     }
+
+    public UndoListener getUndoListener(){
+        return mUndoListener;
+    }
 }
@@ -0,0 +1,220 @@
+/*
+ * ******************************************************************************
+ *   Copyright (c) 2013-2014 Gabriele Mariotti.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *  *****************************************************************************
+ */
+
+
+package it.gmariotti.cardslib.library.widget;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+/**
+ * Background which skips the area covered by an opaque child (for example the thumbnail image).
+ * </p>
+ * It wraps the original background and it clips out the rect set with {@link #setClipRect(Rect)},
+ * so the pixels below an opaque layer are painted only once.
+ * Hardware accelerated canvases support the difference clip only from API 18: on older devices
+ * the background is drawn without clip.
+ *
+ * @author Gabriele Mariotti (gabri.mariotti@gmail.com)
+ */
+public class ClippedBackgroundDrawable extends Drawable implements Drawable.Callback {
+
+    /**
+     * Original background
+     */
+    protected final Drawable mDrawable;
+
+    /**
+     * Area not painted, in the coordinates of the view
+     */
+    protected final Rect mClipRect = new Rect();
+
+    // -------------------------------------------------------------
+    // Constructors
+    // -------------------------------------------------------------
+
+    /**
+     * Constructor
+     *
+     * @param drawable original background
+     */
+    public ClippedBackgroundDrawable(Drawable drawable) {
+        mDrawable = drawable;
+        mDrawable.setCallback(this);
+    }
+
+    // -------------------------------------------------------------
+    // Clip
+    // -------------------------------------------------------------
+
+    /**
+     * Sets the area covered by an opaque layer
+     *
+     * @param rect area, or <code>null</code> to paint the whole background
+     */
+    public void setClipRect(Rect rect) {
+        if (rect == null || rect.isEmpty()) {
+            if (mClipRect.isEmpty()) return;
+            mClipRect.setEmpty();
+        } else {
+            if (mClipRect.equals(rect)) return;
+            mClipRect.set(rect);
+        }
+        invalidateSelf();
+    }
+
+    /**
+     * @return the area not painted (it can be empty)
+     */
+    public Rect getClipRect() {
+        return mClipRect;
+    }
+
+    /**
+     * @return the original background
+     */
+    public Drawable getWrappedDrawable() {
+        return mDrawable;
+    }
+
+    /**
+     * Indicates if the clip is applied on the canvas
+     */
+    protected boolean canClip(Canvas canvas) {
+        return !mClipRect.isEmpty() &&
+                (Build.VERSION.SDK_INT >= 18 || !canvas.isHardwareAccelerated());
+    }
+
+    // -------------------------------------------------------------
+    // Drawable
+    // -------------------------------------------------------------
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (canClip(canvas)) {
+            int count = canvas.save();
+            canvas.clipRect(mClipRect, Region.Op.DIFFERENCE);
+            mDrawable.draw(canvas);
+            canvas.restoreToCount(count);
+        } else {
+            mDrawable.draw(canvas);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        mDrawable.setBounds(bounds);
+    }
+
+    @Override
+    public boolean isStateful() {
+        return mDrawable.isStateful();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] state) {
+        return mDrawable.setState(state);
+    }
+
+    @Override
+    public void jumpToCurrentState() {
+        mDrawable.jumpToCurrentState();
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        return mDrawable.setLevel(level);
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        mDrawable.setVisible(visible, restart);
+        return super.setVisible(visible, restart);
+    }
+
+    @Override
+    public Drawable getCurrent() {
+        return mDrawable.getCurrent();
+    }
+
+    @Override
+    public boolean getPadding(Rect padding) {
+        return mDrawable.getPadding(padding);
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mDrawable.getIntrinsicWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mDrawable.getIntrinsicHeight();
+    }
+
+    @Override
+    public int getMinimumWidth() {
+        return mDrawable.getMinimumWidth();
+    }
+
+    @Override
+    public int getMinimumHeight() {
+        return mDrawable.getMinimumHeight();
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mDrawable.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mDrawable.setColorFilter(colorFilter);
+    }
+
+    @Override
+    public int getOpacity() {
+        if (!mClipRect.isEmpty() && mDrawable.getOpacity() == PixelFormat.OPAQUE)
+            return PixelFormat.TRANSLUCENT;
+        return mDrawable.getOpacity();
+    }
+
+    // -------------------------------------------------------------
+    // Callback
+    // -------------------------------------------------------------
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        scheduleSelf(what, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+        unscheduleSelf(what);
+    }
+}
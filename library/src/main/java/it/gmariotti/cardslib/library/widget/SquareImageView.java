@@ -2,15 +2,61 @@ package it.gmariotti.cardslib.library.widget;
 
 import android.widget.ImageView;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.PixelFormat;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.view.ViewGroup;
-import android.view.animation.AlphaAnimation;
 
 public class SquareImageView extends ImageView {
-    private Drawable mDrawableOld;
+
+    /**
+     * Default duration of the crossfade from the placeholder to the bitmap
+     */
+    public static final int DEFAULT_FADE_DURATION = 300;
+
+    private static final long NO_FADE = -1;
+    private static final long FADE_PENDING = 0;
+
+    /**
+     * Start time of the crossfade ({@link #NO_FADE}, or {@link #FADE_PENDING} until the first frame)
+     */
+    private long mFadeStart = NO_FADE;
+
+    private int mFadeDuration = DEFAULT_FADE_DURATION;
+
+    /**
+     * Placeholder (the background declared in xml), drawn only while the image doesn't cover the view
+     */
+    private Drawable mPlaceholder;
+
+    /**
+     * Last value of {@link #isContentOpaque()} notified to the listener
+     */
+    private boolean mContentOpaque;
+
+    private OnOpacityChangedListener mOnOpacityChangedListener;
+
+    /**
+     * Skips the layout requested by a new drawable
+     */
+    private boolean mBlockLayout;
+
+    /**
+     * Indicates if the last measure didn't depend on the drawable (exact measure specs)
+     */
+    private boolean mExactMeasure;
+
+    /**
+     * Interface to listen the changes of {@link #isContentOpaque()}
+     */
+    public interface OnOpacityChangedListener {
+        void onOpacityChanged(SquareImageView view, boolean opaque);
+    }
 
     public SquareImageView(Context context) {
         super(context);
@@ -20,10 +66,181 @@ public class SquareImageView extends ImageView {
     public SquareImageView(Context context, AttributeSet attrs) {
         super(context, attrs);
         // TODO Auto-generated constructor stub
+        initPlaceholder();
+    }
+
+    /**
+     * Moves the background to the placeholder, so it isn't painted under an opaque image
+     */
+    @SuppressWarnings("deprecation")
+    private void initPlaceholder() {
+        Drawable background = getBackground();
+        if (background != null) {
+            int left = getPaddingLeft();
+            int top = getPaddingTop();
+            int right = getPaddingRight();
+            int bottom = getPaddingBottom();
+            setBackgroundDrawable(null);
+            setPadding(left, top, right, bottom);
+            mPlaceholder = background;
+        }
+    }
+
+    /**
+     * Indicates if the image paints every pixel of this view.
+     * In this case the placeholder and the layers below this view are hidden.
+     *
+     * @return <code>true</code> if the content is opaque
+     */
+    public boolean isContentOpaque() {
+        Drawable drawable = getDrawable();
+        if (drawable == null || drawable.getOpacity() != PixelFormat.OPAQUE)
+            return false;
+
+        //The image has to fill the bounds
+        ScaleType scaleType = getScaleType();
+        if (scaleType != ScaleType.CENTER_CROP && scaleType != ScaleType.FIT_XY)
+            return false;
+        if (getPaddingLeft() != 0 || getPaddingTop() != 0 || getPaddingRight() != 0 || getPaddingBottom() != 0)
+            return false;
+
+        //Fading in
+        if (getAlpha() < 1f || mFadeStart != NO_FADE || (getAnimation() != null && !getAnimation().hasEnded()))
+            return false;
+        return true;
+    }
+
+    @Override
+    public boolean isOpaque() {
+        return isContentOpaque() || super.isOpaque();
+    }
+
+    /**
+     * Notifies the listener if the opacity of the content changed
+     */
+    protected void checkOpacity() {
+        boolean opaque = isContentOpaque();
+        if (opaque != mContentOpaque) {
+            mContentOpaque = opaque;
+            if (mOnOpacityChangedListener != null)
+                mOnOpacityChangedListener.onOpacityChanged(this, opaque);
+        }
+    }
+
+    /**
+     * Sets a drawable.
+     * A bitmap which replaces a placeholder (no drawable, or not a bitmap) fades in.
+     */
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        boolean fade = !(getDrawable() instanceof BitmapDrawable) && drawable instanceof BitmapDrawable;
+        setImageDrawable(drawable, fade);
+    }
+
+    /**
+     * Sets a drawable
+     *
+     * @param drawable drawable
+     * @param fade     <code>true</code> to crossfade from the placeholder, <code>false</code> to show it immediately
+     *                 (for example an image taken from the memory cache)
+     */
+    public void setImageDrawable(Drawable drawable, boolean fade) {
+        mBlockLayout = hasFixedSize();
+        super.setImageDrawable(drawable);
+        mBlockLayout = false;
+
+        if (fade && drawable != null && mFadeDuration > 0) {
+            mFadeStart = FADE_PENDING;
+            drawable.mutate().setAlpha(0);
+        } else {
+            stopFade();
+        }
+        checkOpacity();
+    }
+
+    /**
+     * Sets a bitmap
+     *
+     * @param bitmap bitmap
+     * @param fade   <code>true</code> to crossfade from the placeholder
+     */
+    public void setImageBitmap(Bitmap bitmap, boolean fade) {
+        setImageDrawable(bitmap != null ? new BitmapDrawable(getResources(), bitmap) : null, fade);
+    }
+
+    /**
+     * Ends the crossfade and shows the drawable
+     */
+    protected void stopFade() {
+        if (mFadeStart == NO_FADE) return;
+        mFadeStart = NO_FADE;
+        Drawable drawable = getDrawable();
+        if (drawable != null)
+            drawable.setAlpha(255);
+    }
+
+    public int getFadeDuration() {
+        return mFadeDuration;
+    }
+
+    /**
+     * Sets the duration of the crossfade
+     *
+     * @param fadeDuration duration in ms, 0 to disable it
+     */
+    public void setFadeDuration(int fadeDuration) {
+        mFadeDuration = fadeDuration;
+    }
+
+    @Override
+    public void setImageResource(int resId) {
+        mBlockLayout = hasFixedSize();
+        super.setImageResource(resId);
+        mBlockLayout = false;
+        stopFade();
+        checkOpacity();
+    }
+
+    @Override
+    public void setImageURI(Uri uri) {
+        mBlockLayout = hasFixedSize();
+        super.setImageURI(uri);
+        mBlockLayout = false;
+        stopFade();
+        checkOpacity();
+    }
+
+    @Override
+    protected void onAnimationEnd() {
+        super.onAnimationEnd();
+        checkOpacity();
+    }
+
+    public void setOnOpacityChangedListener(OnOpacityChangedListener listener) {
+        mOnOpacityChangedListener = listener;
+    }
+
+    public Drawable getPlaceholder() {
+        return mPlaceholder;
+    }
+
+    public void setPlaceholder(Drawable placeholder) {
+        mPlaceholder = placeholder;
+        invalidate();
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //Fixed slot: the size doesn't depend on the drawable, measure once
+        int size = getExactSquareSize(getLayoutParams(), widthMeasureSpec, heightMeasureSpec);
+        if (size > 0) {
+            mExactMeasure = true;
+            setMeasuredDimension(size, size);
+            return;
+        }
+        mExactMeasure = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.EXACTLY
+                && MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.EXACTLY;
+
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
         int min = Integer.MAX_VALUE;
@@ -44,17 +261,71 @@ public class SquareImageView extends ImageView {
         setMeasuredDimension(min, min);
     }
 
+    /**
+     * Returns the side of the square when it is fully defined by the measure specs
+     * (the MATCH_PARENT dimensions have an exact size).
+     *
+     * @return the side, or 0 if the content has to be measured
+     */
+    static int getExactSquareSize(ViewGroup.LayoutParams params, int widthMeasureSpec, int heightMeasureSpec) {
+        if (params == null) return 0;
+
+        //The side follows the width (the larger one when both dimensions match the parent)
+        if (params.width != ViewGroup.LayoutParams.MATCH_PARENT ||
+                MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY)
+            return 0;
+        int size = MeasureSpec.getSize(widthMeasureSpec);
+
+        if (params.height == ViewGroup.LayoutParams.MATCH_PARENT) {
+            if (MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY) return 0;
+            size = Math.max(size, MeasureSpec.getSize(heightMeasureSpec));
+        }
+        return size;
+    }
+
+    /**
+     * Indicates if the size of this view doesn't depend on the drawable:
+     * the last measure was done with exact specs, and no other layout is pending.
+     */
+    protected boolean hasFixedSize() {
+        return mExactMeasure && !isLayoutRequested();
+    }
+
+    @Override
+    public void requestLayout() {
+        //A new drawable doesn't change the size of a fixed slot
+        if (!mBlockLayout)
+            super.requestLayout();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         Drawable drawable = getDrawable();
 
-        if (!(mDrawableOld instanceof BitmapDrawable) && drawable instanceof BitmapDrawable) {
-            AlphaAnimation animation = new AlphaAnimation(0, 1);
-            animation.setDuration(300);
-            this.startAnimation(animation);
-        } else {
+        if (mPlaceholder != null && !isContentOpaque()) {
+            mPlaceholder.setBounds(0, 0, getWidth(), getHeight());
+            mPlaceholder.draw(canvas);
+        }
+
+        //Crossfade driven by the draw time
+        if (mFadeStart != NO_FADE && drawable != null) {
+            long now = SystemClock.uptimeMillis();
+            if (mFadeStart == FADE_PENDING)
+                mFadeStart = now;
+
+            float progress = (float) (now - mFadeStart) / mFadeDuration;
+            if (progress >= 1f) {
+                stopFade();
+                super.onDraw(canvas);
+                checkOpacity();
+                return;
+            }
+            drawable.setAlpha((int) (255 * progress));
             super.onDraw(canvas);
+            invalidate();
+            return;
         }
-        mDrawableOld = drawable;
+
+        super.onDraw(canvas);
     }
 }
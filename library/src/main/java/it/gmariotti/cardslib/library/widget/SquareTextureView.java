@@ -16,6 +16,13 @@ public class SquareTextureView extends TextureView {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        //Fixed slot: measure once
+        int size = SquareImageView.getExactSquareSize(getLayoutParams(), widthMeasureSpec, heightMeasureSpec);
+        if (size > 0) {
+            setMeasuredDimension(size, size);
+            return;
+        }
+
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
         int min = Integer.MAX_VALUE;